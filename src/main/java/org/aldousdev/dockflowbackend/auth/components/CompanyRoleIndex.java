@@ -0,0 +1,155 @@
+package org.aldousdev.dockflowbackend.auth.components;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.aldousdev.dockflowbackend.auth.repository.MembershipRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Индекс роль -> пользователи для каждой компании.
+ * Компания загружается одним запросом по memberships и держится в памяти, пока
+ * CompanyRoleIndexInvalidationListener не сбросит ее при изменении участников или ролей.
+ * Другие узлы узнают об изменении из company_role_changes: после коммита узел отмечает
+ * там компанию, а каждый узел раз в sync-interval сбрасывает недавно отмеченные.
+ * ttl - страховка на случай, если отметка не записалась
+ */
+@Component
+@Slf4j
+public class CompanyRoleIndex {
+    // Изменение системной роли: сбрасываются все компании
+    static final long ALL_COMPANIES = 0L;
+
+    private static final String MARK_CHANGED = """
+            INSERT INTO company_role_changes (company_id, changed_at) VALUES (?, now())
+            ON CONFLICT (company_id) DO UPDATE SET changed_at = EXCLUDED.changed_at""";
+
+    private final MembershipRepository membershipRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<Long, CompanyRoles> companies;
+
+    @Value("${company.role-index.sync-interval:PT5S}")
+    private Duration syncInterval;
+
+    public CompanyRoleIndex(MembershipRepository membershipRepository, JdbcTemplate jdbcTemplate,
+                            @Value("${company.role-index.max-companies:10000}") long maxCompanies,
+                            @Value("${company.role-index.ttl:PT10M}") Duration ttl) {
+        this.membershipRepository = membershipRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.companies = Caffeine.newBuilder().maximumSize(maxCompanies).expireAfterWrite(ttl).build();
+    }
+
+    /**
+     * Пользователи с ролью roleName (без учета регистра)
+     */
+    public Set<Long> usersWithRole(Long companyId, String roleName) {
+        if (roleName == null) {
+            return Set.of();
+        }
+        return roles(companyId).byRole().getOrDefault(roleName.toLowerCase(Locale.ROOT), Set.of());
+    }
+
+    /**
+     * Пользователи с уровнем роли не ниже level
+     */
+    public Set<Long> usersWithLevelAtLeast(Long companyId, int level) {
+        Set<Long> users = new LinkedHashSet<>();
+        for (Member member : roles(companyId).byLevelDesc()) {
+            if (member.level() < level) {
+                break;
+            }
+            users.add(member.userId());
+        }
+        return users;
+    }
+
+    /**
+     * Исполнители task: пользователи с требуемой ролью, а если таких нет -
+     * все, кто может ее одобрить по уровню (как WorkflowEngine.canUserApproveTask)
+     */
+    public Set<Long> approvers(Long companyId, String roleName, Integer requiredLevel) {
+        Set<Long> users = usersWithRole(companyId, roleName);
+        if (!users.isEmpty() || requiredLevel == null) {
+            return users;
+        }
+        return usersWithLevelAtLeast(companyId, requiredLevel);
+    }
+
+    public void evict(Long companyId) {
+        if (companyId == ALL_COMPANIES) {
+            companies.invalidateAll();
+        } else {
+            companies.invalidate(companyId);
+        }
+    }
+
+    /**
+     * Сообщает остальным узлам об изменении после коммита. Ошибка не пробрасывается:
+     * транзакция уже зафиксирована, другие узлы догонят по ttl
+     */
+    public void markChanged(Long companyId) {
+        try {
+            jdbcTemplate.update(MARK_CHANGED, companyId);
+        } catch (Exception e) {
+            log.warn("Failed to publish role index change of company {}: {}", companyId, e.getMessage());
+        }
+    }
+
+    /**
+     * Сбрасывает компании, отмеченные за последние два интервала (с запасом на задержку коммита).
+     * Свои изменения тоже попадают сюда - лишний сброс дешевле пропущенного
+     */
+    @Scheduled(fixedDelayString = "${company.role-index.sync-interval:PT5S}")
+    public void evictChanged() {
+        List<Long> changed;
+        try {
+            changed = jdbcTemplate.queryForList(
+                    "SELECT company_id FROM company_role_changes WHERE changed_at >= now() - ?::interval",
+                    Long.class, syncInterval.multipliedBy(2).plusSeconds(5).toMillis() + " milliseconds");
+        } catch (Exception e) {
+            log.warn("Failed to read role index changes: {}", e.getMessage());
+            return;
+        }
+        changed.forEach(this::evict);
+    }
+
+    private CompanyRoles roles(Long companyId) {
+        return companies.get(companyId, this::load);
+    }
+
+    private CompanyRoles load(Long companyId) {
+        Map<String, Set<Long>> byRole = new HashMap<>();
+        List<Member> members = new ArrayList<>();
+        for (MembershipRepository.RoleMemberView view : membershipRepository.findRoleMembers(companyId)) {
+            if (view.getRoleName() != null) {
+                byRole.computeIfAbsent(view.getRoleName().toLowerCase(Locale.ROOT), name -> new LinkedHashSet<>())
+                        .add(view.getUserId());
+            }
+            members.add(new Member(view.getUserId(), view.getRoleLevel() != null ? view.getRoleLevel() : 0));
+        }
+        members.sort(Comparator.comparingInt(Member::level).reversed());
+
+        Map<String, Set<Long>> frozen = new HashMap<>(byRole.size());
+        byRole.forEach((role, users) -> frozen.put(role, Set.copyOf(users)));
+        return new CompanyRoles(Map.copyOf(frozen), List.copyOf(members));
+    }
+
+    private record CompanyRoles(Map<String, Set<Long>> byRole, List<Member> byLevelDesc) {
+    }
+
+    private record Member(Long userId, int level) {
+    }
+}
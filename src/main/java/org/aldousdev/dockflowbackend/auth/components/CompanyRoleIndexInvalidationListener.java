@@ -0,0 +1,60 @@
+package org.aldousdev.dockflowbackend.auth.components;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.aldousdev.dockflowbackend.auth.entity.CompanyRoleEntity;
+import org.aldousdev.dockflowbackend.auth.entity.Membership;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA listener участников и ролей компании: сбрасывает индекс ролей компании.
+ * Сброс повторяется после коммита, чтобы параллельная загрузка не закешировала
+ * состояние до изменения, а после коммита изменение отмечается для остальных узлов.
+ * Системная роль общая для всех компаний, ее изменение сбрасывает весь индекс.
+ * Индекс берется через ObjectProvider, потому что listener создается вместе с EntityManagerFactory
+ */
+@Component
+public class CompanyRoleIndexInvalidationListener {
+    private final ObjectProvider<CompanyRoleIndex> index;
+
+    public CompanyRoleIndexInvalidationListener(ObjectProvider<CompanyRoleIndex> index) {
+        this.index = index;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void evict(Object entity) {
+        Long companyId = null;
+        if (entity instanceof Membership membership && membership.getCompany() != null) {
+            companyId = membership.getCompany().getId();
+        } else if (entity instanceof CompanyRoleEntity role) {
+            companyId = role.getCompany() != null ? role.getCompany().getId()
+                    : Boolean.TRUE.equals(role.getIsSystem()) ? CompanyRoleIndex.ALL_COMPANIES : null;
+        }
+        CompanyRoleIndex roleIndex = index.getIfAvailable();
+        if (companyId == null || roleIndex == null) {
+            return;
+        }
+
+        Long evictedCompanyId = companyId;
+        roleIndex.evict(evictedCompanyId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    roleIndex.evict(evictedCompanyId);
+                    if (status == STATUS_COMMITTED) {
+                        roleIndex.markChanged(evictedCompanyId);
+                    }
+                }
+            });
+        } else {
+            roleIndex.markChanged(evictedCompanyId);
+        }
+    }
+}
@@ -2,6 +2,9 @@ package org.aldousdev.dockflowbackend.auth.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.aldousdev.dockflowbackend.config.SecondLevelCacheConfig;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -19,6 +22,7 @@ import java.util.List;
 @EqualsAndHashCode(of = "id")
 @EntityListeners(AuditingEntityListener.class)
 @Table(name = "companies")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.COMPANY_REGION)
 public class Company {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -2,14 +2,20 @@ package org.aldousdev.dockflowbackend.auth.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.aldousdev.dockflowbackend.auth.components.CompanyRoleIndexInvalidationListener;
+import org.aldousdev.dockflowbackend.config.SecondLevelCacheConfig;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
 @Getter
 @Setter
 @Table(name = "company_roles")
+@EntityListeners(CompanyRoleIndexInvalidationListener.class)
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.COMPANY_ROLE_REGION)
 public class CompanyRoleEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -2,6 +2,7 @@ package org.aldousdev.dockflowbackend.auth.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.aldousdev.dockflowbackend.auth.components.CompanyRoleIndexInvalidationListener;
 import org.aldousdev.dockflowbackend.auth.enums.CompanyRole;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
@@ -15,8 +16,9 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @ToString
 @EqualsAndHashCode(of = "id")
-@EntityListeners(AuditingEntityListener.class)
-@Table(name = "memberships")
+@EntityListeners({AuditingEntityListener.class, CompanyRoleIndexInvalidationListener.class})
+@Table(name = "memberships",
+        indexes = @Index(name = "idx_memberships_company_role", columnList = "company_id, role_id"))
 public class Membership {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
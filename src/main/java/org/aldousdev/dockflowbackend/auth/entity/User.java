@@ -6,6 +6,7 @@ import jakarta.validation.constraints.Size;
 import lombok.*;
 import org.aldousdev.dockflowbackend.auth.enums.Status;
 import org.aldousdev.dockflowbackend.auth.enums.UserType;
+import org.aldousdev.dockflowbackend.chat.service.ChatMetadataInvalidationListener;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -21,7 +22,7 @@ import java.util.List;
 @Table(name = "users")
 @ToString(exclude = {"memberships"})
 @EqualsAndHashCode(exclude = {"id"})
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, ChatMetadataInvalidationListener.class})
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
@@ -3,6 +3,7 @@ package org.aldousdev.dockflowbackend.auth.exceptions;
 import lombok.extern.slf4j.Slf4j;
 import org.aldousdev.dockflowbackend.workflow.exceptions.InvalidFileException;
 import org.aldousdev.dockflowbackend.workflow.exceptions.DocumentUploadException;
+import org.aldousdev.dockflowbackend.workflow.exceptions.UploadSessionNotFoundException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -54,6 +55,13 @@ public class GlobalExceptionHandler {
                  .body("Error: Failed to upload document");
      }
 
+     @ExceptionHandler(UploadSessionNotFoundException.class)
+     public ResponseEntity<?> handleUploadSessionNotFoundException(UploadSessionNotFoundException ex){
+         log.warn("Upload session not found: {}", ex.getMessage());
+         return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                 .body("Error: " + ex.getMessage());
+     }
+
      @ExceptionHandler(RuntimeException.class)
      public ResponseEntity<?> handleRuntimeException(RuntimeException ex){
          log.error("Unexpected error: {}", ex.getMessage(), ex);
@@ -13,4 +13,13 @@ public interface MembershipRepository extends JpaRepository<Membership, Long> {
     List<Membership> findByUser(User user);
     @Query("SELECT m FROM Membership m WHERE m.company.id = :companyId AND m.user.id = :userId")
     Optional<Membership> findByCompanyIdAndUserId(@Param("companyId") Long companyId, @Param("userId") Long userId);
+
+    @Query("SELECT m.user.id AS userId, r.name AS roleName, r.level AS roleLevel FROM Membership m JOIN m.role r WHERE m.company.id = :companyId")
+    List<RoleMemberView> findRoleMembers(@Param("companyId") Long companyId);
+
+    interface RoleMemberView {
+        Long getUserId();
+        String getRoleName();
+        Integer getRoleLevel();
+    }
 }
@@ -5,6 +5,8 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -12,4 +14,13 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
     @Query("SELECT u FROM User u LEFT JOIN FETCH u.memberships m LEFT JOIN FETCH m.company WHERE u.email = :email")
     Optional<User> findByEmailWithMemberships(@Param("email") String email);
+
+    @Query("SELECT u.id AS id, u.firstName AS firstName, u.lastName AS lastName FROM User u WHERE u.id IN :ids")
+    List<NameView> findNamesByIds(@Param("ids") Collection<Long> ids);
+
+    interface NameView {
+        Long getId();
+        String getFirstName();
+        String getLastName();
+    }
 }
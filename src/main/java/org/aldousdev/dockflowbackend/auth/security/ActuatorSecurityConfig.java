@@ -0,0 +1,55 @@
+package org.aldousdev.dockflowbackend.auth.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.security.web.SecurityFilterChain;
+
+/**
+ * Доступ к /actuator отдельной цепочкой фильтров.
+ * health открыт для проверок балансировщика, остальное (prometheus, metrics, hibernate) -
+ * только служебной учетной записи actuator.security.* по HTTP Basic с ролью ACTUATOR.
+ * JWT пользователей компаний здесь не принимается: метрики и статистика SQL общие для всех компаний.
+ * Без actuator.security.password закрыто все, кроме health
+ */
+@Configuration
+public class ActuatorSecurityConfig {
+    public static final String ACTUATOR_ROLE = "ACTUATOR";
+
+    @Bean
+    @Order(1)
+    public SecurityFilterChain actuatorSecurityFilterChain(HttpSecurity http, PasswordEncoder passwordEncoder,
+                                                           @Value("${actuator.security.username:actuator}") String username,
+                                                           @Value("${actuator.security.password:}") String password)
+            throws Exception {
+        boolean enabled = !password.isBlank();
+        http
+                .securityMatcher("/actuator/**")
+                .csrf(AbstractHttpConfigurer::disable)
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests(auth -> {
+                    auth.requestMatchers("/actuator/health", "/actuator/health/**").permitAll();
+                    if (enabled) {
+                        auth.anyRequest().hasRole(ACTUATOR_ROLE);
+                    } else {
+                        auth.anyRequest().denyAll();
+                    }
+                })
+                .httpBasic(Customizer.withDefaults());
+        if (enabled) {
+            http.userDetailsService(new InMemoryUserDetailsManager(User.withUsername(username)
+                    .password(passwordEncoder.encode(password))
+                    .roles(ACTUATOR_ROLE)
+                    .build()));
+        }
+        return http.build();
+    }
+}
@@ -1,5 +1,7 @@
 package org.aldousdev.dockflowbackend.auth.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
@@ -8,7 +10,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.aldousdev.dockflowbackend.auth.entity.User;
 import org.aldousdev.dockflowbackend.auth.repository.UserRepository;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -19,53 +20,72 @@ import java.util.Arrays;
 @Component
 @RequiredArgsConstructor
 public class JwtFilter extends OncePerRequestFilter {
+    private static final String FILTER_TIMER = "auth.jwt.filter";
+
     private final JWTService jwtService;
     private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
-         Cookie[] cookies = request.getCookies();
-         String token = null;
-
-         if (cookies != null) {
-             token = Arrays.stream(cookies)
-                     .filter(cookie -> "jwtWithCompany".equals(cookie.getName()))
-                     .map(Cookie::getValue)
-                     .findFirst()
-                     .orElse(null);
+         Timer.Sample sample = Timer.start(meterRegistry);
+         String outcome = authenticate(request);
+         sample.stop(meterRegistry.timer(FILTER_TIMER, "outcome", outcome));
 
+         filterChain.doFilter(request,response);
+    }
 
-             if (token == null) {
-                 token = Arrays.stream(cookies)
-                         .filter(cookie -> "JWT".equals(cookie.getName()))
-                         .map(Cookie::getValue)
-                         .findFirst()
-                         .orElse(null);
-             }
+    /**
+     * Кладет пользователя из JWT в SecurityContext; результат идет в тег outcome метрики
+     */
+    private String authenticate(HttpServletRequest request) {
+         String token = resolveToken(request.getCookies());
+         if (token == null) {
+             return "anonymous";
          }
-
-
-         if( token != null && jwtService.isTokenValid(token)){
-             String email = jwtService.extractEmail(token);
-
-             if(SecurityContextHolder.getContext().getAuthentication() == null){
-                 User user = userRepository.findByEmailWithMemberships(email)
-                         .orElse(null);
-                 if(user != null && jwtService.isTokenValid(token,user)){
-                     JwtAuthenticationToken authentication = new JwtAuthenticationToken(
-                             user,
-                             token,
-                             user.getAuthorities()
-                     );
-//                     UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(user,token,user.getAuthorities());
-                     SecurityContextHolder.getContext().setAuthentication(authentication);
-                 }
-             }
+         if (SecurityContextHolder.getContext().getAuthentication() != null) {
+             return "skipped";
+         }
+         if (!jwtService.isTokenValid(token)) {
+             return "invalid";
          }
 
+         String email = jwtService.extractEmail(token);
+         User user = userRepository.findByEmailWithMemberships(email)
+                 .orElse(null);
+         if (user == null || !jwtService.isTokenValid(token, user)) {
+             return "invalid";
+         }
+         JwtAuthenticationToken authentication = new JwtAuthenticationToken(
+                 user,
+                 token,
+                 user.getAuthorities()
+         );
+         SecurityContextHolder.getContext().setAuthentication(authentication);
+         return "authenticated";
+    }
 
+    /**
+     * JWT из cookie: сначала токен с компанией, затем обычный
+     */
+    public static String resolveToken(Cookie[] cookies) {
+        if (cookies == null) {
+            return null;
+        }
+        String token = Arrays.stream(cookies)
+                .filter(cookie -> "jwtWithCompany".equals(cookie.getName()))
+                .map(Cookie::getValue)
+                .findFirst()
+                .orElse(null);
 
-         filterChain.doFilter(request,response);
+        if (token == null) {
+            token = Arrays.stream(cookies)
+                    .filter(cookie -> "JWT".equals(cookie.getName()))
+                    .map(Cookie::getValue)
+                    .findFirst()
+                    .orElse(null);
+        }
+        return token;
     }
 }
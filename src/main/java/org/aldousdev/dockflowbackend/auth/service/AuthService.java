@@ -9,4 +9,5 @@ public interface AuthService {
     LoginResponse login(LoginRequest loginRequest, HttpServletResponse response);
     void logout(HttpServletResponse response);
     User getCurrentUser();
+    Long getCurrentCompanyId();
 }
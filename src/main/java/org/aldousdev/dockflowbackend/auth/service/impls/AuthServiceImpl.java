@@ -11,6 +11,7 @@ import org.aldousdev.dockflowbackend.auth.enums.Status;
 import org.aldousdev.dockflowbackend.auth.exceptions.UserNotActiveException;
 import org.aldousdev.dockflowbackend.auth.repository.UserRepository;
 import org.aldousdev.dockflowbackend.auth.security.JWTService;
+import org.aldousdev.dockflowbackend.auth.security.JwtAuthenticationToken;
 import org.aldousdev.dockflowbackend.auth.mapper.AuthMapper;
 import org.aldousdev.dockflowbackend.auth.service.AuthService;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -82,4 +83,18 @@ public class AuthServiceImpl implements AuthService {
 
         throw new RuntimeException("User is not active");
     }
+
+    @Override
+    public Long getCurrentCompanyId(){
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        if(!(authentication instanceof JwtAuthenticationToken jwtAuth)){
+            throw new RuntimeException("Invalid authentication token type");
+        }
+
+        Long companyId = jwtService.extractCompanyId(jwtAuth.getToken());
+        if(companyId == null){
+            throw new RuntimeException("Company not found in token");
+        }
+        return companyId;
+    }
 }
@@ -0,0 +1,66 @@
+package org.aldousdev.dockflowbackend.chat.config;
+
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.io.IOException;
+
+/**
+ * SubProtocolWebSocketHandler с настраиваемой политикой переполнения буфера сессии.
+ * Лимиты времени отправки и размера буфера берутся из WebSocketTransportRegistration
+ */
+public class BackpressureWebSocketHandler extends SubProtocolWebSocketHandler {
+    private final SlowConsumerPolicy policy;
+    private final OutboundSessions sessions;
+
+    public BackpressureWebSocketHandler(MessageChannel clientInboundChannel, SubscribableChannel clientOutboundChannel,
+                                        SlowConsumerPolicy policy, OutboundSessions sessions) {
+        super(clientInboundChannel, clientOutboundChannel);
+        this.policy = policy;
+        this.sessions = sessions;
+    }
+
+    @Override
+    protected WebSocketSession decorateSession(WebSocketSession session) {
+        ConcurrentWebSocketSessionDecorator decorated = new DroppingSessionDecorator(
+                session, getSendTimeLimit(), getSendBufferSizeLimit(), policy, sessions);
+        sessions.register(decorated);
+        return decorated;
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        sessions.unregister(session.getId(), closeStatus);
+        super.afterConnectionClosed(session, closeStatus);
+    }
+
+    /**
+     * При DROP новый кадр не попадает в переполненный буфер и учитывается в метрике.
+     * Встроенный DROP декоратора выкидывает кадры молча, поэтому до него дело не доходит
+     */
+    private static final class DroppingSessionDecorator extends ConcurrentWebSocketSessionDecorator {
+        private final OutboundSessions sessions;
+
+        private DroppingSessionDecorator(WebSocketSession delegate, int sendTimeLimit, int bufferSizeLimit,
+                                         SlowConsumerPolicy policy, OutboundSessions sessions) {
+            super(delegate, sendTimeLimit, bufferSizeLimit, policy.overflowStrategy());
+            this.sessions = sessions;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            // getTimeSinceSendStarted() > 0: другой поток сейчас отправляет, кадр встанет в буфер
+            if (getOverflowStrategy() == OverflowStrategy.DROP && getTimeSinceSendStarted() > 0
+                    && getBufferSize() + message.getPayloadLength() > getBufferSizeLimit()) {
+                sessions.frameDropped(getId());
+                return;
+            }
+            super.sendMessage(message);
+        }
+    }
+}
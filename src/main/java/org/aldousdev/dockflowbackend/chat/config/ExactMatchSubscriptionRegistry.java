@@ -0,0 +1,131 @@
+package org.aldousdev.dockflowbackend.chat.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aldousdev.dockflowbackend.config.AppMetrics;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.AbstractSubscriptionRegistry;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.PathMatcher;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Реестр подписок простого брокера с поиском по точному destination за O(1).
+ * Для каждого destination хранится неизменяемая карта sessionId -> subscriptionIds,
+ * которая пересоздается только при SUBSCRIBE/UNSUBSCRIBE, поэтому рассылка
+ * читает ее без блокировок. Подписки с шаблонами (*, {var}) проверяются
+ * через PathMatcher отдельно; selector заголовки не поддерживаются.
+ */
+public class ExactMatchSubscriptionRegistry extends AbstractSubscriptionRegistry {
+    private final Map<String, LinkedMultiValueMap<String, String>> byDestination = new ConcurrentHashMap<>();
+    private final Map<String, LinkedMultiValueMap<String, String>> byPattern = new ConcurrentHashMap<>();
+    // sessionId -> (subscriptionId -> destination)
+    private final Map<String, Map<String, String>> bySession = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriptionCount = new AtomicInteger();
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+    private final Map<String, DistributionSummary> fanOut = new ConcurrentHashMap<>();
+    private volatile MeterRegistry meterRegistry;
+
+    @Override
+    protected void addSubscriptionInternal(String sessionId, String subscriptionId, String destination, Message<?> message) {
+        String previous = bySession.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                .put(subscriptionId, destination);
+        if (previous != null) {
+            // Клиент переиспользовал id подписки - старую снимаем
+            remove(previous, sessionId, subscriptionId);
+        }
+        subscriptionCount.incrementAndGet();
+        index(destination).compute(destination, (key, current) -> {
+            LinkedMultiValueMap<String, String> copy = current != null ? current.deepCopy() : new LinkedMultiValueMap<>();
+            copy.add(sessionId, subscriptionId);
+            return copy;
+        });
+    }
+
+    @Override
+    protected void removeSubscriptionInternal(String sessionId, String subscriptionId, Message<?> message) {
+        Map<String, String> subscriptions = bySession.get(sessionId);
+        String destination = subscriptions != null ? subscriptions.remove(subscriptionId) : null;
+        if (destination != null) {
+            remove(destination, sessionId, subscriptionId);
+        }
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+        Map<String, String> subscriptions = bySession.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.forEach((subscriptionId, destination) -> remove(destination, sessionId, subscriptionId));
+        }
+    }
+
+    @Override
+    protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+        LinkedMultiValueMap<String, String> exact = byDestination.get(destination);
+        if (byPattern.isEmpty()) {
+            recordFanOut(destination, exact != null ? exact.size() : 0);
+            return exact != null ? CollectionUtils.unmodifiableMultiValueMap(exact) : new LinkedMultiValueMap<>();
+        }
+
+        LinkedMultiValueMap<String, String> result = exact != null ? exact.deepCopy() : new LinkedMultiValueMap<>();
+        byPattern.forEach((pattern, subscriptions) -> {
+            if (pathMatcher.match(pattern, destination)) {
+                subscriptions.forEach(result::addAll);
+            }
+        });
+        recordFanOut(destination, result.size());
+        return result;
+    }
+
+    /**
+     * Включает метрику websocket.broker.fanout - число сессий, получивших сообщение
+     */
+    public void bindFanOutMetrics(MeterRegistry registry) {
+        this.meterRegistry = registry;
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptionCount.get();
+    }
+
+    public int getDestinationCount() {
+        return byDestination.size() + byPattern.size();
+    }
+
+    private void recordFanOut(String destination, int sessions) {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        fanOut.computeIfAbsent(AppMetrics.destinationType(destination),
+                type -> DistributionSummary.builder("websocket.broker.fanout")
+                        .tag("destination", type)
+                        .register(registry))
+                .record(sessions);
+    }
+
+    private void remove(String destination, String sessionId, String subscriptionId) {
+        index(destination).computeIfPresent(destination, (key, current) -> {
+            LinkedMultiValueMap<String, String> copy = current.deepCopy();
+            var ids = copy.get(sessionId);
+            if (ids == null || !ids.remove(subscriptionId)) {
+                return current;
+            }
+            subscriptionCount.decrementAndGet();
+            if (ids.isEmpty()) {
+                copy.remove(sessionId);
+            }
+            return copy.isEmpty() ? null : copy;
+        });
+    }
+
+    private Map<String, LinkedMultiValueMap<String, String>> index(String destination) {
+        return pathMatcher.isPattern(destination) ? byPattern : byDestination;
+    }
+}
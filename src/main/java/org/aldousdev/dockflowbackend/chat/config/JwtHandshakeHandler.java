@@ -0,0 +1,21 @@
+package org.aldousdev.dockflowbackend.chat.config;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * Делает аутентификацию из JwtHandshakeInterceptor пользователем STOMP сессии,
+ * чтобы работали /user/** destinations и @SendToUser
+ */
+public class JwtHandshakeHandler extends DefaultHandshakeHandler {
+
+    @Override
+    protected Principal determineUser(ServerHttpRequest request, WebSocketHandler wsHandler,
+                                      Map<String, Object> attributes) {
+        return (Principal) attributes.get(JwtHandshakeInterceptor.AUTHENTICATION_ATTR);
+    }
+}
@@ -0,0 +1,76 @@
+package org.aldousdev.dockflowbackend.chat.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.auth.repository.UserRepository;
+import org.aldousdev.dockflowbackend.auth.security.JWTService;
+import org.aldousdev.dockflowbackend.auth.security.JwtAuthenticationToken;
+import org.aldousdev.dockflowbackend.auth.security.JwtFilter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/**
+ * Аутентификация WebSocket соединения по JWT cookie во время handshake.
+ * Компания и роль из токена сохраняются в атрибутах сессии и дальше
+ * используются для проверки подписок без повторного разбора JWT.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class JwtHandshakeInterceptor implements HandshakeInterceptor {
+    public static final String AUTHENTICATION_ATTR = "authentication";
+    public static final String COMPANY_ID_ATTR = "companyId";
+    public static final String COMPANY_ROLE_ATTR = "companyRole";
+    public static final String COMPANY_ROLE_LEVEL_ATTR = "companyRoleLevel";
+
+    private final JWTService jwtService;
+    private final UserRepository userRepository;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        if (!(request instanceof ServletServerHttpRequest servletRequest)) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        HttpServletRequest httpRequest = servletRequest.getServletRequest();
+        String token = JwtFilter.resolveToken(httpRequest.getCookies());
+
+        if (token == null || !jwtService.isTokenValid(token)) {
+            log.debug("WebSocket handshake rejected: no valid JWT cookie");
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+
+        User user = userRepository.findByEmailWithMemberships(jwtService.extractEmail(token)).orElse(null);
+        if (user == null || !jwtService.isTokenValid(token, user)) {
+            log.debug("WebSocket handshake rejected: user not found or token mismatch");
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+
+        attributes.put(AUTHENTICATION_ATTR, new JwtAuthenticationToken(user, token, user.getAuthorities()));
+        Long companyId = jwtService.extractCompanyId(token);
+        if (companyId != null) {
+            attributes.put(COMPANY_ID_ATTR, companyId);
+            attributes.put(COMPANY_ROLE_ATTR, jwtService.extractCompanyRole(token));
+            attributes.put(COMPANY_ROLE_LEVEL_ATTR, jwtService.extractCompanyRoleLevel(token));
+        }
+        log.debug("WebSocket handshake accepted for {} (company {})", user.getEmail(), companyId);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
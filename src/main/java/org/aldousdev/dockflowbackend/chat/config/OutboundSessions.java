@@ -0,0 +1,81 @@
+package org.aldousdev.dockflowbackend.chat.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Открытые WebSocket сессии с ограниченными буферами отправки.
+ * Нужен, чтобы закрывать медленных клиентов из потоков рассылки и считать метрики
+ */
+@Slf4j
+public class OutboundSessions {
+    private final Map<String, ConcurrentWebSocketSessionDecorator> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong terminated = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    void register(ConcurrentWebSocketSessionDecorator session) {
+        sessions.put(session.getId(), session);
+    }
+
+    void unregister(String sessionId, CloseStatus status) {
+        sessions.remove(sessionId);
+        if (CloseStatus.SESSION_NOT_RELIABLE.equals(status)) {
+            terminated.incrementAndGet();
+        }
+    }
+
+    /**
+     * Закрывает сессию, которая не успевает забирать кадры
+     */
+    void terminate(String sessionId, String reason) {
+        ConcurrentWebSocketSessionDecorator session = sessions.get(sessionId);
+        if (session == null) {
+            return;
+        }
+        log.warn("Closing slow WebSocket session {}: {}", sessionId, reason);
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            log.debug("Failed to close WebSocket session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    /**
+     * Кадр не поместился в буфер отправки сессии (политика DROP)
+     */
+    void frameDropped(String sessionId) {
+        long total = droppedFrames.incrementAndGet();
+        if (total % 1000 == 1) {
+            log.warn("Send buffer of WebSocket session {} is full, dropped {} frames so far", sessionId, total);
+        }
+    }
+
+    public long getDroppedFrameCount() {
+        return droppedFrames.get();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Сумма байт, ожидающих отправки во всех сессиях
+     */
+    public long getBufferedBytes() {
+        long total = 0;
+        for (ConcurrentWebSocketSessionDecorator session : sessions.values()) {
+            total += session.getBufferSize();
+        }
+        return total;
+    }
+
+    public long getTerminatedCount() {
+        return terminated.get();
+    }
+}
@@ -0,0 +1,266 @@
+package org.aldousdev.dockflowbackend.chat.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Обмен сообщениями брокера между инстансами через Postgres LISTEN/NOTIFY
+ * (websocket.broker.mode=pg-notify).
+ * Сообщения в /topic и /user, отправленные на этом узле, доставляются локальным
+ * брокером сразу, а в фоне публикуются в канал NOTIFY. Остальные узлы кладут их
+ * в свой brokerChannel с заголовком узла-источника, поэтому повторно они не
+ * публикуются, а свои уведомления узел игнорирует.
+ */
+@Component
+@ConditionalOnProperty(name = "websocket.broker.mode", havingValue = "pg-notify")
+@Slf4j
+public class PgNotifyBrokerBridge implements ChannelInterceptor {
+    public static final String ORIGIN_NODE_HEADER = "dockflowOriginNode";
+
+    // Лимит NOTIFY 8000 байт; большие сообщения идут через таблицу
+    private static final int MAX_INLINE_PAYLOAD = 7000;
+    private static final String NOTIFY_ALL = "SELECT pg_notify(?, payload) FROM unnest(?::text[]) AS payload";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final MessageChannel brokerChannel;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    @Value("${websocket.broker.pg-notify.channel:dockflow_broker}")
+    private String channel;
+
+    @Value("${websocket.broker.pg-notify.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${websocket.broker.pg-notify.large-message-retention:PT5M}")
+    private Duration largeMessageRetention;
+
+    private BlockingQueue<RelayEnvelope> outbox;
+    private volatile boolean running;
+    private Thread publisher;
+    private Thread listener;
+
+    public PgNotifyBrokerBridge(DataSource dataSource, JdbcTemplate jdbcTemplate,
+                                @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.brokerChannel = brokerChannel;
+    }
+
+    @PostConstruct
+    void start() {
+        outbox = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        publisher = daemon(this::publishLoop, "broker-bridge-publisher");
+        listener = daemon(this::listenLoop, "broker-bridge-listener");
+        log.info("Broker bridge started on channel {} as node {}", channel, nodeId);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        publisher.interrupt();
+        listener.interrupt();
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel messageChannel) {
+        RelayEnvelope envelope = toEnvelope(message);
+        if (envelope != null && !outbox.offer(envelope)) {
+            long total = dropped.incrementAndGet();
+            if (total % 1000 == 1) {
+                log.warn("Broker bridge outbox is full ({}), dropped {} messages so far", queueCapacity, total);
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Конверт для публикации или null, если сообщение не должно уходить на другие узлы
+     */
+    RelayEnvelope toEnvelope(Message<?> message) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        String destination = accessor.getDestination();
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE
+                || destination == null
+                || !(destination.startsWith("/topic/") || destination.startsWith("/user/"))
+                // Ответ конкретной сессии (@SendToUser) нужен только на этом узле
+                || accessor.getSessionId() != null
+                || message.getHeaders().containsKey(ORIGIN_NODE_HEADER)
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return null;
+        }
+        MimeType contentType = accessor.getContentType();
+        return new RelayEnvelope(nodeId, sequence.incrementAndGet(), destination,
+                contentType != null ? contentType.toString() : null,
+                new String(payload, StandardCharsets.UTF_8), null);
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Удаляет большие сообщения старше websocket.broker.pg-notify.large-message-retention:
+     * остальные узлы к этому времени уже должны были их прочитать
+     */
+    @Scheduled(fixedDelayString = "${websocket.broker.pg-notify.purge-interval:PT1M}")
+    public void purgeLargeMessages() {
+        int purged = jdbcTemplate.update("DELETE FROM broker_relay_messages WHERE created_at < now() - ?::interval",
+                largeMessageRetention.toSeconds() + " seconds");
+        if (purged > 0) {
+            log.debug("Purged {} relayed broker messages", purged);
+        }
+    }
+
+    private void publishLoop() {
+        List<RelayEnvelope> batch = new ArrayList<>();
+        while (running) {
+            try {
+                batch.add(outbox.take());
+                outbox.drainTo(batch, 499);
+                publish(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Failed to publish {} broker messages", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void publish(List<RelayEnvelope> batch) throws JsonProcessingException {
+        String[] notifications = new String[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            RelayEnvelope envelope = batch.get(i);
+            String json = objectMapper.writeValueAsString(envelope);
+            if (json.getBytes(StandardCharsets.UTF_8).length > MAX_INLINE_PAYLOAD) {
+                Long ref = jdbcTemplate.queryForObject(
+                        "INSERT INTO broker_relay_messages (envelope) VALUES (?) RETURNING id", Long.class, json);
+                json = objectMapper.writeValueAsString(new RelayEnvelope(envelope.node(), envelope.sequence(),
+                        null, null, null, ref));
+            }
+            notifications[i] = json;
+        }
+        jdbcTemplate.query(con -> {
+            var statement = con.prepareStatement(NOTIFY_ALL);
+            statement.setString(1, channel);
+            statement.setArray(2, con.createArrayOf("text", notifications));
+            return statement;
+        }, resultSet -> {
+        });
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(1000);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            deliver(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Broker bridge listener lost its connection, reconnecting: {}", e.getMessage());
+                try {
+                    TimeUnit.SECONDS.sleep(2);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    void deliver(String notification) {
+        try {
+            RelayEnvelope envelope = objectMapper.readValue(notification, RelayEnvelope.class);
+            if (nodeId.equals(envelope.node())) {
+                return;
+            }
+            if (envelope.ref() != null) {
+                List<String> stored = jdbcTemplate.queryForList(
+                        "SELECT envelope FROM broker_relay_messages WHERE id = ?", String.class, envelope.ref());
+                if (stored.isEmpty()) {
+                    log.warn("Relayed broker message {} is already purged", envelope.ref());
+                    return;
+                }
+                envelope = objectMapper.readValue(stored.get(0), RelayEnvelope.class);
+            }
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(envelope.destination());
+            if (envelope.contentType() != null) {
+                accessor.setContentType(MimeType.valueOf(envelope.contentType()));
+            }
+            accessor.setHeader(ORIGIN_NODE_HEADER, envelope.node());
+            brokerChannel.send(MessageBuilder.createMessage(
+                    envelope.payload().getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders()));
+        } catch (Exception e) {
+            log.error("Failed to deliver relayed broker message", e);
+        }
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Сообщение брокера в канале NOTIFY. sequence делает одинаковые сообщения различимыми:
+     * Postgres схлопывает одинаковые уведомления одной транзакции.
+     * ref - id строки broker_relay_messages для сообщений больше лимита NOTIFY
+     */
+    record RelayEnvelope(String node, long sequence, String destination, String contentType, String payload, Long ref) {
+    }
+}
@@ -0,0 +1,34 @@
+package org.aldousdev.dockflowbackend.chat.config;
+
+import org.aldousdev.dockflowbackend.chat.service.ChatPresenceService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Отмечает активность сессии для присутствия: SEND и SUBSCRIBE считаются действиями
+ * пользователя, heartbeat - нет. ChatPresenceService берется через ObjectProvider,
+ * так как он зависит от брокера, который настраивается с этим interceptor'ом
+ */
+@Component
+public class PresenceActivityInterceptor implements ChannelInterceptor {
+    private final ObjectProvider<ChatPresenceService> presenceService;
+
+    public PresenceActivityInterceptor(ObjectProvider<ChatPresenceService> presenceService) {
+        this.presenceService = presenceService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor != null && (accessor.getCommand() == StompCommand.SEND || accessor.getCommand() == StompCommand.SUBSCRIBE)) {
+            presenceService.getObject().touch(accessor.getSessionId());
+        }
+        return message;
+    }
+}
@@ -0,0 +1,108 @@
+package org.aldousdev.dockflowbackend.chat.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor канала clientOutboundChannel, разбитый на однопоточные шарды по sessionId.
+ * Кадры одной сессии уходят по порядку, разные сессии рассылаются параллельно.
+ * На каждую сессию в очереди может ждать не больше max-pending-frames кадров MESSAGE;
+ * лишние отбрасываются (DROP) или сессия закрывается (TERMINATE).
+ * TaskExecutor, т.к. webSocketMessageBrokerStats внедряет clientOutboundChannelExecutor по этому типу.
+ */
+@Slf4j
+public class ShardedOutboundExecutor implements TaskExecutor {
+    private final ThreadPoolExecutor[] shards;
+    private final int maxPendingFrames;
+    private final SlowConsumerPolicy policy;
+    private final OutboundSessions sessions;
+
+    private final Map<String, Integer> pending = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public ShardedOutboundExecutor(int shardCount, int maxPendingFrames, SlowConsumerPolicy policy,
+                                   OutboundSessions sessions) {
+        this.maxPendingFrames = maxPendingFrames;
+        this.policy = policy;
+        this.sessions = sessions;
+        this.shards = new ThreadPoolExecutor[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            String name = "ws-outbound-" + i;
+            shards[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Message<?> message = task instanceof MessageHandlingRunnable handling ? handling.getMessage() : null;
+        String sessionId = message != null ? SimpMessageHeaderAccessor.getSessionId(message.getHeaders()) : null;
+        ThreadPoolExecutor shard = shards[Math.floorMod(sessionId != null ? sessionId.hashCode() : 0, shards.length)];
+
+        // Лимит касается только кадров с данными; CONNECT_ACK, heartbeat и т.п. проходят всегда
+        if (sessionId == null || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            shard.execute(task);
+            return;
+        }
+
+        if (pending.merge(sessionId, 1, Integer::sum) > maxPendingFrames) {
+            release(sessionId);
+            long total = dropped.incrementAndGet();
+            if (total % 1000 == 1) {
+                log.warn("Outbound queue of session {} is full ({}), dropped {} frames so far",
+                        sessionId, maxPendingFrames, total);
+            }
+            if (policy == SlowConsumerPolicy.TERMINATE) {
+                sessions.terminate(sessionId, maxPendingFrames + " frames pending");
+            }
+            return;
+        }
+
+        shard.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                release(sessionId);
+            }
+        });
+    }
+
+    /**
+     * Кадры, ожидающие отправки во всех шардах
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor shard : shards) {
+            depth += shard.getQueue().size();
+        }
+        return depth;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public void shutdown() {
+        for (ThreadPoolExecutor shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    private void release(String sessionId) {
+        pending.computeIfPresent(sessionId, (id, count) -> count > 1 ? count - 1 : null);
+    }
+}
@@ -0,0 +1,17 @@
+package org.aldousdev.dockflowbackend.chat.config;
+
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+
+/**
+ * Что делать с сессией, которая не успевает забирать кадры.
+ * DROP - отбрасывать новые кадры, пока очередь или буфер сессии полны
+ * (метрика websocket.outbound.dropped.frames), TERMINATE - закрывать сессию
+ */
+public enum SlowConsumerPolicy {
+    DROP,
+    TERMINATE;
+
+    public OverflowStrategy overflowStrategy() {
+        return this == DROP ? OverflowStrategy.DROP : OverflowStrategy.TERMINATE;
+    }
+}
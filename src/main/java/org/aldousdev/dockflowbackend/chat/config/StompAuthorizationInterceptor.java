@@ -0,0 +1,157 @@
+package org.aldousdev.dockflowbackend.chat.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.auth.entity.CompanyRoleEntity;
+import org.aldousdev.dockflowbackend.auth.repository.CompanyRoleEntityRepository;
+import org.aldousdev.dockflowbackend.chat.service.ChatMetadataCache;
+import org.aldousdev.dockflowbackend.chat.service.ChatPresenceService;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Авторизация входящих STOMP кадров.
+ * SUBSCRIBE разрешен только на топики своей компании (для ролевых топиков - с достаточным
+ * уровнем роли) и на свои /user очереди. SEND разрешен только в /app, чтобы клиент
+ * не мог публиковать напрямую в топики брокера.
+ * Для обработчиков @MessageMapping аутентификация сессии кладется в SecurityContextHolder.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StompAuthorizationInterceptor implements ExecutorChannelInterceptor {
+    private static final String COMPANY_TOPIC_PREFIX = "/topic/workflow/company/";
+    private static final String CHANNEL_TOPIC_PREFIX = "/topic/channel/";
+    private static final String TYPING_SUFFIX = "/typing";
+
+    private final ChatMetadataCache metadataCache;
+    private final CompanyRoleEntityRepository roleRepository;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        StompCommand command = accessor.getCommand();
+        if (command != StompCommand.SUBSCRIBE && command != StompCommand.SEND) {
+            return message;
+        }
+        if (accessor.getUser() == null) {
+            throw new AccessDeniedException("WebSocket session is not authenticated");
+        }
+
+        String destination = accessor.getDestination();
+        if (destination == null) {
+            throw new AccessDeniedException("Destination is required");
+        }
+
+        if (command == StompCommand.SEND) {
+            if (!destination.startsWith("/app/")) {
+                throw new AccessDeniedException("Sending to " + destination + " is not allowed");
+            }
+            return message;
+        }
+
+        if (!canSubscribe(destination, accessor.getSessionAttributes())) {
+            log.warn("Subscription to {} denied for {}", destination, accessor.getUser().getName());
+            throw new AccessDeniedException("Subscription to " + destination + " is not allowed");
+        }
+        return message;
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor != null && accessor.getUser() instanceof Authentication authentication) {
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        SecurityContextHolder.clearContext();
+    }
+
+    private boolean canSubscribe(String destination, Map<String, Object> attributes) {
+        if (destination.startsWith("/user/")) {
+            return true;
+        }
+
+        Long companyId = attributes != null ? (Long) attributes.get(JwtHandshakeInterceptor.COMPANY_ID_ATTR) : null;
+        if (companyId == null) {
+            // Без выбранной компании доступны только личные очереди
+            return false;
+        }
+
+        if (destination.startsWith(COMPANY_TOPIC_PREFIX)) {
+            // /topic/workflow/company/{companyId}[/role/{roleName}]
+            String[] parts = destination.substring(COMPANY_TOPIC_PREFIX.length()).split("/", 3);
+            if (!parts[0].equals(companyId.toString())) {
+                return false;
+            }
+            if (parts.length == 1) {
+                return true;
+            }
+            return parts.length == 3 && "role".equals(parts[1]) && hasRole(companyId, parts[2], attributes);
+        }
+
+        if (destination.startsWith(ChatPresenceService.PRESENCE_TOPIC_PREFIX)) {
+            return destination.substring(ChatPresenceService.PRESENCE_TOPIC_PREFIX.length()).equals(companyId.toString());
+        }
+
+        if (destination.startsWith(CHANNEL_TOPIC_PREFIX)) {
+            // /topic/channel/{channelId}[/typing]
+            String channelPart = destination.substring(CHANNEL_TOPIC_PREFIX.length());
+            if (channelPart.endsWith(TYPING_SUFFIX)) {
+                channelPart = channelPart.substring(0, channelPart.length() - TYPING_SUFFIX.length());
+            }
+            Long channelId;
+            try {
+                channelId = Long.valueOf(channelPart);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            return metadataCache.channel(channelId)
+                    .map(channelInfo -> channelInfo.companyId().equals(companyId))
+                    .orElse(false);
+        }
+
+        return false;
+    }
+
+    /**
+     * Ролевой топик доступен своей роли и ролям с уровнем не ниже требуемого
+     */
+    private boolean hasRole(Long companyId, String roleName, Map<String, Object> attributes) {
+        String userRole = (String) attributes.get(JwtHandshakeInterceptor.COMPANY_ROLE_ATTR);
+        if (roleName.equalsIgnoreCase(userRole)) {
+            return true;
+        }
+        Integer userLevel = (Integer) attributes.get(JwtHandshakeInterceptor.COMPANY_ROLE_LEVEL_ATTR);
+        if (userLevel == null) {
+            return false;
+        }
+        return Stream.concat(roleRepository.findByCompanyId(companyId).stream(),
+                        roleRepository.findByIsSystemTrue().stream())
+                .filter(role -> roleName.equalsIgnoreCase(role.getName()))
+                .map(CompanyRoleEntity::getLevel)
+                .findFirst()
+                .map(requiredLevel -> userLevel >= requiredLevel)
+                .orElse(false);
+    }
+}
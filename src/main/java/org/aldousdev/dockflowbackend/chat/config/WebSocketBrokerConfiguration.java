@@ -0,0 +1,90 @@
+package org.aldousdev.dockflowbackend.chat.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.user.UserDestinationResolver;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
+
+/**
+ * Инфраструктура STOMP брокера вместо @EnableWebSocketMessageBroker.
+ * Настройки из WebSocketConfig применяются как обычно, но простой брокер использует
+ * хеш-реестр подписок, исходящие кадры рассылаются шардированным executor'ом,
+ * а медленные сессии ограничены по очереди и буферу.
+ */
+@Configuration
+public class WebSocketBrokerConfiguration extends DelegatingWebSocketMessageBrokerConfiguration {
+    private final ExactMatchSubscriptionRegistry subscriptionRegistry = new ExactMatchSubscriptionRegistry();
+    private final OutboundSessions outboundSessions = new OutboundSessions();
+
+    @Value("${websocket.broker.slow-consumer-policy:DROP}")
+    private SlowConsumerPolicy slowConsumerPolicy;
+
+    @Value("${websocket.broker.max-pending-frames:1000}")
+    private int maxPendingFrames;
+
+    @Value("${websocket.broker.outbound-shards:0}")
+    private int outboundShards;
+
+    @Override
+    @Bean
+    public WebSocketHandler subProtocolWebSocketHandler(AbstractSubscribableChannel clientInboundChannel,
+                                                        AbstractSubscribableChannel clientOutboundChannel) {
+        BackpressureWebSocketHandler handler = new BackpressureWebSocketHandler(
+                clientInboundChannel, clientOutboundChannel, slowConsumerPolicy, outboundSessions);
+        handler.setPhase(getPhase());
+        return handler;
+    }
+
+    @Override
+    @Bean
+    public AbstractBrokerMessageHandler simpleBrokerMessageHandler(AbstractSubscribableChannel clientInboundChannel,
+                                                                   AbstractSubscribableChannel clientOutboundChannel,
+                                                                   AbstractSubscribableChannel brokerChannel,
+                                                                   UserDestinationResolver userDestinationResolver) {
+        AbstractBrokerMessageHandler handler = super.simpleBrokerMessageHandler(
+                clientInboundChannel, clientOutboundChannel, brokerChannel, userDestinationResolver);
+        if (handler instanceof SimpleBrokerMessageHandler simpleBroker) {
+            simpleBroker.setSubscriptionRegistry(subscriptionRegistry);
+        }
+        return handler;
+    }
+
+    @Override
+    @Bean
+    public ShardedOutboundExecutor clientOutboundChannelExecutor() {
+        int shards = outboundShards > 0 ? outboundShards : Runtime.getRuntime().availableProcessors();
+        return new ShardedOutboundExecutor(shards, maxPendingFrames, slowConsumerPolicy, outboundSessions);
+    }
+
+    @Bean
+    public MeterBinder webSocketBrokerMetrics() {
+        ShardedOutboundExecutor executor = clientOutboundChannelExecutor();
+        return registry -> {
+            subscriptionRegistry.bindFanOutMetrics(registry);
+            Gauge.builder("websocket.broker.subscriptions", subscriptionRegistry,
+                    ExactMatchSubscriptionRegistry::getSubscriptionCount).register(registry);
+            Gauge.builder("websocket.broker.destinations", subscriptionRegistry,
+                    ExactMatchSubscriptionRegistry::getDestinationCount).register(registry);
+            Gauge.builder("websocket.sessions", outboundSessions, OutboundSessions::getSessionCount).register(registry);
+            Gauge.builder("websocket.outbound.queue.depth", executor, ShardedOutboundExecutor::getQueueDepth)
+                    .register(registry);
+            Gauge.builder("websocket.outbound.buffered.bytes", outboundSessions, OutboundSessions::getBufferedBytes)
+                    .baseUnit("bytes").register(registry);
+            // stage=queue - лимит кадров в очереди шарда, stage=buffer - лимит байт в буфере сессии
+            FunctionCounter.builder("websocket.outbound.dropped.frames", executor,
+                    ShardedOutboundExecutor::getDroppedCount).tag("stage", "queue").register(registry);
+            FunctionCounter.builder("websocket.outbound.dropped.frames", outboundSessions,
+                    OutboundSessions::getDroppedFrameCount).tag("stage", "buffer").register(registry);
+            FunctionCounter.builder("websocket.sessions.terminated", outboundSessions,
+                    OutboundSessions::getTerminatedCount).register(registry);
+        };
+    }
+}
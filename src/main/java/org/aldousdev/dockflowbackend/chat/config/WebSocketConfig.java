@@ -1,19 +1,78 @@
 package org.aldousdev.dockflowbackend.chat.config;
 
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.time.Duration;
 
 @Configuration
-@EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
+    private final StompAuthorizationInterceptor stompAuthorizationInterceptor;
+    private final PresenceActivityInterceptor presenceActivityInterceptor;
+    private final ObjectProvider<PgNotifyBrokerBridge> brokerBridge;
+
+    @Value("${websocket.allowed-origins:http://localhost:*}")
+    private String[] allowedOrigins;
+
+    @Value("${websocket.broker.send-time-limit:10s}")
+    private Duration sendTimeLimit;
+
+    @Value("${websocket.broker.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${websocket.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${websocket.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Включаем простой message broker с префиксом /topic
-        config.enableSimpleBroker("/topic", "/queue");
+        switch (brokerMode) {
+            case "relay" -> {
+                // Внешний STOMP брокер (RabbitMQ/ActiveMQ) общий для всех инстансов
+                var relay = config.enableStompBrokerRelay("/topic", "/queue")
+                        .setRelayHost(relayHost)
+                        .setRelayPort(relayPort)
+                        .setClientLogin(relayLogin)
+                        .setClientPasscode(relayPasscode)
+                        .setSystemLogin(relayLogin)
+                        .setSystemPasscode(relayPasscode)
+                        .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                        .setUserRegistryBroadcast("/topic/simp-user-registry");
+                if (!relayVirtualHost.isBlank()) {
+                    relay.setVirtualHost(relayVirtualHost);
+                }
+            }
+            case "pg-notify" -> {
+                // Локальный простой брокер + обмен сообщениями между узлами через Postgres
+                config.enableSimpleBroker("/topic", "/queue");
+                config.configureBrokerChannel().interceptors(brokerBridge.getObject());
+            }
+            case "simple" -> config.enableSimpleBroker("/topic", "/queue");
+            default -> throw new IllegalStateException("Unknown websocket.broker.mode: " + brokerMode);
+        }
         // Устанавливаем префикс для @MessageMapping
         config.setApplicationDestinationPrefixes("/app");
         // Пользовательские очереди
@@ -22,8 +81,23 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
-        // WebSocket endpoint для подключения клиентов
+        // WebSocket endpoint для подключения клиентов; аутентификация по JWT cookie при handshake
         registry.addEndpoint("/ws/chat")
-                .setAllowedOrigins("*");
+                .setHandshakeHandler(new JwtHandshakeHandler())
+                .addInterceptors(jwtHandshakeInterceptor)
+                .setAllowedOriginPatterns(allowedOrigins);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Проверка SUBSCRIBE/SEND по компании и роли из сессии
+        registration.interceptors(stompAuthorizationInterceptor, presenceActivityInterceptor);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Медленный клиент не должен копить кадры бесконечно (см. websocket.broker.slow-consumer-policy)
+        registration.setSendTimeLimit((int) sendTimeLimit.toMillis())
+                .setSendBufferSizeLimit(sendBufferSizeLimit);
     }
 }
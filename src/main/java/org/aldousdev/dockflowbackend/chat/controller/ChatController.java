@@ -1,8 +1,17 @@
 package org.aldousdev.dockflowbackend.chat.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.aldousdev.dockflowbackend.auth.exceptions.CompanyAccessDeniedException;
+import org.aldousdev.dockflowbackend.auth.service.AuthService;
+import org.aldousdev.dockflowbackend.chat.dto.PresenceDTO;
 import org.aldousdev.dockflowbackend.chat.dto.response.ChatChannelResponse;
+import org.aldousdev.dockflowbackend.chat.dto.response.ChatSearchResponse;
+import org.aldousdev.dockflowbackend.chat.dto.response.MessageHistoryResponse;
+import org.aldousdev.dockflowbackend.chat.dto.response.UnreadCountResponse;
+import org.aldousdev.dockflowbackend.chat.service.ChatPresenceService;
+import org.aldousdev.dockflowbackend.chat.service.ChatSearchService;
 import org.aldousdev.dockflowbackend.chat.service.ChatService;
+import org.aldousdev.dockflowbackend.chat.service.ChatUnreadService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -14,6 +23,10 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ChatController {
     private final ChatService chatService;
+    private final ChatUnreadService unreadService;
+    private final ChatSearchService searchService;
+    private final ChatPresenceService presenceService;
+    private final AuthService authService;
 
     /**
      * Получить все каналы компании
@@ -26,7 +39,7 @@ public class ChatController {
     }
 
     /**
-     * Получить канал с историей сообщений
+     * Получить канал с последней страницей сообщений
      */
     @GetMapping("/channel/{channelId}")
     public ResponseEntity<ChatChannelResponse> getChannel(
@@ -35,6 +48,62 @@ public class ChatController {
         return ResponseEntity.ok(channel);
     }
 
+    /**
+     * История канала по курсору (id сообщения), от новых к старым
+     */
+    @GetMapping("/channel/{channelId}/messages")
+    public ResponseEntity<MessageHistoryResponse> getMessageHistory(
+            @PathVariable Long channelId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(chatService.getMessageHistory(channelId, before, after, limit));
+    }
+
+    /**
+     * Полнотекстовый поиск по сообщениям текущей компании, от новых к старым
+     */
+    @GetMapping("/search")
+    public ResponseEntity<ChatSearchResponse> search(
+            @RequestParam("q") String query,
+            @RequestParam(required = false) Long channelId,
+            @RequestParam(required = false) Long senderId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(searchService.search(query, channelId, senderId, before, limit));
+    }
+
+    /**
+     * Присутствие пользователей текущей компании; дальше изменения приходят
+     * снимками в /topic/presence/company/{companyId}
+     */
+    @GetMapping("/presence")
+    public ResponseEntity<List<PresenceDTO>> getPresence() {
+        Long companyId = authService.getCurrentCompanyId();
+        if (companyId == null) {
+            throw new CompanyAccessDeniedException("Company is not selected");
+        }
+        return ResponseEntity.ok(presenceService.snapshot(companyId));
+    }
+
+    /**
+     * Непрочитанные сообщения по каналам текущей компании
+     */
+    @GetMapping("/unread")
+    public ResponseEntity<List<UnreadCountResponse>> getUnreadCounts() {
+        return ResponseEntity.ok(unreadService.getUnreadCounts());
+    }
+
+    /**
+     * Отметить канал прочитанным до сообщения messageId (по умолчанию - полностью)
+     */
+    @PostMapping("/channel/{channelId}/read")
+    public ResponseEntity<UnreadCountResponse> markRead(
+            @PathVariable Long channelId,
+            @RequestParam(required = false) Long messageId) {
+        return ResponseEntity.ok(unreadService.markRead(channelId, messageId));
+    }
+
     /**
      * Создать новый канал
      */
@@ -2,12 +2,14 @@ package org.aldousdev.dockflowbackend.chat.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.aldousdev.dockflowbackend.chat.dto.ChatMessageDTO;
 import org.aldousdev.dockflowbackend.chat.dto.request.SendMessageRequest;
+import org.aldousdev.dockflowbackend.chat.service.ChatPresenceService;
 import org.aldousdev.dockflowbackend.chat.service.ChatService;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
-import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,44 +18,65 @@ import org.springframework.web.bind.annotation.*;
 @Slf4j
 public class ChatWebSocketController {
     private final ChatService chatService;
+    private final ChatPresenceService presenceService;
 
     /**
      * WebSocket эндпоинт для отправки сообщений
      * Клиент отправляет на: /app/chat.send/channelId/{channelId}
-     * Сообщение будет отправлено на: /topic/channel/{channelId}
+     * Сообщение будет отправлено на: /topic/channel/{channelId},
+     * подтверждение записи - в /user/queue/chat.ack
      */
     @MessageMapping("/chat.send/channelId/{channelId}")
-    @SendTo("/topic/channel/{channelId}")
-    public ChatMessageDTO sendMessage(
+    public void sendMessage(
             @DestinationVariable Long channelId,
-            SendMessageRequest request) {
+            SendMessageRequest request,
+            @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId) {
         
-        log.info("WebSocket message received in channel: {}", channelId);
+        log.debug("WebSocket message received in channel: {}", channelId);
         
         if (request.getContent() == null || request.getContent().trim().isEmpty()) {
             log.warn("Empty message attempt");
-            return null;
+            return;
         }
 
-        return chatService.saveMessage(channelId, request.getContent());
+        chatService.sendMessage(channelId, request.getContent(), request.getClientMessageId(), sessionId);
     }
 
     /**
      * Альтернативный формат с сообщением в body
      */
     @MessageMapping("/chat/{channelId}")
-    @SendTo("/topic/channel/{channelId}")
-    public ChatMessageDTO sendChatMessage(
+    public void sendChatMessage(
             @DestinationVariable Long channelId,
-            SendMessageRequest request) {
+            SendMessageRequest request,
+            @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId) {
         
-        log.info("WebSocket message received in channel: {}", channelId);
+        log.debug("WebSocket message received in channel: {}", channelId);
         
         if (request.getContent() == null || request.getContent().trim().isEmpty()) {
             log.warn("Empty message attempt");
-            return null;
+            return;
         }
 
-        return chatService.saveMessage(channelId, request.getContent());
+        chatService.sendMessage(channelId, request.getContent(), request.getClientMessageId(), sessionId);
+    }
+
+    /**
+     * Пользователь набирает текст: клиент отправляет на /app/chat.typing/{channelId},
+     * индикатор уходит в /topic/channel/{channelId}/typing не чаще раза в секунду
+     */
+    @MessageMapping("/chat.typing/{channelId}")
+    public void typing(@DestinationVariable Long channelId) {
+        presenceService.typing(channelId);
+    }
+
+    /**
+     * Явная смена статуса: /app/presence.away (true/false в теле)
+     */
+    @MessageMapping("/presence.away")
+    public void setAway(
+            @Payload Boolean away,
+            @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId) {
+        presenceService.setAway(sessionId, Boolean.TRUE.equals(away));
     }
 }
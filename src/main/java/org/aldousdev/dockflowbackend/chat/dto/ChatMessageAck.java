@@ -0,0 +1,18 @@
+package org.aldousdev.dockflowbackend.chat.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Подтверждение записи сообщения, отправляется отправителю в /user/queue/chat.ack
+ */
+@Getter
+@Setter
+@Builder
+public class ChatMessageAck {
+    private Long messageId;
+    private String clientMessageId;
+    private Long channelId;
+    private String status; // "PERSISTED", "FAILED"
+}
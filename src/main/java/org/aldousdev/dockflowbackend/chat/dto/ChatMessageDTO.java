@@ -11,6 +11,7 @@ import java.time.LocalDateTime;
 @Builder
 public class ChatMessageDTO {
     private Long id;
+    private String clientMessageId;
     private String content;
     private Long senderId;
     private String senderName;
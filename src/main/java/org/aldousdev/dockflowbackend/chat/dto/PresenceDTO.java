@@ -0,0 +1,13 @@
+package org.aldousdev.dockflowbackend.chat.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+public class PresenceDTO {
+    private Long userId;
+    private String status; // "ONLINE", "AWAY"
+}
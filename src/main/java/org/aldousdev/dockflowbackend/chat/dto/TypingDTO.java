@@ -0,0 +1,14 @@
+package org.aldousdev.dockflowbackend.chat.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+public class TypingDTO {
+    private Long userId;
+    private String userName;
+    private Long channelId;
+}
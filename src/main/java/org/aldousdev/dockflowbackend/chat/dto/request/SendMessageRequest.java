@@ -8,4 +8,6 @@ import lombok.Setter;
 public class SendMessageRequest {
     private Long channelId;
     private String content;
+    // Идентификатор, которым клиент сопоставляет broadcast и подтверждение со своим сообщением
+    private String clientMessageId;
 }
@@ -18,4 +18,5 @@ public class ChatChannelResponse {
     private Boolean isPublic;
     private LocalDateTime createdAt;
     private List<MessageResponse> messages;
+    private Boolean hasMoreMessages;
 }
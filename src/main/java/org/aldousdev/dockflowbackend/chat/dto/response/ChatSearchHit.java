@@ -0,0 +1,19 @@
+package org.aldousdev.dockflowbackend.chat.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@Builder
+public class ChatSearchHit {
+    private Long messageId;
+    private Long channelId;
+    private Long senderId;
+    private String senderName;
+    private LocalDateTime createdAt;
+    private String highlight; // HTML: фрагменты сообщения, найденные слова обернуты в <mark>
+}
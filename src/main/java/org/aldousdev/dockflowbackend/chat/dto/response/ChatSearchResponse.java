@@ -0,0 +1,21 @@
+package org.aldousdev.dockflowbackend.chat.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Страница результатов поиска, от новых сообщений к старым.
+ * Следующая страница - before=nextBefore
+ */
+@Getter
+@Setter
+@Builder
+public class ChatSearchResponse {
+    private String query;
+    private List<ChatSearchHit> hits;
+    private Boolean hasMore;
+    private Long nextBefore;
+}
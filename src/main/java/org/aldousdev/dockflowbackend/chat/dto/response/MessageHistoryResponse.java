@@ -0,0 +1,21 @@
+package org.aldousdev.dockflowbackend.chat.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Страница истории канала, сообщения от новых к старым.
+ * Следующая страница в прошлое - before=oldestId, догрузка новых - after=newestId
+ */
+@Getter
+@Setter
+@Builder
+public class MessageHistoryResponse {
+    private List<MessageResponse> messages;
+    private Boolean hasMore;
+    private Long oldestId;
+    private Long newestId;
+}
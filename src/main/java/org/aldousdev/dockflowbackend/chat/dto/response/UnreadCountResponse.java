@@ -0,0 +1,14 @@
+package org.aldousdev.dockflowbackend.chat.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+public class UnreadCountResponse {
+    private Long channelId;
+    private Long unreadCount;
+    private Long lastReadMessageId;
+}
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.*;
 import org.aldousdev.dockflowbackend.auth.entity.Company;
 import org.springframework.data.annotation.CreatedDate;
+import org.aldousdev.dockflowbackend.chat.service.ChatMetadataInvalidationListener;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDateTime;
@@ -15,7 +16,7 @@ import java.util.List;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, ChatMetadataInvalidationListener.class})
 @Table(name = "chat_channels")
 public class ChatChannel {
     @Id
@@ -38,6 +39,10 @@ public class ChatChannel {
     @Column(updatable = false)
     private LocalDateTime createdAt;
 
+    // Ведется ChatUnreadService; null у каналов, созданных до появления счетчика
+    @Column(name = "message_count", insertable = false, updatable = false)
+    private Long messageCount;
+
     @OneToMany(mappedBy = "channel", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Message> messages;
 }
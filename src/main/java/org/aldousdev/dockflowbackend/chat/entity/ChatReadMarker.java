@@ -0,0 +1,43 @@
+package org.aldousdev.dockflowbackend.chat.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Метка прочтения канала пользователем.
+ * readCount - сколько сообщений канала было прочитано (значение счетчика канала),
+ * непрочитанные = chat_channels.message_count - readCount
+ */
+@Entity
+@Table(name = "chat_read_markers",
+        uniqueConstraints = @UniqueConstraint(name = "uk_chat_read_markers_user_channel",
+                columnNames = {"user_id", "channel_id"}))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatReadMarker {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "channel_id", nullable = false)
+    private Long channelId;
+
+    @Column(name = "last_read_message_id")
+    private Long lastReadMessageId;
+
+    @Column(name = "read_count", nullable = false)
+    private Long readCount;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -15,10 +15,10 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @EntityListeners(AuditingEntityListener.class)
-@Table(name = "messages")
+@Table(name = "messages", indexes = @Index(name = "idx_messages_channel_created", columnList = "channel_id, created_at, id"))
 public class Message {
+    // Назначается MessageIdGenerator до записи
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
     private Long id;
 
     @Column(columnDefinition = "TEXT", nullable = false)
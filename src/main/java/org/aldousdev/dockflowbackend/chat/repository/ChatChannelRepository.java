@@ -3,7 +3,11 @@ package org.aldousdev.dockflowbackend.chat.repository;
 import org.aldousdev.dockflowbackend.auth.entity.Company;
 import org.aldousdev.dockflowbackend.chat.entity.ChatChannel;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,4 +15,35 @@ public interface ChatChannelRepository extends JpaRepository<ChatChannel, Long>
     List<ChatChannel> findByCompany(Company company);
     Optional<ChatChannel> findByIdAndCompany(Long id, Company company);
     List<ChatChannel> findByCompanyAndIsPublicTrue(Company company);
+    List<ChatChannel> findByCompanyIdAndIsPublicTrue(Long companyId);
+
+    @Query("SELECT c.id FROM ChatChannel c WHERE c.company.id = :companyId AND c.isPublic = true")
+    List<Long> findPublicIdsByCompanyId(@Param("companyId") Long companyId);
+
+    @Query("SELECT c.id AS id, c.name AS name, c.description AS description, c.company.id AS companyId, " +
+            "c.isPublic AS isPublic, c.createdAt AS createdAt FROM ChatChannel c " +
+            "WHERE c.company.id = :companyId AND c.isPublic = true")
+    List<ChannelView> findPublicViewsByCompanyId(@Param("companyId") Long companyId);
+
+    @Query("SELECT c.id AS id, c.name AS name, c.description AS description, c.company.id AS companyId, " +
+            "c.isPublic AS isPublic, c.createdAt AS createdAt FROM ChatChannel c WHERE c.id = :id")
+    Optional<ChannelView> findViewById(@Param("id") Long id);
+
+    @Query("SELECT c.id AS id, c.messageCount AS messageCount FROM ChatChannel c " +
+            "WHERE c.id IN :ids AND c.messageCount IS NOT NULL")
+    List<MessageCountView> findMessageCounts(@Param("ids") Collection<Long> ids);
+
+    interface MessageCountView {
+        Long getId();
+        Long getMessageCount();
+    }
+
+    interface ChannelView {
+        Long getId();
+        String getName();
+        String getDescription();
+        Long getCompanyId();
+        Boolean getIsPublic();
+        LocalDateTime getCreatedAt();
+    }
 }
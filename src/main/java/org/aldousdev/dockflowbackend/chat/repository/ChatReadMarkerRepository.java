@@ -0,0 +1,10 @@
+package org.aldousdev.dockflowbackend.chat.repository;
+
+import org.aldousdev.dockflowbackend.chat.entity.ChatReadMarker;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface ChatReadMarkerRepository extends JpaRepository<ChatReadMarker, Long> {
+    List<ChatReadMarker> findByUserId(Long userId);
+}
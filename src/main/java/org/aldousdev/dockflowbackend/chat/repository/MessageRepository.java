@@ -1,19 +1,61 @@
 package org.aldousdev.dockflowbackend.chat.repository;
 
-import org.aldousdev.dockflowbackend.chat.entity.ChatChannel;
 import org.aldousdev.dockflowbackend.chat.entity.Message;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
-    @Query("SELECT m FROM Message m LEFT JOIN FETCH m.sender WHERE m.channel = :channel ORDER BY m.createdAt DESC")
-    List<Message> findByChannel(@Param("channel") ChatChannel channel);
+    /**
+     * Последние сообщения канала (индекс idx_messages_channel_created)
+     */
+    @Query("SELECT m.id AS id, m.content AS content, m.sender.id AS senderId, m.channel.id AS channelId, " +
+            "m.createdAt AS createdAt, m.edited AS edited, m.editedAt AS editedAt FROM Message m WHERE m.channel.id = :channelId " +
+            "ORDER BY m.createdAt DESC, m.id DESC")
+    List<MessageView> findLatest(@Param("channelId") Long channelId, Pageable pageable);
 
-    @Query("SELECT m FROM Message m LEFT JOIN FETCH m.sender WHERE m.channel = :channel ORDER BY m.createdAt DESC")
-    Page<Message> findByChannelPaginated(@Param("channel") ChatChannel channel, Pageable pageable);
+    /**
+     * Сообщения старше курсора (createdAt, id), от новых к старым
+     */
+    @Query("SELECT m.id AS id, m.content AS content, m.sender.id AS senderId, m.channel.id AS channelId, " +
+            "m.createdAt AS createdAt, m.edited AS edited, m.editedAt AS editedAt FROM Message m WHERE m.channel.id = :channelId " +
+            "AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) " +
+            "ORDER BY m.createdAt DESC, m.id DESC")
+    List<MessageView> findBefore(@Param("channelId") Long channelId,
+                                 @Param("createdAt") LocalDateTime createdAt,
+                                 @Param("id") Long id,
+                                 Pageable pageable);
+
+    /**
+     * Сообщения новее курсора (createdAt, id), от старых к новым
+     */
+    @Query("SELECT m.id AS id, m.content AS content, m.sender.id AS senderId, m.channel.id AS channelId, " +
+            "m.createdAt AS createdAt, m.edited AS edited, m.editedAt AS editedAt FROM Message m WHERE m.channel.id = :channelId " +
+            "AND (m.createdAt > :createdAt OR (m.createdAt = :createdAt AND m.id > :id)) " +
+            "ORDER BY m.createdAt ASC, m.id ASC")
+    List<MessageView> findAfter(@Param("channelId") Long channelId,
+                                @Param("createdAt") LocalDateTime createdAt,
+                                @Param("id") Long id,
+                                Pageable pageable);
+
+    @Query("SELECT count(m) FROM Message m WHERE m.channel.id = :channelId AND m.id > :id")
+    long countAfter(@Param("channelId") Long channelId, @Param("id") Long id);
+
+    @Query("SELECT m.createdAt FROM Message m WHERE m.id = :id AND m.channel.id = :channelId")
+    Optional<LocalDateTime> findCreatedAt(@Param("channelId") Long channelId, @Param("id") Long id);
+
+    interface MessageView {
+        Long getId();
+        String getContent();
+        Long getSenderId();
+        Long getChannelId();
+        LocalDateTime getCreatedAt();
+        Boolean getEdited();
+        LocalDateTime getEditedAt();
+    }
 }
@@ -0,0 +1,263 @@
+package org.aldousdev.dockflowbackend.chat.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.chat.dto.ChatMessageAck;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Запись сообщений чата в БД в стороне от отправки.
+ * SYNC - сообщение пишется в потоке отправителя до broadcast.
+ * GROUP_COMMIT - сообщение сразу уходит подписчикам, а в БД пишется пачкой
+ * одной транзакцией раз в group-commit-interval. Очередь FIFO с одним писателем,
+ * поэтому порядок сообщений в канале сохраняется. После записи отправитель
+ * получает подтверждение в /user/queue/chat.ack своей сессии.
+ * Правка и удаление сообщения сначала вызывают flushIfPending, чтобы не работать
+ * со строкой, которой еще нет.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatMessageWriter {
+    private static final String INSERT_MESSAGE =
+            "INSERT INTO messages (id, content, channel_id, sender_id, created_at, edited) VALUES (?, ?, ?, ?, ?, false)";
+    private static final String ACK_DESTINATION = "/queue/chat.ack";
+    private static final long FLUSH_TIMEOUT_SECONDS = 10;
+
+    public enum Durability {
+        SYNC,
+        GROUP_COMMIT
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ChatSearchService searchService;
+
+    @Value("${chat.messages.durability:GROUP_COMMIT}")
+    private Durability durability;
+
+    @Value("${chat.messages.group-commit-interval:10ms}")
+    private Duration groupCommitInterval;
+
+    @Value("${chat.messages.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @Value("${chat.messages.max-queue-size:10000}")
+    private int maxQueueSize;
+
+    private final ConcurrentLinkedQueue<PendingMessage> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    // Id в очереди или в текущей пачке: строки в БД еще нет
+    private final Set<Long> pendingIds = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService committer;
+
+    @PostConstruct
+    void start() {
+        committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-message-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMicros = groupCommitInterval.toNanos() / 1000;
+        committer.scheduleWithFixedDelay(this::flushSafely, intervalMicros, intervalMicros, TimeUnit.MICROSECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        committer.shutdown();
+        try {
+            committer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushSafely();
+    }
+
+    /**
+     * true - сообщение будет записано до broadcast (SYNC), false - после
+     */
+    public boolean isSynchronous() {
+        return durability == Durability.SYNC;
+    }
+
+    /**
+     * Записывает сообщение сразу (SYNC) или ставит в очередь group commit.
+     * При переполненной очереди пишет синхронно, чтобы не терять сообщения.
+     * Синхронная запись бросает исключение при ошибке
+     */
+    public void write(PendingMessage message) {
+        if (durability == Durability.GROUP_COMMIT) {
+            if (queueSize.incrementAndGet() <= maxQueueSize) {
+                pendingIds.add(message.id());
+                queue.offer(message);
+                return;
+            }
+            queueSize.decrementAndGet();
+            log.warn("Chat message queue is full ({}), writing message {} synchronously", maxQueueSize, message.id());
+        }
+        jdbcTemplate.update(INSERT_MESSAGE, insertArgs(message));
+        indexSafely(List.of(message));
+        acknowledge(List.of(message), "PERSISTED");
+    }
+
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    /**
+     * Если сообщение еще ждет group commit, записывает очередь сейчас и ждет записи.
+     * Запись идет в потоке писателя: порядок пачек сохраняется, а транзакция вызывающего
+     * в нее не попадает. После возврата строка либо есть в БД, либо запись не удалась окончательно
+     */
+    public void flushIfPending(Long messageId) {
+        if (!pendingIds.contains(messageId)) {
+            return;
+        }
+        try {
+            committer.submit(this::flushSafely).get(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while flushing chat message " + messageId, e);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to flush chat message " + messageId, e);
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to flush chat messages", e);
+        }
+    }
+
+    private void flush() {
+        while (!queue.isEmpty()) {
+            List<PendingMessage> batch = new ArrayList<>(Math.min(queueSize.get(), maxBatchSize));
+            PendingMessage message;
+            while (batch.size() < maxBatchSize && (message = queue.poll()) != null) {
+                queueSize.decrementAndGet();
+                batch.add(message);
+            }
+            commit(batch);
+        }
+    }
+
+    private void commit(List<PendingMessage> batch) {
+        try {
+            commitBatch(batch);
+        } finally {
+            batch.forEach(message -> pendingIds.remove(message.id()));
+        }
+    }
+
+    private void commitBatch(List<PendingMessage> batch) {
+        List<Object[]> rows = batch.stream().map(this::insertArgs).toList();
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_MESSAGE, rows);
+                searchService.index(batch.stream().map(PendingMessage::id).toList());
+            });
+            acknowledge(batch, "PERSISTED");
+            log.debug("Committed {} chat messages", batch.size());
+            return;
+        } catch (Exception e) {
+            log.warn("Group commit of {} chat messages failed, retrying one by one: {}", batch.size(), e.getMessage());
+        }
+
+        // Одно сообщение (например, в удаленный канал) не должно терять всю пачку
+        List<PendingMessage> persisted = new ArrayList<>();
+        List<PendingMessage> failed = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                jdbcTemplate.update(INSERT_MESSAGE, rows.get(i));
+                persisted.add(batch.get(i));
+            } catch (Exception e) {
+                log.error("Failed to persist chat message {} in channel {}", batch.get(i).id(), batch.get(i).channelId(), e);
+                failed.add(batch.get(i));
+            }
+        }
+        indexSafely(persisted);
+        acknowledge(persisted, "PERSISTED");
+        acknowledge(failed, "FAILED");
+    }
+
+    private void indexSafely(List<PendingMessage> messages) {
+        try {
+            searchService.index(messages.stream().map(PendingMessage::id).toList());
+        } catch (Exception e) {
+            // Сообщение уже записано; поиск подхватит его при следующем backfill
+            log.error("Failed to index {} chat messages for search", messages.size(), e);
+        }
+    }
+
+    private Object[] insertArgs(PendingMessage message) {
+        return new Object[]{message.id(), message.content(), message.channelId(), message.senderId(),
+                Timestamp.valueOf(message.createdAt())};
+    }
+
+    /**
+     * Одно подтверждение-пачка на сессию отправителя
+     */
+    private void acknowledge(List<PendingMessage> messages, String status) {
+        Map<String, List<PendingMessage>> bySession = new LinkedHashMap<>();
+        for (PendingMessage message : messages) {
+            if (message.sessionId() != null) {
+                bySession.computeIfAbsent(message.sessionId(), id -> new ArrayList<>()).add(message);
+            }
+        }
+        bySession.forEach((sessionId, sessionMessages) -> {
+            List<ChatMessageAck> acks = sessionMessages.stream()
+                    .map(message -> ChatMessageAck.builder()
+                            .messageId(message.id())
+                            .clientMessageId(message.clientMessageId())
+                            .channelId(message.channelId())
+                            .status(status)
+                            .build())
+                    .toList();
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            headers.setSessionId(sessionId);
+            headers.setLeaveMutable(true);
+            try {
+                messagingTemplate.convertAndSendToUser(sessionMessages.get(0).senderName(), ACK_DESTINATION, acks,
+                        headers.getMessageHeaders());
+            } catch (Exception e) {
+                log.warn("Failed to acknowledge {} chat messages to session {}: {}", acks.size(), sessionId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Принятое, но еще не записанное сообщение.
+     * senderName - имя Principal отправителя для /user destination
+     */
+    public record PendingMessage(Long id, Long channelId, Long senderId, String senderName, String sessionId,
+                                 String clientMessageId, String content, LocalDateTime createdAt) {
+    }
+}
@@ -0,0 +1,91 @@
+package org.aldousdev.dockflowbackend.chat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.auth.repository.UserRepository;
+import org.aldousdev.dockflowbackend.chat.entity.ChatChannel;
+import org.aldousdev.dockflowbackend.chat.repository.ChatChannelRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Ограниченный кеш метаданных чата: канал -> компания/публичность и id пользователя -> имя.
+ * Сбрасывается ChatMetadataInvalidationListener при изменении каналов и пользователей
+ */
+@Component
+@Slf4j
+public class ChatMetadataCache {
+    private final ChatChannelRepository chatChannelRepository;
+    private final UserRepository userRepository;
+
+    private final Cache<Long, ChannelInfo> channels;
+    private final Cache<Long, String> senderNames;
+
+    public ChatMetadataCache(ChatChannelRepository chatChannelRepository,
+                             UserRepository userRepository,
+                             @Value("${chat.cache.channels.max-size:10000}") long maxChannels,
+                             @Value("${chat.cache.senders.max-size:50000}") long maxSenders,
+                             @Value("${chat.cache.ttl:PT30M}") Duration ttl) {
+        this.chatChannelRepository = chatChannelRepository;
+        this.userRepository = userRepository;
+        this.channels = Caffeine.newBuilder().maximumSize(maxChannels).expireAfterWrite(ttl).build();
+        this.senderNames = Caffeine.newBuilder().maximumSize(maxSenders).expireAfterWrite(ttl).build();
+    }
+
+    public Optional<ChannelInfo> channel(Long channelId) {
+        return Optional.ofNullable(channels.get(channelId, id -> chatChannelRepository.findById(id)
+                .map(ChannelInfo::of)
+                .orElse(null)));
+    }
+
+    public void putChannel(ChatChannel channel) {
+        channels.put(channel.getId(), ChannelInfo.of(channel));
+    }
+
+    /**
+     * Имя из кеша или БД. Principal сессии не используется: он загружен при подключении
+     * и после evictSender вернул бы в кеш старое имя
+     */
+    public String senderName(Long userId) {
+        return senderNames(Set.of(userId)).get(userId);
+    }
+
+    /**
+     * Имена отправителей; отсутствующие в кеше загружаются одним запросом
+     */
+    public Map<Long, String> senderNames(Collection<Long> userIds) {
+        return senderNames.getAll(userIds, missing -> {
+            Map<Long, String> loaded = new HashMap<>();
+            for (UserRepository.NameView view : userRepository.findNamesByIds(Set.copyOf(missing))) {
+                loaded.put(view.getId(), displayName(view.getFirstName(), view.getLastName()));
+            }
+            return loaded;
+        });
+    }
+
+    public void evictChannel(Long channelId) {
+        channels.invalidate(channelId);
+    }
+
+    public void evictSender(Long userId) {
+        senderNames.invalidate(userId);
+    }
+
+    private static String displayName(String firstName, String lastName) {
+        return firstName + " " + lastName;
+    }
+
+    public record ChannelInfo(Long id, Long companyId, boolean isPublic) {
+        static ChannelInfo of(ChatChannel channel) {
+            return new ChannelInfo(channel.getId(), channel.getCompany().getId(), Boolean.TRUE.equals(channel.getIsPublic()));
+        }
+    }
+}
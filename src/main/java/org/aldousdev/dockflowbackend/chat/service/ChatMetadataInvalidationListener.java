@@ -0,0 +1,35 @@
+package org.aldousdev.dockflowbackend.chat.service;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.chat.entity.ChatChannel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA listener пользователей и каналов: сбрасывает их записи в ChatMetadataCache.
+ * Кеш берется через ObjectProvider, потому что listener создается вместе с EntityManagerFactory
+ */
+@Component
+public class ChatMetadataInvalidationListener {
+    private final ObjectProvider<ChatMetadataCache> cache;
+
+    public ChatMetadataInvalidationListener(ObjectProvider<ChatMetadataCache> cache) {
+        this.cache = cache;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void evict(Object entity) {
+        ChatMetadataCache metadataCache = cache.getIfAvailable();
+        if (metadataCache == null) {
+            return;
+        }
+        if (entity instanceof User user) {
+            metadataCache.evictSender(user.getId());
+        } else if (entity instanceof ChatChannel channel) {
+            metadataCache.evictChannel(channel.getId());
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package org.aldousdev.dockflowbackend.chat.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.auth.exceptions.CompanyAccessDeniedException;
+import org.aldousdev.dockflowbackend.auth.security.JwtAuthenticationToken;
+import org.aldousdev.dockflowbackend.auth.service.AuthService;
+import org.aldousdev.dockflowbackend.chat.config.JwtHandshakeInterceptor;
+import org.aldousdev.dockflowbackend.chat.dto.PresenceDTO;
+import org.aldousdev.dockflowbackend.chat.dto.TypingDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Присутствие пользователей в компании и индикаторы набора текста.
+ * Состояние меняется за O(1) на connect/disconnect/активность сессии, а раз в snapshot-interval
+ * сессии этого узла по измененным компаниям записываются в chat_presence. В топик
+ * /topic/presence/company/{id} уходит снимок, собранный по всем узлам, поэтому снимки разных
+ * узлов одинаковы. Строки узла, который перестал обновлять heartbeat_at дольше node-timeout,
+ * удаляются любым узлом. Кадры набора текста схлопываются:
+ * не больше одного на пользователя и канал за typing-interval.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatPresenceService {
+    public static final String PRESENCE_TOPIC_PREFIX = "/topic/presence/company/";
+
+    private static final String INSERT_PRESENCE = """
+            INSERT INTO chat_presence (node_id, company_id, user_id, away, heartbeat_at)
+            VALUES (?, ?, ?, ?, now())""";
+    // AWAY, только если пользователь неактивен на всех узлах
+    private static final String COMPANY_SNAPSHOT = """
+            SELECT user_id, bool_and(away) AS away FROM chat_presence
+            WHERE company_id = ? AND heartbeat_at >= now() - ?::interval
+            GROUP BY user_id""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final AuthService authService;
+    private final ChatMetadataCache metadataCache;
+
+    @Value("${chat.presence.away-after:PT5M}")
+    private Duration awayAfter;
+
+    @Value("${chat.presence.typing-interval:PT1S}")
+    private Duration typingInterval;
+
+    @Value("${chat.presence.node-timeout:PT30S}")
+    private Duration nodeTimeout;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // companyId -> userId -> присутствие
+    private final Map<Long, Map<Long, UserPresence>> companies = new ConcurrentHashMap<>();
+    private final Map<String, SessionOwner> sessions = new ConcurrentHashMap<>();
+    private final Set<Long> changedCompanies = ConcurrentHashMap.newKeySet();
+    private final Map<TypingKey, Long> lastTyping = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        Long companyId = attributes != null ? (Long) attributes.get(JwtHandshakeInterceptor.COMPANY_ID_ATTR) : null;
+        if (companyId == null || accessor.getSessionId() == null
+                || !(event.getUser() instanceof JwtAuthenticationToken authentication)) {
+            return;
+        }
+        Long userId = authentication.getPrincipal().getId();
+        sessions.put(accessor.getSessionId(), new SessionOwner(companyId, userId));
+        companies.computeIfAbsent(companyId, id -> new ConcurrentHashMap<>())
+                .compute(userId, (id, presence) -> {
+                    UserPresence updated = presence != null ? presence : new UserPresence();
+                    updated.sessions++;
+                    updated.lastActivity = System.nanoTime();
+                    updated.away = false;
+                    return updated;
+                });
+        changedCompanies.add(companyId);
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        SessionOwner owner = sessions.remove(event.getSessionId());
+        if (owner == null) {
+            return;
+        }
+        Map<Long, UserPresence> users = companies.get(owner.companyId());
+        if (users != null) {
+            users.computeIfPresent(owner.userId(), (id, presence) -> --presence.sessions > 0 ? presence : null);
+        }
+        changedCompanies.add(owner.companyId());
+    }
+
+    /**
+     * Активность сессии (любой кадр от клиента, кроме heartbeat)
+     */
+    public void touch(String sessionId) {
+        SessionOwner owner = sessionId != null ? sessions.get(sessionId) : null;
+        UserPresence presence = owner != null ? presence(owner) : null;
+        if (presence == null) {
+            return;
+        }
+        presence.lastActivity = System.nanoTime();
+        if (presence.away) {
+            presence.away = false;
+            changedCompanies.add(owner.companyId());
+        }
+    }
+
+    /**
+     * Явная смена статуса клиентом (например, вкладка ушла в фон)
+     */
+    public void setAway(String sessionId, boolean away) {
+        SessionOwner owner = sessionId != null ? sessions.get(sessionId) : null;
+        UserPresence presence = owner != null ? presence(owner) : null;
+        if (presence != null && presence.away != away) {
+            presence.away = away;
+            changedCompanies.add(owner.companyId());
+        }
+    }
+
+    /**
+     * Отправляет индикатор набора в /topic/channel/{channelId}/typing не чаще typing-interval
+     */
+    public void typing(Long channelId) {
+        User user = authService.getCurrentUser();
+        Long companyId = metadataCache.channel(channelId)
+                .map(ChatMetadataCache.ChannelInfo::companyId)
+                .orElseThrow(() -> new RuntimeException("Channel not found"));
+        if (!companyId.equals(authService.getCurrentCompanyId())) {
+            throw new CompanyAccessDeniedException("Channel belongs to another company");
+        }
+
+        long now = System.nanoTime();
+        long interval = typingInterval.toNanos();
+        TypingKey key = new TypingKey(user.getId(), channelId);
+        Long previous = lastTyping.get(key);
+        if (previous != null && now - previous < interval) {
+            return;
+        }
+        // Параллельные кадры одного пользователя: отправляет только выигравший replace/putIfAbsent
+        boolean won = previous == null ? lastTyping.putIfAbsent(key, now) == null : lastTyping.replace(key, previous, now);
+        if (!won) {
+            return;
+        }
+        messagingTemplate.convertAndSend("/topic/channel/" + channelId + "/typing", TypingDTO.builder()
+                .userId(user.getId())
+                .userName(metadataCache.senderName(user.getId()))
+                .channelId(channelId)
+                .build());
+    }
+
+    /**
+     * Текущий снимок присутствия компании по всем узлам
+     */
+    public List<PresenceDTO> snapshot(Long companyId) {
+        return jdbcTemplate.query(COMPANY_SNAPSHOT, (rs, rowNum) -> PresenceDTO.builder()
+                        .userId(rs.getLong("user_id"))
+                        .status(rs.getBoolean("away") ? "AWAY" : "ONLINE")
+                        .build(),
+                companyId, nodeTimeout.toSeconds() + " seconds");
+    }
+
+    /**
+     * Записывает присутствие измененных компаний в chat_presence, продлевает heartbeat этого узла,
+     * удаляет строки пропавших узлов и рассылает снимки затронутых компаний,
+     * включая переходы в AWAY по таймауту
+     */
+    @Scheduled(fixedDelayString = "${chat.presence.snapshot-interval:PT5S}")
+    public void broadcastSnapshots() {
+        long now = System.nanoTime();
+        long awayNanos = awayAfter.toNanos();
+        companies.forEach((companyId, users) -> users.forEach((userId, presence) -> {
+            boolean away = presence.isAway(now, awayNanos);
+            if (away != presence.broadcastAway) {
+                presence.broadcastAway = away;
+                changedCompanies.add(companyId);
+            }
+        }));
+
+        Set<Long> changed = new HashSet<>(changedCompanies);
+        changedCompanies.removeAll(changed);
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                for (Long companyId : changed) {
+                    store(companyId, now, awayNanos);
+                }
+                jdbcTemplate.update("UPDATE chat_presence SET heartbeat_at = now() WHERE node_id = ?", nodeId);
+            });
+            changed.addAll(jdbcTemplate.queryForList(
+                    "DELETE FROM chat_presence WHERE heartbeat_at < now() - ?::interval RETURNING company_id",
+                    Long.class, nodeTimeout.toSeconds() + " seconds"));
+        } catch (Exception e) {
+            // Повторим на следующем интервале
+            log.error("Failed to store chat presence for {} companies", changed.size(), e);
+            changedCompanies.addAll(changed);
+            return;
+        }
+
+        for (Long companyId : changed) {
+            messagingTemplate.convertAndSend(PRESENCE_TOPIC_PREFIX + companyId, snapshot(companyId));
+        }
+
+        long typingExpiry = now - typingInterval.toNanos() * 10;
+        lastTyping.values().removeIf(sentAt -> sentAt < typingExpiry);
+    }
+
+    @PreDestroy
+    void removeNode() {
+        try {
+            jdbcTemplate.update("DELETE FROM chat_presence WHERE node_id = ?", nodeId);
+        } catch (Exception e) {
+            log.warn("Failed to remove chat presence of node {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private void store(Long companyId, long now, long awayNanos) {
+        jdbcTemplate.update("DELETE FROM chat_presence WHERE node_id = ? AND company_id = ?", nodeId, companyId);
+        Map<Long, UserPresence> users = companies.get(companyId);
+        if (users == null || users.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(users.size());
+        users.forEach((userId, presence) ->
+                rows.add(new Object[]{nodeId, companyId, userId, presence.isAway(now, awayNanos)}));
+        jdbcTemplate.batchUpdate(INSERT_PRESENCE, rows);
+    }
+
+    private UserPresence presence(SessionOwner owner) {
+        Map<Long, UserPresence> users = companies.get(owner.companyId());
+        return users != null ? users.get(owner.userId()) : null;
+    }
+
+    private static final class UserPresence {
+        private int sessions;
+        private volatile long lastActivity;
+        private volatile boolean away;
+        private volatile boolean broadcastAway;
+
+        private boolean isAway(long now, long awayNanos) {
+            return away || now - lastActivity > awayNanos;
+        }
+    }
+
+    private record SessionOwner(Long companyId, Long userId) {
+    }
+
+    private record TypingKey(Long userId, Long channelId) {
+    }
+}
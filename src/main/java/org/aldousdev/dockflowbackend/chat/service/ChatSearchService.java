@@ -0,0 +1,239 @@
+package org.aldousdev.dockflowbackend.chat.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.auth.exceptions.CompanyAccessDeniedException;
+import org.aldousdev.dockflowbackend.auth.service.AuthService;
+import org.aldousdev.dockflowbackend.chat.dto.response.ChatSearchHit;
+import org.aldousdev.dockflowbackend.chat.dto.response.ChatSearchResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Полнотекстовый поиск по сообщениям чата компании.
+ * Индекс - таблица chat_message_search_entries с tsvector и компанией сообщения (GIN по обоим),
+ * обновляется инкрементально: при записи сообщений ChatMessageWriter (в той же транзакции)
+ * и при редактировании; удаление сообщения удаляет запись каскадом.
+ * Результаты упорядочены по id сообщения (время), пагинация по курсору before.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatSearchService {
+    // Маркеры подсветки: заменяются на <mark> после HTML-экранирования текста
+    private static final String START_SEL = "\u0001";
+    private static final String STOP_SEL = "\u0002";
+
+    private static final String UPSERT_ENTRIES = """
+            INSERT INTO chat_message_search_entries (message_id, company_id, channel_id, sender_id, search_vector)
+            SELECT m.id, c.company_id, m.channel_id, m.sender_id, to_tsvector('simple', left(m.content, ?))
+            FROM messages m
+            JOIN chat_channels c ON c.id = m.channel_id
+            WHERE m.id = ANY (?)
+            ON CONFLICT (message_id) DO UPDATE SET search_vector = EXCLUDED.search_vector
+            """;
+
+    private static final int BACKFILL_WINDOW = 5000;
+    // Последний id окна из следующих BACKFILL_WINDOW сообщений; null - сообщения кончились
+    private static final String BACKFILL_WINDOW_END = """
+            SELECT max(w.id) FROM (SELECT m.id FROM messages m WHERE m.id > ? ORDER BY m.id LIMIT %d) w
+            """.formatted(BACKFILL_WINDOW);
+    private static final String BACKFILL_ENTRIES = """
+            INSERT INTO chat_message_search_entries (message_id, company_id, channel_id, sender_id, search_vector)
+            SELECT m.id, c.company_id, m.channel_id, m.sender_id, to_tsvector('simple', left(m.content, ?))
+            FROM messages m
+            JOIN chat_channels c ON c.id = m.channel_id
+            WHERE m.id > ? AND m.id <= ?
+              AND NOT EXISTS (SELECT 1 FROM chat_message_search_entries e WHERE e.message_id = m.id)
+            ON CONFLICT (message_id) DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuthService authService;
+    private final ChatMetadataCache metadataCache;
+
+    @Value("${chat.search.max-indexed-chars:20000}")
+    private int maxIndexedChars;
+
+    @Value("${chat.search.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${chat.search.max-page-size:100}")
+    private int maxPageSize;
+
+    /**
+     * Поиск по сообщениям текущей компании с фильтрами по каналу и отправителю
+     */
+    public ChatSearchResponse search(String query, Long channelId, Long senderId, Long before, Integer limit) {
+        Long companyId = authService.getCurrentCompanyId();
+        if (companyId == null) {
+            throw new CompanyAccessDeniedException("Company is not selected");
+        }
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query cannot be empty");
+        }
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+
+        // ts_headline дорогой: считаем его только для строк текущей страницы
+        String sql = """
+                WITH q AS (SELECT websearch_to_tsquery('simple', ?) AS query),
+                page AS (
+                    SELECT e.message_id
+                    FROM chat_message_search_entries e, q
+                    WHERE e.company_id = ? AND e.search_vector @@ q.query
+                      AND (CAST(? AS bigint) IS NULL OR e.channel_id = ?)
+                      AND (CAST(? AS bigint) IS NULL OR e.sender_id = ?)
+                      AND (CAST(? AS bigint) IS NULL OR e.message_id < ?)
+                    ORDER BY e.message_id DESC
+                    LIMIT ?
+                )
+                SELECT m.id, m.channel_id, m.sender_id, m.created_at,
+                       ts_headline('simple', left(m.content, %d), q.query,
+                                   'MaxFragments=2, MaxWords=25, MinWords=8, StartSel="%s", StopSel="%s"') AS highlight
+                FROM page
+                JOIN messages m ON m.id = page.message_id
+                CROSS JOIN q
+                ORDER BY m.id DESC
+                """.formatted(maxIndexedChars, START_SEL, STOP_SEL);
+
+        List<ChatSearchHit> hits = new ArrayList<>(jdbcTemplate.query(sql, (rs, rowNum) -> ChatSearchHit.builder()
+                        .messageId(rs.getLong("id"))
+                        .channelId(rs.getLong("channel_id"))
+                        .senderId(rs.getLong("sender_id"))
+                        .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                        .highlight(toHtml(rs.getString("highlight")))
+                        .build(),
+                query, companyId, channelId, channelId, senderId, senderId, before, before, pageSize + 1));
+
+        boolean hasMore = hits.size() > pageSize;
+        if (hasMore) {
+            hits = new ArrayList<>(hits.subList(0, pageSize));
+        }
+        Map<Long, String> senderNames = metadataCache.senderNames(
+                hits.stream().map(ChatSearchHit::getSenderId).distinct().toList());
+        hits.forEach(hit -> hit.setSenderName(senderNames.get(hit.getSenderId())));
+
+        log.debug("Chat search in company {} for '{}': {} hits", companyId, query, hits.size());
+
+        return ChatSearchResponse.builder()
+                .query(query)
+                .hits(hits)
+                .hasMore(hasMore)
+                .nextBefore(hasMore ? hits.get(hits.size() - 1).getMessageId() : null)
+                .build();
+    }
+
+    /**
+     * Индексирует сообщения; вызывается в транзакции, которая их записала
+     */
+    public void index(Collection<Long> messageIds) {
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(con -> {
+            var statement = con.prepareStatement(UPSERT_ENTRIES);
+            statement.setInt(1, maxIndexedChars);
+            statement.setArray(2, con.createArrayOf("bigint", messageIds.toArray()));
+            return statement;
+        });
+    }
+
+    /**
+     * Переиндексирует сообщение после коммита текущей транзакции (редактирование)
+     */
+    public void indexAfterCommit(Long messageId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    indexSafely(messageId);
+                }
+            });
+        } else {
+            indexSafely(messageId);
+        }
+    }
+
+    /**
+     * В фоне индексирует сообщения, написанные до появления поиска.
+     * Таблица индекса создается миграцией V2__search_and_relay_tables
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndex() {
+        Thread backfill = new Thread(this::backfill, "chat-search-backfill");
+        backfill.setDaemon(true);
+        backfill.start();
+    }
+
+    /**
+     * Один проход окнами по id: каждое окно - диапазон первичного ключа, а не поиск
+     * непроиндексированных строк с начала таблицы. Окно с ошибкой индексируется поштучно,
+     * чтобы одно сообщение не останавливало проход; остальные ошибки только логируются
+     */
+    void backfill() {
+        long lastId = 0;
+        int indexed = 0;
+        int failed = 0;
+        try {
+            Long windowEnd;
+            while ((windowEnd = jdbcTemplate.queryForObject(BACKFILL_WINDOW_END, Long.class, lastId)) != null) {
+                try {
+                    indexed += jdbcTemplate.update(BACKFILL_ENTRIES, maxIndexedChars, lastId, windowEnd);
+                } catch (DataAccessException e) {
+                    log.warn("Failed to backfill chat messages ({}, {}], indexing them one by one: {}",
+                            lastId, windowEnd, e.getMessage());
+                    for (Long messageId : jdbcTemplate.queryForList(
+                            "SELECT m.id FROM messages m WHERE m.id > ? AND m.id <= ? ORDER BY m.id",
+                            Long.class, lastId, windowEnd)) {
+                        try {
+                            index(List.of(messageId));
+                            indexed++;
+                        } catch (DataAccessException messageError) {
+                            failed++;
+                            log.warn("Failed to index chat message {} for search: {}", messageId, messageError.getMessage());
+                        }
+                    }
+                }
+                lastId = windowEnd;
+            }
+        } catch (Exception e) {
+            log.error("Chat search backfill stopped after message {}, will resume on next start", lastId, e);
+        }
+
+        if (indexed > 0 || failed > 0) {
+            log.info("Backfilled chat search index with {} messages, {} failed", indexed, failed);
+        }
+    }
+
+    private void indexSafely(Long messageId) {
+        try {
+            index(List.of(messageId));
+        } catch (Exception e) {
+            log.error("Failed to index chat message {} for search", messageId, e);
+        }
+    }
+
+    /**
+     * Текст сообщения пользовательский: экранируем его и только потом вставляем <mark>
+     */
+    private static String toHtml(String highlighted) {
+        if (highlighted == null || highlighted.isEmpty()) {
+            return highlighted;
+        }
+        return HtmlUtils.htmlEscape(highlighted)
+                .replace(START_SEL, "<mark>")
+                .replace(STOP_SEL, "</mark>");
+    }
+}
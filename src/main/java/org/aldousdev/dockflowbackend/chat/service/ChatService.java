@@ -3,20 +3,31 @@ package org.aldousdev.dockflowbackend.chat.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.auth.exceptions.CompanyAccessDeniedException;
 import org.aldousdev.dockflowbackend.auth.exceptions.CompanyNotFoundException;
 import org.aldousdev.dockflowbackend.auth.repository.CompanyRepository;
 import org.aldousdev.dockflowbackend.auth.service.impls.AuthServiceImpl;
 import org.aldousdev.dockflowbackend.chat.dto.ChatMessageDTO;
 import org.aldousdev.dockflowbackend.chat.dto.response.ChatChannelResponse;
+import org.aldousdev.dockflowbackend.chat.dto.response.MessageHistoryResponse;
 import org.aldousdev.dockflowbackend.chat.dto.response.MessageResponse;
 import org.aldousdev.dockflowbackend.chat.entity.ChatChannel;
 import org.aldousdev.dockflowbackend.chat.entity.Message;
 import org.aldousdev.dockflowbackend.chat.repository.ChatChannelRepository;
 import org.aldousdev.dockflowbackend.chat.repository.MessageRepository;
+import org.aldousdev.dockflowbackend.config.AppMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -26,72 +37,142 @@ public class ChatService {
     private final MessageRepository messageRepository;
     private final CompanyRepository companyRepository;
     private final AuthServiceImpl authService;
+    private final MessageIdGenerator messageIdGenerator;
+    private final ChatMessageWriter messageWriter;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ChatUnreadService unreadService;
+    private final ChatMetadataCache metadataCache;
+    private final ChatSearchService searchService;
+    private final AppMetrics metrics;
+
+    private final Object[] channelLocks = newLocks(64);
+
+    @Value("${chat.history.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${chat.history.max-page-size:200}")
+    private int maxPageSize;
 
     /**
      * Получить все каналы компании
      */
+    @Transactional(readOnly = true)
     public List<ChatChannelResponse> getCompanyChannels(Long companyId) {
         log.info("Fetching channels for company: {}", companyId);
         
-        var company = companyRepository.findById(companyId)
-                .orElseThrow(() -> new CompanyNotFoundException("Company not found"));
+        List<ChatChannelRepository.ChannelView> channels = chatChannelRepository.findPublicViewsByCompanyId(companyId);
+        if (channels.isEmpty() && !companyRepository.existsById(companyId)) {
+            throw new CompanyNotFoundException("Company not found");
+        }
         
-        return chatChannelRepository.findByCompanyAndIsPublicTrue(company).stream()
+        return channels.stream()
                 .map(this::channelToResponse)
                 .toList();
     }
 
     /**
-     * Получить канал с историей сообщений
+     * Получить канал с последней страницей сообщений.
+     * Более старые сообщения догружаются через getMessageHistory
      */
-    @Transactional
+    @Transactional(readOnly = true)
     public ChatChannelResponse getChannelWithMessages(Long channelId) {
-        log.info("Fetching channel: {} with messages", channelId);
+        log.info("Fetching channel: {} with latest messages", channelId);
         
-        ChatChannel channel = chatChannelRepository.findById(channelId)
+        ChatChannelRepository.ChannelView channel = chatChannelRepository.findViewById(channelId)
                 .orElseThrow(() -> new RuntimeException("Channel not found"));
         
-        List<Message> messages = messageRepository.findByChannel(channel);
+        MessageHistoryResponse history = getMessageHistory(channelId, null, null, null);
         
         ChatChannelResponse response = channelToResponse(channel);
-        response.setMessages(messages.stream()
-                .map(this::messageToResponse)
-                .toList());
+        response.setMessages(history.getMessages());
+        response.setHasMoreMessages(history.getHasMore());
         
         return response;
     }
 
     /**
-     * Сохранить новое сообщение
+     * История канала по курсору: before - сообщения старше указанного,
+     * after - новее указанного, без курсора - последние. Порядок всегда от новых к старым
      */
-    @Transactional
-    public ChatMessageDTO saveMessage(Long channelId, String content) {
-        log.info("Saving message to channel: {}", channelId);
-        
+    @Transactional(readOnly = true)
+    public MessageHistoryResponse getMessageHistory(Long channelId, Long before, Long after, Integer limit) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Only one of before/after can be specified");
+        }
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        // Берем на одно сообщение больше, чтобы узнать, есть ли следующая страница
+        PageRequest page = PageRequest.of(0, pageSize + 1);
+
+        List<MessageRepository.MessageView> messages;
+        if (before != null) {
+            messages = messageRepository.findBefore(channelId, cursorCreatedAt(channelId, before), before, page);
+        } else if (after != null) {
+            messages = messageRepository.findAfter(channelId, cursorCreatedAt(channelId, after), after, page);
+        } else {
+            messages = messageRepository.findLatest(channelId, page);
+        }
+
+        boolean hasMore = messages.size() > pageSize;
+        List<MessageRepository.MessageView> pageMessages = new ArrayList<>(hasMore ? messages.subList(0, pageSize) : messages);
+        if (after != null) {
+            Collections.reverse(pageMessages);
+        }
+
+        return MessageHistoryResponse.builder()
+                .messages(messagesToResponse(pageMessages))
+                .hasMore(hasMore)
+                .newestId(pageMessages.isEmpty() ? null : pageMessages.get(0).getId())
+                .oldestId(pageMessages.isEmpty() ? null : pageMessages.get(pageMessages.size() - 1).getId())
+                .build();
+    }
+
+    /**
+     * Принять сообщение из WebSocket: id и время назначаются в памяти, сообщение
+     * сразу рассылается в /topic/channel/{channelId}, а запись в БД идет через ChatMessageWriter.
+     * Id выдается и сообщение рассылается под блокировкой канала, поэтому подписчики
+     * получают сообщения канала в порядке id
+     */
+    public ChatMessageDTO sendMessage(Long channelId, String content, String clientMessageId, String sessionId) {
         User currentUser = authService.getCurrentUser();
-        
-        ChatChannel channel = chatChannelRepository.findById(channelId)
+        Long companyId = metadataCache.channel(channelId)
+                .map(ChatMetadataCache.ChannelInfo::companyId)
                 .orElseThrow(() -> new RuntimeException("Channel not found"));
-        
-        Message message = Message.builder()
-                .content(content)
-                .channel(channel)
-                .sender(currentUser)
-                .edited(false)
-                .build();
-        
-        message = messageRepository.save(message);
-        log.info("Message saved. ID: {}, Channel: {}", message.getId(), channelId);
-        
-        return ChatMessageDTO.builder()
-                .id(message.getId())
-                .content(message.getContent())
-                .senderId(currentUser.getId())
-                .senderName(currentUser.getFirstName() + " " + currentUser.getLastName())
-                .channelId(channelId)
-                .timestamp(message.getCreatedAt())
-                .type("CHAT")
-                .build();
+        if (!companyId.equals(authService.getCurrentCompanyId())) {
+            throw new CompanyAccessDeniedException("Channel belongs to another company");
+        }
+
+        synchronized (channelLocks[Math.floorMod(channelId.hashCode(), channelLocks.length)]) {
+            long id = messageIdGenerator.nextId();
+            LocalDateTime createdAt = messageIdGenerator.timestampOf(id);
+            ChatMessageWriter.PendingMessage pending = new ChatMessageWriter.PendingMessage(id, channelId,
+                    currentUser.getId(), currentUser.getUsername(), sessionId, clientMessageId, content, createdAt);
+
+            // В режиме SYNC broadcast только после успешной записи
+            if (messageWriter.isSynchronous()) {
+                messageWriter.write(pending);
+            }
+
+            ChatMessageDTO message = ChatMessageDTO.builder()
+                    .id(id)
+                    .clientMessageId(clientMessageId)
+                    .content(content)
+                    .senderId(currentUser.getId())
+                    .senderName(metadataCache.senderName(currentUser.getId()))
+                    .channelId(channelId)
+                    .timestamp(createdAt)
+                    .type("CHAT")
+                    .build();
+            metrics.record("websocket.send", companyId,
+                    () -> messagingTemplate.convertAndSend("/topic/channel/" + channelId, message),
+                    "destination", "/topic/channel");
+            unreadService.onMessageAccepted(channelId, currentUser.getId(), id);
+
+            if (!messageWriter.isSynchronous()) {
+                messageWriter.write(pending);
+            }
+            log.debug("Message {} accepted in channel {}", id, channelId);
+            return message;
+        }
     }
 
     /**
@@ -112,35 +193,73 @@ public class ChatService {
                 .build();
         
         channel = chatChannelRepository.save(channel);
+        metadataCache.putChannel(channel);
         log.info("Channel created. ID: {}", channel.getId());
         
         return channelToResponse(channel);
     }
 
     /**
-     * Удалить сообщение
+     * Удалить сообщение. Сообщение из очереди group commit сначала записывается,
+     * иначе отложенный INSERT вернул бы удаленное сообщение
      */
     @Transactional
     public void deleteMessage(Long messageId) {
         log.info("Deleting message: {}", messageId);
+        messageWriter.flushIfPending(messageId);
         messageRepository.deleteById(messageId);
     }
 
     /**
-     * Редактировать сообщение
+     * Редактировать сообщение. Сообщение из очереди group commit сначала записывается
      */
     @Transactional
     public MessageResponse editMessage(Long messageId, String newContent) {
         log.info("Editing message: {}", messageId);
-        
+        messageWriter.flushIfPending(messageId);
+
         Message message = messageRepository.findById(messageId)
                 .orElseThrow(() -> new RuntimeException("Message not found"));
         
         message.setContent(newContent);
         message.setEdited(true);
         message = messageRepository.save(message);
+        searchService.indexAfterCommit(message.getId());
         
-        return messageToResponse(message);
+        return MessageResponse.builder()
+                .id(message.getId())
+                .content(message.getContent())
+                .senderId(message.getSender().getId())
+                .senderName(metadataCache.senderName(message.getSender().getId()))
+                .channelId(message.getChannel().getId())
+                .createdAt(message.getCreatedAt())
+                .edited(message.getEdited())
+                .editedAt(message.getEditedAt())
+                .build();
+    }
+
+    private static Object[] newLocks(int count) {
+        Object[] locks = new Object[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+    private LocalDateTime cursorCreatedAt(Long channelId, Long messageId) {
+        return messageRepository.findCreatedAt(channelId, messageId)
+                .orElseThrow(() -> new RuntimeException("Message not found"));
+    }
+
+    private ChatChannelResponse channelToResponse(ChatChannelRepository.ChannelView channel) {
+        return ChatChannelResponse.builder()
+                .id(channel.getId())
+                .name(channel.getName())
+                .description(channel.getDescription())
+                .companyId(channel.getCompanyId())
+                .isPublic(channel.getIsPublic())
+                .createdAt(channel.getCreatedAt())
+                .build();
     }
 
     private ChatChannelResponse channelToResponse(ChatChannel channel) {
@@ -154,16 +273,24 @@ public class ChatService {
                 .build();
     }
 
-    private MessageResponse messageToResponse(Message message) {
-        return MessageResponse.builder()
-                .id(message.getId())
-                .content(message.getContent())
-                .senderId(message.getSender().getId())
-                .senderName(message.getSender().getFirstName() + " " + message.getSender().getLastName())
-                .channelId(message.getChannel().getId())
-                .createdAt(message.getCreatedAt())
-                .edited(message.getEdited())
-                .editedAt(message.getEditedAt())
-                .build();
+    /**
+     * Имена отправителей берутся из кеша, без загрузки User для каждого сообщения
+     */
+    private List<MessageResponse> messagesToResponse(List<MessageRepository.MessageView> messages) {
+        Map<Long, String> senderNames = metadataCache.senderNames(messages.stream()
+                .map(MessageRepository.MessageView::getSenderId)
+                .collect(Collectors.toSet()));
+        return messages.stream()
+                .map(message -> MessageResponse.builder()
+                        .id(message.getId())
+                        .content(message.getContent())
+                        .senderId(message.getSenderId())
+                        .senderName(senderNames.get(message.getSenderId()))
+                        .channelId(message.getChannelId())
+                        .createdAt(message.getCreatedAt())
+                        .edited(message.getEdited())
+                        .editedAt(message.getEditedAt())
+                        .build())
+                .toList();
     }
 }
@@ -0,0 +1,338 @@
+package org.aldousdev.dockflowbackend.chat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.auth.entity.Membership;
+import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.auth.exceptions.CompanyAccessDeniedException;
+import org.aldousdev.dockflowbackend.auth.security.JwtAuthenticationToken;
+import org.aldousdev.dockflowbackend.auth.service.AuthService;
+import org.aldousdev.dockflowbackend.chat.dto.response.UnreadCountResponse;
+import org.aldousdev.dockflowbackend.chat.entity.ChatReadMarker;
+import org.aldousdev.dockflowbackend.chat.repository.ChatChannelRepository;
+import org.aldousdev.dockflowbackend.chat.repository.ChatReadMarkerRepository;
+import org.aldousdev.dockflowbackend.chat.repository.MessageRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpSession;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Счетчики непрочитанных сообщений.
+ * На канал хранится только общий счетчик сообщений, на пользователя - метка прочтения
+ * со значением этого счетчика на момент чтения; непрочитанные = разница. Поэтому новое
+ * сообщение - это один инкремент, без обхода участников.
+ * Источник истины - chat_channels.message_count и chat_read_markers: узел держит только
+ * еще не сброшенные приращения и метки плюс ограниченный кеш значений из БД с TTL.
+ * Счетчики закешированных каналов раз в refresh-interval сверяются с БД, поэтому сообщения
+ * и прочтения на других узлах видны с задержкой не больше flush-interval + refresh-interval.
+ * Изменения публичных каналов раз в push-interval отправляются подключенным пользователям
+ * в /user/queue/unread.
+ */
+@Service
+@Slf4j
+public class ChatUnreadService {
+    public static final String UNREAD_DESTINATION = "/queue/unread";
+    private static final String UNREAD_SUBSCRIPTION = "/user" + UNREAD_DESTINATION;
+    private static final int REFRESH_CHUNK = 1000;
+
+    private static final String ADD_MESSAGE_COUNT =
+            "UPDATE chat_channels SET message_count = COALESCE(message_count, 0) + ? WHERE id = ?";
+    // Метка не сдвигается назад, даже если другой узел успел записать более позднюю
+    private static final String UPSERT_MARKER = """
+            INSERT INTO chat_read_markers (user_id, channel_id, last_read_message_id, read_count, updated_at)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (user_id, channel_id) DO UPDATE SET
+                last_read_message_id = CASE WHEN EXCLUDED.read_count >= chat_read_markers.read_count
+                    THEN EXCLUDED.last_read_message_id ELSE chat_read_markers.last_read_message_id END,
+                read_count = GREATEST(chat_read_markers.read_count, EXCLUDED.read_count),
+                updated_at = EXCLUDED.updated_at
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChatChannelRepository chatChannelRepository;
+    private final ChatReadMarkerRepository markerRepository;
+    private final MessageRepository messageRepository;
+    private final AuthService authService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+    private final ChatMetadataCache metadataCache;
+
+    // Значения из БД
+    private final Cache<Long, Long> storedCounts;
+    private final Cache<Long, Map<Long, Marker>> storedMarkers;
+
+    // Изменения этого узла, еще не записанные в БД
+    private final Map<Long, Long> unflushedCounts = new ConcurrentHashMap<>();
+    private final Map<MarkerKey, Marker> dirtyMarkers = new ConcurrentHashMap<>();
+    private final Set<Long> changedChannels = ConcurrentHashMap.newKeySet();
+
+    public ChatUnreadService(JdbcTemplate jdbcTemplate,
+                             ChatChannelRepository chatChannelRepository,
+                             ChatReadMarkerRepository markerRepository,
+                             MessageRepository messageRepository,
+                             AuthService authService,
+                             SimpMessagingTemplate messagingTemplate,
+                             SimpUserRegistry userRegistry,
+                             ChatMetadataCache metadataCache,
+                             @Value("${chat.unread.cache.max-channels:10000}") long maxChannels,
+                             @Value("${chat.unread.cache.max-users:10000}") long maxUsers,
+                             @Value("${chat.unread.cache.ttl:PT30S}") Duration ttl) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chatChannelRepository = chatChannelRepository;
+        this.markerRepository = markerRepository;
+        this.messageRepository = messageRepository;
+        this.authService = authService;
+        this.messagingTemplate = messagingTemplate;
+        this.userRegistry = userRegistry;
+        this.metadataCache = metadataCache;
+        this.storedCounts = Caffeine.newBuilder().maximumSize(maxChannels).expireAfterWrite(ttl).build();
+        this.storedMarkers = Caffeine.newBuilder().maximumSize(maxUsers).expireAfterWrite(ttl).build();
+    }
+
+    /**
+     * Учитывает новое сообщение канала. Для отправителя канал считается прочитанным
+     */
+    public void onMessageAccepted(Long channelId, Long senderId, Long messageId) {
+        unflushedCounts.merge(channelId, 1L, Long::sum);
+        long total = total(channelId);
+        mark(new MarkerKey(senderId, channelId), new Marker(messageId, total));
+        changedChannels.add(channelId);
+    }
+
+    /**
+     * Непрочитанные по публичным каналам текущей компании
+     */
+    public List<UnreadCountResponse> getUnreadCounts() {
+        User user = authService.getCurrentUser();
+        Long companyId = authService.getCurrentCompanyId();
+        if (companyId == null) {
+            throw new CompanyAccessDeniedException("Company is not selected");
+        }
+        return chatChannelRepository.findPublicIdsByCompanyId(companyId).stream()
+                .map(channelId -> unread(user.getId(), channelId))
+                .toList();
+    }
+
+    /**
+     * Отмечает канал прочитанным до messageId (или полностью, если messageId не указан).
+     * Метка никогда не сдвигается назад
+     */
+    public UnreadCountResponse markRead(Long channelId, Long messageId) {
+        User user = authService.getCurrentUser();
+        Long companyId = metadataCache.channel(channelId)
+                .map(ChatMetadataCache.ChannelInfo::companyId)
+                .orElseThrow(() -> new RuntimeException("Channel not found"));
+        if (!companyId.equals(authService.getCurrentCompanyId())) {
+            throw new CompanyAccessDeniedException("Channel belongs to another company");
+        }
+
+        long total = total(channelId);
+        long readCount = messageId == null ? total : Math.max(0, total - messageRepository.countAfter(channelId, messageId));
+        mark(new MarkerKey(user.getId(), channelId), new Marker(messageId, readCount));
+
+        UnreadCountResponse response = unread(user.getId(), channelId);
+        messagingTemplate.convertAndSendToUser(user.getUsername(), UNREAD_DESTINATION, List.of(response));
+        return response;
+    }
+
+    /**
+     * Рассылает новые значения счетчиков по публичным каналам, в которых были сообщения,
+     * пользователям, подписанным на /user/queue/unread
+     */
+    @Scheduled(fixedDelayString = "${chat.unread.push-interval:PT1S}")
+    public void pushChanges() {
+        if (changedChannels.isEmpty()) {
+            return;
+        }
+        Set<Long> channels = new HashSet<>(changedChannels);
+        changedChannels.removeAll(channels);
+
+        // Приватные каналы в счетчики не входят - getUnreadCounts их тоже не возвращает
+        Map<Long, Long> publicChannels = new HashMap<>();
+        for (Long channelId : channels) {
+            metadataCache.channel(channelId)
+                    .filter(ChatMetadataCache.ChannelInfo::isPublic)
+                    .ifPresent(info -> publicChannels.put(channelId, info.companyId()));
+        }
+        if (publicChannels.isEmpty()) {
+            return;
+        }
+
+        for (SimpUser simpUser : userRegistry.getUsers()) {
+            if (!(simpUser.getPrincipal() instanceof JwtAuthenticationToken authentication)
+                    || !isSubscribedToUnread(simpUser)) {
+                continue;
+            }
+            User user = authentication.getPrincipal();
+            Set<Long> companyIds = new HashSet<>();
+            for (Membership membership : user.getMemberships()) {
+                companyIds.add(membership.getCompany().getId());
+            }
+
+            List<UnreadCountResponse> updates = new ArrayList<>();
+            publicChannels.forEach((channelId, companyId) -> {
+                if (companyIds.contains(companyId)) {
+                    updates.add(unread(user.getId(), channelId));
+                }
+            });
+            if (!updates.isEmpty()) {
+                messagingTemplate.convertAndSendToUser(simpUser.getName(), UNREAD_DESTINATION, updates);
+            }
+        }
+    }
+
+    /**
+     * Сверяет закешированные счетчики каналов с БД: так узел видит сообщения, принятые
+     * другими узлами, и рассылает изменения своим пользователям
+     */
+    @Scheduled(fixedDelayString = "${chat.unread.refresh-interval:PT5S}")
+    public void refreshStoredCounts() {
+        List<Long> cached = List.copyOf(storedCounts.asMap().keySet());
+        for (int from = 0; from < cached.size(); from += REFRESH_CHUNK) {
+            List<Long> chunk = cached.subList(from, Math.min(from + REFRESH_CHUNK, cached.size()));
+            for (ChatChannelRepository.MessageCountView view : chatChannelRepository.findMessageCounts(chunk)) {
+                Long previous = storedCounts.asMap().put(view.getId(), view.getMessageCount());
+                if (previous != null && !previous.equals(view.getMessageCount())) {
+                    changedChannels.add(view.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает приращения счетчиков каналов и измененные метки в БД
+     */
+    @Scheduled(fixedDelayString = "${chat.unread.flush-interval:PT5S}")
+    @PreDestroy
+    public void flush() {
+        List<Object[]> counts = new ArrayList<>();
+        for (Long channelId : List.copyOf(unflushedCounts.keySet())) {
+            Long delta = unflushedCounts.remove(channelId);
+            if (delta != null && delta != 0) {
+                counts.add(new Object[]{delta, channelId});
+            }
+        }
+
+        Map<MarkerKey, Marker> markers = Map.copyOf(dirtyMarkers);
+        List<Object[]> markerRows = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        markers.forEach((key, marker) -> markerRows.add(new Object[]{key.userId(), key.channelId(),
+                marker.lastReadMessageId(), marker.readCount(), now}));
+
+        try {
+            if (!counts.isEmpty()) {
+                jdbcTemplate.batchUpdate(ADD_MESSAGE_COUNT, counts);
+            }
+            if (!markerRows.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT_MARKER, markerRows);
+            }
+        } catch (Exception e) {
+            // Возвращаем несохраненные приращения; метки остались в dirtyMarkers, следующий flush повторит
+            log.error("Failed to flush unread counters", e);
+            for (Object[] row : counts) {
+                unflushedCounts.merge((Long) row[1], (Long) row[0], Long::sum);
+            }
+            return;
+        }
+
+        // Теперь эти значения есть в БД: перечитываем их оттуда
+        for (Object[] row : counts) {
+            storedCounts.invalidate((Long) row[1]);
+        }
+        markers.keySet().forEach(key -> storedMarkers.invalidate(key.userId()));
+        markers.forEach(dirtyMarkers::remove);
+    }
+
+    private UnreadCountResponse unread(Long userId, Long channelId) {
+        long total = total(channelId);
+        Marker marker = marker(userId, channelId);
+        long readCount = marker != null ? marker.readCount() : 0;
+        return UnreadCountResponse.builder()
+                .channelId(channelId)
+                .unreadCount(Math.max(0, total - readCount))
+                .lastReadMessageId(marker != null ? marker.lastReadMessageId() : null)
+                .build();
+    }
+
+    private long total(Long channelId) {
+        return storedCounts.get(channelId, this::loadCount) + unflushedCounts.getOrDefault(channelId, 0L);
+    }
+
+    private Long loadCount(Long channelId) {
+        Long stored = jdbcTemplate.queryForObject(
+                "SELECT message_count FROM chat_channels WHERE id = ?", Long.class, channelId);
+        if (stored == null) {
+            // Канал создан до появления счетчика - считаем один раз
+            stored = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM messages WHERE channel_id = ?", Long.class, channelId);
+            jdbcTemplate.update("UPDATE chat_channels SET message_count = ? WHERE id = ? AND message_count IS NULL",
+                    stored, channelId);
+        }
+        return stored;
+    }
+
+    /**
+     * Метка из БД или более поздняя несохраненная метка этого узла
+     */
+    private Marker marker(Long userId, Long channelId) {
+        Marker stored = storedMarkers.get(userId, this::loadMarkers).get(channelId);
+        Marker dirty = dirtyMarkers.get(new MarkerKey(userId, channelId));
+        return later(stored, dirty);
+    }
+
+    private void mark(MarkerKey key, Marker marker) {
+        Marker stored = storedMarkers.get(key.userId(), this::loadMarkers).get(key.channelId());
+        if (stored != null && stored.readCount() >= marker.readCount()) {
+            return;
+        }
+        dirtyMarkers.merge(key, marker, ChatUnreadService::later);
+    }
+
+    private Map<Long, Marker> loadMarkers(Long userId) {
+        Map<Long, Marker> loaded = new HashMap<>();
+        for (ChatReadMarker marker : markerRepository.findByUserId(userId)) {
+            loaded.put(marker.getChannelId(), new Marker(marker.getLastReadMessageId(), marker.getReadCount()));
+        }
+        return loaded;
+    }
+
+    private static Marker later(Marker first, Marker second) {
+        if (first == null) {
+            return second;
+        }
+        return second == null || first.readCount() >= second.readCount() ? first : second;
+    }
+
+    private static boolean isSubscribedToUnread(SimpUser user) {
+        for (SimpSession session : user.getSessions()) {
+            if (session.getSubscriptions().stream().anyMatch(s -> UNREAD_SUBSCRIPTION.equals(s.getDestination()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record MarkerKey(Long userId, Long channelId) {
+    }
+
+    private record Marker(Long lastReadMessageId, long readCount) {
+    }
+}
@@ -0,0 +1,66 @@
+package org.aldousdev.dockflowbackend.chat.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Упорядоченные по времени id сообщений без обращения к БД:
+ * 41 бит миллисекунд от EPOCH, 10 бит номера узла, 12 бит счетчика в пределах миллисекунды.
+ * Новые id всегда больше старых значений из sequence, поэтому порядок истории сохраняется.
+ * Номер узла задается chat.messages.node-id и должен быть уникален в кластере; без него
+ * генератор запускается только в одиночном режиме брокера (websocket.broker.mode=simple)
+ */
+@Component
+public class MessageIdGenerator {
+    private static final long EPOCH = 1735689600000L; // 2025-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    private static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private final long nodeId;
+    private long lastTimestamp = -1;
+    private long sequence;
+
+    public MessageIdGenerator(@Value("${chat.messages.node-id:-1}") int nodeId,
+                              @Value("${websocket.broker.mode:simple}") String brokerMode) {
+        if (nodeId < 0) {
+            if (!"simple".equals(brokerMode)) {
+                throw new IllegalStateException("chat.messages.node-id must be set to a cluster-unique value " +
+                        "in websocket.broker.mode=" + brokerMode);
+            }
+            nodeId = 0;
+        }
+        if (nodeId > MAX_NODE_ID) {
+            throw new IllegalStateException("chat.messages.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+    }
+
+    public synchronized long nextId() {
+        long timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                // Счетчик миллисекунды исчерпан - берем следующую, не дожидаясь часов
+                timestamp++;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = timestamp;
+        return ((timestamp - EPOCH) << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    /**
+     * Время создания, зашитое в id
+     */
+    public LocalDateTime timestampOf(long id) {
+        long millis = (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,114 @@
+package org.aldousdev.dockflowbackend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Общие хелперы для метрик приложения.
+ * Тег company ограничен по кардинальности: первые metrics.company-tag.max-values компаний
+ * получают свой id, остальные попадают в "other", чтобы число временных рядов не росло с клиентами
+ */
+@Component
+public class AppMetrics {
+    public static final String COMPANY_TAG = "company";
+    public static final String OUTCOME_TAG = "outcome";
+    public static final String OTHER_COMPANY = "other";
+
+    private final MeterRegistry registry;
+    private final int maxCompanyTags;
+    private final Set<String> companyTags = ConcurrentHashMap.newKeySet();
+
+    public AppMetrics(MeterRegistry registry,
+                      @Value("${metrics.company-tag.max-values:100}") int maxCompanyTags) {
+        this.registry = registry;
+        this.maxCompanyTags = maxCompanyTags;
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    /**
+     * Значение тега company для компании
+     */
+    public String company(Long companyId) {
+        if (companyId == null) {
+            return "none";
+        }
+        String tag = companyId.toString();
+        if (companyTags.contains(tag)) {
+            return tag;
+        }
+        if (companyTags.size() < maxCompanyTags && companyTags.add(tag)) {
+            return tag;
+        }
+        return OTHER_COMPANY;
+    }
+
+    /**
+     * Выполняет действие и пишет его время в timer name с тегами company и outcome (success/error)
+     */
+    public void record(String name, Long companyId, Runnable action, String... tags) {
+        recordResult(name, companyId, () -> {
+            action.run();
+            return null;
+        }, tags);
+    }
+
+    public <T> T recordResult(String name, Long companyId, Supplier<T> action, String... tags) {
+        Timer.Sample sample = start();
+        boolean success = false;
+        try {
+            T result = action.get();
+            success = true;
+            return result;
+        } finally {
+            stop(sample, name, companyId, success, tags);
+        }
+    }
+
+    /**
+     * Ручной замер для кода с checked исключениями: start() и stop() в finally
+     */
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    public void stop(Timer.Sample sample, String name, Long companyId, boolean success, String... tags) {
+        sample.stop(timer(name, Tags.of(tags).and(COMPANY_TAG, company(companyId),
+                OUTCOME_TAG, success ? "success" : "error")));
+    }
+
+    public Timer timer(String name, Tags tags) {
+        return Timer.builder(name).tags(tags).register(registry);
+    }
+
+    /**
+     * Тип STOMP destination для тега: первые два сегмента пути без id,
+     * у пользовательских очередей отрезается суффикс сессии (/queue/unread-user{sessionId})
+     */
+    public static String destinationType(String destination) {
+        if (destination == null) {
+            return "none";
+        }
+        int first = destination.indexOf('/', 1);
+        if (first < 0) {
+            return destination;
+        }
+        int second = destination.indexOf('/', first + 1);
+        String type = second < 0 ? destination : destination.substring(0, second);
+        int userSuffix = type.indexOf("-user", first);
+        return userSuffix < 0 ? type : type.substring(0, userSuffix);
+    }
+
+    public void countBytes(String name, Long companyId, long bytes, String... tags) {
+        registry.counter(name, Tags.of(tags).and(COMPANY_TAG, company(companyId))).increment(bytes);
+    }
+}
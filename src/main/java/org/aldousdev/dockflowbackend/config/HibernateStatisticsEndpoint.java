@@ -0,0 +1,111 @@
+package org.aldousdev.dockflowbackend.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /actuator/hibernate: сводка статистики Hibernate, попадания в second-level cache по регионам,
+ * самые дорогие HQL и медленные SQL (порог hibernate.log_slow_query). DELETE сбрасывает счетчики.
+ * SQL и статистика общие для всех компаний, поэтому доступ только у роли ACTUATOR (ActuatorSecurityConfig)
+ */
+@Component
+@Endpoint(id = "hibernate")
+public class HibernateStatisticsEndpoint {
+    private final Statistics statistics;
+
+    @Value("${jpa.statistics.top-queries:20}")
+    private int topQueries;
+
+    public HibernateStatisticsEndpoint(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @ReadOperation
+    public Map<String, Object> statistics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", statistics.isStatisticsEnabled());
+        result.put("since", statistics.getStart());
+        result.put("sessionsOpened", statistics.getSessionOpenCount());
+        result.put("statementsPrepared", statistics.getPrepareStatementCount());
+        result.put("queryExecutions", statistics.getQueryExecutionCount());
+        result.put("queryExecutionMaxTimeMs", statistics.getQueryExecutionMaxTime());
+        result.put("queryExecutionMaxTimeQuery", statistics.getQueryExecutionMaxTimeQueryString());
+        result.put("entityLoads", statistics.getEntityLoadCount());
+        result.put("entityFetches", statistics.getEntityFetchCount());
+        result.put("collectionLoads", statistics.getCollectionLoadCount());
+        result.put("collectionFetches", statistics.getCollectionFetchCount());
+        result.put("secondLevelCacheHits", statistics.getSecondLevelCacheHitCount());
+        result.put("secondLevelCacheMisses", statistics.getSecondLevelCacheMissCount());
+        result.put("secondLevelCacheRegions", cacheRegions());
+        result.put("queryCacheHits", statistics.getQueryCacheHitCount());
+        result.put("queryCacheMisses", statistics.getQueryCacheMissCount());
+        result.put("flushes", statistics.getFlushCount());
+        result.put("topQueriesByTotalTime", topQueries());
+        result.put("slowQueries", slowQueries());
+        return result;
+    }
+
+    @DeleteOperation
+    public void reset() {
+        statistics.clear();
+    }
+
+    private List<Map<String, Object>> topQueries() {
+        return Arrays.stream(statistics.getQueries())
+                .map(query -> Map.entry(query, statistics.getQueryStatistics(query)))
+                .sorted(Comparator.comparingLong(
+                        (Map.Entry<String, QueryStatistics> entry) -> entry.getValue().getExecutionTotalTime()).reversed())
+                .limit(topQueries)
+                .map(entry -> Map.<String, Object>of(
+                        "query", entry.getKey(),
+                        "executions", entry.getValue().getExecutionCount(),
+                        "rows", entry.getValue().getExecutionRowCount(),
+                        "avgTimeMs", entry.getValue().getExecutionAvgTime(),
+                        "maxTimeMs", entry.getValue().getExecutionMaxTime(),
+                        "totalTimeMs", entry.getValue().getExecutionTotalTime()))
+                .toList();
+    }
+
+    /**
+     * Попадания по регионам second-level cache; hitRatio = hits / (hits + misses)
+     */
+    private Map<String, Object> cacheRegions() {
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            if (regionStatistics == null) {
+                continue;
+            }
+            long hits = regionStatistics.getHitCount();
+            long misses = regionStatistics.getMissCount();
+            regions.put(region, Map.of(
+                    "hits", hits,
+                    "misses", misses,
+                    "puts", regionStatistics.getPutCount(),
+                    "hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses)));
+        }
+        return regions;
+    }
+
+    private List<Map<String, Object>> slowQueries() {
+        return statistics.getSlowQueries().entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(topQueries)
+                .map(entry -> Map.<String, Object>of("sql", entry.getKey(), "timeMs", entry.getValue()))
+                .toList();
+    }
+}
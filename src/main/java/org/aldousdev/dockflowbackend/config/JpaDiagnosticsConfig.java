@@ -0,0 +1,18 @@
+package org.aldousdev.dockflowbackend.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JpaDiagnosticsConfig {
+
+    /**
+     * Подключает счетчик SQL на запрос к фабрике сессий
+     */
+    @Bean
+    public HibernatePropertiesCustomizer queryCountingCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new QueryCountingInspector());
+    }
+}
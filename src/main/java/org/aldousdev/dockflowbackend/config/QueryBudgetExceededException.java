@@ -0,0 +1,10 @@
+package org.aldousdev.dockflowbackend.config;
+
+/**
+ * HTTP запрос выполнил больше SQL, чем разрешает jpa.query-budget.max-statements
+ */
+public class QueryBudgetExceededException extends RuntimeException {
+    public QueryBudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,56 @@
+package org.aldousdev.dockflowbackend.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Бюджет SQL на HTTP запрос. При превышении пишет в лог endpoint и стек первого лишнего запроса;
+ * с jpa.query-budget.fail-on-exceed=true (режим интеграционных тестов) запрос падает с QueryBudgetExceededException
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class QueryBudgetFilter extends OncePerRequestFilter {
+    @Value("${jpa.query-budget.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jpa.query-budget.max-statements:25}")
+    private int maxStatements;
+
+    @Value("${jpa.query-budget.fail-on-exceed:false}")
+    private boolean failOnExceed;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || request.getRequestURI().startsWith("/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String endpoint = request.getMethod() + " " + request.getRequestURI();
+        QueryCountingInspector.RequestQueries queries =
+                QueryCountingInspector.begin(endpoint, maxStatements, failOnExceed);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            QueryCountingInspector.end();
+            if (queries.getExceeded() != null) {
+                log.warn("{} issued {} SQL statements (budget {})", endpoint, queries.getCount(),
+                        queries.getBudget(), queries.getExceeded());
+            } else {
+                log.trace("{} issued {} SQL statements", endpoint, queries.getCount());
+            }
+        }
+    }
+}
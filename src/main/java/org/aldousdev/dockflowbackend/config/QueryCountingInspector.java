@@ -0,0 +1,69 @@
+package org.aldousdev.dockflowbackend.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Считает SQL, которые Hibernate готовит в текущем потоке.
+ * Счет ведется только внутри HTTP запроса (см. QueryBudgetFilter); запросы через JdbcTemplate сюда не попадают
+ */
+public class QueryCountingInspector implements StatementInspector {
+    private static final ThreadLocal<RequestQueries> CURRENT = new ThreadLocal<>();
+
+    static RequestQueries begin(String endpoint, int budget, boolean failOnExceed) {
+        RequestQueries queries = new RequestQueries(endpoint, budget, failOnExceed);
+        CURRENT.set(queries);
+        return queries;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    @Override
+    public String inspect(String sql) {
+        RequestQueries queries = CURRENT.get();
+        if (queries != null) {
+            queries.onStatement(sql);
+        }
+        return sql;
+    }
+
+    static final class RequestQueries {
+        private final String endpoint;
+        private final int budget;
+        private final boolean failOnExceed;
+        private int count;
+        private QueryBudgetExceededException exceeded;
+
+        private RequestQueries(String endpoint, int budget, boolean failOnExceed) {
+            this.endpoint = endpoint;
+            this.budget = budget;
+            this.failOnExceed = failOnExceed;
+        }
+
+        private void onStatement(String sql) {
+            count++;
+            if (count != budget + 1) {
+                return;
+            }
+            // Стек первого запроса сверх бюджета указывает на цикл или ленивую связь, которая его породила
+            exceeded = new QueryBudgetExceededException(endpoint + " exceeded query budget of " + budget
+                    + " statements; next statement: " + sql);
+            if (failOnExceed) {
+                throw exceeded;
+            }
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        int getBudget() {
+            return budget;
+        }
+
+        QueryBudgetExceededException getExceeded() {
+            return exceeded;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.aldousdev.dockflowbackend.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Регионы second-level cache Hibernate: Caffeine внутри процесса через JCache.
+ * Регионы создаются здесь явно (missing_cache_strategy=fail), чтобы у каждого были лимит и TTL.
+ * Кеш локален для узла: изменения через JPA на этом узле инвалидируют его сразу,
+ * изменения с других узлов становятся видны не позже TTL
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+    public static final String TEMPLATE_REGION = "reference.workflow-template";
+    public static final String TEMPLATE_RULES_REGION = "reference.workflow-template.routing-rules";
+    public static final String ROUTING_RULE_REGION = "reference.routing-rule";
+    public static final String COMPANY_REGION = "reference.company";
+    public static final String COMPANY_ROLE_REGION = "reference.company-role";
+
+    private static final String QUERY_RESULTS_REGION = "default-query-results-region";
+    private static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(
+            @Value("${hibernate-cache.reference.max-entries:10000}") long referenceMaxEntries,
+            @Value("${hibernate-cache.reference.ttl:PT30M}") Duration referenceTtl,
+            @Value("${hibernate-cache.query.max-entries:5000}") long queryMaxEntries,
+            @Value("${hibernate-cache.query.ttl:PT10M}") Duration queryTtl) {
+        // Свой менеджер, а не общий для JVM getCacheManager(): destroyMethod закрывает только его,
+        // а второй контекст в той же JVM (тесты) не упирается в уже созданные регионы
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(
+                URI.create("dockflow:hibernate-second-level-cache:" + UUID.randomUUID()), getClass().getClassLoader());
+        for (String region : new String[]{TEMPLATE_REGION, TEMPLATE_RULES_REGION, ROUTING_RULE_REGION,
+                COMPANY_REGION, COMPANY_ROLE_REGION}) {
+            cacheManager.createCache(region, region(referenceMaxEntries, referenceTtl));
+        }
+        cacheManager.createCache(QUERY_RESULTS_REGION, region(queryMaxEntries, queryTtl));
+        // Метки времени таблиц не должны вытесняться раньше результатов запросов: без лимита, их по одной на таблицу
+        cacheManager.createCache(UPDATE_TIMESTAMPS_REGION, new CaffeineConfiguration<>().setStoreByValue(false));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maxEntries, Duration ttl) {
+        return new CaffeineConfiguration<>()
+                .setMaximumSize(OptionalLong.of(maxEntries))
+                .setExpireAfterWrite(OptionalLong.of(ttl.toNanos()))
+                // Записи Hibernate неизменяемы, копировать их при каждом чтении незачем
+                .setStoreByValue(false);
+    }
+}
@@ -5,19 +5,35 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.RequiredArgsConstructor;
+import org.aldousdev.dockflowbackend.workflow.dto.request.BatchSignRequest;
+import org.aldousdev.dockflowbackend.workflow.dto.request.CreateUploadSessionRequest;
+import org.aldousdev.dockflowbackend.workflow.dto.response.BatchSignResponse;
 import org.aldousdev.dockflowbackend.workflow.dto.response.DocumentResponse;
+import org.aldousdev.dockflowbackend.workflow.dto.response.DocumentSearchResponse;
+import org.aldousdev.dockflowbackend.workflow.dto.response.UploadSessionResponse;
+import org.aldousdev.dockflowbackend.workflow.enums.WorkFlowStatus;
+import org.aldousdev.dockflowbackend.workflow.service.ChunkedUploadService;
+import org.aldousdev.dockflowbackend.workflow.service.DocumentSearchService;
+import org.aldousdev.dockflowbackend.workflow.service.DocumentSigningService;
 import org.aldousdev.dockflowbackend.workflow.service.impl.DocumentServiceImpl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+
 @RestController
 @RequestMapping("/api/documents")
 @RequiredArgsConstructor
 public class DocumentController {
 
     private final DocumentServiceImpl documentService;
+    private final ChunkedUploadService chunkedUploadService;
+    private final DocumentSearchService documentSearchService;
+    private final DocumentSigningService documentSigningService;
 
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Operation(summary = "Upload a PDF document", description = "Uploads a PDF file to the system. Only company members can upload.")
@@ -32,4 +48,62 @@ public class DocumentController {
         DocumentResponse documentResponse = documentService.uploadDocument(file);
         return ResponseEntity.ok(documentResponse);
     }
-}
\ No newline at end of file
+
+    @GetMapping("/search")
+    @Operation(summary = "Search documents", description = "Full-text search over file names, uploader names and extracted PDF text of the current company. sort=relevance|recent; next page via cursor=nextCursor of the previous response")
+    public ResponseEntity<DocumentSearchResponse> searchDocuments(
+            @RequestParam("q") String query,
+            @RequestParam(required = false) WorkFlowStatus status,
+            @RequestParam(defaultValue = "relevance") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(documentSearchService.search(query, status, "recent".equals(sort), cursor, size));
+    }
+
+    @PostMapping("/sign/batch")
+    @Operation(summary = "Sign documents in batch", description = "Stamps and cryptographically signs up to document.signing.max-batch-size documents of the current company in parallel")
+    public ResponseEntity<BatchSignResponse> signBatch(@RequestBody BatchSignRequest request) {
+        return ResponseEntity.ok(documentSigningService.signBatch(request));
+    }
+
+    @GetMapping("/{documentId}")
+    @Operation(summary = "Get document", description = "Returns the document with its background processing status, page count and PDF metadata")
+    public ResponseEntity<DocumentResponse> getDocument(@PathVariable Long documentId) {
+        return ResponseEntity.ok(documentService.getDocument(documentId));
+    }
+
+    @PostMapping("/uploads")
+    @Operation(summary = "Start a resumable upload", description = "Creates an upload session for a large PDF. Chunks are then sent with PUT /uploads/{sessionId}?offset=N")
+    public ResponseEntity<UploadSessionResponse> createUploadSession(@RequestBody CreateUploadSessionRequest request) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(chunkedUploadService.createSession(request));
+    }
+
+    @PutMapping(value = "/uploads/{sessionId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(summary = "Upload a chunk", description = "Writes one chunk at the given offset. Chunks may be sent in any order and in parallel")
+    public ResponseEntity<UploadSessionResponse> uploadChunk(
+            @PathVariable String sessionId,
+            @RequestParam long offset,
+            @RequestHeader(HttpHeaders.CONTENT_LENGTH) long contentLength,
+            InputStream body) {
+        return ResponseEntity.ok(chunkedUploadService.writeChunk(sessionId, offset, contentLength, body));
+    }
+
+    @GetMapping("/uploads/{sessionId}")
+    @Operation(summary = "Resumable upload status", description = "Returns received bytes and missing chunks, used to resume after a network failure")
+    public ResponseEntity<UploadSessionResponse> getUploadStatus(@PathVariable String sessionId) {
+        return ResponseEntity.ok(chunkedUploadService.getStatus(sessionId));
+    }
+
+    @PostMapping("/uploads/{sessionId}/complete")
+    @Operation(summary = "Finish a resumable upload", description = "Verifies that all chunks are present, hashes the file and creates the document")
+    public ResponseEntity<DocumentResponse> completeUpload(@PathVariable String sessionId) {
+        return ResponseEntity.ok(chunkedUploadService.complete(sessionId));
+    }
+
+    @DeleteMapping("/uploads/{sessionId}")
+    @Operation(summary = "Abort a resumable upload")
+    public ResponseEntity<Void> abortUpload(@PathVariable String sessionId) {
+        chunkedUploadService.abort(sessionId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,40 @@
+package org.aldousdev.dockflowbackend.workflow.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.aldousdev.dockflowbackend.auth.service.AuthService;
+import org.aldousdev.dockflowbackend.workflow.dto.request.NotificationPreferenceRequest;
+import org.aldousdev.dockflowbackend.workflow.dto.response.NotificationPreferenceResponse;
+import org.aldousdev.dockflowbackend.workflow.service.NotificationDigestService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/notifications")
+@RequiredArgsConstructor
+@Tag(name = "Notifications", description = "Настройки email уведомлений")
+public class NotificationController {
+    private final NotificationDigestService digestService;
+    private final AuthService authService;
+
+    /**
+     * GET /api/notifications/preferences - настройки уведомлений текущего пользователя
+     */
+    @GetMapping("/preferences")
+    @Operation(summary = "Получить настройки уведомлений")
+    public ResponseEntity<NotificationPreferenceResponse> getPreferences() {
+        return ResponseEntity.ok(digestService.getPreference(authService.getCurrentUser()));
+    }
+
+    /**
+     * PUT /api/notifications/preferences - режим сводок (IMMEDIATE, EVERY_15_MINUTES, HOURLY)
+     * и личный лимит писем в час
+     */
+    @PutMapping("/preferences")
+    @Operation(summary = "Изменить настройки уведомлений")
+    public ResponseEntity<NotificationPreferenceResponse> updatePreferences(
+            @RequestBody NotificationPreferenceRequest request) {
+        return ResponseEntity.ok(digestService.updatePreference(authService.getCurrentUser(), request));
+    }
+}
@@ -11,13 +11,16 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aldousdev.dockflowbackend.auth.components.RequiresRoleLevel;
 import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.auth.service.AuthService;
 import org.aldousdev.dockflowbackend.auth.service.UserService;
 import org.aldousdev.dockflowbackend.workflow.dto.request.CreateWorkflowTemplateRequest;
 import org.aldousdev.dockflowbackend.workflow.dto.request.TaskApprovalRequest;
 import org.aldousdev.dockflowbackend.workflow.dto.response.TaskResponse;
 import org.aldousdev.dockflowbackend.workflow.dto.response.WorkflowAuditLogResponse;
+import org.aldousdev.dockflowbackend.workflow.dto.response.WorkflowEventResumeResponse;
 import org.aldousdev.dockflowbackend.workflow.dto.response.WorkflowInstanceResponse;
 import org.aldousdev.dockflowbackend.workflow.dto.response.WorkflowTemplateResponse;
+import org.aldousdev.dockflowbackend.workflow.service.WorkflowEventResumeService;
 import org.aldousdev.dockflowbackend.workflow.service.WorkflowService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -34,6 +37,8 @@ import java.util.List;
 public class WorkflowController {
     private final WorkflowService workflowService;
     private final UserService userService;
+    private final AuthService authService;
+    private final WorkflowEventResumeService eventResumeService;
 
     /**
      * POST /api/workflow/template - создать новый workflow template
@@ -230,7 +235,7 @@ public class WorkflowController {
         log.info("Approving task: {}", taskId);
         User user = userService.getUserByEmail(authentication.getName());
         
-        TaskResponse task = workflowService.approveTask(taskId, user, request.getComment());
+        TaskResponse task = workflowService.approveTask(taskId, user, request);
         return ResponseEntity.ok(task);
     }
 
@@ -250,10 +255,27 @@ public class WorkflowController {
     })
     public ResponseEntity<List<WorkflowAuditLogResponse>> getWorkflowAudit(
             @Parameter(description = "ID workflow instance", required = true)
-            @PathVariable Long instanceId) {
+            @PathVariable Long instanceId,
+            @Parameter(description = "Добавить записи из архива старых месяцев (медленнее)")
+            @RequestParam(defaultValue = "false") boolean includeArchived) {
         
         log.info("Fetching audit log for workflow instance: {}", instanceId);
-        List<WorkflowAuditLogResponse> auditLog = workflowService.getWorkflowAuditLog(instanceId);
+        List<WorkflowAuditLogResponse> auditLog = workflowService.getWorkflowAuditLog(instanceId, includeArchived);
         return ResponseEntity.ok(auditLog);
     }
+
+    /**
+     * GET /api/workflow/events?since=N - пропущенные события workflow после переподключения
+     */
+    @GetMapping("/events")
+    @RequiresRoleLevel(10)
+    @Operation(summary = "Пропущенные события workflow",
+            description = "Возвращает события компании с номером больше since. Если разрыв слишком старый, " +
+                    "возвращает snapshot активных workflow и номер, с которого продолжать")
+    public ResponseEntity<WorkflowEventResumeResponse> getEventsSince(
+            @Parameter(description = "Последний полученный номер события, -1 если состояния нет")
+            @RequestParam(defaultValue = "-1") long since) {
+
+        return ResponseEntity.ok(eventResumeService.resume(authService.getCurrentCompanyId(), since));
+    }
 }
@@ -0,0 +1,43 @@
+package org.aldousdev.dockflowbackend.workflow.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.workflow.dto.request.WorkflowEventResumeRequest;
+import org.aldousdev.dockflowbackend.workflow.dto.response.WorkflowEventResumeResponse;
+import org.aldousdev.dockflowbackend.workflow.service.WorkflowEventResumeService;
+import org.aldousdev.dockflowbackend.chat.config.JwtHandshakeInterceptor;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Controller;
+
+import java.util.Map;
+
+@Controller
+@RequiredArgsConstructor
+@Slf4j
+public class WorkflowEventStompController {
+    private final WorkflowEventResumeService eventResumeService;
+
+    /**
+     * Resume по WebSocket без отдельного REST запроса
+     * Клиент подписывается на: /user/queue/workflow.resume
+     * и отправляет на: /app/workflow.resume {"since": 42}
+     * Компания берется из JWT, с которым открыто соединение
+     */
+    @MessageMapping("/workflow.resume")
+    @SendToUser(destinations = "/queue/workflow.resume", broadcast = false)
+    public WorkflowEventResumeResponse resume(WorkflowEventResumeRequest request,
+                                              SimpMessageHeaderAccessor headerAccessor) {
+        Map<String, Object> attributes = headerAccessor.getSessionAttributes();
+        Long companyId = attributes != null ? (Long) attributes.get(JwtHandshakeInterceptor.COMPANY_ID_ATTR) : null;
+        if (companyId == null) {
+            throw new AccessDeniedException("Company is not selected for this WebSocket session");
+        }
+
+        long since = request.getSince() != null ? request.getSince() : -1;
+        log.debug("WebSocket resume for company {} since {}", companyId, since);
+        return eventResumeService.resume(companyId, since);
+    }
+}
@@ -0,0 +1,20 @@
+package org.aldousdev.dockflowbackend.workflow.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchSignRequest {
+    private List<Long> documentIds;
+    private String reason;
+    private Integer pageNumber;
+    private Float positionX;
+    private Float positionY;
+}
@@ -0,0 +1,11 @@
+package org.aldousdev.dockflowbackend.workflow.dto.request;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class CreateUploadSessionRequest {
+    private String originalFilename;
+    private Long totalSize; // полный размер файла в байтах
+}
@@ -0,0 +1,16 @@
+package org.aldousdev.dockflowbackend.workflow.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.aldousdev.dockflowbackend.workflow.enums.DigestMode;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationPreferenceRequest {
+    private DigestMode digestMode;
+    private Integer maxEmailsPerHour; // null - общий лимит
+}
@@ -11,4 +11,11 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class TaskApprovalRequest {
     private String comment;
+
+    /**
+     * Положение штампа для шагов с action="sign" (необязательно)
+     */
+    private Integer signaturePage;
+    private Float signatureX;
+    private Float signatureY;
 }
@@ -0,0 +1,17 @@
+package org.aldousdev.dockflowbackend.workflow.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowEventResumeRequest {
+    /**
+     * Последний номер события, полученный клиентом; -1 если состояния нет
+     */
+    private Long since;
+}
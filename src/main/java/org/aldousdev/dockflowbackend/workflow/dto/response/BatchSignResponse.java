@@ -0,0 +1,27 @@
+package org.aldousdev.dockflowbackend.workflow.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class BatchSignResponse {
+    private int requested;
+    private int signed;
+    private int failed;
+    private List<Result> results;
+
+    @Getter
+    @Setter
+    @Builder
+    public static class Result {
+        private Long documentId;
+        private Long signatureId;
+        private boolean signed;
+        private String error;
+    }
+}
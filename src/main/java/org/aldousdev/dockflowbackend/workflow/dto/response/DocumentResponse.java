@@ -14,7 +14,12 @@ public class DocumentResponse {
     private String originalFilename;
     private String filePath;
     private Long fileSize;
+    private String sha256;
     private LocalDateTime uploadedAt;
     private String uploadedBy;
     private boolean signed;
+    private String processingStatus;
+    private Integer pageCount;
+    private String title;
+    private String author;
 }
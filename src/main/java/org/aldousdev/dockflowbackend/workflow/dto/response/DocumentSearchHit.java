@@ -0,0 +1,21 @@
+package org.aldousdev.dockflowbackend.workflow.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@Builder
+public class DocumentSearchHit {
+    private Long documentId;
+    private String originalFilename;
+    private String uploadedBy;
+    private String workflowStatus;
+    private LocalDateTime uploadedAt;
+    private double rank;
+    private String filenameHighlight; // HTML: найденные слова обернуты в <mark>
+    private String contentHighlight;  // HTML: фрагменты текста документа с <mark>
+}
@@ -0,0 +1,19 @@
+package org.aldousdev.dockflowbackend.workflow.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class DocumentSearchResponse {
+    private String query;
+    private int size;
+    private Long total;         // только на первой странице (без курсора)
+    private boolean totalExact; // false, если совпадений больше лимита подсчета
+    private String nextCursor;  // null - страница последняя
+    private List<DocumentSearchHit> hits;
+}
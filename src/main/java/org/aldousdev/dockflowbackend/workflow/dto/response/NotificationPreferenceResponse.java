@@ -0,0 +1,15 @@
+package org.aldousdev.dockflowbackend.workflow.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import org.aldousdev.dockflowbackend.workflow.enums.DigestMode;
+
+@Getter
+@Setter
+@Builder
+public class NotificationPreferenceResponse {
+    private DigestMode digestMode;
+    private Integer maxEmailsPerHour;
+    private int effectiveMaxEmailsPerHour; // с учетом общего лимита
+}
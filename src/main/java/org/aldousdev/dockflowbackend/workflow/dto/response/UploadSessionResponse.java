@@ -0,0 +1,22 @@
+package org.aldousdev.dockflowbackend.workflow.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class UploadSessionResponse {
+    private String sessionId;
+    private String originalFilename;
+    private long totalSize;
+    private long chunkSize;
+    private int totalChunks;
+    private long receivedBytes;
+    private List<Integer> missingChunks;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,23 @@
+package org.aldousdev.dockflowbackend.workflow.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import org.aldousdev.dockflowbackend.workflow.event.SequencedWorkflowEvent;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class WorkflowEventResumeResponse {
+    private Long companyId;
+    private long since;
+    private long latestSequence;
+    /**
+     * true - разрыв слишком старый: events пуст, состояние передано в snapshot
+     */
+    private boolean snapshotRequired;
+    private List<SequencedWorkflowEvent> events;
+    private List<WorkflowInstanceResponse> snapshot;
+}
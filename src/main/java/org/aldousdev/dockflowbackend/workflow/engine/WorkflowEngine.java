@@ -3,6 +3,7 @@ package org.aldousdev.dockflowbackend.workflow.engine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.config.AppMetrics;
 import org.aldousdev.dockflowbackend.workflow.entity.RoutingRule;
 import org.aldousdev.dockflowbackend.workflow.entity.Task;
 import org.aldousdev.dockflowbackend.workflow.entity.WorkflowInstance;
@@ -19,6 +20,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -27,17 +29,25 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @Slf4j
 public class WorkflowEngine {
+    private static final String OPERATION_TIMER = "workflow.engine.operation";
+
     private final TaskRepository taskRepository;
     private final RoutingRuleRepository routingRuleRepository;
     private final WorkflowEventBroadcaster eventBroadcaster;
     private final WorkflowAuditService auditService;
     private final EmailNotificationService emailNotificationService;
+    private final AppMetrics metrics;
 
     /**
      * Инициализирует workflow - создает tasks для всех шагов
      */
     @Transactional
     public void initializeWorkflow(WorkflowInstance workflowInstance, String workflowXml) {
+        metrics.record(OPERATION_TIMER, companyId(workflowInstance),
+                () -> doInitializeWorkflow(workflowInstance, workflowXml), "operation", "initialize");
+    }
+
+    private void doInitializeWorkflow(WorkflowInstance workflowInstance, String workflowXml) {
         log.info("Initializing workflow for document: {}", workflowInstance.getDocument().getId());
         
         try {
@@ -47,19 +57,23 @@ public class WorkflowEngine {
             Map<Integer, List<WorkflowXmlParser.WorkflowStep>> groupedSteps = 
                 steps.stream().collect(Collectors.groupingBy(WorkflowXmlParser.WorkflowStep::getOrder));
 
+            List<Task> createdTasks = new ArrayList<>();
             for (Map.Entry<Integer, List<WorkflowXmlParser.WorkflowStep>> entry : groupedSteps.entrySet()) {
                 Integer stepOrder = entry.getKey();
                 List<WorkflowXmlParser.WorkflowStep> stepGroup = entry.getValue();
 
                 // Для каждого шага (или группы параллельных шагов) создаем task
                 for (WorkflowXmlParser.WorkflowStep step : stepGroup) {
-                    createTask(workflowInstance, stepOrder, step);
+                    createdTasks.add(createTask(workflowInstance, stepOrder, step));
                 }
             }
 
             workflowInstance.setStatus(WorkFlowStatus.IN_PROGRESS);
             log.info("Workflow initialized with {} tasks", steps.size());
 
+            // Email получают только исполнители первого шага, остальные - когда до них дойдет очередь
+            notifyCurrentStep(createdTasks);
+
         } catch (Exception e) {
             log.error("Error initializing workflow", e);
             workflowInstance.setStatus(WorkFlowStatus.REJECTED);
@@ -70,7 +84,7 @@ public class WorkflowEngine {
     /**
      * Создает task для конкретного шага
      */
-    private void createTask(WorkflowInstance instance, Integer stepOrder, 
+    private Task createTask(WorkflowInstance instance, Integer stepOrder, 
                            WorkflowXmlParser.WorkflowStep step) {
         log.debug("Creating task for step {} - role {}", stepOrder, step.getRoleName());
 
@@ -79,6 +93,7 @@ public class WorkflowEngine {
                 .stepOrder(stepOrder)
                 .requiredRoleName(step.getRoleName())
                 .requiredRoleLevel(step.getRoleLevel())
+                .action(step.getAction())
                 .status(TaskStatus.PENDING)
                 .assignedBy(instance.getInitiatedBy())
                 .build();
@@ -91,6 +106,7 @@ public class WorkflowEngine {
         // Отправляем уведомление о создании новой task
         Long companyId = instance.getDocument().getCompany().getId();
         eventBroadcaster.broadcastTaskCreated(companyId, task.getId(), step.getRoleName());
+        return task;
     }
 
     /**
@@ -98,6 +114,11 @@ public class WorkflowEngine {
      */
     @Transactional
     public void approveTask(Task task, User approvedBy, String comment) {
+        metrics.record(OPERATION_TIMER, companyId(task.getWorkflowInstance()),
+                () -> doApproveTask(task, approvedBy, comment), "operation", "approve");
+    }
+
+    private void doApproveTask(Task task, User approvedBy, String comment) {
         log.info("Approving task: {} by user: {}", task.getId(), approvedBy.getEmail());
 
         task.setStatus(TaskStatus.APPROVED);
@@ -113,7 +134,30 @@ public class WorkflowEngine {
         emailNotificationService.notifyTaskApproved(task, approvedBy);
 
         // Проверяем, можно ли переместить на следующий шаг
-        moveToNextStep(task.getWorkflowInstance());
+        WorkflowInstance instance = task.getWorkflowInstance();
+        moveToNextStep(instance);
+
+        if (instance.getStatus() != WorkFlowStatus.COMPLETED) {
+            List<Task> tasks = taskRepository.findByWorkflowInstance(instance);
+            boolean stepFinished = tasks.stream()
+                    .noneMatch(t -> t.getStepOrder().equals(task.getStepOrder()) && t.getStatus() == TaskStatus.PENDING);
+            if (stepFinished) {
+                notifyCurrentStep(tasks);
+            }
+        }
+    }
+
+    /**
+     * Уведомляет исполнителей текущего шага - минимального шага с PENDING tasks
+     */
+    private void notifyCurrentStep(List<Task> tasks) {
+        tasks.stream()
+                .filter(t -> t.getStatus() == TaskStatus.PENDING)
+                .map(Task::getStepOrder)
+                .min(Integer::compareTo)
+                .ifPresent(step -> emailNotificationService.notifyTasksCreated(tasks.stream()
+                        .filter(t -> t.getStatus() == TaskStatus.PENDING && t.getStepOrder().equals(step))
+                        .toList()));
     }
 
     /**
@@ -121,6 +165,11 @@ public class WorkflowEngine {
      */
     @Transactional
     public void rejectTask(Task task, User rejectedBy, String comment) {
+        metrics.record(OPERATION_TIMER, companyId(task.getWorkflowInstance()),
+                () -> doRejectTask(task, rejectedBy, comment), "operation", "reject");
+    }
+
+    private void doRejectTask(Task task, User rejectedBy, String comment) {
         log.info("Rejecting task: {} by user: {}", task.getId(), rejectedBy.getEmail());
 
         task.setStatus(TaskStatus.REJECTED);
@@ -196,6 +245,11 @@ public class WorkflowEngine {
      */
     @Transactional
     protected void returnToStep(WorkflowInstance instance, Integer fromStep, Integer targetStep) {
+        metrics.record(OPERATION_TIMER, companyId(instance),
+                () -> doReturnToStep(instance, fromStep, targetStep), "operation", "return_to_step");
+    }
+
+    private void doReturnToStep(WorkflowInstance instance, Integer fromStep, Integer targetStep) {
         log.info("Returning workflow {} from step {} to step {}", instance.getId(), fromStep, targetStep);
 
         List<Task> tasks = taskRepository.findByWorkflowInstance(instance);
@@ -228,6 +282,7 @@ public class WorkflowEngine {
                 
                 log.info("Task {} reset to PENDING", t.getId());
             });
+            emailNotificationService.notifyTasksCreated(targetStepTasks);
         }
 
         instance.setStatus(WorkFlowStatus.IN_PROGRESS);
@@ -287,19 +342,28 @@ public class WorkflowEngine {
      * Проверяет, может ли пользователь одобрить task
      */
     public boolean canUserApproveTask(Task task, User user) {
+        return canUserApprove(companyId(task.getWorkflowInstance()), task.getRequiredRoleLevel(), user);
+    }
+
+    /**
+     * Проверка по уже известным компании и уровню - для списков tasks, прочитанных проекцией
+     */
+    public boolean canUserApprove(Long companyId, Integer requiredRoleLevel, User user) {
         // Получаем роль пользователя в компании
-        var company = task.getWorkflowInstance().getDocument().getCompany();
-        
         var userRole = user.getMemberships().stream()
-                .filter(m -> m.getCompany().getId().equals(company.getId()))
+                .filter(m -> m.getCompany().getId().equals(companyId))
                 .map(m -> m.getRole().getLevel())
                 .findFirst()
                 .orElse(0);
 
-        boolean canApprove = userRole >= task.getRequiredRoleLevel();
+        boolean canApprove = userRole >= requiredRoleLevel;
         log.debug("User {} role level {} can approve task requiring level {}: {}", 
-            user.getEmail(), userRole, task.getRequiredRoleLevel(), canApprove);
+            user.getEmail(), userRole, requiredRoleLevel, canApprove);
         
         return canApprove;
     }
+
+    private static Long companyId(WorkflowInstance instance) {
+        return instance.getDocument().getCompany().getId();
+    }
 }
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.*;
 import org.aldousdev.dockflowbackend.auth.entity.Company;
 import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.workflow.enums.DocumentProcessingStatus;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
@@ -32,6 +33,9 @@ public class Document {
 
     private Long fileSize;
 
+    @Column(length = 64)
+    private String sha256;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "company_id", nullable = false)
     private Company company;
@@ -46,4 +50,34 @@ public class Document {
 
     private Boolean signed = false;
 
+    /**
+     * Результаты фоновой обработки PDF (DocumentProcessingService)
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    @Builder.Default
+    private DocumentProcessingStatus processingStatus = DocumentProcessingStatus.PENDING;
+
+    /**
+     * Когда документ взят в обработку; PROCESSING дольше document.processing.stale-after
+     * значит, что обработавший узел упал, и документ ставится в очередь снова
+     */
+    private LocalDateTime processingStartedAt;
+
+    private Integer pageCount;
+
+    private String title;
+
+    private String author;
+
+    private String subject;
+
+    private String creator;
+
+    private String previewPath;
+
+    private LocalDateTime processedAt;
+
+    @Column(length = 1000)
+    private String processingError;
 }
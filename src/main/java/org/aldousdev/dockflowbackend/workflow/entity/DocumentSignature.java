@@ -38,4 +38,23 @@ public class DocumentSignature {
     private Float yPosition;
 
     private LocalDateTime signedAt = LocalDateTime.now();
+
+    /**
+     * Когда криптографическая подпись была записана в PDF; null - еще в очереди
+     */
+    private LocalDateTime appliedAt;
+
+    @Column(length = 1000)
+    private String failureReason;
+
+    /**
+     * Аренда записи подписи узлом; null - свободна. Истекает через document.signing.claim-timeout
+     */
+    private LocalDateTime claimedAt;
+
+    /**
+     * Число попыток записи в PDF; после document.signing.max-attempts временных ошибок подпись помечается failed
+     */
+    @Column(nullable = false)
+    private int attempts;
 }
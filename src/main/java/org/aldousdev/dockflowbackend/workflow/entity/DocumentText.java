@@ -0,0 +1,35 @@
+package org.aldousdev.dockflowbackend.workflow.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Извлеченный из PDF текст. Хранится отдельно от Document,
+ * чтобы не тянуть большие тексты при каждой загрузке документа.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "document_texts")
+public class DocumentText {
+    /**
+     * ID документа (хранится как Long, а не relationship)
+     */
+    @Id
+    @Column(name = "document_id")
+    private Long documentId;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String content;
+
+    @Builder.Default
+    private Boolean truncated = false;
+
+    @Column(nullable = false)
+    private LocalDateTime extractedAt;
+}
@@ -0,0 +1,66 @@
+package org.aldousdev.dockflowbackend.workflow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.aldousdev.dockflowbackend.workflow.enums.EmailOutboxStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Письмо в очереди на отправку (outbox).
+ * Кладется в той же транзакции, что и изменение, о котором оно сообщает;
+ * отправляет его EmailDeliveryWorker
+ */
+@Entity
+@Table(name = "email_outbox",
+        indexes = {
+                @Index(name = "idx_email_outbox_status_next_attempt", columnList = "status, next_attempt_at"),
+                @Index(name = "idx_email_outbox_recipient_created", columnList = "recipient, created_at")
+        })
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailOutboxMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String body;
+
+    @Column(nullable = false)
+    private boolean html;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private EmailOutboxStatus status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    /**
+     * Не раньше этого момента письмо можно брать в отправку.
+     * Воркер сдвигает его на время аренды, пока письмо у него в работе
+     */
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+}
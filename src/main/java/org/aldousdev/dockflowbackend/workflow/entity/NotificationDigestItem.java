@@ -0,0 +1,53 @@
+package org.aldousdev.dockflowbackend.workflow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Уведомление, отложенное до отправки сводкой (NotificationDigestService).
+ * Хранит и готовое отдельное письмо - если за окно событие одно, уходит оно
+ */
+@Entity
+@Table(name = "notification_digest_items",
+        indexes = {
+                @Index(name = "idx_notification_digest_items_user", columnList = "user_id"),
+                @Index(name = "idx_notification_digest_items_deliver_after", columnList = "deliver_after")
+        })
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationDigestItem {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String body;
+
+    /**
+     * Строка события в сводке (простой текст)
+     */
+    @Column(nullable = false, length = 1000)
+    private String summary;
+
+    @Column(name = "deliver_after", nullable = false)
+    private LocalDateTime deliverAfter;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,38 @@
+package org.aldousdev.dockflowbackend.workflow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.aldousdev.dockflowbackend.workflow.enums.DigestMode;
+
+import java.time.LocalDateTime;
+
+/**
+ * Настройки email уведомлений пользователя. Нет строки - действуют значения по умолчанию
+ */
+@Entity
+@Table(name = "notification_preferences")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationPreference {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "digest_mode", nullable = false, length = 20)
+    private DigestMode digestMode;
+
+    /**
+     * Собственный лимит писем в час; не может превышать notifications.max-emails-per-hour
+     */
+    @Column(name = "max_emails_per_hour")
+    private Integer maxEmailsPerHour;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -5,7 +5,10 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.aldousdev.dockflowbackend.config.SecondLevelCacheConfig;
 import org.aldousdev.dockflowbackend.workflow.enums.RoutingType;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
 @Table(name = "routing_rules", indexes = {
@@ -16,6 +19,7 @@ import org.aldousdev.dockflowbackend.workflow.enums.RoutingType;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.ROUTING_RULE_REGION)
 public class RoutingRule {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
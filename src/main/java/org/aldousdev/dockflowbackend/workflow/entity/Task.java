@@ -34,6 +34,12 @@ public class Task {
 
     private Integer requiredRoleLevel;
 
+    /**
+     * Действие шага из XML шаблона: review, approve, sign
+     */
+    @Column(length = 20)
+    private String action;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "assigned_by_user_id", nullable = false)
     private User assignedBy;
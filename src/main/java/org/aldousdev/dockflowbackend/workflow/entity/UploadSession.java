@@ -0,0 +1,57 @@
+package org.aldousdev.dockflowbackend.workflow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.aldousdev.dockflowbackend.workflow.enums.UploadSessionStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сессия возобновляемой загрузки (ChunkedUploadService).
+ * Хранится в базе, а .part файл - в общем file.upload.dir, поэтому загрузку можно продолжить
+ * после рестарта и на другом узле. Принятые чанки - в upload_session_chunks
+ */
+@Entity
+@Table(name = "upload_sessions",
+        indexes = @Index(name = "idx_upload_sessions_last_activity", columnList = "last_activity_at"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "company_id", nullable = false)
+    private Long companyId;
+
+    @Column(name = "original_filename", nullable = false)
+    private String originalFilename;
+
+    @Column(name = "total_size", nullable = false)
+    private long totalSize;
+
+    @Column(name = "chunk_size", nullable = false)
+    private long chunkSize;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private UploadSessionStatus status;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_activity_at", nullable = false)
+    private LocalDateTime lastActivityAt;
+
+    public int getTotalChunks() {
+        return (int) ((totalSize + chunkSize - 1) / chunkSize);
+    }
+}
@@ -9,11 +9,16 @@ import org.aldousdev.dockflowbackend.auth.entity.User;
 
 import java.time.LocalDateTime;
 
+/**
+ * Таблица партиционирована по месяцам created_at (миграция V4, AuditPartitionManager).
+ * Запросы по журналу должны ограничивать created_at, чтобы Postgres отсекал лишние партиции
+ */
 @Entity
 @Table(name = "workflow_audit_logs", indexes = {
-        @Index(name = "idx_workflow_instance", columnList = "workflow_instance_id"),
-        @Index(name = "idx_task", columnList = "task_id"),
-        @Index(name = "idx_timestamp", columnList = "created_at")
+        @Index(name = "idx_workflow_audit_logs_instance_created", columnList = "workflow_instance_id, created_at DESC"),
+        @Index(name = "idx_workflow_audit_logs_task", columnList = "task_id"),
+        @Index(name = "idx_workflow_audit_logs_created", columnList = "created_at"),
+        @Index(name = "idx_workflow_audit_logs_action_created", columnList = "action_type, created_at DESC")
 })
 @Data
 @Builder
@@ -0,0 +1,46 @@
+package org.aldousdev.dockflowbackend.workflow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Журнал событий workflow компании для resume клиентов, отставших больше,
+ * чем хранит in-memory буфер
+ */
+@Entity
+@Table(name = "workflow_events",
+        uniqueConstraints = @UniqueConstraint(name = "uk_workflow_events_company_sequence",
+                columnNames = {"company_id", "sequence"}),
+        indexes = @Index(name = "idx_workflow_events_created_at", columnList = "created_at"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowEventEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "company_id", nullable = false)
+    private Long companyId;
+
+    @Column(nullable = false)
+    private Long sequence;
+
+    @Column(nullable = false, length = 40)
+    private String type;
+
+    /**
+     * Событие в JSON (WorkflowEvent)
+     */
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -3,6 +3,9 @@ package org.aldousdev.dockflowbackend.workflow.entity;
 import jakarta.persistence.*;
 import lombok.*;
 import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.config.SecondLevelCacheConfig;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDateTime;
@@ -16,6 +19,7 @@ import java.util.List;
 @Builder
 @Table(name = "workflow_templates")
 @EntityListeners(AuditingEntityListener.class)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.TEMPLATE_REGION)
 public class WorkflowTemplate {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -61,5 +65,6 @@ public class WorkflowTemplate {
      * Правила маршрутизации для этого template
      */
     @OneToMany(mappedBy = "template", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.TEMPLATE_RULES_REGION)
     private List<RoutingRule> routingRules;
 }
@@ -0,0 +1,19 @@
+package org.aldousdev.dockflowbackend.workflow.enums;
+
+import java.time.Duration;
+
+public enum DigestMode {
+    IMMEDIATE(Duration.ZERO),                   // Каждое событие отдельным письмом (в пределах лимита в час)
+    EVERY_15_MINUTES(Duration.ofMinutes(15)),   // Сводка не чаще раза в 15 минут
+    HOURLY(Duration.ofHours(1));                // Сводка не чаще раза в час
+
+    private final Duration window;
+
+    DigestMode(Duration window) {
+        this.window = window;
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+}
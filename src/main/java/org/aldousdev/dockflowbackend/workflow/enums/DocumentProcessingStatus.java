@@ -0,0 +1,8 @@
+package org.aldousdev.dockflowbackend.workflow.enums;
+
+public enum DocumentProcessingStatus {
+    PENDING,      // Ожидает обработки в очереди
+    PROCESSING,   // Идет извлечение текста и метаданных
+    COMPLETED,    // Обработка завершена
+    FAILED        // Файл не удалось разобрать
+}
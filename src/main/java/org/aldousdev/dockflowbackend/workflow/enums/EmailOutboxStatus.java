@@ -0,0 +1,7 @@
+package org.aldousdev.dockflowbackend.workflow.enums;
+
+public enum EmailOutboxStatus {
+    PENDING,      // Ожидает отправки (в том числе повторной)
+    SENT,         // Принято SMTP сервером
+    DEAD          // Не доставлено после всех попыток или отклонено навсегда
+}
@@ -0,0 +1,6 @@
+package org.aldousdev.dockflowbackend.workflow.enums;
+
+public enum UploadSessionStatus {
+    OPEN,         // Принимает чанки
+    COMPLETING    // Файл проверяется и регистрируется, чанки больше не принимаются
+}
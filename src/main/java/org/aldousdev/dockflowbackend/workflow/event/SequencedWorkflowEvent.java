@@ -0,0 +1,8 @@
+package org.aldousdev.dockflowbackend.workflow.event;
+
+/**
+ * Событие с номером в потоке компании. Номера монотонны и идут без пропусков,
+ * поэтому клиент по разрыву последовательности понимает, что нужно запросить resume.
+ */
+public record SequencedWorkflowEvent(long sequence, WorkflowEvent event) {
+}
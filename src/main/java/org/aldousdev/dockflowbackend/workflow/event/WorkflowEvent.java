@@ -0,0 +1,101 @@
+package org.aldousdev.dockflowbackend.workflow.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+import java.time.LocalDateTime;
+
+/**
+ * Неизменяемые события workflow, которые уходят подписчикам по WebSocket.
+ * coalesceKey() - события с одинаковым ключом в одном окне отправки
+ * заменяют друг друга (остается последнее); null - событие не схлопывается.
+ * Переходы жизненного цикла workflow не схлопываются никогда: клиент должен увидеть и старт,
+ * и завершение, даже если они попали в одно окно. Схлопывается только прогресс обработки документа.
+ * Поле type служит и идентификатором подтипа при чтении событий из БД.
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.EXISTING_PROPERTY, property = "type")
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = WorkflowEvent.WorkflowStarted.class, name = "WORKFLOW_STARTED"),
+        @JsonSubTypes.Type(value = WorkflowEvent.WorkflowCompleted.class, name = "WORKFLOW_COMPLETED"),
+        @JsonSubTypes.Type(value = WorkflowEvent.WorkflowRejected.class, name = "WORKFLOW_REJECTED"),
+        @JsonSubTypes.Type(value = WorkflowEvent.TaskCreated.class, name = "TASK_CREATED"),
+        @JsonSubTypes.Type(value = WorkflowEvent.TaskApproved.class, name = "TASK_APPROVED"),
+        @JsonSubTypes.Type(value = WorkflowEvent.TaskRejected.class, name = "TASK_REJECTED"),
+        @JsonSubTypes.Type(value = WorkflowEvent.DocumentProcessing.class, name = "DOCUMENT_PROCESSING"),
+        @JsonSubTypes.Type(value = WorkflowEvent.DocumentSigned.class, names = {"DOCUMENT_SIGNED", "DOCUMENT_SIGNING_FAILED"})
+})
+public sealed interface WorkflowEvent {
+
+    @JsonProperty("type")
+    String type();
+
+    LocalDateTime timestamp();
+
+    @JsonIgnore
+    default String coalesceKey() {
+        return null;
+    }
+
+    record WorkflowStarted(Long workflowInstanceId, Long documentId, LocalDateTime timestamp) implements WorkflowEvent {
+        @Override
+        public String type() {
+            return "WORKFLOW_STARTED";
+        }
+    }
+
+    record WorkflowCompleted(Long workflowInstanceId, LocalDateTime timestamp) implements WorkflowEvent {
+        @Override
+        public String type() {
+            return "WORKFLOW_COMPLETED";
+        }
+    }
+
+    record WorkflowRejected(Long workflowInstanceId, String reason, LocalDateTime timestamp) implements WorkflowEvent {
+        @Override
+        public String type() {
+            return "WORKFLOW_REJECTED";
+        }
+    }
+
+    record TaskCreated(Long taskId, String roleName, LocalDateTime timestamp) implements WorkflowEvent {
+        @Override
+        public String type() {
+            return "TASK_CREATED";
+        }
+    }
+
+    record TaskApproved(Long taskId, String approvedBy, LocalDateTime timestamp) implements WorkflowEvent {
+        @Override
+        public String type() {
+            return "TASK_APPROVED";
+        }
+    }
+
+    record TaskRejected(Long taskId, String rejectedBy, LocalDateTime timestamp) implements WorkflowEvent {
+        @Override
+        public String type() {
+            return "TASK_REJECTED";
+        }
+    }
+
+    record DocumentProcessing(Long documentId, String status, int progress, LocalDateTime timestamp) implements WorkflowEvent {
+        @Override
+        public String type() {
+            return "DOCUMENT_PROCESSING";
+        }
+
+        @Override
+        public String coalesceKey() {
+            return "processing:" + documentId;
+        }
+    }
+
+    record DocumentSigned(Long documentId, Long signatureId, boolean success, LocalDateTime timestamp) implements WorkflowEvent {
+        @Override
+        public String type() {
+            return success ? "DOCUMENT_SIGNED" : "DOCUMENT_SIGNING_FAILED";
+        }
+    }
+}
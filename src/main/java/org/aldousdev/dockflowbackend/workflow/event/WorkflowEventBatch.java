@@ -0,0 +1,9 @@
+package org.aldousdev.dockflowbackend.workflow.event;
+
+import java.util.List;
+
+/**
+ * Один WebSocket кадр с пачкой событий для одного destination
+ */
+public record WorkflowEventBatch(List<SequencedWorkflowEvent> events) {
+}
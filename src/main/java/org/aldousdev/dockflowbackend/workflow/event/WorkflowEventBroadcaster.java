@@ -2,106 +2,90 @@ package org.aldousdev.dockflowbackend.workflow.event;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
 
+/**
+ * Формирует события workflow и передает их в WorkflowEventDispatcher.
+ * Отправка асинхронная: подписчики получают пачки пронумерованных событий
+ * раз в несколько миллисекунд.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class WorkflowEventBroadcaster {
-    private final SimpMessagingTemplate messagingTemplate;
+    private final WorkflowEventDispatcher dispatcher;
 
     /**
      * Отправляет уведомление о запуске workflow
      */
     public void broadcastWorkflowStarted(Long companyId, Long workflowInstanceId, Long documentId) {
-        log.info("Broadcasting workflow started event");
-        
-        Map<String, Object> event = new HashMap<>();
-        event.put("type", "WORKFLOW_STARTED");
-        event.put("workflowInstanceId", workflowInstanceId);
-        event.put("documentId", documentId);
-        event.put("timestamp", LocalDateTime.now());
-        
-        messagingTemplate.convertAndSend("/topic/workflow/company/" + companyId, (Object) event);
+        log.debug("Broadcasting workflow started event");
+        dispatcher.publish(companyId,
+                new WorkflowEvent.WorkflowStarted(workflowInstanceId, documentId, LocalDateTime.now()));
     }
 
     /**
      * Отправляет уведомление о новой task
      */
     public void broadcastTaskCreated(Long companyId, Long taskId, String roleName) {
-        log.info("Broadcasting task created event for role: {}", roleName);
-        
-        Map<String, Object> event = new HashMap<>();
-        event.put("type", "TASK_CREATED");
-        event.put("taskId", taskId);
-        event.put("roleName", roleName);
-        event.put("timestamp", LocalDateTime.now());
-        
-        messagingTemplate.convertAndSend("/topic/workflow/company/" + companyId, (Object) event);
-        messagingTemplate.convertAndSend("/topic/workflow/role/" + roleName, (Object) event);
+        log.debug("Broadcasting task created event for role: {}", roleName);
+        WorkflowEvent event = new WorkflowEvent.TaskCreated(taskId, roleName, LocalDateTime.now());
+        dispatcher.publish(companyId, event, WorkflowEventDispatcher.companyTopic(companyId) + "/role/" + roleName);
     }
 
     /**
      * Отправляет уведомление об одобрении task
      */
     public void broadcastTaskApproved(Long companyId, Long taskId, String approvedBy) {
-        log.info("Broadcasting task approved event");
-        
-        Map<String, Object> event = new HashMap<>();
-        event.put("type", "TASK_APPROVED");
-        event.put("taskId", taskId);
-        event.put("approvedBy", approvedBy);
-        event.put("timestamp", LocalDateTime.now());
-        
-        messagingTemplate.convertAndSend("/topic/workflow/company/" + companyId, (Object) event);
+        log.debug("Broadcasting task approved event");
+        dispatcher.publish(companyId,
+                new WorkflowEvent.TaskApproved(taskId, approvedBy, LocalDateTime.now()));
     }
 
     /**
      * Отправляет уведомление об отклонении task
      */
     public void broadcastTaskRejected(Long companyId, Long taskId, String rejectedBy) {
-        log.info("Broadcasting task rejected event");
-        
-        Map<String, Object> event = new HashMap<>();
-        event.put("type", "TASK_REJECTED");
-        event.put("taskId", taskId);
-        event.put("rejectedBy", rejectedBy);
-        event.put("timestamp", LocalDateTime.now());
-        
-        messagingTemplate.convertAndSend("/topic/workflow/company/" + companyId, (Object) event);
+        log.debug("Broadcasting task rejected event");
+        dispatcher.publish(companyId,
+                new WorkflowEvent.TaskRejected(taskId, rejectedBy, LocalDateTime.now()));
     }
 
     /**
      * Отправляет уведомление о завершении workflow
      */
     public void broadcastWorkflowCompleted(Long companyId, Long workflowInstanceId) {
-        log.info("Broadcasting workflow completed event");
-        
-        Map<String, Object> event = new HashMap<>();
-        event.put("type", "WORKFLOW_COMPLETED");
-        event.put("workflowInstanceId", workflowInstanceId);
-        event.put("timestamp", LocalDateTime.now());
-        
-        messagingTemplate.convertAndSend("/topic/workflow/company/" + companyId, (Object) event);
+        log.debug("Broadcasting workflow completed event");
+        dispatcher.publish(companyId,
+                new WorkflowEvent.WorkflowCompleted(workflowInstanceId, LocalDateTime.now()));
     }
 
     /**
      * Отправляет уведомление об отклонении workflow
      */
     public void broadcastWorkflowRejected(Long companyId, Long workflowInstanceId, String reason) {
-        log.info("Broadcasting workflow rejected event");
-        
-        Map<String, Object> event = new HashMap<>();
-        event.put("type", "WORKFLOW_REJECTED");
-        event.put("workflowInstanceId", workflowInstanceId);
-        event.put("reason", reason);
-        event.put("timestamp", LocalDateTime.now());
-        
-        messagingTemplate.convertAndSend("/topic/workflow/company/" + companyId, (Object) event);
+        log.debug("Broadcasting workflow rejected event");
+        dispatcher.publish(companyId,
+                new WorkflowEvent.WorkflowRejected(workflowInstanceId, reason, LocalDateTime.now()));
+    }
+
+    /**
+     * Отправляет прогресс фоновой обработки документа
+     */
+    public void broadcastDocumentProcessing(Long companyId, Long documentId, String status, int progress) {
+        log.debug("Broadcasting document {} processing {} ({}%)", documentId, status, progress);
+        dispatcher.publish(companyId,
+                new WorkflowEvent.DocumentProcessing(documentId, status, progress, LocalDateTime.now()));
+    }
+
+    /**
+     * Отправляет результат криптографической подписи документа
+     */
+    public void broadcastDocumentSigned(Long companyId, Long documentId, Long signatureId, boolean success) {
+        log.debug("Broadcasting document {} signature {}: {}", documentId, signatureId, success);
+        dispatcher.publish(companyId,
+                new WorkflowEvent.DocumentSigned(documentId, signatureId, success, LocalDateTime.now()));
     }
 }
@@ -0,0 +1,188 @@
+package org.aldousdev.dockflowbackend.workflow.event;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.config.AppMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Неблокирующая отправка событий workflow.
+ * publish() только кладет событие в очередь; отдельный поток раз в flush-interval
+ * группирует события по компании, схлопывает устаревшие (по coalesceKey),
+ * нумерует оставшиеся в WorkflowEventLog и отправляет один кадр WorkflowEventBatch
+ * на destination. Транзакции движка никогда не ждут брокер.
+ * Если номера не удалось сохранить (БД недоступна), события компании остаются
+ * в очереди повтора и уходят в следующий flush перед новыми - без пропусков в нумерации.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WorkflowEventDispatcher {
+    private static final String SEND_TIMER = "websocket.send";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final WorkflowEventLog eventLog;
+    private final AppMetrics metrics;
+
+    @Value("${workflow.events.flush-interval:20ms}")
+    private Duration flushInterval;
+
+    @Value("${workflow.events.max-queue-size:10000}")
+    private int maxQueueSize;
+
+    @Value("${workflow.events.max-batch-size:200}")
+    private int maxBatchSize;
+
+    private final ConcurrentLinkedQueue<Envelope> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Только поток отправки: события, которые не удалось пронумеровать, в порядке поступления
+    private final Map<Long, List<Envelope>> retry = new LinkedHashMap<>();
+
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "workflow-event-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMicros = flushInterval.toNanos() / 1000;
+        flusher.scheduleWithFixedDelay(this::flushSafely, intervalMicros, intervalMicros, TimeUnit.MICROSECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        flusher.shutdown();
+        flushSafely();
+    }
+
+    /**
+     * Ставит событие компании в очередь на отправку. Событие уходит в топик компании
+     * и в дополнительные destinations. Никогда не блокирует вызывающий поток
+     */
+    public void publish(Long companyId, WorkflowEvent event, String... extraDestinations) {
+        if (queueSize.incrementAndGet() > maxQueueSize) {
+            queueSize.decrementAndGet();
+            long total = dropped.incrementAndGet();
+            if (total % 1000 == 1) {
+                log.warn("Workflow event queue is full ({}), dropped {} events so far", maxQueueSize, total);
+            }
+            return;
+        }
+        queue.offer(new Envelope(companyId, event, extraDestinations));
+    }
+
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    synchronized void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to flush workflow events", e);
+        }
+    }
+
+    private void flush() {
+        if (queue.isEmpty() && retry.isEmpty()) {
+            return;
+        }
+
+        // companyId -> (coalesceKey или уникальный ключ) -> событие, в порядке поступления
+        Map<Long, LinkedHashMap<Object, Envelope>> byCompany = new LinkedHashMap<>();
+        // Неотправленные в прошлый раз идут первыми, уже без схлопывания
+        retry.forEach((companyId, envelopes) -> {
+            LinkedHashMap<Object, Envelope> events = byCompany.computeIfAbsent(companyId, id -> new LinkedHashMap<>());
+            envelopes.forEach(retried -> events.put(new Object(), retried));
+        });
+        retry.clear();
+        Envelope envelope;
+        while ((envelope = queue.poll()) != null) {
+            queueSize.decrementAndGet();
+            LinkedHashMap<Object, Envelope> events =
+                    byCompany.computeIfAbsent(envelope.companyId(), id -> new LinkedHashMap<>());
+            String coalesceKey = envelope.event().coalesceKey();
+            if (coalesceKey != null) {
+                // Удаляем старое событие, чтобы новое встало на место последнего
+                events.remove(coalesceKey);
+                events.put(coalesceKey, envelope);
+            } else {
+                events.put(new Object(), envelope);
+            }
+        }
+
+        byCompany.forEach((companyId, envelopes) -> {
+            List<Envelope> pending = new ArrayList<>(envelopes.values());
+            List<SequencedWorkflowEvent> sequenced;
+            try {
+                sequenced = eventLog.append(companyId, pending.stream().map(Envelope::event).toList());
+            } catch (Exception e) {
+                log.error("Failed to sequence {} workflow events of company {}, will retry", pending.size(), companyId, e);
+                keepForRetry(companyId, pending);
+                return;
+            }
+
+            Map<String, List<SequencedWorkflowEvent>> byDestination = new LinkedHashMap<>();
+            byDestination.put(companyTopic(companyId), sequenced);
+            for (int i = 0; i < pending.size(); i++) {
+                for (String destination : pending.get(i).extraDestinations()) {
+                    byDestination.computeIfAbsent(destination, d -> new ArrayList<>()).add(sequenced.get(i));
+                }
+            }
+            byDestination.forEach((destination, destinationEvents) -> send(companyId, destination, destinationEvents));
+        });
+    }
+
+    private void keepForRetry(Long companyId, List<Envelope> pending) {
+        int overflow = pending.size() - maxQueueSize;
+        if (overflow > 0) {
+            // БД недоступна слишком долго: старейшие события теряются, клиенты восстановятся через snapshot
+            dropped.addAndGet(overflow);
+            log.warn("Workflow event retry queue of company {} is full, dropped {} oldest events", companyId, overflow);
+            pending = new ArrayList<>(pending.subList(overflow, pending.size()));
+        }
+        retry.put(companyId, pending);
+    }
+
+    private void send(Long companyId, String destination, List<SequencedWorkflowEvent> events) {
+        String destinationType = AppMetrics.destinationType(destination);
+        for (int from = 0; from < events.size(); from += maxBatchSize) {
+            WorkflowEventBatch batch = new WorkflowEventBatch(
+                    List.copyOf(events.subList(from, Math.min(from + maxBatchSize, events.size()))));
+            metrics.record(SEND_TIMER, companyId, () -> messagingTemplate.convertAndSend(destination, batch),
+                    "destination", destinationType);
+        }
+        log.debug("Flushed {} workflow events to {}", events.size(), destination);
+    }
+
+    public static String companyTopic(Long companyId) {
+        return "/topic/workflow/company/" + companyId;
+    }
+
+    private record Envelope(Long companyId, WorkflowEvent event, String[] extraDestinations) {
+    }
+}
@@ -0,0 +1,202 @@
+package org.aldousdev.dockflowbackend.workflow.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.workflow.entity.WorkflowEventEntry;
+import org.aldousdev.dockflowbackend.workflow.repository.WorkflowEventEntryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Последовательный поток событий workflow для каждой компании.
+ * Номера выдает счетчик компании в workflow_event_sequences (монотонно, без пропусков):
+ * блок номеров берется в одной транзакции со вставкой событий, поэтому узлы не пересекаются,
+ * а неудачная вставка не оставляет дыр. Последние минуты событий этого узла хранятся
+ * в кольцевом буфере в памяти, все события - в таблице workflow_events.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WorkflowEventLog {
+    // Блокировка строки счетчика держится до коммита: события компании фиксируются в порядке номеров
+    private static final String ALLOCATE_SEQUENCES = """
+            INSERT INTO workflow_event_sequences (company_id, last_sequence) VALUES (?, ?)
+            ON CONFLICT (company_id) DO UPDATE
+                SET last_sequence = workflow_event_sequences.last_sequence + EXCLUDED.last_sequence
+            RETURNING last_sequence""";
+    private static final String INSERT_EVENT =
+            "INSERT INTO workflow_events (company_id, sequence, type, payload, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    private final WorkflowEventEntryRepository eventRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @Value("${workflow.events.buffer-retention:PT10M}")
+    private Duration bufferRetention;
+
+    @Value("${workflow.events.buffer-max-events:5000}")
+    private int bufferMaxEvents;
+
+    @Value("${workflow.events.max-resume-events:2000}")
+    private int maxResumeEvents;
+
+    @Value("${workflow.events.retention:P7D}")
+    private Duration retention;
+
+    private final Map<Long, CompanyStream> streams = new ConcurrentHashMap<>();
+
+    /**
+     * Присваивает событиям номера и сохраняет их в БД, затем кладет в буфер.
+     * Вызывается потоком отправки до того, как события уйдут подписчикам.
+     * Ошибка БД пробрасывается: событие без сохраненного номера не отправляется
+     */
+    public List<SequencedWorkflowEvent> append(Long companyId, List<WorkflowEvent> events) {
+        List<Object[]> rows = new ArrayList<>(events.size());
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        for (WorkflowEvent event : events) {
+            try {
+                rows.add(new Object[]{companyId, null, event.type(), objectMapper.writeValueAsString(event), createdAt});
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Workflow event " + event.type() + " is not serializable", e);
+            }
+        }
+
+        List<SequencedWorkflowEvent> sequenced = new TransactionTemplate(transactionManager).execute(status -> {
+            Long last = jdbcTemplate.queryForObject(ALLOCATE_SEQUENCES, Long.class, companyId, (long) events.size());
+            long first = last - events.size() + 1;
+            List<SequencedWorkflowEvent> allocated = new ArrayList<>(events.size());
+            for (int i = 0; i < events.size(); i++) {
+                rows.get(i)[1] = first + i;
+                allocated.add(new SequencedWorkflowEvent(first + i, events.get(i)));
+            }
+            jdbcTemplate.batchUpdate(INSERT_EVENT, rows);
+            return allocated;
+        });
+
+        CompanyStream stream = streams.computeIfAbsent(companyId, id -> new CompanyStream());
+        long now = System.nanoTime();
+        synchronized (stream) {
+            for (SequencedWorkflowEvent entry : sequenced) {
+                stream.buffer.addLast(new BufferedEvent(entry, now));
+            }
+            trim(stream, now);
+        }
+        return sequenced;
+    }
+
+    /**
+     * Последний выданный номер в потоке компании (всеми узлами)
+     */
+    public long latestSequence(Long companyId) {
+        List<Long> latest = jdbcTemplate.queryForList(
+                "SELECT last_sequence FROM workflow_event_sequences WHERE company_id = ?", Long.class, companyId);
+        return latest.isEmpty() ? 0 : latest.get(0);
+    }
+
+    /**
+     * События после since: из буфера, если в нем есть весь разрыв без пропусков
+     * (события других узлов в буфер не попадают), иначе из БД.
+     * null - разрыв слишком старый или большой, клиенту нужен snapshot.
+     */
+    public List<SequencedWorkflowEvent> readSince(Long companyId, long since) {
+        long latest = latestSequence(companyId);
+        if (since >= latest) {
+            return List.of();
+        }
+        if (since < 0 || latest - since > maxResumeEvents) {
+            return null;
+        }
+
+        CompanyStream stream = streams.get(companyId);
+        if (stream != null) {
+            synchronized (stream) {
+                List<SequencedWorkflowEvent> gap = new ArrayList<>((int) (latest - since));
+                long expected = since + 1;
+                for (BufferedEvent buffered : stream.buffer) {
+                    long sequence = buffered.event().sequence();
+                    if (sequence < expected || sequence > latest) {
+                        continue;
+                    }
+                    if (sequence != expected) {
+                        break;
+                    }
+                    gap.add(buffered.event());
+                    expected++;
+                }
+                if (expected == latest + 1) {
+                    return gap;
+                }
+            }
+        }
+
+        Long oldestStored = eventRepository.findOldestSequence(companyId);
+        if (oldestStored == null || oldestStored > since + 1) {
+            return null;
+        }
+        List<WorkflowEventEntry> entries = eventRepository.findSince(companyId, since, PageRequest.of(0, maxResumeEvents));
+        List<SequencedWorkflowEvent> gap = new ArrayList<>(entries.size());
+        for (WorkflowEventEntry entry : entries) {
+            try {
+                gap.add(new SequencedWorkflowEvent(entry.getSequence(),
+                        objectMapper.readValue(entry.getPayload(), WorkflowEvent.class)));
+            } catch (JsonProcessingException e) {
+                log.warn("Unreadable workflow event {} of company {}: {}", entry.getSequence(), companyId, e.getMessage());
+                return null;
+            }
+        }
+        return gap;
+    }
+
+    /**
+     * Удаляет события старше workflow.events.retention. Счетчики компаний остаются
+     */
+    @Scheduled(fixedDelayString = "${workflow.events.purge-interval:PT1H}")
+    @Transactional
+    public void purgeExpired() {
+        int deleted = eventRepository.deleteOlderThan(LocalDateTime.now().minus(retention));
+        if (deleted > 0) {
+            log.info("Purged {} expired workflow events", deleted);
+        }
+    }
+
+    private void trim(CompanyStream stream, long now) {
+        long retentionNanos = bufferRetention.toNanos();
+        while (!stream.buffer.isEmpty()
+                && (stream.buffer.size() > bufferMaxEvents
+                || now - stream.buffer.peekFirst().bufferedAt() > retentionNanos)) {
+            stream.buffer.pollFirst();
+        }
+    }
+
+    private static final class CompanyStream {
+        private final ArrayDeque<BufferedEvent> buffer = new ArrayDeque<>();
+    }
+
+    private record BufferedEvent(SequencedWorkflowEvent event, long bufferedAt) {
+    }
+}
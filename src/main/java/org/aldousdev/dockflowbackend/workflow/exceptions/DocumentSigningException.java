@@ -0,0 +1,11 @@
+package org.aldousdev.dockflowbackend.workflow.exceptions;
+
+public class DocumentSigningException extends RuntimeException {
+    public DocumentSigningException(String message) {
+        super(message);
+    }
+
+    public DocumentSigningException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,11 @@
+package org.aldousdev.dockflowbackend.workflow.exceptions;
+
+public class UploadSessionNotFoundException extends RuntimeException {
+    public UploadSessionNotFoundException(String message) {
+        super(message);
+    }
+
+    public UploadSessionNotFoundException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
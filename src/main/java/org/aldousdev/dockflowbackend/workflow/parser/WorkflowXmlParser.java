@@ -1,5 +1,7 @@
 package org.aldousdev.dockflowbackend.workflow.parser;
 
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.w3c.dom.Document;
@@ -19,6 +21,11 @@ import java.util.Map;
 
 @Slf4j
 public class WorkflowXmlParser {
+    /**
+     * Парсер статический, поэтому время пишется в глобальный реестр Micrometer,
+     * к которому Spring Boot подключает свои реестры
+     */
+    private static final String PARSE_TIMER = "workflow.xml.parse";
 
     @Data
     public static class WorkflowStep {
@@ -55,6 +62,18 @@ public class WorkflowXmlParser {
      * </workflow>
      */
     public static List<WorkflowStep> parseWorkflowSteps(String xmlContent) throws Exception {
+        Timer.Sample sample = Timer.start(Metrics.globalRegistry);
+        String outcome = "error";
+        try {
+            List<WorkflowStep> steps = doParseWorkflowSteps(xmlContent);
+            outcome = "success";
+            return steps;
+        } finally {
+            sample.stop(Metrics.globalRegistry.timer(PARSE_TIMER, "part", "steps", "outcome", outcome));
+        }
+    }
+
+    private static List<WorkflowStep> doParseWorkflowSteps(String xmlContent) throws Exception {
         log.info("Parsing workflow XML");
         
         if (xmlContent == null || xmlContent.trim().isEmpty()) {
@@ -128,7 +147,9 @@ public class WorkflowXmlParser {
         log.info("Parsing complete workflow definition with routing rules");
         
         List<WorkflowStep> steps = parseWorkflowSteps(xmlContent);
+        Timer.Sample sample = Timer.start(Metrics.globalRegistry);
         List<RoutingRule> routingRules = parseRoutingRules(xmlContent);
+        sample.stop(Metrics.globalRegistry.timer(PARSE_TIMER, "part", "routing_rules", "outcome", "success"));
         
         WorkflowDefinition definition = new WorkflowDefinition();
         definition.setSteps(steps);
@@ -1,7 +1,72 @@
 package org.aldousdev.dockflowbackend.workflow.repository;
 
 import org.aldousdev.dockflowbackend.workflow.entity.Document;
+import org.aldousdev.dockflowbackend.workflow.enums.DocumentProcessingStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 
 public interface DocumentRepository extends JpaRepository<Document, Long> {
+    @Query("SELECT d.id FROM Document d WHERE d.processingStatus = :status ORDER BY d.uploadedAt")
+    List<Long> findIdsByProcessingStatus(@Param("status") DocumentProcessingStatus status, Pageable pageable);
+
+    /**
+     * Документы, застрявшие в PROCESSING (узел упал посреди обработки)
+     */
+    @Query("SELECT d.id FROM Document d WHERE d.processingStatus = :status " +
+            "AND (d.processingStartedAt IS NULL OR d.processingStartedAt < :before) ORDER BY d.uploadedAt")
+    List<Long> findIdsStuckInStatus(@Param("status") DocumentProcessingStatus status,
+                                    @Param("before") LocalDateTime before, Pageable pageable);
+
+    /**
+     * Захват документа в обработку: PENDING или PROCESSING с истекшей арендой.
+     * 0 - документ уже взял другой узел (или он обработан)
+     */
+    @Modifying
+    @Query("UPDATE Document d SET d.processingStatus = :processing, d.processingStartedAt = :now " +
+            "WHERE d.id = :id AND (d.processingStatus = :pending " +
+            "OR (d.processingStatus = :processing AND (d.processingStartedAt IS NULL OR d.processingStartedAt < :staleBefore)))")
+    int claimForProcessing(@Param("id") Long id, @Param("now") LocalDateTime now,
+                           @Param("staleBefore") LocalDateTime staleBefore,
+                           @Param("pending") DocumentProcessingStatus pending,
+                           @Param("processing") DocumentProcessingStatus processing);
+
+    /**
+     * Продление аренды обработки; 0 - аренду перехватил другой узел
+     */
+    @Modifying
+    @Query("UPDATE Document d SET d.processingStartedAt = :now WHERE d.id = :id " +
+            "AND d.processingStatus = :processing AND d.processingStartedAt = :claimedAt")
+    int renewProcessingClaim(@Param("id") Long id, @Param("claimedAt") LocalDateTime claimedAt,
+                             @Param("now") LocalDateTime now,
+                             @Param("processing") DocumentProcessingStatus processing);
+
+    @Query("SELECT d.id AS id, d.originalFilename AS originalFilename, d.filePath AS filePath, " +
+            "d.fileSize AS fileSize, d.sha256 AS sha256, d.uploadedAt AS uploadedAt, " +
+            "u.firstName AS uploaderFirstName, u.lastName AS uploaderLastName, d.signed AS signed, " +
+            "d.processingStatus AS processingStatus, d.pageCount AS pageCount, d.title AS title, d.author AS author " +
+            "FROM Document d JOIN d.uploadedBy u WHERE d.id = :id AND d.company.id = :companyId")
+    Optional<DocumentView> findViewByIdAndCompanyId(@Param("id") Long id, @Param("companyId") Long companyId);
+
+    interface DocumentView {
+        Long getId();
+        String getOriginalFilename();
+        String getFilePath();
+        Long getFileSize();
+        String getSha256();
+        LocalDateTime getUploadedAt();
+        String getUploaderFirstName();
+        String getUploaderLastName();
+        Boolean getSigned();
+        DocumentProcessingStatus getProcessingStatus();
+        Integer getPageCount();
+        String getTitle();
+        String getAuthor();
+    }
 }
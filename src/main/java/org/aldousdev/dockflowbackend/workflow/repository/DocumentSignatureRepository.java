@@ -0,0 +1,34 @@
+package org.aldousdev.dockflowbackend.workflow.repository;
+
+import org.aldousdev.dockflowbackend.workflow.entity.DocumentSignature;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface DocumentSignatureRepository extends JpaRepository<DocumentSignature, Long> {
+
+    @Query("SELECT s FROM DocumentSignature s JOIN FETCH s.document d JOIN FETCH d.company WHERE s.id = :id")
+    Optional<DocumentSignature> findByIdWithDocument(@Param("id") Long id);
+
+    /**
+     * Подписи, которые еще не записаны в PDF и не заняты другим узлом (например, после рестарта)
+     */
+    @Query("SELECT s.id FROM DocumentSignature s WHERE s.appliedAt IS NULL AND s.failureReason IS NULL " +
+            "AND (s.claimedAt IS NULL OR s.claimedAt < :staleBefore) ORDER BY s.id")
+    List<Long> findPendingIds(@Param("staleBefore") LocalDateTime staleBefore, Pageable pageable);
+
+    /**
+     * Захват подписи узлом; 0 - подпись уже записана, провалена или ее пишет другой узел
+     */
+    @Modifying
+    @Query("UPDATE DocumentSignature s SET s.claimedAt = :now, s.attempts = s.attempts + 1 " +
+            "WHERE s.id = :id AND s.appliedAt IS NULL AND s.failureReason IS NULL " +
+            "AND (s.claimedAt IS NULL OR s.claimedAt < :staleBefore)")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+}
@@ -0,0 +1,7 @@
+package org.aldousdev.dockflowbackend.workflow.repository;
+
+import org.aldousdev.dockflowbackend.workflow.entity.DocumentText;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface DocumentTextRepository extends JpaRepository<DocumentText, Long> {
+}
@@ -0,0 +1,21 @@
+package org.aldousdev.dockflowbackend.workflow.repository;
+
+import org.aldousdev.dockflowbackend.workflow.entity.EmailOutboxMessage;
+import org.aldousdev.dockflowbackend.workflow.enums.EmailOutboxStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxMessage, Long> {
+
+    long countByStatus(EmailOutboxStatus status);
+
+    long countByRecipientAndCreatedAtAfter(String recipient, LocalDateTime after);
+
+    @Modifying
+    @Query("DELETE FROM EmailOutboxMessage m WHERE m.status = :status AND m.sentAt < :before")
+    int deleteSentBefore(@Param("status") EmailOutboxStatus status, @Param("before") LocalDateTime before);
+}
@@ -0,0 +1,24 @@
+package org.aldousdev.dockflowbackend.workflow.repository;
+
+import org.aldousdev.dockflowbackend.workflow.entity.NotificationDigestItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface NotificationDigestItemRepository extends JpaRepository<NotificationDigestItem, Long> {
+
+    /**
+     * Срок отправки уже накопленной сводки пользователя (null - сводки нет)
+     */
+    @Query("SELECT MIN(i.deliverAfter) FROM NotificationDigestItem i WHERE i.userId = :userId")
+    LocalDateTime findDeliverAfter(@Param("userId") Long userId);
+
+    @Query("SELECT MIN(i.recipient) FROM NotificationDigestItem i WHERE i.userId = :userId")
+    String findRecipient(@Param("userId") Long userId);
+
+    @Query("SELECT DISTINCT i.userId FROM NotificationDigestItem i WHERE i.deliverAfter <= :now")
+    List<Long> findDueUserIds(@Param("now") LocalDateTime now);
+}
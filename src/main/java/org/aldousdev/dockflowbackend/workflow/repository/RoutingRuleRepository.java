@@ -1,9 +1,12 @@
 package org.aldousdev.dockflowbackend.workflow.repository;
 
+import jakarta.persistence.QueryHint;
 import org.aldousdev.dockflowbackend.workflow.entity.RoutingRule;
 import org.aldousdev.dockflowbackend.workflow.entity.WorkflowTemplate;
 import org.aldousdev.dockflowbackend.workflow.enums.RoutingType;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -11,13 +14,16 @@ import java.util.Optional;
 
 @Repository
 public interface RoutingRuleRepository extends JpaRepository<RoutingRule, Long> {
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     List<RoutingRule> findByTemplate(WorkflowTemplate template);
 
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Optional<RoutingRule> findByTemplateAndStepOrderAndRoutingType(
             WorkflowTemplate template,
             Integer stepOrder,
             RoutingType routingType
     );
 
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     List<RoutingRule> findByTemplateAndStepOrder(WorkflowTemplate template, Integer stepOrder);
 }
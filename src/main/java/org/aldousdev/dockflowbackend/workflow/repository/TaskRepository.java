@@ -8,6 +8,8 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,4 +27,44 @@ public interface TaskRepository extends JpaRepository<Task, Long> {
     @Query("SELECT t FROM Task t WHERE t.status = :status AND t.requiredRoleName = :roleName")
     List<Task> findByStatusAndRequiredRoleName(@Param("status") TaskStatus status, 
                                                @Param("roleName") String roleName);
+
+    @Query("SELECT t.id AS id, t.workflowInstance.id AS workflowInstanceId, wi.document.company.id AS companyId, " +
+            "t.stepOrder AS stepOrder, t.requiredRoleName AS requiredRoleName, t.requiredRoleLevel AS requiredRoleLevel, " +
+            "t.status AS status, t.comment AS comment, t.createdAt AS createdAt, t.completedAt AS completedAt, " +
+            "u.firstName AS completedByFirstName, u.lastName AS completedByLastName " +
+            "FROM Task t JOIN t.workflowInstance wi LEFT JOIN t.completedBy u " +
+            "WHERE t.workflowInstance.id IN :instanceIds ORDER BY t.stepOrder, t.id")
+    List<TaskView> findViewsByInstanceIds(@Param("instanceIds") Collection<Long> instanceIds);
+
+    @Query("SELECT t.id AS id, t.workflowInstance.id AS workflowInstanceId, wi.document.company.id AS companyId, " +
+            "t.stepOrder AS stepOrder, t.requiredRoleName AS requiredRoleName, t.requiredRoleLevel AS requiredRoleLevel, " +
+            "t.status AS status, t.comment AS comment, t.createdAt AS createdAt, t.completedAt AS completedAt, " +
+            "u.firstName AS completedByFirstName, u.lastName AS completedByLastName " +
+            "FROM Task t JOIN t.workflowInstance wi LEFT JOIN t.completedBy u " +
+            "WHERE wi.document.id = :documentId ORDER BY wi.id, t.stepOrder, t.id")
+    List<TaskView> findViewsByDocumentId(@Param("documentId") Long documentId);
+
+    @Query("SELECT t.id AS id, t.workflowInstance.id AS workflowInstanceId, wi.document.company.id AS companyId, " +
+            "t.stepOrder AS stepOrder, t.requiredRoleName AS requiredRoleName, t.requiredRoleLevel AS requiredRoleLevel, " +
+            "t.status AS status, t.comment AS comment, t.createdAt AS createdAt, t.completedAt AS completedAt, " +
+            "u.firstName AS completedByFirstName, u.lastName AS completedByLastName " +
+            "FROM Task t JOIN t.workflowInstance wi LEFT JOIN t.completedBy u " +
+            "WHERE t.status = :status AND t.requiredRoleName = :roleName")
+    List<TaskView> findViewsByStatusAndRequiredRoleName(@Param("status") TaskStatus status,
+                                                        @Param("roleName") String roleName);
+
+    interface TaskView {
+        Long getId();
+        Long getWorkflowInstanceId();
+        Long getCompanyId();
+        Integer getStepOrder();
+        String getRequiredRoleName();
+        Integer getRequiredRoleLevel();
+        TaskStatus getStatus();
+        String getComment();
+        LocalDateTime getCreatedAt();
+        LocalDateTime getCompletedAt();
+        String getCompletedByFirstName();
+        String getCompletedByLastName();
+    }
 }
@@ -0,0 +1,56 @@
+package org.aldousdev.dockflowbackend.workflow.repository;
+
+import org.aldousdev.dockflowbackend.workflow.entity.UploadSession;
+import org.aldousdev.dockflowbackend.workflow.enums.UploadSessionStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    boolean existsByIdAndStatus(String id, UploadSessionStatus status);
+
+    @Query(value = "SELECT chunk_index FROM upload_session_chunks WHERE session_id = :sessionId", nativeQuery = true)
+    List<Integer> findReceivedChunks(@Param("sessionId") String sessionId);
+
+    /**
+     * Повторная отправка чанка (в том числе с другого узла) ничего не меняет
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO upload_session_chunks (session_id, chunk_index) VALUES (:sessionId, :chunkIndex) " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    void markReceived(@Param("sessionId") String sessionId, @Param("chunkIndex") int chunkIndex);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE UploadSession s SET s.lastActivityAt = :now WHERE s.id = :id")
+    void touch(@Param("id") String id, @Param("now") LocalDateTime now);
+
+    /**
+     * Переводит сессию из from в to; 0 - сессию уже забрал другой запрос или узел
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE UploadSession s SET s.status = :to WHERE s.id = :id AND s.status = :from")
+    int transition(@Param("id") String id, @Param("from") UploadSessionStatus from,
+                   @Param("to") UploadSessionStatus to);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM UploadSession s WHERE s.id = :id")
+    int deleteSession(@Param("id") String id);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM UploadSession s WHERE s.id = :id AND s.lastActivityAt < :deadline")
+    int deleteIfStale(@Param("id") String id, @Param("deadline") LocalDateTime deadline);
+
+    @Query("SELECT s.id FROM UploadSession s WHERE s.lastActivityAt < :deadline")
+    List<String> findStaleIds(@Param("deadline") LocalDateTime deadline);
+}
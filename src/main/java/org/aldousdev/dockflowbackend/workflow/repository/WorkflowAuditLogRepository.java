@@ -23,12 +23,33 @@ public interface WorkflowAuditLogRepository extends JpaRepository<WorkflowAuditL
     @Query("SELECT log FROM WorkflowAuditLog log WHERE log.workflowInstance = :instance ORDER BY log.createdAt DESC")
     List<WorkflowAuditLog> findByWorkflowInstanceOrderedByTime(@Param("instance") WorkflowInstance instance);
 
-    @Query("SELECT log FROM WorkflowAuditLog log WHERE log.actionType IN :actionTypes ORDER BY log.createdAt DESC")
-    Page<WorkflowAuditLog> findByActionTypes(@Param("actionTypes") List<String> actionTypes, Pageable pageable);
+    @Query("SELECT log.id AS id, log.actionType AS actionType, log.description AS description, " +
+            "u.email AS performedByEmail, log.createdAt AS createdAt, log.metadata AS metadata, log.ipAddress AS ipAddress " +
+            "FROM WorkflowAuditLog log LEFT JOIN log.performedBy u " +
+            "WHERE log.workflowInstance.id = :instanceId AND log.createdAt >= :since ORDER BY log.createdAt DESC")
+    List<AuditLogView> findViewsByInstanceId(@Param("instanceId") Long instanceId, @Param("since") LocalDateTime since);
+
+    /**
+     * since отсекает партиции старше нужного периода
+     */
+    @Query("SELECT log FROM WorkflowAuditLog log WHERE log.actionType IN :actionTypes AND log.createdAt >= :since " +
+            "ORDER BY log.createdAt DESC")
+    Page<WorkflowAuditLog> findByActionTypes(@Param("actionTypes") List<String> actionTypes,
+                                             @Param("since") LocalDateTime since, Pageable pageable);
 
     @Query("SELECT log FROM WorkflowAuditLog log WHERE log.createdAt BETWEEN :start AND :end ORDER BY log.createdAt DESC")
     List<WorkflowAuditLog> findByDateRange(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
     @Query("SELECT COUNT(log) FROM WorkflowAuditLog log WHERE log.actionType = :actionType AND log.workflowInstance = :instance")
     Long countActionsByType(@Param("actionType") String actionType, @Param("instance") WorkflowInstance instance);
+
+    interface AuditLogView {
+        Long getId();
+        String getActionType();
+        String getDescription();
+        String getPerformedByEmail();
+        LocalDateTime getCreatedAt();
+        String getMetadata();
+        String getIpAddress();
+    }
 }
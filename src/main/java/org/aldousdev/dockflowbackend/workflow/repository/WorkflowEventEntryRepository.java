@@ -0,0 +1,24 @@
+package org.aldousdev.dockflowbackend.workflow.repository;
+
+import org.aldousdev.dockflowbackend.workflow.entity.WorkflowEventEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface WorkflowEventEntryRepository extends JpaRepository<WorkflowEventEntry, Long> {
+
+    @Query("SELECT e FROM WorkflowEventEntry e WHERE e.companyId = :companyId AND e.sequence > :since ORDER BY e.sequence")
+    List<WorkflowEventEntry> findSince(@Param("companyId") Long companyId, @Param("since") Long since, Pageable pageable);
+
+    @Query("SELECT MIN(e.sequence) FROM WorkflowEventEntry e WHERE e.companyId = :companyId")
+    Long findOldestSequence(@Param("companyId") Long companyId);
+
+    @Modifying
+    @Query("DELETE FROM WorkflowEventEntry e WHERE e.createdAt < :before")
+    int deleteOlderThan(@Param("before") LocalDateTime before);
+}
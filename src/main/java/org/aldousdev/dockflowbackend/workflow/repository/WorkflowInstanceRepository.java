@@ -1,10 +1,12 @@
 package org.aldousdev.dockflowbackend.workflow.repository;
 
 import org.aldousdev.dockflowbackend.workflow.entity.WorkflowInstance;
+import org.aldousdev.dockflowbackend.workflow.enums.WorkFlowStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,4 +15,37 @@ public interface WorkflowInstanceRepository extends JpaRepository<WorkflowInstan
     Optional<WorkflowInstance> findByIdWithDocument(@Param("id") Long id);
 
     List<WorkflowInstance> findByDocumentId(Long documentId);
+
+    @Query("SELECT wi FROM WorkflowInstance wi JOIN FETCH wi.document d JOIN FETCH wi.template " +
+            "WHERE d.company.id = :companyId AND wi.status = :status")
+    List<WorkflowInstance> findByCompanyIdAndStatus(@Param("companyId") Long companyId,
+                                                    @Param("status") WorkFlowStatus status);
+
+    @Query("SELECT wi.id AS id, wi.document.id AS documentId, wi.template.id AS templateId, wi.status AS status, " +
+            "wi.startedAt AS startedAt, wi.completedAt AS completedAt, " +
+            "u.firstName AS initiatorFirstName, u.lastName AS initiatorLastName " +
+            "FROM WorkflowInstance wi JOIN wi.initiatedBy u WHERE wi.id = :id")
+    Optional<InstanceView> findViewById(@Param("id") Long id);
+
+    @Query("SELECT wi.id AS id, wi.document.id AS documentId, wi.template.id AS templateId, wi.status AS status, " +
+            "wi.startedAt AS startedAt, wi.completedAt AS completedAt, " +
+            "u.firstName AS initiatorFirstName, u.lastName AS initiatorLastName " +
+            "FROM WorkflowInstance wi JOIN wi.initiatedBy u " +
+            "WHERE wi.document.company.id = :companyId AND wi.status = :status")
+    List<InstanceView> findViewsByCompanyIdAndStatus(@Param("companyId") Long companyId,
+                                                     @Param("status") WorkFlowStatus status);
+
+    @Query("SELECT wi.startedAt FROM WorkflowInstance wi WHERE wi.id = :id")
+    Optional<LocalDateTime> findStartedAt(@Param("id") Long id);
+
+    interface InstanceView {
+        Long getId();
+        Long getDocumentId();
+        Long getTemplateId();
+        WorkFlowStatus getStatus();
+        LocalDateTime getStartedAt();
+        LocalDateTime getCompletedAt();
+        String getInitiatorFirstName();
+        String getInitiatorLastName();
+    }
 }
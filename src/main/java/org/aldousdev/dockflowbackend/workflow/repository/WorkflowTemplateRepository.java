@@ -1,10 +1,42 @@
 package org.aldousdev.dockflowbackend.workflow.repository;
 
+import jakarta.persistence.QueryHint;
 import org.aldousdev.dockflowbackend.workflow.entity.WorkflowTemplate;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface WorkflowTemplateRepository extends JpaRepository<WorkflowTemplate, Long> {
+    /**
+     * Результаты в query cache; любая запись в workflow_templates через Hibernate их инвалидирует
+     */
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     List<WorkflowTemplate> findByCompanyIdAndIsActive(Long companyId, Boolean isActive);
+
+    @Query("SELECT t.id AS id, t.name AS name, t.description AS description, t.workflowXml AS workflowXml, " +
+            "t.companyId AS companyId, t.createdAt AS createdAt, t.updatedAt AS updatedAt " +
+            "FROM WorkflowTemplate t WHERE t.companyId = :companyId AND t.isActive = true")
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
+    List<TemplateView> findActiveViewsByCompanyId(@Param("companyId") Long companyId);
+
+    @Query("SELECT t.id AS id, t.name AS name, t.description AS description, t.workflowXml AS workflowXml, " +
+            "t.companyId AS companyId, t.createdAt AS createdAt, t.updatedAt AS updatedAt " +
+            "FROM WorkflowTemplate t WHERE t.id = :id")
+    Optional<TemplateView> findViewById(@Param("id") Long id);
+
+    interface TemplateView {
+        Long getId();
+        String getName();
+        String getDescription();
+        String getWorkflowXml();
+        Long getCompanyId();
+        LocalDateTime getCreatedAt();
+        LocalDateTime getUpdatedAt();
+    }
 }
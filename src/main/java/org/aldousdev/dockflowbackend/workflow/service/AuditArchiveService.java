@@ -0,0 +1,247 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.workflow.repository.WorkflowAuditLogRepository;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Холодный архив журнала workflow: отключенные помесячные партиции workflow_audit_logs
+ * лежат на диске файлами workflow_audit_logs_YYYY_MM.tsv.gz (текстовый формат COPY).
+ * Читается только по явному запросу - файл месяца распаковывается и фильтруется целиком.
+ * Файлы пишет узел, который обслуживает партиции, а читать может любой: audit.archive.dir
+ * на кластере должен быть общим хранилищем (как file.upload.dir), иначе архив виден только одному узлу
+ */
+@Service
+@Slf4j
+public class AuditArchiveService {
+    public static final String PARTITION_PREFIX = "workflow_audit_logs_";
+    public static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private static final String FILE_SUFFIX = ".tsv.gz";
+    private static final Pattern ARCHIVE_FILE = Pattern.compile(PARTITION_PREFIX + "(\\d{4}_\\d{2})\\.tsv\\.gz");
+    private static final Pattern PARTITION_NAME = Pattern.compile(PARTITION_PREFIX + "\\d{4}_\\d{2}");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Порядок колонок в файле; email автора пишется сразу, чтобы архив читался без users
+    private static final String ARCHIVE_COLUMNS = "l.id, l.workflow_instance_id, l.task_id, l.user_id, u.email, " +
+            "l.action_type, l.description, l.metadata, l.created_at, l.ip_address";
+
+    private final Path archiveDir;
+    private final int maxRows;
+
+    public AuditArchiveService(@Value("${audit.archive.dir:./audit-archive}") String archiveDir,
+                               @Value("${audit.archive.max-rows:10000}") int maxRows) {
+        this.archiveDir = Paths.get(archiveDir).toAbsolutePath().normalize();
+        this.maxRows = maxRows;
+    }
+
+    public static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(MONTH_SUFFIX);
+    }
+
+    public static YearMonth partitionMonth(String partition) {
+        if (!PARTITION_NAME.matcher(partition).matches()) {
+            throw new IllegalArgumentException("Not an audit log partition: " + partition);
+        }
+        return YearMonth.parse(partition.substring(PARTITION_PREFIX.length()), MONTH_SUFFIX);
+    }
+
+    public boolean isArchived(YearMonth month) {
+        return Files.exists(archiveFile(month));
+    }
+
+    /**
+     * Выгружает партицию в архив через COPY TO STDOUT. Файл пишется во временный .part,
+     * сбрасывается на диск и только потом атомарно переименовывается: готовый архив всегда полный
+     */
+    public Path writeArchive(Connection connection, String partition) throws SQLException, IOException {
+        Path target = archiveFile(partitionMonth(partition));
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        Files.createDirectories(archiveDir);
+
+        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        long rows;
+        try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(part)), BUFFER_SIZE)) {
+            rows = copyManager.copyOut("COPY (SELECT " + ARCHIVE_COLUMNS + " FROM " + partition + " l " +
+                    "LEFT JOIN users u ON u.id = l.user_id ORDER BY l.created_at, l.id) TO STDOUT", out);
+        }
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.info("Archived {} audit log rows from {} to {}", rows, partition, target);
+        return target;
+    }
+
+    /**
+     * Месяцы, которые есть только в архиве
+     */
+    public List<YearMonth> archivedMonths() {
+        if (!Files.isDirectory(archiveDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            return files.map(file -> ARCHIVE_FILE.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> YearMonth.parse(matcher.group(1), MONTH_SUFFIX))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list audit archive " + archiveDir, e);
+        }
+    }
+
+    /**
+     * Записи workflow из архивных месяцев в [from, to], новые первыми.
+     * Не больше audit.archive.max-rows записей: холодный путь не должен держать в памяти весь архив.
+     * Месяцы читаются от нового к старому, при обрезке теряются самые старые записи
+     */
+    public List<WorkflowAuditLogRepository.AuditLogView> findArchived(Long instanceId, LocalDateTime from,
+                                                                      LocalDateTime to) {
+        YearMonth first = YearMonth.from(from);
+        YearMonth last = YearMonth.from(to);
+        List<YearMonth> months = new ArrayList<>(archivedMonths());
+        Collections.reverse(months);
+        List<WorkflowAuditLogRepository.AuditLogView> result = new ArrayList<>();
+        for (YearMonth month : months) {
+            if (month.isBefore(first) || month.isAfter(last)) {
+                continue;
+            }
+            if (result.size() >= maxRows) {
+                log.warn("Archived audit log query for instance {} truncated at {} rows", instanceId, maxRows);
+                break;
+            }
+            result.addAll(readMonth(month, instanceId, from, to, maxRows - result.size()));
+        }
+        result.sort(Comparator.comparing(WorkflowAuditLogRepository.AuditLogView::getCreatedAt).reversed());
+        return result;
+    }
+
+    /**
+     * Последние limit подходящих записей месяца. Файл отсортирован по created_at,
+     * поэтому в памяти держится только окно из limit строк
+     */
+    private Deque<ArchivedAuditLog> readMonth(YearMonth month, Long instanceId, LocalDateTime from, LocalDateTime to,
+                                              int limit) {
+        Path file = archiveFile(month);
+        Deque<ArchivedAuditLog> newest = new ArrayDeque<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.split("\t", -1);
+                if (instanceId != null && !instanceId.toString().equals(columns[1])) {
+                    continue;
+                }
+                ArchivedAuditLog entry = parseRow(columns);
+                if (entry.getCreatedAt().isBefore(from) || entry.getCreatedAt().isAfter(to)) {
+                    continue;
+                }
+                if (newest.size() == limit) {
+                    newest.pollFirst();
+                }
+                newest.addLast(entry);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read audit archive " + file, e);
+        }
+        return newest;
+    }
+
+    /**
+     * Строка архива, колонки в порядке ARCHIVE_COLUMNS
+     */
+    static ArchivedAuditLog parseRow(String[] columns) {
+        if (columns.length != 10) {
+            throw new IllegalArgumentException("Audit archive row has " + columns.length + " columns, expected 10");
+        }
+        return new ArchivedAuditLog(Long.valueOf(columns[0]), Long.valueOf(columns[1]),
+                unescape(columns[5]), unescape(columns[6]), unescape(columns[4]),
+                LocalDateTime.parse(columns[8].replace(' ', 'T')), unescape(columns[7]), unescape(columns[9]));
+    }
+
+    private Path archiveFile(YearMonth month) {
+        return archiveDir.resolve(partitionName(month) + FILE_SUFFIX);
+    }
+
+    /**
+     * Значение колонки текстового формата COPY: \N - NULL, спецсимволы экранированы обратным слешем
+     */
+    static String unescape(String value) {
+        if (value.equals("\\N")) {
+            return null;
+        }
+        int slash = value.indexOf('\\');
+        if (slash < 0) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        out.append(value, 0, slash);
+        for (int i = slash; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 == value.length()) {
+                out.append(c);
+                continue;
+            }
+            char escaped = value.charAt(++i);
+            out.append(switch (escaped) {
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                case 't' -> '\t';
+                case 'b' -> '\b';
+                case 'f' -> '\f';
+                case 'v' -> '\u000B';
+                default -> escaped;
+            });
+        }
+        return out.toString();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static final class ArchivedAuditLog implements WorkflowAuditLogRepository.AuditLogView {
+        private final Long id;
+        private final Long workflowInstanceId;
+        private final String actionType;
+        private final String description;
+        private final String performedByEmail;
+        private final LocalDateTime createdAt;
+        private final String metadata;
+        private final String ipAddress;
+    }
+}
@@ -0,0 +1,189 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Обслуживание помесячных партиций workflow_audit_logs.
+ * Заранее создает партиции на audit.partitions.months-ahead месяцев вперед, а партиции старше
+ * audit.partitions.retention-months выгружает в AuditArchiveService, отключает и удаляет.
+ * На кластере обслуживает один узел - тот, кто взял advisory lock; покрытие для метрики читает каждый узел.
+ * DEFAULT партиции нет, поэтому без новых партиций вставки в журнал начнут падать:
+ * audit.partitions.months.ahead показывает, на сколько месяцев вперед они есть (алерт при значении < 1),
+ * audit.partitions.maintenance.failures считает неудачные запуски
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuditPartitionManager {
+    private static final long LOCK_KEY = 0x61756469745F7061L;
+
+    private static final String ATTACHED_PARTITIONS = """
+            SELECT c.relname FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'workflow_audit_logs'::regclass
+            ORDER BY c.relname""";
+
+    // Остались после сбоя между DETACH и DROP
+    private static final String DETACHED_PARTITIONS = """
+            SELECT t.tablename FROM pg_tables t
+            WHERE t.schemaname = current_schema() AND t.tablename ~ '^workflow_audit_logs_[0-9]{4}_[0-9]{2}$'
+              AND NOT EXISTS (SELECT 1 FROM pg_inherits i WHERE i.inhrelid = (quote_ident(t.tablename))::regclass)
+            ORDER BY t.tablename""";
+
+    private final DataSource dataSource;
+    private final AuditArchiveService archiveService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${audit.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${audit.partitions.retention-months:12}")
+    private int retentionMonths;
+
+    // Последний месяц непрерывного ряда партиций от текущего по pg_inherits; null, пока его ни разу не прочитали
+    private volatile YearMonth coveredThrough;
+    private Counter failureCounter;
+
+    @PostConstruct
+    void registerMetrics() {
+        failureCounter = Counter.builder("audit.partitions.maintenance.failures")
+                .description("Неудачные запуски обслуживания партиций журнала").register(meterRegistry);
+        // Считается от текущей даты при каждом скрейпе: если обслуживание перестало работать, значение падает само
+        Gauge.builder("audit.partitions.months.ahead", this, manager -> manager.monthsCovered(YearMonth.now()))
+                .description("На сколько месяцев вперед созданы партиции журнала (< 0 - текущей нет)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Первый запуск - сразу после старта, чтобы партиция текущего месяца была до первой записи
+     */
+    @Scheduled(fixedDelayString = "${audit.partitions.maintenance-interval:PT6H}")
+    public void maintain() {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            if (tryLock(connection)) {
+                try {
+                    maintainPartitions(connection);
+                } catch (Exception e) {
+                    failureCounter.increment();
+                    log.error("Audit partition maintenance failed", e);
+                } finally {
+                    unlock(connection);
+                }
+            } else {
+                log.debug("Audit partition maintenance is running on another node");
+            }
+            // Не состояние узла с lock: если он упал, остальные все равно видят, что новых партиций нет
+            coveredThrough = coveredThrough(YearMonth.now(), query(connection, ATTACHED_PARTITIONS));
+        } catch (Exception e) {
+            failureCounter.increment();
+            log.error("Audit partition maintenance failed", e);
+        }
+    }
+
+    private void maintainPartitions(Connection connection) throws Exception {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartition(connection, current.plusMonths(i));
+        }
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        for (String partition : query(connection, ATTACHED_PARTITIONS)) {
+            if (AuditArchiveService.partitionMonth(partition).isBefore(oldestKept)) {
+                archive(connection, partition, true);
+            }
+        }
+        for (String partition : query(connection, DETACHED_PARTITIONS)) {
+            archive(connection, partition, false);
+        }
+    }
+
+    double monthsCovered(YearMonth now) {
+        YearMonth covered = coveredThrough;
+        return covered == null ? Double.NaN : ChronoUnit.MONTHS.between(now, covered);
+    }
+
+    /**
+     * Последний месяц, до которого партиции идут без пропусков начиная с current; current - 1, если нет и текущей
+     */
+    static YearMonth coveredThrough(YearMonth current, Collection<String> partitions) {
+        Set<YearMonth> months = new HashSet<>();
+        for (String partition : partitions) {
+            months.add(AuditArchiveService.partitionMonth(partition));
+        }
+        YearMonth covered = current.minusMonths(1);
+        while (months.contains(covered.plusMonths(1))) {
+            covered = covered.plusMonths(1);
+        }
+        return covered;
+    }
+
+    private void createPartition(Connection connection, YearMonth month) throws SQLException {
+        String partition = AuditArchiveService.partitionName(month);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF workflow_audit_logs " +
+                    "FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+        }
+    }
+
+    /**
+     * Архив пишется до DETACH: пока файл не готов, записи остаются видны обычным запросам
+     */
+    private void archive(Connection connection, String partition, boolean attached) throws Exception {
+        archiveService.writeArchive(connection, partition);
+        try (Statement statement = connection.createStatement()) {
+            if (attached) {
+                statement.execute("ALTER TABLE workflow_audit_logs DETACH PARTITION " + partition);
+            }
+            statement.execute("DROP TABLE " + partition);
+        }
+        log.info("Audit log partition {} archived and dropped", partition);
+    }
+
+    private List<String> query(Connection connection, String sql) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        return names;
+    }
+
+    private boolean tryLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, LOCK_KEY);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private void unlock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            statement.setLong(1, LOCK_KEY);
+            statement.execute();
+        }
+    }
+}
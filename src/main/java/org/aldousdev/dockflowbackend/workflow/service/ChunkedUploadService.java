@@ -0,0 +1,469 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.auth.components.RequiresRoleLevel;
+import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.auth.service.impls.AuthServiceImpl;
+import org.aldousdev.dockflowbackend.config.AppMetrics;
+import org.aldousdev.dockflowbackend.workflow.dto.request.CreateUploadSessionRequest;
+import org.aldousdev.dockflowbackend.workflow.dto.response.DocumentResponse;
+import org.aldousdev.dockflowbackend.workflow.dto.response.UploadSessionResponse;
+import org.aldousdev.dockflowbackend.workflow.entity.UploadSession;
+import org.aldousdev.dockflowbackend.workflow.enums.UploadSessionStatus;
+import org.aldousdev.dockflowbackend.workflow.exceptions.DocumentUploadException;
+import org.aldousdev.dockflowbackend.workflow.exceptions.InvalidFileException;
+import org.aldousdev.dockflowbackend.workflow.exceptions.UploadSessionNotFoundException;
+import org.aldousdev.dockflowbackend.workflow.repository.UploadSessionRepository;
+import org.aldousdev.dockflowbackend.workflow.service.impl.DocumentServiceImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Возобновляемая загрузка больших документов по частям.
+ * Клиент создает сессию, отправляет чанки по смещению (в любом порядке и параллельно),
+ * запрашивает статус после обрыва связи и завершает загрузку.
+ * Чанки пишутся позиционно в заранее выделенный .part файл, без промежуточной склейки.
+ * Сессия и принятые чанки хранятся в базе, .part файл - в общем file.upload.dir:
+ * загрузку можно продолжить после рестарта и через другой узел.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChunkedUploadService {
+    private static final byte[] PDF_MAGIC = {'%', 'P', 'D', 'F', '-'};
+
+    private final DocumentServiceImpl documentService;
+    private final AuthServiceImpl authService;
+    private final AppMetrics metrics;
+    private final UploadSessionRepository sessionRepository;
+
+    // Открытые на этом узле .part файлы; открываются лениво при первом чанке
+    private final Map<String, OpenPart> openParts = new ConcurrentHashMap<>();
+
+    @Value("${file.upload.dir}")
+    private String uploadDir;
+
+    @Value("${file.upload.chunk-size:5MB}")
+    private DataSize chunkSize;
+
+    @Value("${file.upload.resumable-max-size:2GB}")
+    private DataSize maxResumableSize;
+
+    @Value("${file.upload.session-ttl:PT1H}")
+    private Duration sessionTtl;
+
+    /**
+     * Создает сессию загрузки и резервирует место под файл
+     */
+    @RequiresRoleLevel(value = 10, message = "Only workers and above can upload document")
+    public UploadSessionResponse createSession(CreateUploadSessionRequest request) {
+        User currentUser = authService.getCurrentUser();
+        Long companyId = documentService.resolveCurrentCompanyId(currentUser);
+
+        String filename = request.getOriginalFilename();
+        Long totalSize = request.getTotalSize();
+        if (filename == null || filename.isBlank()) {
+            throw new InvalidFileException("File name cannot be empty");
+        }
+        if (!filename.toLowerCase().endsWith(".pdf")) {
+            throw new InvalidFileException("Only PDF files are supported. Received: " + filename);
+        }
+        if (totalSize == null || totalSize <= 0) {
+            throw new InvalidFileException("File cannot be empty");
+        }
+        if (totalSize > maxResumableSize.toBytes()) {
+            throw new InvalidFileException("File is too large. Max size: " + maxResumableSize.toMegabytes() + "MB");
+        }
+
+        String sessionId = UUID.randomUUID().toString();
+        Path partFile = partFile(sessionId);
+
+        try {
+            Files.createDirectories(partFile.getParent());
+            FileChannel channel = FileChannel.open(partFile,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // Выделяем файл полного размера: чанки пишутся сразу на свои позиции
+            channel.write(ByteBuffer.wrap(new byte[1]), totalSize - 1);
+            openParts.put(sessionId, new OpenPart(channel));
+
+            LocalDateTime now = LocalDateTime.now();
+            UploadSession session = sessionRepository.save(UploadSession.builder()
+                    .id(sessionId)
+                    .userId(currentUser.getId())
+                    .companyId(companyId)
+                    .originalFilename(filename)
+                    .totalSize(totalSize)
+                    .chunkSize(chunkSize.toBytes())
+                    .status(UploadSessionStatus.OPEN)
+                    .createdAt(now)
+                    .lastActivityAt(now)
+                    .build());
+
+            log.info("Upload session {} created for {} ({} bytes, {} chunks) by user: {}",
+                    sessionId, filename, totalSize, session.getTotalChunks(), currentUser.getEmail());
+            return toResponse(session, List.of());
+        } catch (IOException e) {
+            closePart(sessionId);
+            deleteQuietly(partFile);
+            log.error("Could not allocate upload session file {}", partFile, e);
+            throw new DocumentUploadException("Error allocating upload: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            closePart(sessionId);
+            deleteQuietly(partFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Принимает один чанк. Повторная отправка того же чанка безопасна.
+     * Разные чанки одной сессии могут приниматься параллельно, в том числе разными узлами.
+     * Чанк отмечается принятым только после fsync: отмеченное в базе переживает падение узла
+     */
+    public UploadSessionResponse writeChunk(String sessionId, long offset, long length, InputStream body) {
+        UploadSession session = getOwnedSession(sessionId);
+        if (session.getStatus() != UploadSessionStatus.OPEN) {
+            throw new UploadSessionNotFoundException("Upload session is already completed: " + sessionId);
+        }
+
+        long sessionChunkSize = session.getChunkSize();
+        if (offset < 0 || offset >= session.getTotalSize() || offset % sessionChunkSize != 0) {
+            throw new InvalidFileException("Chunk offset must be a multiple of " + sessionChunkSize
+                    + " within file size " + session.getTotalSize());
+        }
+        long expected = Math.min(sessionChunkSize, session.getTotalSize() - offset);
+        if (length != expected) {
+            throw new InvalidFileException("Chunk at offset " + offset + " must be " + expected + " bytes, got " + length);
+        }
+
+        Timer.Sample sample = metrics.start();
+        boolean stored = false;
+        OpenPart part = openPart(sessionId);
+        // read lock: чанки пишутся параллельно, а complete/abort/sweeper закрывают канал под write lock
+        part.lock.readLock().lock();
+        try {
+            // Повторная проверка под блокировкой: complete сначала меняет статус, потом закрывает канал
+            if (part.closed || !sessionRepository.existsByIdAndStatus(sessionId, UploadSessionStatus.OPEN)) {
+                throw new UploadSessionNotFoundException("Upload session is already completed: " + sessionId);
+            }
+            // transferFrom пишет по абсолютной позиции и не двигает position канала
+            long written = part.channel.transferFrom(Channels.newChannel(body), offset, expected);
+            if (written != expected) {
+                throw new InvalidFileException("Chunk at offset " + offset + " is truncated: "
+                        + written + " of " + expected + " bytes");
+            }
+            part.channel.force(false);
+            stored = true;
+        } catch (IOException e) {
+            log.error("IO error writing chunk {} of session {}", offset, sessionId, e);
+            throw new DocumentUploadException("Error saving chunk: " + e.getMessage(), e);
+        } finally {
+            part.lock.readLock().unlock();
+            metrics.stop(sample, DocumentServiceImpl.UPLOAD_TIMER, session.getCompanyId(), stored, "mode", "chunk");
+        }
+        metrics.countBytes(DocumentServiceImpl.UPLOAD_BYTES, session.getCompanyId(), expected, "mode", "chunked");
+
+        sessionRepository.markReceived(sessionId, (int) (offset / sessionChunkSize));
+        sessionRepository.touch(sessionId, LocalDateTime.now());
+        log.debug("Session {}: chunk at offset {} stored", sessionId, offset);
+        return toResponse(session, sessionRepository.findReceivedChunks(sessionId));
+    }
+
+    public UploadSessionResponse getStatus(String sessionId) {
+        UploadSession session = getOwnedSession(sessionId);
+        LocalDateTime now = LocalDateTime.now();
+        sessionRepository.touch(sessionId, now);
+        session.setLastActivityAt(now);
+        return toResponse(session, sessionRepository.findReceivedChunks(sessionId));
+    }
+
+    /**
+     * Завершает загрузку: проверяет полноту, считает SHA-256 и создает Document
+     */
+    public DocumentResponse complete(String sessionId) {
+        UploadSession session = getOwnedSession(sessionId);
+        User currentUser = authService.getCurrentUser();
+
+        List<Integer> missing = missingChunks(session, sessionRepository.findReceivedChunks(sessionId));
+        if (!missing.isEmpty()) {
+            throw new InvalidFileException("Upload is incomplete, missing chunks: " + missing);
+        }
+        if (sessionRepository.transition(sessionId, UploadSessionStatus.OPEN, UploadSessionStatus.COMPLETING) == 0) {
+            throw new UploadSessionNotFoundException("Upload session is already completed: " + sessionId);
+        }
+        // Ждем запись чанков, начатых на этом узле до смены статуса
+        closePart(sessionId);
+
+        Path partFile = partFile(sessionId);
+        Path target = null;
+        try {
+            String sha256;
+            try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.READ)) {
+                sha256 = hashAndValidate(channel);
+            }
+
+            Path companyDir = Paths.get(uploadDir, "company-" + session.getCompanyId());
+            Files.createDirectories(companyDir);
+            target = companyDir.resolve(DocumentServiceImpl.buildStoredFileName(session.getOriginalFilename()));
+            Files.move(partFile, target, StandardCopyOption.ATOMIC_MOVE);
+
+            log.info("Upload session {} completed, file moved to {}", sessionId, target);
+            DocumentResponse response = documentService.registerStoredDocument(session.getCompanyId(), currentUser,
+                    session.getOriginalFilename(), target, session.getTotalSize(), sha256);
+            sessionRepository.deleteSession(sessionId);
+            return response;
+        } catch (IOException e) {
+            discard(sessionId, target);
+            log.error("IO error completing upload session {}", sessionId, e);
+            throw new DocumentUploadException("Error completing upload: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            discard(sessionId, target);
+            throw e;
+        }
+    }
+
+    public void abort(String sessionId) {
+        getOwnedSession(sessionId);
+        if (sessionRepository.deleteSession(sessionId) > 0) {
+            closePart(sessionId);
+            deleteQuietly(partFile(sessionId));
+            log.info("Upload session {} aborted", sessionId);
+        }
+    }
+
+    /**
+     * Удаляет брошенные сессии и .part файлы без сессии (например, после сбоя при создании)
+     */
+    @Scheduled(fixedDelayString = "${file.upload.session-sweep-interval:PT5M}")
+    public void sweepStaleSessions() {
+        LocalDateTime deadline = LocalDateTime.now().minus(sessionTtl);
+
+        for (String sessionId : sessionRepository.findStaleIds(deadline)) {
+            // Условное удаление: сессию могли тронуть с другого узла после выборки
+            if (sessionRepository.deleteIfStale(sessionId, deadline) > 0) {
+                log.info("Discarding stale upload session {}", sessionId);
+                closePart(sessionId);
+                deleteQuietly(partFile(sessionId));
+            }
+        }
+
+        // Каналы сессий, удаленных или завершенных другим узлом
+        openParts.keySet().removeIf(sessionId -> {
+            if (sessionRepository.existsById(sessionId)) {
+                return false;
+            }
+            OpenPart part = openParts.get(sessionId);
+            if (part != null) {
+                part.close();
+            }
+            return true;
+        });
+
+        Path dir = sessionsDir();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        Instant fileDeadline = Instant.now().minus(sessionTtl);
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> p.getFileName().toString().endsWith(".part"))
+                    .filter(p -> isOlderThan(p, fileDeadline))
+                    .filter(p -> !sessionRepository.existsById(p.getFileName().toString().replace(".part", "")))
+                    .forEach(this::deleteQuietly);
+        } catch (IOException e) {
+            log.warn("Could not sweep upload directory {}: {}", dir, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void closeOpenChannels() {
+        // Сессии и файлы остаются: загрузку продолжат после рестарта или на другом узле
+        openParts.values().forEach(OpenPart::close);
+        openParts.clear();
+    }
+
+    private UploadSession getOwnedSession(String sessionId) {
+        UploadSession session = sessionRepository.findById(sessionId)
+                .orElseThrow(() -> new UploadSessionNotFoundException("Upload session not found: " + sessionId));
+        User currentUser = authService.getCurrentUser();
+        if (!session.getUserId().equals(currentUser.getId())) {
+            log.warn("User {} tried to access upload session {} of another user", currentUser.getEmail(), sessionId);
+            throw new UploadSessionNotFoundException("Upload session not found: " + sessionId);
+        }
+        return session;
+    }
+
+    private OpenPart openPart(String sessionId) {
+        try {
+            return openParts.computeIfAbsent(sessionId, id -> {
+                try {
+                    return new OpenPart(FileChannel.open(partFile(id), StandardOpenOption.READ, StandardOpenOption.WRITE));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            log.error("Could not open upload part of session {}", sessionId, e.getCause());
+            throw new DocumentUploadException("Error opening upload: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Закрывает канал под write lock - после возврата на этом узле в файл никто не пишет
+     */
+    private void closePart(String sessionId) {
+        OpenPart part = openParts.remove(sessionId);
+        if (part != null) {
+            part.close();
+        }
+    }
+
+    private String hashAndValidate(FileChannel channel) throws IOException {
+        MessageDigest digest = DocumentServiceImpl.newSha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        long position = 0;
+        boolean first = true;
+
+        while (channel.read(buffer, position) > 0) {
+            buffer.flip();
+            if (first) {
+                checkPdfHeader(buffer);
+                first = false;
+            }
+            position += buffer.remaining();
+            digest.update(buffer);
+            buffer.clear();
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void checkPdfHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < PDF_MAGIC.length) {
+            throw new InvalidFileException("Uploaded file is not a PDF");
+        }
+        for (int i = 0; i < PDF_MAGIC.length; i++) {
+            if (buffer.get(buffer.position() + i) != PDF_MAGIC[i]) {
+                throw new InvalidFileException("Uploaded file is not a PDF");
+            }
+        }
+    }
+
+    /**
+     * Неудачное завершение: удаляется файл там, где он сейчас - .part или уже перемещенный
+     */
+    private void discard(String sessionId, Path movedTarget) {
+        sessionRepository.deleteSession(sessionId);
+        deleteQuietly(partFile(sessionId));
+        if (movedTarget != null) {
+            deleteQuietly(movedTarget);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete upload file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private boolean isOlderThan(Path path, Instant deadline) {
+        try {
+            return Files.getLastModifiedTime(path).toInstant().isBefore(deadline);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Path sessionsDir() {
+        return Paths.get(uploadDir, "sessions");
+    }
+
+    private Path partFile(String sessionId) {
+        return sessionsDir().resolve(sessionId + ".part");
+    }
+
+    private static List<Integer> missingChunks(UploadSession session, List<Integer> receivedChunks) {
+        BitSet received = new BitSet(session.getTotalChunks());
+        receivedChunks.forEach(received::set);
+        List<Integer> missing = new ArrayList<>();
+        for (int i = received.nextClearBit(0); i < session.getTotalChunks(); i = received.nextClearBit(i + 1)) {
+            missing.add(i);
+        }
+        return missing;
+    }
+
+    private UploadSessionResponse toResponse(UploadSession session, List<Integer> receivedChunks) {
+        int totalChunks = session.getTotalChunks();
+        List<Integer> missing = missingChunks(session, receivedChunks);
+        long received = (long) (totalChunks - missing.size()) * session.getChunkSize();
+        if (!missing.contains(totalChunks - 1)) {
+            // последний чанк может быть короче остальных
+            received -= (long) totalChunks * session.getChunkSize() - session.getTotalSize();
+        }
+
+        return UploadSessionResponse.builder()
+                .sessionId(session.getId())
+                .originalFilename(session.getOriginalFilename())
+                .totalSize(session.getTotalSize())
+                .chunkSize(session.getChunkSize())
+                .totalChunks(totalChunks)
+                .receivedBytes(received)
+                .missingChunks(missing)
+                .expiresAt(session.getLastActivityAt().plus(sessionTtl))
+                .build();
+    }
+
+    /**
+     * Открытый на этом узле канал .part файла и блокировка его жизненного цикла
+     */
+    private static final class OpenPart {
+        private final FileChannel channel;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private boolean closed;
+
+        private OpenPart(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void close() {
+            lock.writeLock().lock();
+            try {
+                closed = true;
+                channel.close();
+            } catch (IOException ignored) {
+                // канал уже закрыт
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfDocumentInfo;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.workflow.entity.Document;
+import org.aldousdev.dockflowbackend.workflow.entity.DocumentText;
+import org.aldousdev.dockflowbackend.workflow.enums.DocumentProcessingStatus;
+import org.aldousdev.dockflowbackend.workflow.event.WorkflowEventBroadcaster;
+import org.aldousdev.dockflowbackend.workflow.repository.DocumentRepository;
+import org.aldousdev.dockflowbackend.workflow.repository.DocumentTextRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фоновая обработка загруженных PDF: количество страниц, метаданные,
+ * текст (для поиска) и превью первой страницы.
+ * Загрузка не ждет обработки: задача ставится в ограниченную очередь после коммита.
+ * Узлов несколько, поэтому документ сначала захватывается условным UPDATE (claimForProcessing),
+ * а processing_started_at служит арендой: пока обработка идет, она продлевается,
+ * и результат пишется, только если аренда все еще у этого узла
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentProcessingService {
+    private final DocumentRepository documentRepository;
+    private final DocumentTextRepository documentTextRepository;
+    private final WorkflowEventBroadcaster eventBroadcaster;
+    private final PlatformTransactionManager transactionManager;
+    private final DocumentSearchService documentSearchService;
+
+    @Value("${document.processing.parallelism:2}")
+    private int parallelism;
+
+    @Value("${document.processing.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${document.processing.max-text-chars:5000000}")
+    private int maxTextChars;
+
+    @Value("${document.processing.stale-after:PT30M}")
+    private Duration staleAfter;
+
+    private ThreadPoolExecutor executor;
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Документы, которые уже стоят в очереди или обрабатываются
+     */
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "pdf-processing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        log.info("Document processing pipeline started: parallelism={}, queueCapacity={}", parallelism, queueCapacity);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ставит документ в очередь после коммита текущей транзакции
+     */
+    public void submitAfterCommit(Long documentId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(documentId);
+                }
+            });
+        } else {
+            submit(documentId);
+        }
+    }
+
+    /**
+     * Ставит документ в очередь. Если очередь заполнена, документ остается PENDING
+     * и будет подхвачен resubmitPending()
+     */
+    public boolean submit(Long documentId) {
+        if (!inFlight.add(documentId)) {
+            return true;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    process(documentId);
+                } finally {
+                    inFlight.remove(documentId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(documentId);
+            log.warn("Processing queue is full, document {} stays PENDING", documentId);
+            return false;
+        }
+    }
+
+    /**
+     * Подхватывает PENDING документы (переполнение очереди, рестарт приложения) и документы,
+     * застрявшие в PROCESSING дольше document.processing.stale-after (узел упал посреди обработки)
+     */
+    @Scheduled(fixedDelayString = "${document.processing.resubmit-interval:PT1M}")
+    public void resubmitPending() {
+        int freeSlots = executor.getQueue().remainingCapacity();
+        if (freeSlots == 0) {
+            return;
+        }
+        for (Long documentId : documentRepository.findIdsByProcessingStatus(
+                DocumentProcessingStatus.PENDING, PageRequest.of(0, freeSlots))) {
+            if (!submit(documentId)) {
+                return;
+            }
+        }
+
+        freeSlots = executor.getQueue().remainingCapacity();
+        if (freeSlots == 0) {
+            return;
+        }
+        for (Long documentId : documentRepository.findIdsStuckInStatus(DocumentProcessingStatus.PROCESSING,
+                LocalDateTime.now().minus(staleAfter), PageRequest.of(0, freeSlots))) {
+            // Документы, которые обрабатывает этот узел, submit пропустит сам
+            if (!inFlight.contains(documentId)) {
+                log.warn("Document {} is stuck in PROCESSING, resubmitting", documentId);
+            }
+            if (!submit(documentId)) {
+                return;
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    void process(Long documentId) {
+        LocalDateTime claimedAt = now();
+        ProcessingTarget target = transactionTemplate.execute(status -> {
+            if (documentRepository.claimForProcessing(documentId, claimedAt, claimedAt.minus(staleAfter),
+                    DocumentProcessingStatus.PENDING, DocumentProcessingStatus.PROCESSING) == 0) {
+                return null;
+            }
+            Document document = documentRepository.findById(documentId).orElseThrow();
+            return new ProcessingTarget(document.getCompany().getId(), Paths.get(document.getFilePath()));
+        });
+        if (target == null) {
+            log.debug("Document {} is processed or claimed by another node", documentId);
+            return;
+        }
+        ProcessingClaim claim = new ProcessingClaim(documentId, claimedAt);
+
+        log.info("Processing document {} ({})", documentId, target.file());
+        eventBroadcaster.broadcastDocumentProcessing(target.companyId(), documentId,
+                DocumentProcessingStatus.PROCESSING.name(), 0);
+
+        try (PdfDocument pdf = new PdfDocument(new PdfReader(target.file().toString()))) {
+            int pageCount = pdf.getNumberOfPages();
+            PdfDocumentInfo info = pdf.getDocumentInfo();
+
+            StringBuilder text = new StringBuilder();
+            boolean truncated = false;
+            int lastReported = 0;
+            for (int page = 1; page <= pageCount; page++) {
+                claim.renewIfDue();
+                if (text.length() < maxTextChars) {
+                    text.append(PdfTextExtractor.getTextFromPage(pdf.getPage(page))).append('\n');
+                } else {
+                    truncated = true;
+                }
+
+                int progress = page * 100 / pageCount;
+                if (progress - lastReported >= 10 && page < pageCount) {
+                    lastReported = progress;
+                    eventBroadcaster.broadcastDocumentProcessing(target.companyId(), documentId,
+                            DocumentProcessingStatus.PROCESSING.name(), progress);
+                }
+            }
+            if (text.length() > maxTextChars) {
+                text.setLength(maxTextChars);
+                truncated = true;
+            }
+
+            Path previewPath = writePreview(pdf, target.file());
+            boolean textTruncated = truncated;
+
+            transactionTemplate.executeWithoutResult(status -> {
+                claim.renew();
+                documentTextRepository.save(DocumentText.builder()
+                        .documentId(documentId)
+                        .content(text.toString())
+                        .truncated(textTruncated)
+                        .extractedAt(LocalDateTime.now())
+                        .build());
+
+                documentRepository.findById(documentId).ifPresent(document -> {
+                    document.setPageCount(pageCount);
+                    document.setTitle(limit(info.getTitle()));
+                    document.setAuthor(limit(info.getAuthor()));
+                    document.setSubject(limit(info.getSubject()));
+                    document.setCreator(limit(info.getCreator()));
+                    document.setPreviewPath(previewPath != null ? previewPath.toString() : null);
+                    document.setProcessingStatus(DocumentProcessingStatus.COMPLETED);
+                    document.setProcessingError(null);
+                    document.setProcessedAt(LocalDateTime.now());
+                });
+            });
+
+            documentSearchService.index(documentId);
+
+            log.info("Document {} processed: {} pages, {} chars of text", documentId, pageCount, text.length());
+            eventBroadcaster.broadcastDocumentProcessing(target.companyId(), documentId,
+                    DocumentProcessingStatus.COMPLETED.name(), 100);
+        } catch (ClaimLostException e) {
+            log.warn("Document {} was claimed by another node, dropping this node's result", documentId);
+        } catch (Exception e) {
+            log.error("Failed to process document {}", documentId, e);
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+
+            Boolean failed = transactionTemplate.execute(status -> {
+                if (!claim.tryRenew()) {
+                    return false;
+                }
+                documentRepository.findById(documentId).ifPresent(document -> {
+                    document.setProcessingStatus(DocumentProcessingStatus.FAILED);
+                    document.setProcessingError(error.length() > 1000 ? error.substring(0, 1000) : error);
+                    document.setProcessedAt(LocalDateTime.now());
+                });
+                return true;
+            });
+            if (Boolean.TRUE.equals(failed)) {
+                eventBroadcaster.broadcastDocumentProcessing(target.companyId(), documentId,
+                        DocumentProcessingStatus.FAILED.name(), 100);
+            }
+        }
+    }
+
+    // Точность колонки timestamp(6): значение сравнивается на равенство при продлении аренды
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    /**
+     * Аренда документа этим узлом. Продлевается каждые stale-after / 3, чтобы большой PDF
+     * не считался зависшим и не был перехвачен resubmitPending другого узла
+     */
+    private final class ProcessingClaim {
+        private final Long documentId;
+        private LocalDateTime claimedAt;
+
+        private ProcessingClaim(Long documentId, LocalDateTime claimedAt) {
+            this.documentId = documentId;
+            this.claimedAt = claimedAt;
+        }
+
+        void renewIfDue() {
+            if (Duration.between(claimedAt, LocalDateTime.now()).compareTo(staleAfter.dividedBy(3)) >= 0) {
+                renew();
+            }
+        }
+
+        void renew() {
+            if (!tryRenew()) {
+                throw new ClaimLostException();
+            }
+        }
+
+        boolean tryRenew() {
+            LocalDateTime renewedAt = now();
+            Integer updated = transactionTemplate.execute(status -> documentRepository.renewProcessingClaim(
+                    documentId, claimedAt, renewedAt, DocumentProcessingStatus.PROCESSING));
+            if (updated == null || updated == 0) {
+                return false;
+            }
+            claimedAt = renewedAt;
+            return true;
+        }
+    }
+
+    private static final class ClaimLostException extends RuntimeException {
+    }
+
+    /**
+     * Превью первой страницы: отдельный одностраничный PDF рядом с оригиналом.
+     * Растеризация в iText core недоступна, а браузер показывает одну страницу PDF без проблем.
+     */
+    private Path writePreview(PdfDocument pdf, Path original) {
+        if (pdf.getNumberOfPages() == 0) {
+            return null;
+        }
+        Path previewPath = original.resolveSibling(original.getFileName() + ".preview.pdf");
+        try (PdfDocument preview = new PdfDocument(new PdfWriter(previewPath.toString()))) {
+            pdf.copyPagesTo(1, 1, preview);
+            return previewPath;
+        } catch (Exception e) {
+            log.warn("Could not render preview for {}: {}", original, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String limit(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.length() > 255 ? value.substring(0, 255) : value;
+    }
+
+    private record ProcessingTarget(Long companyId, Path file) {
+    }
+}
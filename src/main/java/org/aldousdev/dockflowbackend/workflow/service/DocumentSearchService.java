@@ -0,0 +1,328 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.auth.components.RequiresRoleLevel;
+import org.aldousdev.dockflowbackend.auth.service.impls.AuthServiceImpl;
+import org.aldousdev.dockflowbackend.workflow.dto.response.DocumentSearchHit;
+import org.aldousdev.dockflowbackend.workflow.dto.response.DocumentSearchResponse;
+import org.aldousdev.dockflowbackend.workflow.enums.WorkFlowStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.util.HtmlUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Полнотекстовый поиск документов компании.
+ * Индекс - таблица document_search_entries с GIN (company_id, search_vector), обновляется инкрементально:
+ * при загрузке, после извлечения текста и при смене статуса workflow.
+ * Веса: имя файла (A) > загрузивший (B) > текст документа (C).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentSearchService {
+    // Маркеры подсветки: заменяются на <mark> после HTML-экранирования текста
+    private static final String START_SEL = "\u0001";
+    private static final String STOP_SEL = "\u0002";
+
+    private static final String PROGRAM_LIMIT_EXCEEDED = "54000";
+    private static final int MIN_INDEXED_CHARS = 10_000;
+
+    private static final String UPSERT_ENTRY = """
+            INSERT INTO document_search_entries
+                (document_id, company_id, original_filename, uploader_name, workflow_status, uploaded_at, indexed_at, search_vector)
+            SELECT d.id, d.company_id, d.original_filename,
+                   u.first_name || ' ' || u.last_name,
+                   (SELECT wi.status FROM workflow_instances wi WHERE wi.document_id = d.id
+                    ORDER BY wi.id DESC LIMIT 1),
+                   d.uploaded_at, now(),
+                   setweight(to_tsvector('simple', coalesce(d.original_filename, '')), 'A')
+                   || setweight(to_tsvector('simple', coalesce(u.first_name, '') || ' ' || coalesce(u.last_name, '')), 'B')
+                   || setweight(to_tsvector('simple', left(coalesce(t.content, ''), ?)), 'C')
+            FROM documents d
+            JOIN users u ON u.id = d.uploaded_by
+            LEFT JOIN document_texts t ON t.document_id = d.id
+            WHERE d.id = ?
+            ON CONFLICT (document_id) DO UPDATE SET
+                original_filename = EXCLUDED.original_filename,
+                uploader_name = EXCLUDED.uploader_name,
+                workflow_status = EXCLUDED.workflow_status,
+                indexed_at = EXCLUDED.indexed_at,
+                search_vector = EXCLUDED.search_vector
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuthServiceImpl authService;
+
+    // tsvector ограничен 1MB; при уникальных коротких словах (кириллица - 2 байта на символ)
+    // 200 тысяч символов дают порядка 700KB
+    @Value("${document.search.max-indexed-chars:200000}")
+    private int maxIndexedChars;
+
+    @Value("${document.search.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${document.search.count-limit:10000}")
+    private int countLimit;
+
+    /**
+     * Поиск по документам текущей компании. Страницы по курсору (nextCursor предыдущего ответа),
+     * а не OFFSET: глубокие страницы стоят столько же, сколько первая
+     */
+    @RequiresRoleLevel(10)
+    public DocumentSearchResponse search(String query, WorkFlowStatus status, boolean sortByRecent, String cursor, int size) {
+        return search(authService.getCurrentCompanyId(), query, status, sortByRecent, cursor, size);
+    }
+
+    DocumentSearchResponse search(Long companyId, String query, WorkFlowStatus status, boolean sortByRecent,
+                                  String cursor, int size) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query cannot be empty");
+        }
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        String statusFilter = status != null ? status.name() : null;
+        SearchCursor after = cursor != null && !cursor.isBlank() ? SearchCursor.decode(cursor, sortByRecent) : null;
+
+        List<Object> args = new ArrayList<>();
+        args.add(query);
+        args.add(companyId);
+        args.add(statusFilter);
+        args.add(statusFilter);
+        String keyset = "";
+        if (after != null) {
+            keyset = sortByRecent
+                    ? "AND (e.uploaded_at, e.document_id) < (?, ?)"
+                    : "AND (ts_rank_cd(e.search_vector, q.query), e.document_id) < (CAST(? AS real), ?)";
+            args.add(sortByRecent ? after.uploadedAt() : after.rank());
+            args.add(after.documentId());
+        }
+        args.add(pageSize);
+
+        // ts_headline дорогой: считаем его только для строк текущей страницы.
+        // Сортировка по релевантности все равно считает ts_rank_cd для всех совпадений компании:
+        // индекс по рангу невозможен, курсор лишь избавляет от сортировки всех строк до OFFSET
+        String sql = """
+                WITH q AS (SELECT websearch_to_tsquery('simple', ?) AS query),
+                page AS (
+                    SELECT e.document_id, e.original_filename, e.uploader_name, e.workflow_status, e.uploaded_at,
+                           ts_rank_cd(e.search_vector, q.query) AS rank
+                    FROM document_search_entries e, q
+                    WHERE e.company_id = ? AND e.search_vector @@ q.query
+                      AND (CAST(? AS varchar) IS NULL OR e.workflow_status = ?)
+                      %s
+                    ORDER BY %s
+                    LIMIT ?
+                )
+                SELECT page.*,
+                       ts_headline('simple', page.original_filename, q.query,
+                                   'HighlightAll=true, StartSel="%s", StopSel="%s"') AS filename_highlight,
+                       ts_headline('simple', left(coalesce(t.content, ''), %d), q.query,
+                                   'MaxFragments=2, MaxWords=25, MinWords=8, StartSel="%s", StopSel="%s"') AS content_highlight
+                FROM page CROSS JOIN q
+                LEFT JOIN document_texts t ON t.document_id = page.document_id
+                ORDER BY %s
+                """.formatted(keyset,
+                sortByRecent ? "e.uploaded_at DESC, e.document_id DESC" : "rank DESC, e.document_id DESC",
+                START_SEL, STOP_SEL, maxIndexedChars, START_SEL, STOP_SEL,
+                sortByRecent ? "page.uploaded_at DESC, page.document_id DESC" : "page.rank DESC, page.document_id DESC");
+
+        List<DocumentSearchHit> hits = jdbcTemplate.query(sql, hitMapper(), args.toArray());
+
+        // Точный count по миллиону документов дорог: ограничен и считается только для первой страницы
+        Long total = null;
+        if (after == null) {
+            Long counted = jdbcTemplate.queryForObject("""
+                    SELECT count(*) FROM (
+                        SELECT 1 FROM document_search_entries e
+                        WHERE e.company_id = ? AND e.search_vector @@ websearch_to_tsquery('simple', ?)
+                          AND (CAST(? AS varchar) IS NULL OR e.workflow_status = ?)
+                        LIMIT ?
+                    ) matches
+                    """, Long.class, companyId, query, statusFilter, statusFilter, countLimit + 1);
+            total = counted != null ? counted : 0;
+        }
+
+        log.debug("Document search in company {} for '{}': {} hits after {}", companyId, query, hits.size(), cursor);
+
+        String nextCursor = null;
+        if (hits.size() == pageSize) {
+            DocumentSearchHit last = hits.get(hits.size() - 1);
+            nextCursor = new SearchCursor(sortByRecent, last.getUploadedAt(), (float) last.getRank(),
+                    last.getDocumentId()).encode();
+        }
+        return DocumentSearchResponse.builder()
+                .query(query)
+                .size(pageSize)
+                .total(total != null ? Math.min(total, countLimit) : null)
+                .totalExact(total != null && total <= countLimit)
+                .nextCursor(nextCursor)
+                .hits(hits)
+                .build();
+    }
+
+    /**
+     * Переиндексирует документ после коммита текущей транзакции
+     */
+    public void indexAfterCommit(Long documentId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    index(documentId);
+                }
+            });
+        } else {
+            index(documentId);
+        }
+    }
+
+    /**
+     * Создает или обновляет запись индекса для документа.
+     * Если tsvector все же не влез в лимит Postgres, текст индексируется с меньшим префиксом
+     */
+    public boolean index(Long documentId) {
+        int chars = maxIndexedChars;
+        while (true) {
+            try {
+                jdbcTemplate.update(UPSERT_ENTRY, chars, documentId);
+                log.debug("Document {} indexed for search", documentId);
+                return true;
+            } catch (Exception e) {
+                if (isTooLong(e) && chars > MIN_INDEXED_CHARS) {
+                    chars /= 4;
+                    log.warn("Search vector of document {} is too long, retrying with {} chars", documentId, chars);
+                    continue;
+                }
+                log.error("Failed to index document {} for search", documentId, e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Обновляет статус workflow в индексе без пересчета tsvector
+     */
+    public void updateWorkflowStatus(Long documentId, WorkFlowStatus status) {
+        jdbcTemplate.update("UPDATE document_search_entries SET workflow_status = ?, indexed_at = now() WHERE document_id = ?",
+                status.name(), documentId);
+    }
+
+    /**
+     * В фоне индексирует документы, загруженные до появления поиска.
+     * Таблица индекса и GIN индексы создаются миграцией V2__search_and_relay_tables
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndex() {
+        Thread backfill = new Thread(this::backfill, "document-search-backfill");
+        backfill.setDaemon(true);
+        backfill.start();
+    }
+
+    /**
+     * Один проход по id: документ, который не индексируется, не выбирается повторно
+     */
+    private void backfill() {
+        List<Long> missing;
+        long lastId = 0;
+        int indexed = 0;
+        int failed = 0;
+        do {
+            missing = jdbcTemplate.queryForList("""
+                    SELECT d.id FROM documents d
+                    WHERE d.id > ?
+                      AND NOT EXISTS (SELECT 1 FROM document_search_entries e WHERE e.document_id = d.id)
+                    ORDER BY d.id
+                    LIMIT 500
+                    """, Long.class, lastId);
+            for (Long documentId : missing) {
+                if (index(documentId)) {
+                    indexed++;
+                } else {
+                    failed++;
+                }
+                lastId = documentId;
+            }
+        } while (!missing.isEmpty());
+
+        if (indexed > 0 || failed > 0) {
+            log.info("Backfilled search index with {} documents, {} failed", indexed, failed);
+        }
+    }
+
+    private static boolean isTooLong(Exception e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && PROGRAM_LIMIT_EXCEEDED.equals(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Позиция последней строки страницы: (uploaded_at, id) для sort=recent, (rank, id) для relevance.
+     * Ранг - real из ts_rank_cd, в курсоре хранится без потери точности
+     */
+    record SearchCursor(boolean recent, LocalDateTime uploadedAt, float rank, Long documentId) {
+        private static final String RECENT = "recent";
+        private static final String RELEVANCE = "relevance";
+
+        String encode() {
+            String value = (recent ? RECENT + "|" + uploadedAt : RELEVANCE + "|" + rank) + "|" + documentId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static SearchCursor decode(String cursor, boolean recent) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                if (parts.length != 3 || !parts[0].equals(recent ? RECENT : RELEVANCE)) {
+                    throw new IllegalArgumentException("Search cursor does not match sort order");
+                }
+                Long documentId = Long.valueOf(parts[2]);
+                return recent
+                        ? new SearchCursor(true, LocalDateTime.parse(parts[1]), 0, documentId)
+                        : new SearchCursor(false, null, Float.parseFloat(parts[1]), documentId);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid search cursor", e);
+            }
+        }
+    }
+
+    private RowMapper<DocumentSearchHit> hitMapper() {
+        return (rs, rowNum) -> DocumentSearchHit.builder()
+                .documentId(rs.getLong("document_id"))
+                .originalFilename(rs.getString("original_filename"))
+                .uploadedBy(rs.getString("uploader_name"))
+                .workflowStatus(rs.getString("workflow_status"))
+                .uploadedAt(rs.getTimestamp("uploaded_at").toLocalDateTime())
+                .rank(rs.getDouble("rank"))
+                .filenameHighlight(toHtml(rs.getString("filename_highlight")))
+                .contentHighlight(toHtml(rs.getString("content_highlight")))
+                .build();
+    }
+
+    /**
+     * Текст документа пользовательский: экранируем его и только потом вставляем <mark>
+     */
+    private static String toHtml(String highlighted) {
+        if (highlighted == null || highlighted.isEmpty()) {
+            return highlighted;
+        }
+        return HtmlUtils.htmlEscape(highlighted)
+                .replace(START_SEL, "<mark>")
+                .replace(STOP_SEL, "</mark>");
+    }
+}
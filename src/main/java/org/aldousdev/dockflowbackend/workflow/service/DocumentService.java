@@ -1,8 +1,18 @@
 package org.aldousdev.dockflowbackend.workflow.service;
 
+import org.aldousdev.dockflowbackend.auth.entity.User;
 import org.aldousdev.dockflowbackend.workflow.dto.response.DocumentResponse;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.file.Path;
+
 public interface DocumentService {
     DocumentResponse uploadDocument(MultipartFile file);
+
+    DocumentResponse registerStoredDocument(Long companyId, User uploadedBy, String originalFilename,
+                                            Path storedFile, long fileSize, String sha256);
+
+    Long resolveCurrentCompanyId(User currentUser);
+
+    DocumentResponse getDocument(Long documentId);
 }
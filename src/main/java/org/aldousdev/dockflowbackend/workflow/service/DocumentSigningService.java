@@ -0,0 +1,489 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.auth.components.RequiresRoleLevel;
+import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.auth.service.impls.AuthServiceImpl;
+import org.aldousdev.dockflowbackend.workflow.dto.request.BatchSignRequest;
+import org.aldousdev.dockflowbackend.workflow.dto.response.BatchSignResponse;
+import org.aldousdev.dockflowbackend.workflow.entity.Document;
+import org.aldousdev.dockflowbackend.workflow.entity.DocumentSignature;
+import org.aldousdev.dockflowbackend.workflow.entity.Task;
+import org.aldousdev.dockflowbackend.workflow.event.WorkflowEventBroadcaster;
+import org.aldousdev.dockflowbackend.workflow.exceptions.DocumentSigningException;
+import org.aldousdev.dockflowbackend.workflow.repository.DocumentRepository;
+import org.aldousdev.dockflowbackend.workflow.repository.DocumentSignatureRepository;
+import org.aldousdev.dockflowbackend.workflow.service.impl.DocumentServiceImpl;
+import org.aldousdev.dockflowbackend.workflow.signing.PdfSigningEngine;
+import org.aldousdev.dockflowbackend.workflow.signing.SignatureRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Криптографическая подпись документов.
+ * Подписи создаются при утверждении шага action="sign" или пакетно, а записываются
+ * в PDF на ограниченном пуле потоков. Подписи одного документа сериализуются,
+ * т.к. каждая дописывает новую ревизию в тот же файл: внутри узла - полосами блокировок,
+ * между узлами - advisory lock документа на время записи.
+ * Подпись сначала захватывается (claimed_at - аренда), поэтому resubmitPending всех узлов
+ * не пишет ее дважды. Временные ошибки (ввод-вывод, база) оставляют подпись в очереди
+ * до document.signing.max-attempts попыток, остальные помечают ее failed сразу.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentSigningService {
+    private static final int LOCK_STRIPES = 64;
+    // Пространство ключей advisory lock документа на время записи подписи
+    private static final int DOCUMENT_LOCK_SPACE = 0x7369676E;
+
+    private final DocumentSignatureRepository signatureRepository;
+    private final DocumentRepository documentRepository;
+    private final PdfSigningEngine signingEngine;
+    private final WorkflowEventBroadcaster eventBroadcaster;
+    private final PlatformTransactionManager transactionManager;
+    private final AuthServiceImpl authService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${document.signing.parallelism:4}")
+    private int parallelism;
+
+    @Value("${document.signing.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${document.signing.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @Value("${document.signing.batch-timeout:PT10M}")
+    private Duration batchTimeout;
+
+    @Value("${document.signing.claim-timeout:PT10M}")
+    private Duration claimTimeout;
+
+    @Value("${document.signing.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${document.signing.default-x:36}")
+    private float defaultX;
+
+    @Value("${document.signing.default-y:36}")
+    private float defaultY;
+
+    private ThreadPoolExecutor executor;
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Подписи, которые уже стоят в очереди или записываются
+     */
+    private final Map<Long, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    private final Object[] documentLocks = new Object[LOCK_STRIPES];
+
+    @PostConstruct
+    void start() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            documentLocks[i] = new Object();
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        // При переполненной очереди подпись остается в базе и подхватывается resubmitPending;
+        // подписывать в потоке запроса или планировщика нельзя
+        executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "pdf-signing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        log.info("Document signing pool started: parallelism={}, queueCapacity={}", parallelism, queueCapacity);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Создает подпись для утвержденного шага sign. PDF подписывается после коммита
+     */
+    public DocumentSignature requestTaskSignature(Task task, User signer, Integer pageNumber, Float x, Float y) {
+        Document document = task.getWorkflowInstance().getDocument();
+        DocumentSignature signature = signatureRepository.save(
+                newSignature(document, task, signer, pageNumber, x, y));
+        log.info("Signature {} requested for document {} by task {}", signature.getId(), document.getId(), task.getId());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Long signatureId = signature.getId();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(signatureId);
+                }
+            });
+        } else {
+            submit(signature.getId());
+        }
+        return signature;
+    }
+
+    /**
+     * Пакетная подпись документов текущей компании.
+     * Ключ загружен один раз, документы подписываются параллельно на пуле.
+     */
+    @RequiresRoleLevel(80)
+    public BatchSignResponse signBatch(BatchSignRequest request) {
+        if (request.getDocumentIds() == null || request.getDocumentIds().isEmpty()) {
+            throw new IllegalArgumentException("documentIds cannot be empty");
+        }
+        List<Long> documentIds = new ArrayList<>(new LinkedHashSet<>(request.getDocumentIds()));
+        if (documentIds.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch is limited to " + maxBatchSize + " documents");
+        }
+
+        User signer = authService.getCurrentUser();
+        Long companyId = authService.getCurrentCompanyId();
+
+        // documentId -> signatureId; null если документ не найден в компании
+        Map<Long, Long> signatureIds = transactionTemplate.execute(status -> {
+            Map<Long, Document> documents = documentRepository.findAllById(documentIds).stream()
+                    .collect(Collectors.toMap(Document::getId, Function.identity()));
+            Map<Long, Long> created = new LinkedHashMap<>();
+            for (Long documentId : documentIds) {
+                Document document = documents.get(documentId);
+                if (document == null || !document.getCompany().getId().equals(companyId)) {
+                    created.put(documentId, null);
+                    continue;
+                }
+                DocumentSignature signature = newSignature(document, null, signer,
+                        request.getPageNumber(), request.getPositionX(), request.getPositionY());
+                if (request.getReason() != null && !request.getReason().isBlank()) {
+                    signature.setSignatureText(signature.getSignatureText() + " - " + request.getReason());
+                }
+                created.put(documentId, signatureRepository.save(signature).getId());
+            }
+            return created;
+        });
+
+        Map<Long, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+        signatureIds.forEach((documentId, signatureId) -> {
+            if (signatureId != null) {
+                futures.put(documentId, submit(signatureId));
+            }
+        });
+
+        long deadline = System.nanoTime() + batchTimeout.toNanos();
+        List<BatchSignResponse.Result> results = new ArrayList<>();
+        int signedCount = 0;
+        for (Map.Entry<Long, Long> entry : signatureIds.entrySet()) {
+            Long documentId = entry.getKey();
+            Long signatureId = entry.getValue();
+            String error = null;
+            if (signatureId == null) {
+                error = "Document not found: " + documentId;
+            } else {
+                try {
+                    futures.get(documentId).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    error = "Signing is still in progress";
+                } catch (ExecutionException e) {
+                    error = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    error = "Interrupted";
+                }
+            }
+            if (error == null) {
+                signedCount++;
+            }
+            results.add(BatchSignResponse.Result.builder()
+                    .documentId(documentId)
+                    .signatureId(signatureId)
+                    .signed(error == null)
+                    .error(error)
+                    .build());
+        }
+
+        log.info("Batch signing by {}: {} of {} documents signed", signer.getEmail(), signedCount, documentIds.size());
+        return BatchSignResponse.builder()
+                .requested(documentIds.size())
+                .signed(signedCount)
+                .failed(documentIds.size() - signedCount)
+                .results(results)
+                .build();
+    }
+
+    /**
+     * Ставит подпись в очередь. Повторная постановка возвращает ту же задачу
+     */
+    public CompletableFuture<Void> submit(Long signatureId) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlight.putIfAbsent(signatureId, future);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    apply(signatureId);
+                    future.complete(null);
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(signatureId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(signatureId);
+            log.warn("Signing queue is full, signature {} stays pending", signatureId);
+            future.completeExceptionally(new DocumentSigningException("Signing queue is full, signature stays pending"));
+        }
+        return future;
+    }
+
+    /**
+     * Подхватывает подписи, не записанные до рестарта, после переполнения очереди, временной ошибки
+     * или падения узла (аренда истекла)
+     */
+    @Scheduled(fixedDelayString = "${document.signing.resubmit-interval:PT1M}")
+    public void resubmitPending() {
+        int freeSlots = executor.getQueue().remainingCapacity();
+        if (freeSlots == 0) {
+            return;
+        }
+        for (Long signatureId : signatureRepository.findPendingIds(now().minus(claimTimeout),
+                PageRequest.of(0, freeSlots))) {
+            if (!inFlight.containsKey(signatureId) && submit(signatureId).isCompletedExceptionally()) {
+                return;
+            }
+        }
+    }
+
+    void apply(Long signatureId) {
+        LocalDateTime claimedAt = now();
+        SigningTarget target = transactionTemplate.execute(status -> {
+            if (signatureRepository.claim(signatureId, claimedAt, claimedAt.minus(claimTimeout)) == 0) {
+                return null;
+            }
+            return signatureRepository.findByIdWithDocument(signatureId).map(signature -> {
+                Document document = signature.getDocument();
+                Task task = signature.getTask();
+                return new SigningTarget(document.getId(), document.getCompany().getId(),
+                        Paths.get(document.getFilePath()),
+                        new SignatureRequest(
+                                "sig-" + signature.getId(),
+                                clampPage(signature.getPageNumber(), document.getPageCount()),
+                                signature.getXPosition() != null ? signature.getXPosition() : defaultX,
+                                signature.getYPosition() != null ? signature.getYPosition() : defaultY,
+                                signature.getSignatureText(),
+                                task != null ? "Workflow step " + task.getStepOrder() + " approval" : "Batch signing",
+                                signature.getSignedAt()));
+                })
+                .orElse(null);
+        });
+        if (target == null) {
+            // Захват не удался: подпись уже записана, провалена или ее пишет другой узел
+            DocumentSignature signature = signatureRepository.findById(signatureId).orElse(null);
+            if (signature == null || signature.getAppliedAt() != null) {
+                return;
+            }
+            if (signature.getFailureReason() != null) {
+                throw new DocumentSigningException(signature.getFailureReason());
+            }
+            throw new DocumentSigningException("Signature " + signatureId + " is being signed on another node");
+        }
+
+        synchronized (documentLocks[Math.floorMod(target.documentId().hashCode(), LOCK_STRIPES)]) {
+            // Имя уникально для попытки: файл прошлой попытки или другого узла не перезаписывается
+            Path temp = target.file().resolveSibling(target.file().getFileName() + ".signing-" + UUID.randomUUID());
+            // Advisory lock транзакционный: держится, пока файл заменяется и отмечается applied_at
+            TransactionStatus transaction = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+            try {
+                if (!tryLockDocument(target.documentId())) {
+                    transactionManager.rollback(transaction);
+                    release(signatureId);
+                    throw new DocumentSigningException("Document " + target.documentId()
+                            + " is being signed on another node, signature stays pending");
+                }
+                String fieldName = target.request().fieldName();
+                if (signingEngine.hasSignature(target.file(), fieldName)) {
+                    log.warn("Document {} already contains {}, marking signature {} applied",
+                            target.documentId(), fieldName, signatureId);
+                } else {
+                    signingEngine.sign(target.file(), temp, target.request());
+                    Files.move(temp, target.file(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+
+                long fileSize = Files.size(target.file());
+                String sha256 = sha256(target.file());
+                signatureRepository.findById(signatureId).ifPresent(signature -> {
+                    signature.setAppliedAt(LocalDateTime.now());
+                    signature.setClaimedAt(null);
+                });
+                documentRepository.findById(target.documentId()).ifPresent(document -> {
+                    document.setSigned(true);
+                    document.setFileSize(fileSize);
+                    document.setSha256(sha256);
+                });
+                transactionManager.commit(transaction);
+            } catch (DocumentSigningException e) {
+                throw e;
+            } catch (Exception e) {
+                if (!transaction.isCompleted()) {
+                    transactionManager.rollback(transaction);
+                }
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (Exception ignored) {
+                }
+                String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                boolean retry = releaseOrFail(signatureId, isTransient(e), error);
+                if (retry) {
+                    log.warn("Transient failure signing document {} (signature {}), will retry: {}",
+                            target.documentId(), signatureId, error);
+                    throw new DocumentSigningException("Failed to sign document " + target.documentId()
+                            + ", signature stays pending: " + error, e);
+                }
+                log.error("Failed to sign document {} (signature {})", target.documentId(), signatureId, e);
+                eventBroadcaster.broadcastDocumentSigned(target.companyId(), target.documentId(), signatureId, false);
+                throw new DocumentSigningException("Failed to sign document " + target.documentId() + ": " + error, e);
+            }
+        }
+
+        log.info("Document {} signed (signature {})", target.documentId(), signatureId);
+        eventBroadcaster.broadcastDocumentSigned(target.companyId(), target.documentId(), signatureId, true);
+    }
+
+    private boolean tryLockDocument(Long documentId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?, hashtext(?))",
+                Boolean.class, DOCUMENT_LOCK_SPACE, documentId.toString()));
+    }
+
+    /**
+     * Снимает аренду, чтобы подпись подхватила следующая попытка
+     */
+    private void release(Long signatureId) {
+        transactionTemplate.executeWithoutResult(status -> signatureRepository.findById(signatureId)
+                .ifPresent(signature -> signature.setClaimedAt(null)));
+    }
+
+    /**
+     * После ошибки: временную снимает аренду для повтора (true), постоянную или
+     * исчерпавшую попытки помечает failed (false)
+     */
+    private boolean releaseOrFail(Long signatureId, boolean transientError, String error) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> signatureRepository.findById(signatureId)
+                .map(signature -> {
+                    signature.setClaimedAt(null);
+                    if (transientError && signature.getAttempts() < maxAttempts) {
+                        return true;
+                    }
+                    signature.setFailureReason(limit(error));
+                    return false;
+                })
+                .orElse(false)));
+    }
+
+    /**
+     * Ввод-вывод (диск, общая файловая система) и недоступность базы проходят сами; битый PDF,
+     * ошибка ключа или подписи - нет
+     */
+    static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof NoSuchFileException) {
+                return false;
+            }
+            if (cause instanceof IOException || cause instanceof TransientDataAccessException
+                    || cause instanceof RecoverableDataAccessException || cause instanceof SQLTransientException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String limit(String error) {
+        return error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
+    }
+
+    // Точность колонки timestamp(6): аренда сравнивается с сохраненным значением
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    private DocumentSignature newSignature(Document document, Task task, User signer,
+                                           Integer pageNumber, Float x, Float y) {
+        return DocumentSignature.builder()
+                .document(document)
+                .task(task)
+                .signedBy(signer)
+                .signatureText("Signed by " + signer.getFirstName() + " " + signer.getLastName())
+                .pageNumber(pageNumber != null ? pageNumber : 1)
+                .xPosition(x)
+                .yPosition(y)
+                .signedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static int clampPage(Integer pageNumber, Integer pageCount) {
+        int page = pageNumber != null ? Math.max(1, pageNumber) : 1;
+        return pageCount != null && pageCount > 0 ? Math.min(page, pageCount) : page;
+    }
+
+    private static String sha256(Path file) throws Exception {
+        MessageDigest digest = DocumentServiceImpl.newSha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private record SigningTarget(Long documentId, Long companyId, Path file, SignatureRequest request) {
+    }
+}
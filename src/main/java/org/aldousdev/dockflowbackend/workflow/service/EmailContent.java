@@ -0,0 +1,7 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+/**
+ * Готовое письмо: тема и HTML тело
+ */
+public record EmailContent(String subject, String htmlBody) {
+}
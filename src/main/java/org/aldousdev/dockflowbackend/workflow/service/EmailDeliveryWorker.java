@@ -0,0 +1,367 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSenderFailedException;
+import org.aldousdev.dockflowbackend.workflow.enums.EmailOutboxStatus;
+import org.aldousdev.dockflowbackend.workflow.repository.EmailOutboxRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Доставка писем из email_outbox.
+ * Каждая из email.outbox.connections линий держит свое SMTP соединение и переиспользует
+ * его между письмами и пачками. Пачка забирается через FOR UPDATE SKIP LOCKED
+ * со сдвигом next_attempt_at на время аренды, поэтому несколько линий и узлов
+ * не отправляют одно письмо дважды, а письма упавшего узла вернутся после аренды.
+ * Временные ошибки повторяются с экспоненциальной задержкой, после max-attempts
+ * или при отказе 5xx письмо переходит в DEAD.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmailDeliveryWorker {
+    private static final String CLAIM_BATCH = """
+            UPDATE email_outbox SET next_attempt_at = ?
+            WHERE id IN (SELECT id FROM email_outbox
+                         WHERE status = 'PENDING' AND next_attempt_at <= ?
+                         ORDER BY next_attempt_at, id
+                         LIMIT ? FOR UPDATE SKIP LOCKED)
+            RETURNING id, recipient, subject, body, html, attempts""";
+    private static final String MARK_SENT =
+            "UPDATE email_outbox SET status = 'SENT', attempts = attempts + 1, sent_at = ?, last_error = NULL WHERE id = ?";
+    private static final String MARK_FAILED =
+            "UPDATE email_outbox SET status = ?, attempts = ?, next_attempt_at = ?, last_error = ? WHERE id = ?";
+    private static final Pattern PERMANENT_REPLY = Pattern.compile("^5\\d\\d[ -].*", Pattern.DOTALL);
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final JavaMailSenderImpl mailSender;
+    private final JdbcTemplate jdbcTemplate;
+    private final EmailOutboxRepository outboxRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${spring.mail.from:noreply@dockflow.com}")
+    private String fromEmail;
+
+    @Value("${email.outbox.connections:2}")
+    private int connections;
+
+    @Value("${email.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${email.outbox.poll-interval:PT1S}")
+    private Duration pollInterval;
+
+    @Value("${email.outbox.lease:PT5M}")
+    private Duration lease;
+
+    @Value("${email.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${email.outbox.initial-backoff:PT30S}")
+    private Duration initialBackoff;
+
+    @Value("${email.outbox.max-backoff:PT1H}")
+    private Duration maxBackoff;
+
+    @Value("${email.outbox.connection-idle-timeout:PT1M}")
+    private Duration connectionIdleTimeout;
+
+    @Value("${email.outbox.max-messages-per-connection:500}")
+    private int maxMessagesPerConnection;
+
+    @Value("${email.outbox.retention:P7D}")
+    private Duration retention;
+
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final AtomicLong deadCount = new AtomicLong();
+
+    private ScheduledExecutorService executor;
+    private final List<DeliveryLane> lanes = new ArrayList<>();
+    private volatile boolean running;
+
+    private Counter sentCounter;
+    private Counter transientFailureCounter;
+    private Counter permanentFailureCounter;
+    private Counter deadCounter;
+    private Timer sendTimer;
+
+    @PostConstruct
+    void start() {
+        sentCounter = Counter.builder("email.outbox.sent")
+                .description("Письма, принятые SMTP сервером").register(meterRegistry);
+        transientFailureCounter = Counter.builder("email.outbox.failures").tag("type", "transient")
+                .description("Неудачные попытки отправки").register(meterRegistry);
+        permanentFailureCounter = Counter.builder("email.outbox.failures").tag("type", "permanent")
+                .description("Неудачные попытки отправки").register(meterRegistry);
+        deadCounter = Counter.builder("email.outbox.dead")
+                .description("Письма, переведенные в DEAD").register(meterRegistry);
+        sendTimer = Timer.builder("email.outbox.send")
+                .description("Время отправки одного письма по открытому соединению").register(meterRegistry);
+        Gauge.builder("email.outbox.pending", pendingCount, AtomicLong::get).register(meterRegistry);
+        // Не email.outbox.dead.total: в Prometheus это тоже email_outbox_dead_total, как у счетчика выше
+        Gauge.builder("email.outbox.dead.pending", deadCount, AtomicLong::get)
+                .description("Письма в статусе DEAD").register(meterRegistry);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newScheduledThreadPool(connections, runnable -> {
+            Thread thread = new Thread(runnable, "email-delivery-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        long intervalMillis = pollInterval.toMillis();
+        for (int i = 0; i < connections; i++) {
+            DeliveryLane lane = new DeliveryLane();
+            lanes.add(lane);
+            executor.scheduleWithFixedDelay(lane, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        executor.shutdown();
+        // Недоставленные письма из текущих пачек вернутся в работу после аренды
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        lanes.forEach(DeliveryLane::close);
+    }
+
+    /**
+     * Обновляет gauge очереди; считать в БД на каждый scrape слишком дорого
+     */
+    @Scheduled(fixedDelayString = "${email.outbox.stats-interval:PT30S}")
+    public void refreshStats() {
+        pendingCount.set(outboxRepository.countByStatus(EmailOutboxStatus.PENDING));
+        deadCount.set(outboxRepository.countByStatus(EmailOutboxStatus.DEAD));
+    }
+
+    /**
+     * Удаляет отправленные письма старше email.outbox.retention. DEAD остаются для разбора
+     */
+    @Scheduled(fixedDelayString = "${email.outbox.purge-interval:PT1H}")
+    @Transactional
+    public void purgeSent() {
+        int deleted = outboxRepository.deleteSentBefore(EmailOutboxStatus.SENT, LocalDateTime.now().minus(retention));
+        if (deleted > 0) {
+            log.info("Purged {} sent emails from outbox", deleted);
+        }
+    }
+
+    private List<OutboxRow> claim() {
+        LocalDateTime now = LocalDateTime.now();
+        return jdbcTemplate.query(CLAIM_BATCH,
+                (rs, rowNum) -> new OutboxRow(rs.getLong("id"), rs.getString("recipient"), rs.getString("subject"),
+                        rs.getString("body"), rs.getBoolean("html"), rs.getInt("attempts")),
+                Timestamp.valueOf(now.plus(lease)), Timestamp.valueOf(now), batchSize);
+    }
+
+    private void complete(List<Long> sent, List<Object[]> failed) {
+        if (!sent.isEmpty()) {
+            Timestamp sentAt = Timestamp.valueOf(LocalDateTime.now());
+            jdbcTemplate.batchUpdate(MARK_SENT, sent.stream().map(id -> new Object[]{sentAt, id}).toList());
+        }
+        if (!failed.isEmpty()) {
+            jdbcTemplate.batchUpdate(MARK_FAILED, failed);
+        }
+    }
+
+    private Object[] failure(OutboxRow row, Exception error) {
+        int attempts = row.attempts() + 1;
+        boolean permanent = isPermanent(error);
+        (permanent ? permanentFailureCounter : transientFailureCounter).increment();
+
+        EmailOutboxStatus status = EmailOutboxStatus.PENDING;
+        LocalDateTime nextAttempt = LocalDateTime.now().plus(backoff(attempts));
+        if (permanent || attempts >= maxAttempts) {
+            status = EmailOutboxStatus.DEAD;
+            deadCounter.increment();
+            log.error("Email {} to {} moved to dead letter after {} attempts: {}",
+                    row.id(), row.recipient(), attempts, error.getMessage());
+        } else {
+            log.warn("Email {} to {} failed (attempt {}), retry at {}: {}",
+                    row.id(), row.recipient(), attempts, nextAttempt, error.getMessage());
+        }
+        String message = String.valueOf(error.getMessage());
+        if (message.length() > MAX_ERROR_LENGTH) {
+            message = message.substring(0, MAX_ERROR_LENGTH);
+        }
+        return new Object[]{status.name(), attempts, Timestamp.valueOf(nextAttempt), message, row.id()};
+    }
+
+    /**
+     * initial-backoff * 2^(attempts-1), не больше max-backoff, плюс до 20% разброса,
+     * чтобы после сбоя сервера повторы не шли одной волной
+     */
+    private Duration backoff(int attempts) {
+        long base = initialBackoff.toMillis() << Math.min(attempts - 1, 30);
+        long capped = Math.min(base, maxBackoff.toMillis());
+        return Duration.ofMillis(capped + ThreadLocalRandom.current().nextLong(capped / 5 + 1));
+    }
+
+    /**
+     * Отказ без смысла повторять: некорректный адрес или ответ сервера 5xx.
+     * Отказы SMTP по адресу бывают и временными (450/451/452 - ящик занят, переполнен),
+     * поэтому для них решает код ответа, а не тип исключения
+     */
+    static boolean isPermanent(Exception error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SMTPAddressFailedException failed) {
+                return failed.getReturnCode() >= 500;
+            }
+            if (cause instanceof SMTPSenderFailedException failed) {
+                return failed.getReturnCode() >= 500;
+            }
+            if (cause instanceof SMTPSendFailedException failed && failed.getReturnCode() > 0) {
+                return failed.getReturnCode() >= 500;
+            }
+            if (cause instanceof AddressException) {
+                // Адрес не разобран локально, до сервера дело не дошло
+                return true;
+            }
+            if (cause instanceof SendFailedException && cause.getMessage() != null
+                    && PERMANENT_REPLY.matcher(cause.getMessage()).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Линия доставки: один поток и одно SMTP соединение
+     */
+    private final class DeliveryLane implements Runnable {
+        private Transport transport;
+        private long lastUsedNanos;
+        private int sentOnConnection;
+
+        @Override
+        public void run() {
+            try {
+                List<OutboxRow> batch;
+                do {
+                    batch = claim();
+                    if (!batch.isEmpty()) {
+                        deliver(batch);
+                    }
+                } while (running && batch.size() == batchSize);
+                closeIfIdle();
+            } catch (Exception e) {
+                log.error("Email delivery lane failed", e);
+            }
+        }
+
+        private void deliver(List<OutboxRow> batch) {
+            List<Long> sent = new ArrayList<>(batch.size());
+            List<Object[]> failed = new ArrayList<>();
+            for (OutboxRow row : batch) {
+                try {
+                    send(row);
+                    sent.add(row.id());
+                    sentCounter.increment();
+                } catch (Exception e) {
+                    failed.add(failure(row, e));
+                    if (transport != null && !transport.isConnected()) {
+                        close();
+                    }
+                }
+            }
+            complete(sent, failed);
+            log.debug("Delivered {} of {} emails", sent.size(), batch.size());
+        }
+
+        private void send(OutboxRow row) throws MessagingException {
+            MimeMessage message = new MimeMessage(mailSender.getSession());
+            MimeMessageHelper helper = new MimeMessageHelper(message, row.html(), "UTF-8");
+            helper.setFrom(fromEmail);
+            helper.setTo(row.recipient());
+            helper.setSubject(row.subject());
+            helper.setText(row.body(), row.html());
+            message.setSentDate(new Date());
+            message.saveChanges();
+
+            connect();
+            long started = System.nanoTime();
+            transport.sendMessage(message, message.getAllRecipients());
+            sendTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            lastUsedNanos = System.nanoTime();
+            if (++sentOnConnection >= maxMessagesPerConnection) {
+                // Многие серверы ограничивают число писем за одну SMTP сессию
+                close();
+            }
+        }
+
+        private void connect() throws MessagingException {
+            if (transport != null && transport.isConnected()) {
+                return;
+            }
+            close();
+            String protocol = mailSender.getProtocol();
+            Transport opened = protocol != null
+                    ? mailSender.getSession().getTransport(protocol)
+                    : mailSender.getSession().getTransport();
+            opened.connect(mailSender.getHost(), mailSender.getPort(),
+                    emptyToNull(mailSender.getUsername()), emptyToNull(mailSender.getPassword()));
+            transport = opened;
+            sentOnConnection = 0;
+        }
+
+        private void closeIfIdle() {
+            if (transport != null
+                    && (!running || System.nanoTime() - lastUsedNanos > connectionIdleTimeout.toNanos())) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (transport == null) {
+                return;
+            }
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Failed to close SMTP connection: {}", e.getMessage());
+            }
+            transport = null;
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    record OutboxRow(Long id, String recipient, String subject, String body, boolean html, int attempts) {
+    }
+}
@@ -2,228 +2,190 @@ package org.aldousdev.dockflowbackend.workflow.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.auth.components.CompanyRoleIndex;
 import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.auth.repository.UserRepository;
 import org.aldousdev.dockflowbackend.workflow.entity.Task;
 import org.aldousdev.dockflowbackend.workflow.entity.WorkflowInstance;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Уведомления о событиях workflow по email.
+ * Вызывается синхронно внутри транзакции движка: письма только ставятся в outbox
+ * и фиксируются вместе с изменением workflow, SMTP здесь не трогается.
+ * Ошибки не перехватываются: после сбоя записи транзакция уже rollback-only,
+ * поэтому изменение workflow откатывается вместе с письмами, а не падает на коммите
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class EmailNotificationService {
     private final EmailService emailService;
+    private final NotificationDigestService digestService;
+    private final CompanyRoleIndex roleIndex;
+    private final UserRepository userRepository;
 
     /**
      * Отправляет уведомление о новой task всем пользователям с нужной ролью
      */
-    @Async
-    public void notifyTaskCreated(Task task, String roleName) {
-        log.info("Sending task created notification for role: {}", roleName);
-        
-        try {
-            WorkflowInstance instance = task.getWorkflowInstance();
-            String documentName = instance.getDocument().getOriginalFilename();
-            
-            // TODO: Получить список пользователей с данной ролью и компанией
-            // List<User> users = getUsersByRoleAndCompany(roleName, company);
-            
-            // for (User user : users) {
-            //     emailService.sendTaskCreatedEmail(
-            //         user.getEmail(), 
-            //         user.getFirstName(), 
-            //         roleName,
-            //         documentName,
-            //         task.getId(),
-            //         instance.getId()
-            //     );
-            // }
-            
-            log.info("Task creation notifications sent for task: {}", task.getId());
-        } catch (Exception e) {
-            log.error("Error sending task created notification", e);
+    public void notifyTaskCreated(Task task) {
+        notifyTasksCreated(List.of(task));
+    }
+
+    /**
+     * Уведомляет исполнителей tasks одного workflow (например, параллельного шага).
+     * Получатели берутся из CompanyRoleIndex, пользователи загружаются одним запросом
+     */
+    public void notifyTasksCreated(List<Task> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        log.info("Sending task created notifications for {} tasks", tasks.size());
+
+        WorkflowInstance instance = tasks.get(0).getWorkflowInstance();
+        String documentName = instance.getDocument().getOriginalFilename();
+        Long companyId = instance.getDocument().getCompany().getId();
+
+        Map<Task, Set<Long>> recipients = new LinkedHashMap<>();
+        Set<Long> userIds = new HashSet<>();
+        for (Task task : tasks) {
+            Set<Long> approvers = roleIndex.approvers(companyId, task.getRequiredRoleName(), task.getRequiredRoleLevel());
+            recipients.put(task, approvers);
+            userIds.addAll(approvers);
+        }
+        if (userIds.isEmpty()) {
+            log.warn("No approvers found for tasks of workflow instance {}", instance.getId());
+            return;
         }
+        Map<Long, User> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        int sent = 0;
+        for (Map.Entry<Task, Set<Long>> entry : recipients.entrySet()) {
+            Task task = entry.getKey();
+            for (Long userId : entry.getValue()) {
+                User user = users.get(userId);
+                if (user == null) {
+                    continue;
+                }
+                digestService.submit(user,
+                        emailService.taskCreatedEmail(user.getFirstName(), task.getRequiredRoleName(),
+                                documentName, task.getId(), instance.getId()),
+                        String.format("«%s»: новая задача на одобрение (%s)", documentName, task.getRequiredRoleName()));
+                sent++;
+            }
+        }
+
+        log.info("Task creation notifications queued: {} for {} tasks", sent, tasks.size());
     }
 
     /**
      * Отправляет уведомление об одобрении task
      */
-    @Async
     public void notifyTaskApproved(Task task, User approvedBy) {
         log.info("Sending task approved notification");
         
-        try {
-            WorkflowInstance instance = task.getWorkflowInstance();
-            String documentName = instance.getDocument().getOriginalFilename();
-            String initiatorEmail = instance.getInitiatedBy().getEmail();
-            
-            // Подсчитываем все tasks и сколько одобрено
-            List<Task> tasks = (instance.getTasks() != null ? instance.getTasks() : List.of());
-            long totalSteps = tasks.stream()
-                    .map(Task::getStepOrder)
-                    .distinct()
-                    .count();
-            
-            long approvedSteps = tasks.stream()
-                    .filter(t -> t.getStepOrder() <= task.getStepOrder())
-                    .map(Task::getStepOrder)
-                    .distinct()
-                    .count();
-            
-            emailService.sendTaskApprovedEmail(
-                initiatorEmail,
-                approvedBy.getEmail(),
-                documentName,
-                (int) approvedSteps,
-                (int) totalSteps
-            );
-            
-            log.info("Task approved notification sent for task: {}", task.getId());
-        } catch (Exception e) {
-            log.error("Error sending task approved notification", e);
-        }
+        WorkflowInstance instance = task.getWorkflowInstance();
+        String documentName = instance.getDocument().getOriginalFilename();
+        User initiator = instance.getInitiatedBy();
+        
+        // Подсчитываем все tasks и сколько одобрено
+        List<Task> tasks = (instance.getTasks() != null ? instance.getTasks() : List.of());
+        long totalSteps = tasks.stream()
+                .map(Task::getStepOrder)
+                .distinct()
+                .count();
+        
+        long approvedSteps = tasks.stream()
+                .filter(t -> t.getStepOrder() <= task.getStepOrder())
+                .map(Task::getStepOrder)
+                .distinct()
+                .count();
+        
+        digestService.submit(initiator,
+                emailService.taskApprovedEmail(approvedBy.getEmail(), documentName,
+                        (int) approvedSteps, (int) totalSteps),
+                String.format("«%s»: одобрено %s (шаг %d из %d)",
+                        documentName, approvedBy.getEmail(), approvedSteps, totalSteps));
+        
+        log.info("Task approved notification queued for task: {}", task.getId());
     }
 
     /**
      * Отправляет уведомление об отклонении task
      */
-    @Async
     public void notifyTaskRejected(Task task, User rejectedBy, String comment) {
         log.info("Sending task rejected notification");
         
-        try {
-            WorkflowInstance instance = task.getWorkflowInstance();
-            String documentName = instance.getDocument().getOriginalFilename();
-            String initiatorEmail = instance.getInitiatedBy().getEmail();
-            
-            // Получаем информацию о шаге возврата (если применимо правило маршрутизации)
-            Integer returnToStep = task.getStepOrder(); // Может быть переопределено
-            
-            emailService.sendTaskRejectedEmail(
-                initiatorEmail,
-                rejectedBy.getEmail(),
-                documentName,
-                comment,
-                returnToStep
-            );
-            
-            log.info("Task rejected notification sent for task: {}", task.getId());
-        } catch (Exception e) {
-            log.error("Error sending task rejected notification", e);
-        }
+        WorkflowInstance instance = task.getWorkflowInstance();
+        String documentName = instance.getDocument().getOriginalFilename();
+        User initiator = instance.getInitiatedBy();
+        
+        // Получаем информацию о шаге возврата (если применимо правило маршрутизации)
+        Integer returnToStep = task.getStepOrder(); // Может быть переопределено
+        
+        digestService.submit(initiator,
+                emailService.taskRejectedEmail(rejectedBy.getEmail(), documentName, comment, returnToStep),
+                String.format("«%s»: отклонено %s - %s", documentName, rejectedBy.getEmail(), comment));
+        
+        log.info("Task rejected notification queued for task: {}", task.getId());
     }
 
     /**
      * Отправляет уведомление о завершении workflow
      */
-    @Async
     public void notifyWorkflowCompleted(WorkflowInstance instance) {
         log.info("Sending workflow completed notification");
         
-        try {
-            String documentName = instance.getDocument().getOriginalFilename();
-            String initiatedBy = instance.getInitiatedBy().getFirstName() + " " + 
-                               instance.getInitiatedBy().getLastName();
-            
-            // Уведомляем инициатора и всех участников
-            String initiatorEmail = instance.getInitiatedBy().getEmail();
-            
-            emailService.sendWorkflowCompletedEmail(
-                initiatorEmail,
-                documentName,
-                initiatedBy
-            );
-            
-            // TODO: Отправить уведомления другим участникам
-            
-            log.info("Workflow completed notification sent for instance: {}", instance.getId());
-        } catch (Exception e) {
-            log.error("Error sending workflow completed notification", e);
-        }
+        String documentName = instance.getDocument().getOriginalFilename();
+        String initiatedBy = instance.getInitiatedBy().getFirstName() + " " + 
+                           instance.getInitiatedBy().getLastName();
+        
+        // Уведомляем инициатора и всех участников
+        digestService.submit(instance.getInitiatedBy(),
+                emailService.workflowCompletedEmail(documentName, initiatedBy),
+                String.format("«%s»: все согласования завершены", documentName));
+        
+        // TODO: Отправить уведомления другим участникам
+        
+        log.info("Workflow completed notification queued for instance: {}", instance.getId());
     }
 
     /**
      * Отправляет уведомление об отклонении workflow
      */
-    @Async
     public void notifyWorkflowRejected(WorkflowInstance instance, String reason) {
         log.info("Sending workflow rejected notification");
         
-        try {
-            String documentName = instance.getDocument().getOriginalFilename();
-            String initiatorEmail = instance.getInitiatedBy().getEmail();
-            
-            emailService.sendWorkflowRejectedEmail(
-                initiatorEmail,
-                documentName,
-                reason
-            );
-            
-            log.info("Workflow rejected notification sent for instance: {}", instance.getId());
-        } catch (Exception e) {
-            log.error("Error sending workflow rejected notification", e);
-        }
+        String documentName = instance.getDocument().getOriginalFilename();
+        digestService.submit(instance.getInitiatedBy(),
+                emailService.workflowRejectedEmail(documentName, reason),
+                String.format("«%s»: согласование отклонено - %s", documentName, reason));
+        
+        log.info("Workflow rejected notification queued for instance: {}", instance.getId());
     }
 
     /**
      * Отправляет напоминание о pending task
      */
-    @Async
     public void sendTaskReminderEmail(Task task, User user) {
         log.info("Sending task reminder email to: {}", user.getEmail());
         
-        try {
-            WorkflowInstance instance = task.getWorkflowInstance();
-            String documentName = instance.getDocument().getOriginalFilename();
-            String roleName = task.getRequiredRoleName();
-            
-            String subject = "Напоминание: ожидается ваше одобрение - " + documentName;
-            String body = buildTaskReminderBody(user.getFirstName(), documentName, roleName);
-            
-            emailService.sendHtmlEmail(user.getEmail(), subject, body);
-            
-            log.info("Task reminder sent for task: {}", task.getId());
-        } catch (Exception e) {
-            log.error("Error sending task reminder email", e);
-        }
-    }
-
-    private String buildTaskReminderBody(String userName, String documentName, String roleName) {
-        return String.format("""
-                <!DOCTYPE html>
-                <html>
-                <head>
-                    <meta charset="UTF-8">
-                    <style>
-                        body { font-family: Arial, sans-serif; }
-                        .container { max-width: 600px; margin: 0 auto; padding: 20px; }
-                        .header { background-color: #FF9800; color: white; padding: 20px; border-radius: 5px; }
-                        .content { padding: 20px; background-color: #f5f5f5; }
-                        .button { background-color: #FF9800; color: white; padding: 10px 20px; text-decoration: none; border-radius: 5px; display: inline-block; margin-top: 10px; }
-                        .footer { padding: 10px; text-align: center; color: #666; }
-                    </style>
-                </head>
-                <body>
-                    <div class="container">
-                        <div class="header">
-                            <h1>Напоминание: ожидается ваше одобрение</h1>
-                        </div>
-                        <div class="content">
-                            <p>Привет, %s!</p>
-                            <p>Это напоминание о том, что вы еще не одобрили документ:</p>
-                            <h2>%s</h2>
-                            <p><strong>Требуемая роль:</strong> %s</p>
-                            <p>Пожалуйста, обновите статус документа при вашей ближайшей возможности.</p>
-                            <a href="http://localhost:3000/tasks" class="button">Перейти к задачам</a>
-                        </div>
-                        <div class="footer">
-                            <p>© 2024 DocFlow. Все права защищены.</p>
-                        </div>
-                    </div>
-                </body>
-                </html>
-                """, userName, documentName, roleName);
+        WorkflowInstance instance = task.getWorkflowInstance();
+        String documentName = instance.getDocument().getOriginalFilename();
+        String roleName = task.getRequiredRoleName();
+        
+        digestService.submit(user, emailService.taskReminderEmail(user.getFirstName(), documentName, roleName),
+                String.format("«%s»: ожидается ваше одобрение (%s)", documentName, roleName));
+        
+        log.info("Task reminder queued for task: {}", task.getId());
     }
 }
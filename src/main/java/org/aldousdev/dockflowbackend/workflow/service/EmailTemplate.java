@@ -0,0 +1,115 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Скомпилированный шаблон письма: текст заранее разрезан на литералы и слоты.
+ * {{name}} - значение с HTML экранированием, {{{name}}} - уже готовый HTML.
+ * Рендер только дописывает куски в буфер, без разбора формата на каждый вызов.
+ */
+public final class EmailTemplate {
+    private final String name;
+    private final String[] literals;  // literals.length == slots.length + 1
+    private final String[] slots;
+    private final boolean[] raw;
+    private final int literalLength;
+
+    private EmailTemplate(String name, String[] literals, String[] slots, boolean[] raw) {
+        this.name = name;
+        this.literals = literals;
+        this.slots = slots;
+        this.raw = raw;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static EmailTemplate compile(String name, String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        List<Boolean> raw = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int open = source.indexOf("{{", position);
+            if (open < 0) {
+                break;
+            }
+            boolean isRaw = source.startsWith("{{{", open);
+            String close = isRaw ? "}}}" : "}}";
+            int start = open + (isRaw ? 3 : 2);
+            int end = source.indexOf(close, start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder in email template " + name + " at " + open);
+            }
+            String slot = source.substring(start, end).trim();
+            if (slot.isEmpty()) {
+                throw new IllegalArgumentException("Empty placeholder in email template " + name + " at " + open);
+            }
+            literals.add(source.substring(position, open));
+            slots.add(slot);
+            raw.add(isRaw);
+            position = end + close.length();
+        }
+        literals.add(source.substring(position));
+
+        boolean[] rawFlags = new boolean[raw.size()];
+        for (int i = 0; i < rawFlags.length; i++) {
+            rawFlags[i] = raw.get(i);
+        }
+        return new EmailTemplate(name, literals.toArray(String[]::new), slots.toArray(String[]::new), rawFlags);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Длина текста без подстановок - начальный размер буфера
+     */
+    public int getLiteralLength() {
+        return literalLength;
+    }
+
+    public void renderTo(StringBuilder out, Map<String, ?> values) {
+        for (int i = 0; i < slots.length; i++) {
+            out.append(literals[i]);
+            if (!values.containsKey(slots[i])) {
+                throw new IllegalStateException("No value for {{" + slots[i] + "}} in email template " + name);
+            }
+            Object value = values.get(slots[i]);
+            String text = value != null ? value.toString() : "";
+            if (raw[i]) {
+                out.append(text);
+            } else {
+                appendEscaped(out, text);
+            }
+        }
+        out.append(literals[literals.length - 1]);
+    }
+
+    /**
+     * HTML экранирование без промежуточных строк
+     */
+    public static void appendEscaped(StringBuilder out, String text) {
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            String replacement = switch (text.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                case '\'' -> "&#39;";
+                default -> null;
+            };
+            if (replacement != null) {
+                out.append(text, start, i).append(replacement);
+                start = i + 1;
+            }
+        }
+        out.append(text, start, text.length());
+    }
+}
@@ -0,0 +1,66 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Шаблоны писем из classpath:templates/email/*.html, скомпилированные один раз при старте.
+ * Рендер пишет в переиспользуемый буфер потока; ошибка в шаблоне валит старт, а не отправку
+ */
+@Component
+@Slf4j
+public class EmailTemplateRegistry {
+    private static final String TEMPLATE_LOCATION = "classpath:templates/email/*.html";
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(8 * 1024));
+
+    private Map<String, EmailTemplate> templates = Map.of();
+
+    @PostConstruct
+    void load() {
+        Map<String, EmailTemplate> compiled = new HashMap<>();
+        try {
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources(TEMPLATE_LOCATION)) {
+                String filename = resource.getFilename();
+                String name = filename.substring(0, filename.length() - ".html".length());
+                String source = resource.getContentAsString(StandardCharsets.UTF_8);
+                compiled.put(name, EmailTemplate.compile(name, source));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load email templates", e);
+        }
+        templates = Map.copyOf(compiled);
+        log.info("Compiled {} email templates", templates.size());
+    }
+
+    /**
+     * Рендерит шаблон; каждый слот шаблона должен быть в values
+     */
+    public String render(String name, Map<String, ?> values) {
+        EmailTemplate template = templates.get(name);
+        if (template == null) {
+            throw new IllegalArgumentException("Unknown email template: " + name);
+        }
+
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        buffer.ensureCapacity(template.getLiteralLength() + 256);
+        template.renderTo(buffer, values);
+        String result = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            // Не держим в потоке буфер после редкого огромного письма
+            buffers.remove();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,195 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.auth.repository.UserRepository;
+import org.aldousdev.dockflowbackend.workflow.dto.request.NotificationPreferenceRequest;
+import org.aldousdev.dockflowbackend.workflow.dto.response.NotificationPreferenceResponse;
+import org.aldousdev.dockflowbackend.workflow.entity.NotificationDigestItem;
+import org.aldousdev.dockflowbackend.workflow.entity.NotificationPreference;
+import org.aldousdev.dockflowbackend.workflow.enums.DigestMode;
+import org.aldousdev.dockflowbackend.workflow.repository.EmailOutboxRepository;
+import org.aldousdev.dockflowbackend.workflow.repository.NotificationDigestItemRepository;
+import org.aldousdev.dockflowbackend.workflow.repository.NotificationPreferenceRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Агрегатор email уведомлений.
+ * Событие уходит отдельным письмом только в режиме IMMEDIATE и пока получатель
+ * не превысил лимит писем в час; иначе оно копится в notification_digest_items
+ * и уходит сводкой, когда истечет окно режима (15 минут, час).
+ * Все пишется в транзакции вызывающего, как и письма в outbox; ошибки пробрасываются,
+ * потому что после них транзакция вызывающего все равно не закоммитится.
+ * Проверка лимита и постановка письма идут под advisory lock получателя до конца транзакции,
+ * иначе параллельные submit насчитали бы одно и то же число писем и превысили лимит
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationDigestService {
+    private static final String CLAIM_ITEMS = """
+            DELETE FROM notification_digest_items
+            WHERE id IN (SELECT id FROM notification_digest_items WHERE user_id = ? FOR UPDATE SKIP LOCKED)
+            RETURNING recipient, subject, body, summary, created_at""";
+    // Пространство ключей advisory lock для лимита писем получателя
+    private static final int RECIPIENT_LOCK_SPACE = 0x6E6F7469;
+
+    private final NotificationPreferenceRepository preferenceRepository;
+    private final NotificationDigestItemRepository itemRepository;
+    private final EmailOutboxRepository outboxRepository;
+    private final EmailService emailService;
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${notifications.default-digest-mode:IMMEDIATE}")
+    private DigestMode defaultMode;
+
+    @Value("${notifications.max-emails-per-hour:20}")
+    private int maxEmailsPerHour;
+
+    /**
+     * Уведомление для пользователя: письмо сразу или строка в будущей сводке
+     */
+    @Transactional
+    public void submit(User recipient, EmailContent email, String summary) {
+        NotificationPreference preference = preferenceRepository.findById(recipient.getId()).orElse(null);
+        DigestMode mode = preference != null ? preference.getDigestMode() : defaultMode;
+        LocalDateTime now = LocalDateTime.now();
+
+        // Уже накопленная сводка сохраняет порядок событий: новое встает в нее же
+        lockRecipient(recipient.getEmail());
+        LocalDateTime deliverAfter = itemRepository.findDeliverAfter(recipient.getId());
+        if (deliverAfter == null) {
+            if (mode == DigestMode.IMMEDIATE && !isOverLimit(recipient.getEmail(), preference, now)) {
+                emailService.sendHtmlEmail(recipient.getEmail(), email.subject(), email.htmlBody());
+                return;
+            }
+            // IMMEDIATE сверх лимита ждет ближайшего flush, который снова проверит лимит
+            deliverAfter = now.plus(mode.getWindow());
+        }
+
+        itemRepository.save(NotificationDigestItem.builder()
+                .userId(recipient.getId())
+                .recipient(recipient.getEmail())
+                .subject(email.subject())
+                .body(email.htmlBody())
+                .summary(summary.length() > 1000 ? summary.substring(0, 1000) : summary)
+                .deliverAfter(deliverAfter)
+                .createdAt(now)
+                .build());
+        log.debug("Notification for user {} deferred to digest at {}", recipient.getId(), deliverAfter);
+    }
+
+    /**
+     * Настройки уведомлений пользователя (значения по умолчанию, если он их не менял)
+     */
+    @Transactional(readOnly = true)
+    public NotificationPreferenceResponse getPreference(User user) {
+        return toResponse(preferenceRepository.findById(user.getId()).orElse(null));
+    }
+
+    /**
+     * Сохраняет режим сводок и личный лимит. Уже накопленная сводка уйдет в прежний срок
+     */
+    @Transactional
+    public NotificationPreferenceResponse updatePreference(User user, NotificationPreferenceRequest request) {
+        if (request.getMaxEmailsPerHour() != null && request.getMaxEmailsPerHour() < 1) {
+            throw new IllegalArgumentException("maxEmailsPerHour must be positive");
+        }
+        NotificationPreference preference = preferenceRepository.save(NotificationPreference.builder()
+                .userId(user.getId())
+                .digestMode(request.getDigestMode() != null ? request.getDigestMode() : defaultMode)
+                .maxEmailsPerHour(request.getMaxEmailsPerHour())
+                .updatedAt(LocalDateTime.now())
+                .build());
+        return toResponse(preference);
+    }
+
+    private NotificationPreferenceResponse toResponse(NotificationPreference preference) {
+        Integer ownLimit = preference != null ? preference.getMaxEmailsPerHour() : null;
+        return NotificationPreferenceResponse.builder()
+                .digestMode(preference != null ? preference.getDigestMode() : defaultMode)
+                .maxEmailsPerHour(ownLimit)
+                .effectiveMaxEmailsPerHour(ownLimit != null ? Math.min(ownLimit, maxEmailsPerHour) : maxEmailsPerHour)
+                .build();
+    }
+
+    /**
+     * Отправляет созревшие сводки. Каждый получатель - в своей транзакции:
+     * элементы удаляются (SKIP LOCKED, без дублей между узлами) вместе с постановкой письма в outbox
+     */
+    @Scheduled(fixedDelayString = "${notifications.digest.flush-interval:PT1M}")
+    public void flushDue() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (Long userId : itemRepository.findDueUserIds(LocalDateTime.now())) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> flush(userId));
+            } catch (Exception e) {
+                log.error("Failed to send notification digest to user {}", userId, e);
+            }
+        }
+    }
+
+    private void flush(Long userId) {
+        NotificationPreference preference = preferenceRepository.findById(userId).orElse(null);
+        String recipient = itemRepository.findRecipient(userId);
+        if (recipient != null) {
+            lockRecipient(recipient);
+        }
+        if (recipient == null || isOverLimit(recipient, preference, LocalDateTime.now())) {
+            // Сводка остается в очереди и уйдет, когда освободится лимит
+            return;
+        }
+        List<DigestRow> rows = jdbcTemplate.query(CLAIM_ITEMS, (rs, rowNum) -> new DigestRow(
+                rs.getString("recipient"), rs.getString("subject"), rs.getString("body"),
+                rs.getString("summary"), rs.getTimestamp("created_at").toLocalDateTime()), userId);
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        if (rows.size() == 1) {
+            DigestRow row = rows.get(0);
+            emailService.sendHtmlEmail(recipient, row.subject(), row.body());
+            return;
+        }
+        List<String> summaries = rows.stream()
+                .sorted(Comparator.comparing(DigestRow::createdAt))
+                .map(DigestRow::summary)
+                .toList();
+        String userName = userRepository.findById(userId).map(User::getFirstName).orElse(recipient);
+        EmailContent digest = emailService.digestEmail(userName, summaries);
+        emailService.sendHtmlEmail(recipient, digest.subject(), digest.htmlBody());
+        log.debug("Sent digest of {} notifications to user {}", rows.size(), userId);
+    }
+
+    /**
+     * Блокировка до конца текущей транзакции; ключ - хеш адреса, как и подсчет лимита по outbox
+     */
+    private void lockRecipient(String recipient) {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, hashtext(?))", rs -> null,
+                RECIPIENT_LOCK_SPACE, recipient);
+    }
+
+    private boolean isOverLimit(String recipient, NotificationPreference preference, LocalDateTime now) {
+        int limit = maxEmailsPerHour;
+        if (preference != null && preference.getMaxEmailsPerHour() != null) {
+            limit = Math.min(limit, preference.getMaxEmailsPerHour());
+        }
+        return outboxRepository.countByRecipientAndCreatedAtAfter(recipient, now.minusHours(1)) >= limit;
+    }
+
+    private record DigestRow(String recipient, String subject, String body, String summary, LocalDateTime createdAt) {
+    }
+}
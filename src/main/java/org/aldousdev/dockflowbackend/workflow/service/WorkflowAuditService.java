@@ -1,9 +1,11 @@
 package org.aldousdev.dockflowbackend.workflow.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.config.AppMetrics;
 import org.aldousdev.dockflowbackend.workflow.entity.Task;
 import org.aldousdev.dockflowbackend.workflow.entity.WorkflowAuditLog;
 import org.aldousdev.dockflowbackend.workflow.entity.WorkflowInstance;
@@ -15,15 +17,21 @@ import org.springframework.web.context.request.ServletRequestAttributes;
 
 import jakarta.servlet.http.HttpServletRequest;
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class WorkflowAuditService {
+    static final String AUDIT_WRITE_TIMER = "workflow.audit.write";
+
     private final WorkflowAuditLogRepository auditLogRepository;
     private final ObjectMapper objectMapper;
+    private final AppMetrics metrics;
+    private final AuditArchiveService archiveService;
 
     public enum ActionType {
         WORKFLOW_STARTED,
@@ -51,7 +59,7 @@ public class WorkflowAuditService {
                 .createdAt(LocalDateTime.now())
                 .build();
         
-        auditLogRepository.save(log);
+        save(log);
     }
 
     @Transactional
@@ -71,7 +79,7 @@ public class WorkflowAuditService {
                 .createdAt(LocalDateTime.now())
                 .build();
         
-        auditLogRepository.save(log);
+        save(log);
     }
 
     @Transactional
@@ -97,7 +105,7 @@ public class WorkflowAuditService {
                 .createdAt(LocalDateTime.now())
                 .build();
         
-        auditLogRepository.save(log);
+        save(log);
     }
 
     @Transactional
@@ -123,7 +131,7 @@ public class WorkflowAuditService {
                 .createdAt(LocalDateTime.now())
                 .build();
         
-        auditLogRepository.save(log);
+        save(log);
     }
 
     @Transactional
@@ -139,7 +147,7 @@ public class WorkflowAuditService {
                 .createdAt(LocalDateTime.now())
                 .build();
         
-        auditLogRepository.save(log);
+        save(log);
     }
 
     @Transactional
@@ -154,7 +162,7 @@ public class WorkflowAuditService {
                 .createdAt(LocalDateTime.now())
                 .build();
         
-        auditLogRepository.save(log);
+        save(log);
     }
 
     @Transactional
@@ -169,7 +177,7 @@ public class WorkflowAuditService {
                 .createdAt(LocalDateTime.now())
                 .build();
         
-        auditLogRepository.save(log);
+        save(log);
     }
 
     @Transactional
@@ -187,7 +195,7 @@ public class WorkflowAuditService {
                 .createdAt(LocalDateTime.now())
                 .build();
         
-        auditLogRepository.save(log);
+        save(log);
     }
 
     /**
@@ -197,6 +205,30 @@ public class WorkflowAuditService {
         return auditLogRepository.findByWorkflowInstanceOrderedByTime(instance);
     }
 
+    /**
+     * История workflow для API: только поля ответа, email автора через join, без загрузки сущностей.
+     * since (не позже старта workflow) отсекает партиции старых месяцев; includeArchived
+     * добавляет записи из архива на диске - медленно, только по явному запросу
+     */
+    @Transactional(readOnly = true)
+    public java.util.List<WorkflowAuditLogRepository.AuditLogView> getWorkflowHistory(Long instanceId,
+                                                                                      LocalDateTime since,
+                                                                                      boolean includeArchived) {
+        java.util.List<WorkflowAuditLogRepository.AuditLogView> entries =
+                auditLogRepository.findViewsByInstanceId(instanceId, since);
+        if (!includeArchived) {
+            return entries;
+        }
+        // Месяц мог попасть в архив, но еще не удалиться из базы: дубли убираются по id
+        Map<Long, WorkflowAuditLogRepository.AuditLogView> merged = new LinkedHashMap<>();
+        entries.forEach(entry -> merged.put(entry.getId(), entry));
+        archiveService.findArchived(instanceId, since, LocalDateTime.now())
+                .forEach(entry -> merged.putIfAbsent(entry.getId(), entry));
+        return merged.values().stream()
+                .sorted(Comparator.comparing(WorkflowAuditLogRepository.AuditLogView::getCreatedAt).reversed())
+                .toList();
+    }
+
     /**
      * Получить историю для task
      */
@@ -204,6 +236,25 @@ public class WorkflowAuditService {
         return auditLogRepository.findByTask(task);
     }
 
+    /**
+     * Запись в журнал с замером задержки по типу действия и компании шаблона
+     */
+    private void save(WorkflowAuditLog entry) {
+        Timer.Sample sample = metrics.start();
+        boolean success = false;
+        try {
+            auditLogRepository.save(entry);
+            success = true;
+        } finally {
+            metrics.stop(sample, AUDIT_WRITE_TIMER, companyId(entry), success, "action", entry.getActionType());
+        }
+    }
+
+    private static Long companyId(WorkflowAuditLog entry) {
+        WorkflowInstance instance = entry.getWorkflowInstance();
+        return instance == null || instance.getTemplate() == null ? null : instance.getTemplate().getCompanyId();
+    }
+
     private String toJson(Object obj) {
         try {
             return objectMapper.writeValueAsString(obj);
@@ -0,0 +1,51 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aldousdev.dockflowbackend.workflow.dto.response.WorkflowEventResumeResponse;
+import org.aldousdev.dockflowbackend.workflow.event.SequencedWorkflowEvent;
+import org.aldousdev.dockflowbackend.workflow.event.WorkflowEventLog;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Resume потока событий workflow после переподключения.
+ * Клиент сначала подписывается на топик компании, затем запрашивает пропущенное
+ * с номера since; дубликаты на стыке отбрасываются по sequence.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WorkflowEventResumeService {
+    private final WorkflowEventLog eventLog;
+    private final WorkflowService workflowService;
+
+    public WorkflowEventResumeResponse resume(Long companyId, long since) {
+        List<SequencedWorkflowEvent> gap = eventLog.readSince(companyId, since);
+        if (gap != null) {
+            long latest = gap.isEmpty() ? Math.max(since, 0) : gap.get(gap.size() - 1).sequence();
+            log.debug("Resuming company {} from {}: {} events", companyId, since, gap.size());
+            return WorkflowEventResumeResponse.builder()
+                    .companyId(companyId)
+                    .since(since)
+                    .latestSequence(latest)
+                    .snapshotRequired(false)
+                    .events(gap)
+                    .snapshot(List.of())
+                    .build();
+        }
+
+        // Номер берем до snapshot: события после него клиент применит поверх
+        long latest = eventLog.latestSequence(companyId);
+        log.debug("Gap for company {} since {} is too old, sending snapshot at {}", companyId, since, latest);
+        return WorkflowEventResumeResponse.builder()
+                .companyId(companyId)
+                .since(since)
+                .latestSequence(latest)
+                .snapshotRequired(true)
+                .events(List.of())
+                .snapshot(workflowService.getActiveInstances(companyId))
+                .build();
+    }
+}
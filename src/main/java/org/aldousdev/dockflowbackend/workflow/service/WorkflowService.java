@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aldousdev.dockflowbackend.auth.entity.User;
 import org.aldousdev.dockflowbackend.workflow.dto.request.CreateWorkflowTemplateRequest;
+import org.aldousdev.dockflowbackend.workflow.dto.request.TaskApprovalRequest;
 import org.aldousdev.dockflowbackend.workflow.dto.response.TaskResponse;
 import org.aldousdev.dockflowbackend.workflow.dto.response.WorkflowAuditLogResponse;
 import org.aldousdev.dockflowbackend.workflow.dto.response.WorkflowInstanceResponse;
@@ -16,18 +17,22 @@ import org.aldousdev.dockflowbackend.workflow.entity.WorkflowInstance;
 import org.aldousdev.dockflowbackend.workflow.entity.WorkflowTemplate;
 import org.aldousdev.dockflowbackend.workflow.enums.RoutingType;
 import org.aldousdev.dockflowbackend.workflow.enums.TaskStatus;
+import org.aldousdev.dockflowbackend.workflow.enums.WorkFlowStatus;
 import org.aldousdev.dockflowbackend.workflow.event.WorkflowEventBroadcaster;
 import org.aldousdev.dockflowbackend.workflow.parser.WorkflowXmlParser;
 import org.aldousdev.dockflowbackend.workflow.repository.DocumentRepository;
 import org.aldousdev.dockflowbackend.workflow.repository.RoutingRuleRepository;
 import org.aldousdev.dockflowbackend.workflow.repository.TaskRepository;
+import org.aldousdev.dockflowbackend.workflow.repository.WorkflowAuditLogRepository;
 import org.aldousdev.dockflowbackend.workflow.repository.WorkflowInstanceRepository;
 import org.aldousdev.dockflowbackend.workflow.repository.WorkflowTemplateRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -42,6 +47,8 @@ public class WorkflowService {
     private final WorkflowEngine workflowEngine;
     private final WorkflowEventBroadcaster eventBroadcaster;
     private final WorkflowAuditService auditService;
+    private final DocumentSearchService documentSearchService;
+    private final DocumentSigningService documentSigningService;
 
     /**
      * Создает новый workflow template с правилами маршрутизации
@@ -94,10 +101,11 @@ public class WorkflowService {
     /**
      * Получает все templates компании
      */
+    @Transactional(readOnly = true)
     public List<WorkflowTemplateResponse> getCompanyTemplates(Long companyId) {
         log.debug("Fetching templates for company: {}", companyId);
         
-        return templateRepository.findByCompanyIdAndIsActive(companyId, true)
+        return templateRepository.findActiveViewsByCompanyId(companyId)
                 .stream()
                 .map(this::mapToTemplateResponse)
                 .collect(Collectors.toList());
@@ -106,10 +114,11 @@ public class WorkflowService {
     /**
      * Получает template по ID
      */
+    @Transactional(readOnly = true)
     public WorkflowTemplateResponse getTemplate(Long templateId) {
         log.debug("Fetching template: {}", templateId);
         
-        return templateRepository.findById(templateId)
+        return templateRepository.findViewById(templateId)
                 .map(this::mapToTemplateResponse)
                 .orElseThrow(() -> new RuntimeException("Template not found: " + templateId));
     }
@@ -149,35 +158,48 @@ public class WorkflowService {
 
         // Логируем запуск workflow
         auditService.logWorkflowStarted(instance, initiatedBy);
+        documentSearchService.updateWorkflowStatus(documentId, instance.getStatus());
 
         // Отправляем уведомление
         eventBroadcaster.broadcastWorkflowStarted(document.getCompany().getId(), instance.getId(), documentId);
 
-        return mapToInstanceResponse(instance);
+        return instanceRepository.findViewById(instance.getId())
+                .map(this::mapToInstanceResponse)
+                .orElseThrow();
     }
 
     /**
      * Получает workflow instance по ID
      */
+    @Transactional(readOnly = true)
     public WorkflowInstanceResponse getWorkflowInstance(Long instanceId) {
         log.debug("Fetching workflow instance: {}", instanceId);
         
-        WorkflowInstance instance = instanceRepository.findById(instanceId)
+        return instanceRepository.findViewById(instanceId)
+                .map(this::mapToInstanceResponse)
                 .orElseThrow(() -> new RuntimeException("Workflow instance not found: " + instanceId));
+    }
 
-        return mapToInstanceResponse(instance);
+    /**
+     * Активные workflow компании - snapshot для клиентов, которые слишком отстали от потока событий
+     */
+    @Transactional(readOnly = true)
+    public List<WorkflowInstanceResponse> getActiveInstances(Long companyId) {
+        return mapToInstanceResponses(
+                instanceRepository.findViewsByCompanyIdAndStatus(companyId, WorkFlowStatus.IN_PROGRESS));
     }
 
     /**
      * Получает текущие tasks для документа
      */
+    @Transactional(readOnly = true)
     public List<TaskResponse> getDocumentTasks(Long documentId) {
         log.debug("Fetching tasks for document: {}", documentId);
 
-        Document document = documentRepository.findById(documentId)
-                .orElseThrow(() -> new RuntimeException("Document not found: " + documentId));
-
-        List<Task> tasks = taskRepository.findByWorkflowInstanceDocument(document);
+        List<TaskRepository.TaskView> tasks = taskRepository.findViewsByDocumentId(documentId);
+        if (tasks.isEmpty() && !documentRepository.existsById(documentId)) {
+            throw new RuntimeException("Document not found: " + documentId);
+        }
         
         return tasks.stream()
                 .map(this::mapToTaskResponse)
@@ -187,16 +209,17 @@ public class WorkflowService {
     /**
      * Получает pending tasks для пользователя
      */
+    @Transactional(readOnly = true)
     public List<TaskResponse> getUserPendingTasks(User user) {
         log.debug("Fetching pending tasks for user: {}", user.getEmail());
 
-        List<Task> tasks = taskRepository.findByStatusAndRequiredRoleName(
+        List<TaskRepository.TaskView> tasks = taskRepository.findViewsByStatusAndRequiredRoleName(
                 TaskStatus.PENDING, 
                 "MANAGER" // TODO: get actual role name for user
         );
 
         return tasks.stream()
-                .filter(task -> workflowEngine.canUserApproveTask(task, user))
+                .filter(task -> workflowEngine.canUserApprove(task.getCompanyId(), task.getRequiredRoleLevel(), user))
                 .map(this::mapToTaskResponse)
                 .collect(Collectors.toList());
     }
@@ -205,7 +228,7 @@ public class WorkflowService {
      * Одобряет task
      */
     @Transactional
-    public TaskResponse approveTask(Long taskId, User approvedBy, String comment) {
+    public TaskResponse approveTask(Long taskId, User approvedBy, TaskApprovalRequest request) {
         log.info("Approving task: {} by user: {}", taskId, approvedBy.getEmail());
 
         Task task = taskRepository.findById(taskId)
@@ -217,11 +240,19 @@ public class WorkflowService {
             throw new RuntimeException("User does not have required role to approve this task");
         }
 
-        workflowEngine.approveTask(task, approvedBy, comment);
+        workflowEngine.approveTask(task, approvedBy, request.getComment());
+
+        // Шаг подписи: штамп и криптоподпись ставятся в PDF после коммита
+        if ("sign".equalsIgnoreCase(task.getAction())) {
+            documentSigningService.requestTaskSignature(task, approvedBy,
+                    request.getSignaturePage(), request.getSignatureX(), request.getSignatureY());
+        }
         task = taskRepository.findById(taskId).get();
 
         // Отправляем уведомление
         Long companyId = task.getWorkflowInstance().getDocument().getCompany().getId();
+        documentSearchService.updateWorkflowStatus(task.getWorkflowInstance().getDocument().getId(),
+                task.getWorkflowInstance().getStatus());
         eventBroadcaster.broadcastTaskApproved(companyId, taskId, approvedBy.getEmail());
 
         return mapToTaskResponse(task);
@@ -248,26 +279,32 @@ public class WorkflowService {
 
         // Отправляем уведомление
         Long companyId = task.getWorkflowInstance().getDocument().getCompany().getId();
+        documentSearchService.updateWorkflowStatus(task.getWorkflowInstance().getDocument().getId(),
+                task.getWorkflowInstance().getStatus());
         eventBroadcaster.broadcastTaskRejected(companyId, taskId, rejectedBy.getEmail());
 
         return mapToTaskResponse(task);
     }
 
     /**
-     * Получает audit историю для workflow instance
+     * Получает audit историю для workflow instance.
+     * Записи не старше начала дня старта workflow - запрос читает только партиции его месяцев
      */
-    public List<WorkflowAuditLogResponse> getWorkflowAuditLog(Long instanceId) {
+    @Transactional(readOnly = true)
+    public List<WorkflowAuditLogResponse> getWorkflowAuditLog(Long instanceId, boolean includeArchived) {
         log.debug("Fetching audit log for workflow instance: {}", instanceId);
 
-        WorkflowInstance instance = instanceRepository.findById(instanceId)
+        LocalDateTime startedAt = instanceRepository.findStartedAt(instanceId)
                 .orElseThrow(() -> new RuntimeException("Workflow instance not found: " + instanceId));
+        List<WorkflowAuditLogRepository.AuditLogView> entries = auditService.getWorkflowHistory(
+                instanceId, startedAt.toLocalDate().atStartOfDay(), includeArchived);
 
-        return auditService.getWorkflowHistory(instance).stream()
+        return entries.stream()
                 .map(log -> WorkflowAuditLogResponse.builder()
                         .id(log.getId())
                         .actionType(log.getActionType())
                         .description(log.getDescription())
-                        .performedBy(log.getPerformedBy() != null ? log.getPerformedBy().getEmail() : "SYSTEM")
+                        .performedBy(log.getPerformedByEmail() != null ? log.getPerformedByEmail() : "SYSTEM")
                         .createdAt(log.getCreatedAt())
                         .metadata(log.getMetadata())
                         .ipAddress(log.getIpAddress())
@@ -290,20 +327,51 @@ public class WorkflowService {
                 .build();
     }
 
+    private WorkflowTemplateResponse mapToTemplateResponse(WorkflowTemplateRepository.TemplateView template) {
+        return WorkflowTemplateResponse.builder()
+                .id(template.getId())
+                .name(template.getName())
+                .description(template.getDescription())
+                .stepsXml(template.getWorkflowXml())
+                .companyId(template.getCompanyId())
+                .createdAt(template.getCreatedAt())
+                .updatedAt(template.getUpdatedAt())
+                .build();
+    }
+
     /**
-     * Mapper: WorkflowInstance -> Response
+     * Mapper: WorkflowInstance -> Response. Tasks всех instances читаются одним запросом
      */
-    private WorkflowInstanceResponse mapToInstanceResponse(WorkflowInstance instance) {
+    private List<WorkflowInstanceResponse> mapToInstanceResponses(List<WorkflowInstanceRepository.InstanceView> instances) {
+        if (instances.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, List<TaskResponse>> tasksByInstance = taskRepository.findViewsByInstanceIds(
+                        instances.stream().map(WorkflowInstanceRepository.InstanceView::getId).toList())
+                .stream()
+                .collect(Collectors.groupingBy(TaskRepository.TaskView::getWorkflowInstanceId,
+                        Collectors.mapping(this::mapToTaskResponse, Collectors.toList())));
+        return instances.stream()
+                .map(instance -> mapToInstanceResponse(instance,
+                        tasksByInstance.getOrDefault(instance.getId(), new ArrayList<>())))
+                .collect(Collectors.toList());
+    }
+
+    private WorkflowInstanceResponse mapToInstanceResponse(WorkflowInstanceRepository.InstanceView instance) {
+        return mapToInstanceResponses(List.of(instance)).get(0);
+    }
+
+    private WorkflowInstanceResponse mapToInstanceResponse(WorkflowInstanceRepository.InstanceView instance,
+                                                           List<TaskResponse> tasks) {
         return WorkflowInstanceResponse.builder()
                 .id(instance.getId())
-                .documentId(instance.getDocument().getId())
-                .templateId(instance.getTemplate().getId())
+                .documentId(instance.getDocumentId())
+                .templateId(instance.getTemplateId())
                 .status(instance.getStatus().toString())
-                .tasks(taskRepository.findByWorkflowInstance(instance).stream()
-                        .map(this::mapToTaskResponse)
-                        .collect(Collectors.toList()))
+                .tasks(tasks)
                 .startedAt(instance.getStartedAt())
                 .completedAt(instance.getCompletedAt())
+                .initiatedByName(fullName(instance.getInitiatorFirstName(), instance.getInitiatorLastName()))
                 .build();
     }
 
@@ -322,4 +390,25 @@ public class WorkflowService {
                 .comment(task.getComment())
                 .build();
     }
+
+    private TaskResponse mapToTaskResponse(TaskRepository.TaskView task) {
+        return TaskResponse.builder()
+                .id(task.getId())
+                .stepOrder(task.getStepOrder())
+                .requiredRoleName(task.getRequiredRoleName())
+                .requiredRoleLevel(task.getRequiredRoleLevel())
+                .status(task.getStatus().toString())
+                .createdAt(task.getCreatedAt())
+                .completedAt(task.getCompletedAt())
+                .comment(task.getComment())
+                .completedByName(fullName(task.getCompletedByFirstName(), task.getCompletedByLastName()))
+                .build();
+    }
+
+    private static String fullName(String firstName, String lastName) {
+        if (firstName == null && lastName == null) {
+            return null;
+        }
+        return (firstName != null ? firstName : "") + (lastName != null ? " " + lastName : "");
+    }
 }
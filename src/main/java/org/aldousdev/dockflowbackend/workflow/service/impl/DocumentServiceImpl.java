@@ -1,42 +1,53 @@
 package org.aldousdev.dockflowbackend.workflow.service.impl;
 
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aldousdev.dockflowbackend.auth.components.RequiresRoleLevel;
 import org.aldousdev.dockflowbackend.auth.entity.User;
 import org.aldousdev.dockflowbackend.auth.exceptions.CompanyNotFoundException;
 import org.aldousdev.dockflowbackend.auth.repository.CompanyRepository;
-import org.aldousdev.dockflowbackend.auth.security.JWTService;
-import org.aldousdev.dockflowbackend.auth.security.JwtAuthenticationToken;
 import org.aldousdev.dockflowbackend.auth.service.impls.AuthServiceImpl;
+import org.aldousdev.dockflowbackend.config.AppMetrics;
 import org.aldousdev.dockflowbackend.workflow.dto.response.DocumentResponse;
 import org.aldousdev.dockflowbackend.workflow.entity.Document;
+import org.aldousdev.dockflowbackend.workflow.enums.DocumentProcessingStatus;
 import org.aldousdev.dockflowbackend.workflow.exceptions.DocumentUploadException;
 import org.aldousdev.dockflowbackend.workflow.exceptions.InvalidFileException;
 import org.aldousdev.dockflowbackend.workflow.repository.DocumentRepository;
+import org.aldousdev.dockflowbackend.workflow.service.DocumentProcessingService;
+import org.aldousdev.dockflowbackend.workflow.service.DocumentSearchService;
 import org.aldousdev.dockflowbackend.workflow.service.DocumentService;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class DocumentServiceImpl implements DocumentService {
+    public static final String UPLOAD_TIMER = "document.upload";
+    public static final String UPLOAD_BYTES = "document.upload.bytes";
+
     private final DocumentRepository documentRepository;
     private final CompanyRepository companyRepository;
     private final AuthServiceImpl authService;
-    private final JWTService jwtService;
+    private final DocumentProcessingService documentProcessingService;
+    private final DocumentSearchService documentSearchService;
+    private final AppMetrics metrics;
 
     @Value("${file.upload.dir}")
     private String uploadDir;
@@ -58,59 +69,135 @@ public class DocumentServiceImpl implements DocumentService {
         }
 
         User currentUser = authService.getCurrentUser();
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if(!(authentication instanceof JwtAuthenticationToken jwtAuth)) {
-            log.error("Invalid authentication token type for user: {}", currentUser.getEmail());
-            throw new RuntimeException("Invalid authentication token type");
-        }
-        String token = jwtAuth.getToken();
-        Long companyId = jwtService.extractCompanyId(token);
-
-        if(companyId == null){
-            log.error("Company ID not found in JWT token for user: {}", currentUser.getEmail());
-            throw new RuntimeException("Company not found in token");
-        }
+        Long companyId = resolveCurrentCompanyId(currentUser);
 
+        Timer.Sample sample = metrics.start();
+        boolean stored = false;
         try{
             Path companyDir = Paths.get(uploadDir,"company-" + companyId);
             Files.createDirectories(companyDir);
 
-            String fileName = LocalDateTime.now().toString().replace(":","-")+"_" + file.getOriginalFilename();
-            Path filePath = companyDir.resolve(fileName);
+            Path filePath = companyDir.resolve(buildStoredFileName(file.getOriginalFilename()));
 
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+            MessageDigest digest = newSha256();
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, filePath, StandardCopyOption.REPLACE_EXISTING);
+            }
             log.debug("File saved to: {}", filePath);
 
-            var company = companyRepository.findById(companyId)
-                    .orElseThrow(() -> new CompanyNotFoundException(
-                        "Company not found with id: " + companyId));
-
-            Document document = Document.builder()
-                    .originalFilename(file.getOriginalFilename())
-                    .filePath(filePath.toString())
-                    .fileSize(file.getSize())
-                    .company(company)
-                    .uploadedBy(currentUser)
-                    .signed(false)
-                    .build();
-
-            document = documentRepository.save(document);
-            log.info("Document successfully uploaded. ID: {}, Company: {}, User: {}", 
-                    document.getId(), companyId, currentUser.getEmail());
-
-            return DocumentResponse.builder()
-                    .id(document.getId())
-                    .originalFilename(document.getOriginalFilename())
-                    .filePath(document.getFilePath())
-                    .fileSize(document.getFileSize())
-                    .uploadedAt(document.getUploadedAt())
-                    .uploadedBy(currentUser.getFirstName() + " " + currentUser.getLastName())
-                    .signed(document.getSigned())
-                    .build();
+            DocumentResponse response = registerStoredDocument(companyId, currentUser, file.getOriginalFilename(),
+                    filePath, file.getSize(), HexFormat.of().formatHex(digest.digest()));
+            metrics.countBytes(UPLOAD_BYTES, companyId, file.getSize(), "mode", "multipart");
+            stored = true;
+            return response;
         }
         catch(IOException exception){
             log.error("IO error during file upload for user: {}", currentUser.getEmail(), exception);
             throw new DocumentUploadException("Error saving file: " + exception.getMessage(), exception);
         }
+        finally {
+            metrics.stop(sample, UPLOAD_TIMER, companyId, stored, "mode", "multipart");
+        }
+    }
+
+    @Override
+    @Transactional
+    public DocumentResponse registerStoredDocument(Long companyId, User uploadedBy, String originalFilename,
+                                                   Path storedFile, long fileSize, String sha256) {
+        var company = companyRepository.findById(companyId)
+                .orElseThrow(() -> new CompanyNotFoundException(
+                    "Company not found with id: " + companyId));
+
+        Document document = Document.builder()
+                .originalFilename(originalFilename)
+                .filePath(storedFile.toString())
+                .fileSize(fileSize)
+                .sha256(sha256)
+                .company(company)
+                .uploadedBy(uploadedBy)
+                .signed(false)
+                .processingStatus(DocumentProcessingStatus.PENDING)
+                .build();
+
+        document = documentRepository.save(document);
+        log.info("Document successfully uploaded. ID: {}, Company: {}, User: {}",
+                document.getId(), companyId, uploadedBy.getEmail());
+
+        // Имя файла сразу попадает в поиск; текст, метаданные и превью извлекаются в фоне
+        documentSearchService.indexAfterCommit(document.getId());
+        documentProcessingService.submitAfterCommit(document.getId());
+
+        return toResponse(document, uploadedBy);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @RequiresRoleLevel(10)
+    public DocumentResponse getDocument(Long documentId) {
+        User currentUser = authService.getCurrentUser();
+        Long companyId = resolveCurrentCompanyId(currentUser);
+
+        DocumentRepository.DocumentView document = documentRepository.findViewByIdAndCompanyId(documentId, companyId)
+                .orElseThrow(() -> new RuntimeException("Document not found: " + documentId));
+
+        return DocumentResponse.builder()
+                .id(document.getId())
+                .originalFilename(document.getOriginalFilename())
+                .filePath(document.getFilePath())
+                .fileSize(document.getFileSize())
+                .sha256(document.getSha256())
+                .uploadedAt(document.getUploadedAt())
+                .uploadedBy(document.getUploaderFirstName() + " " + document.getUploaderLastName())
+                .signed(Boolean.TRUE.equals(document.getSigned()))
+                .processingStatus(document.getProcessingStatus() != null ? document.getProcessingStatus().name() : null)
+                .pageCount(document.getPageCount())
+                .title(document.getTitle())
+                .author(document.getAuthor())
+                .build();
+    }
+
+    private DocumentResponse toResponse(Document document, User uploadedBy) {
+        return DocumentResponse.builder()
+                .id(document.getId())
+                .originalFilename(document.getOriginalFilename())
+                .filePath(document.getFilePath())
+                .fileSize(document.getFileSize())
+                .sha256(document.getSha256())
+                .uploadedAt(document.getUploadedAt())
+                .uploadedBy(uploadedBy.getFirstName() + " " + uploadedBy.getLastName())
+                .signed(document.getSigned())
+                .processingStatus(document.getProcessingStatus() != null ? document.getProcessingStatus().name() : null)
+                .pageCount(document.getPageCount())
+                .title(document.getTitle())
+                .author(document.getAuthor())
+                .build();
+    }
+
+    /**
+     * Достает ID компании из JWT текущего пользователя
+     */
+    @Override
+    public Long resolveCurrentCompanyId(User currentUser) {
+        try {
+            return authService.getCurrentCompanyId();
+        } catch (RuntimeException e) {
+            log.error("Could not resolve company for user {}: {}", currentUser.getEmail(), e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Имя файла на диске: время загрузки + оригинальное имя
+     */
+    public static String buildStoredFileName(String originalFilename) {
+        return LocalDateTime.now().toString().replace(":","-")+"_" + originalFilename;
+    }
+
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 }
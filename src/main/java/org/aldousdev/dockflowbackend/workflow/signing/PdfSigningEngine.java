@@ -0,0 +1,86 @@
+package org.aldousdev.dockflowbackend.workflow.signing;
+
+import com.itextpdf.forms.form.element.SignatureFieldAppearance;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.StampingProperties;
+import com.itextpdf.signatures.BouncyCastleDigest;
+import com.itextpdf.signatures.DigestAlgorithms;
+import com.itextpdf.signatures.IExternalDigest;
+import com.itextpdf.signatures.PdfSigner;
+import com.itextpdf.signatures.PrivateKeySignature;
+import com.itextpdf.signatures.SignatureUtil;
+import com.itextpdf.signatures.SignerProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.time.format.DateTimeFormatter;
+import java.util.Calendar;
+
+/**
+ * Ставит видимый штамп и CMS подпись в PDF.
+ * Подпись добавляется инкрементальным обновлением (append mode): исходные байты
+ * и предыдущие подписи не переписываются, в конец файла дописывается новая ревизия.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PdfSigningEngine {
+    private static final DateTimeFormatter STAMP_DATE = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+    private static final IExternalDigest DIGEST = new BouncyCastleDigest();
+
+    private final SigningKeyProvider keyProvider;
+
+    @Value("${document.signing.appearance-width:180}")
+    private float appearanceWidth;
+
+    @Value("${document.signing.appearance-height:50}")
+    private float appearanceHeight;
+
+    @Value("${document.signing.location:DockFlow}")
+    private String location;
+
+    /**
+     * Подписывает source и пишет результат в target
+     */
+    public void sign(Path source, Path target, SignatureRequest request) throws IOException, GeneralSecurityException {
+        String stampText = request.signatureText() + "\n" + request.signedAt().format(STAMP_DATE);
+
+        SignerProperties properties = new SignerProperties()
+                .setFieldName(request.fieldName())
+                .setPageNumber(request.pageNumber())
+                .setPageRect(new Rectangle(request.x(), request.y(), appearanceWidth, appearanceHeight))
+                .setReason(request.reason())
+                .setLocation(location)
+                .setSignDate(Calendar.getInstance())
+                .setSignatureAppearance(new SignatureFieldAppearance(request.fieldName()).setContent(stampText));
+
+        try (PdfReader reader = new PdfReader(source.toFile());
+             OutputStream out = Files.newOutputStream(target)) {
+            PdfSigner signer = new PdfSigner(reader, out, null, new StampingProperties().useAppendMode(), properties);
+            PrivateKeySignature signature = new PrivateKeySignature(
+                    keyProvider.getPrivateKey(), DigestAlgorithms.SHA256, BouncyCastleProvider.PROVIDER_NAME);
+            signer.signDetached(DIGEST, signature, keyProvider.getChain(),
+                    null, null, null, 0, PdfSigner.CryptoStandard.CMS);
+        }
+        log.debug("Signed {} into {} (field {})", source, target, request.fieldName());
+    }
+
+    /**
+     * Есть ли в PDF подпись с таким полем: узел мог упасть после записи файла, но до отметки в базе
+     */
+    public boolean hasSignature(Path file, String fieldName) throws IOException {
+        try (PdfDocument pdf = new PdfDocument(new PdfReader(file.toFile()))) {
+            return new SignatureUtil(pdf).getSignatureNames().contains(fieldName);
+        }
+    }
+}
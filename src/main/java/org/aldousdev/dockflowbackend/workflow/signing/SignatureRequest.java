@@ -0,0 +1,16 @@
+package org.aldousdev.dockflowbackend.workflow.signing;
+
+import java.time.LocalDateTime;
+
+/**
+ * Параметры одной подписи: поле, страница, положение штампа и текст
+ */
+public record SignatureRequest(
+        String fieldName,
+        int pageNumber,
+        float x,
+        float y,
+        String signatureText,
+        String reason,
+        LocalDateTime signedAt) {
+}
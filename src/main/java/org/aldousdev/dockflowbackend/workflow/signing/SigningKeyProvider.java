@@ -0,0 +1,116 @@
+package org.aldousdev.dockflowbackend.workflow.signing;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.security.cert.Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Ключ и цепочка сертификатов для подписи PDF.
+ * Загружаются один раз при старте и переиспользуются всеми потоками подписи.
+ * Без настроенного PKCS12 хранилища старт падает; самоподписанный тестовый ключ
+ * генерируется только при document.signing.allow-test-key=true (разработка и тесты).
+ */
+@Component
+@Slf4j
+public class SigningKeyProvider {
+    @Value("${document.signing.keystore.path:}")
+    private String keystorePath;
+
+    @Value("${document.signing.keystore.password:}")
+    private String keystorePassword;
+
+    @Value("${document.signing.keystore.alias:}")
+    private String keyAlias;
+
+    @Value("${document.signing.allow-test-key:false}")
+    private boolean allowTestKey;
+
+    @Getter
+    private PrivateKey privateKey;
+    @Getter
+    private Certificate[] chain;
+    @Getter
+    private String signerName;
+
+    @PostConstruct
+    void load() throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+
+        if (keystorePath == null || keystorePath.isBlank()) {
+            // Ключ, созданный при старте, меняется на каждом рестарте - подписи разных дней не сверить
+            if (!allowTestKey) {
+                throw new IllegalStateException("document.signing.keystore.path is not set; " +
+                        "set document.signing.allow-test-key=true to sign with a generated test key");
+            }
+            generateTestKey();
+            return;
+        }
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        char[] password = keystorePassword.toCharArray();
+        try (InputStream in = Files.newInputStream(Path.of(keystorePath))) {
+            keyStore.load(in, password);
+        }
+
+        String alias = keyAlias != null && !keyAlias.isBlank() ? keyAlias : keyStore.aliases().nextElement();
+        privateKey = (PrivateKey) keyStore.getKey(alias, password);
+        chain = keyStore.getCertificateChain(alias);
+        if (privateKey == null || chain == null || chain.length == 0) {
+            throw new IllegalStateException("Key entry '" + alias + "' not found in " + keystorePath);
+        }
+        signerName = alias;
+        log.info("Signing key '{}' loaded from {}", alias, keystorePath);
+    }
+
+    /**
+     * Самоподписанный RSA ключ для локальной разработки и тестов
+     */
+    private void generateTestKey() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        X500Name subject = new X500Name("CN=DockFlow Test Signer, O=DockFlow");
+        Instant now = Instant.now();
+        JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(
+                subject,
+                BigInteger.valueOf(now.toEpochMilli()),
+                Date.from(now.minus(Duration.ofDays(1))),
+                Date.from(now.plus(Duration.ofDays(365))),
+                subject,
+                keyPair.getPublic());
+        Certificate certificate = new JcaX509CertificateConverter()
+                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .getCertificate(builder.build(new JcaContentSignerBuilder("SHA256withRSA")
+                        .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                        .build(keyPair.getPrivate())));
+
+        privateKey = keyPair.getPrivate();
+        chain = new Certificate[]{certificate};
+        signerName = "DockFlow Test Signer";
+        log.warn("document.signing.allow-test-key is set, signing with a generated self-signed test key");
+    }
+}
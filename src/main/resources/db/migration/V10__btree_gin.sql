@@ -0,0 +1,3 @@
+-- btree_gin: обычные колонки (company_id) в составных GIN индексах полнотекстового поиска.
+-- Расширение доверенное (PostgreSQL 13+), владельцу базы суперпользователь не нужен
+CREATE EXTENSION IF NOT EXISTS btree_gin;
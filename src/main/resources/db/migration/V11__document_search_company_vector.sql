@@ -0,0 +1,6 @@
+-- Поиск документов всегда в пределах компании. GIN только по search_vector для частого слова
+-- отдает совпадения всех компаний, и лишние строки отбрасываются фильтром по company_id;
+-- составной индекс пересекает списки company_id и слов запроса внутри одного GIN скана
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_document_search_company_vector
+    ON document_search_entries USING GIN (company_id, search_vector);
+DROP INDEX CONCURRENTLY IF EXISTS idx_document_search_vector;
@@ -0,0 +1,3 @@
+-- Аренда записи подписи в PDF: подписи подхватывают все узлы, пишет одна - та, что захвачена
+ALTER TABLE document_signatures ADD COLUMN claimed_at timestamp(6);
+ALTER TABLE document_signatures ADD COLUMN attempts integer NOT NULL DEFAULT 0;
@@ -0,0 +1,8 @@
+-- Поиск по чату всегда в пределах компании. GIN только по search_vector для частого слова
+-- отдает совпадения всех компаний, и лишние строки отбрасываются фильтром по company_id;
+-- составной индекс (btree_gin, V10) пересекает списки company_id и слов запроса в одном GIN скане.
+-- Для очень частых слов планировщик по-прежнему может идти по idx_chat_search_company_message
+-- в порядке message_id DESC и остановиться на LIMIT
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_search_company_vector
+    ON chat_message_search_entries USING GIN (company_id, search_vector);
+DROP INDEX CONCURRENTLY IF EXISTS idx_chat_search_vector;
@@ -0,0 +1,7 @@
+-- Последнее изменение участников или ролей компании: узлы сбрасывают по нему свой индекс ролей.
+-- Одна строка на компанию (company_id = 0 - системные роли всех компаний)
+CREATE TABLE company_role_changes (
+    company_id bigint PRIMARY KEY,
+    changed_at timestamp(6) NOT NULL
+);
+CREATE INDEX idx_company_role_changes_changed_at ON company_role_changes (changed_at);
@@ -0,0 +1,341 @@
+-- Схема сущностей JPA на момент перехода с ddl-auto=update на миграции.
+-- На базах, созданных Hibernate раньше, эта версия пропускается (baseline-on-migrate, baseline-version=1)
+
+CREATE SEQUENCE audit_logs_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE chat_channels_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE companies_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE company_roles_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE document_signatures_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE documents_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE memberships_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE tasks_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE users_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE workflow_instances_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE workflow_templates_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE audit_logs (
+    id bigint NOT NULL,
+    action varchar(255) NOT NULL,
+    details varchar(255),
+    timestamp timestamp(6),
+    document_id bigint,
+    performed_by_id bigint,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE chat_channels (
+    id bigint NOT NULL,
+    created_at timestamp(6),
+    description varchar(255),
+    is_public boolean NOT NULL,
+    message_count bigint,
+    name varchar(255) NOT NULL,
+    company_id bigint NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE chat_read_markers (
+    id bigint GENERATED BY DEFAULT AS IDENTITY,
+    channel_id bigint NOT NULL,
+    last_read_message_id bigint,
+    read_count bigint NOT NULL,
+    updated_at timestamp(6) NOT NULL,
+    user_id bigint NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_chat_read_markers_user_channel UNIQUE (user_id, channel_id)
+);
+
+CREATE TABLE companies (
+    id bigint NOT NULL,
+    created_at timestamp(6),
+    description varchar(255),
+    name varchar(255) NOT NULL UNIQUE,
+    updated_at timestamp(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE company_roles (
+    id bigint NOT NULL,
+    is_system boolean,
+    level integer,
+    name varchar(255),
+    company_id bigint,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE document_signatures (
+    id bigint NOT NULL,
+    applied_at timestamp(6),
+    failure_reason varchar(1000),
+    page_number integer,
+    signature_text varchar(255),
+    signed_at timestamp(6),
+    x_position float4,
+    y_position float4,
+    document_id bigint NOT NULL,
+    signed_by_id bigint,
+    task_id bigint,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE document_texts (
+    document_id bigint NOT NULL,
+    content TEXT NOT NULL,
+    extracted_at timestamp(6) NOT NULL,
+    truncated boolean,
+    PRIMARY KEY (document_id)
+);
+
+CREATE TABLE documents (
+    id bigint NOT NULL,
+    author varchar(255),
+    content_type varchar(255),
+    creator varchar(255),
+    file_path varchar(255) NOT NULL,
+    file_size bigint,
+    original_filename varchar(255) NOT NULL,
+    page_count integer,
+    preview_path varchar(255),
+    processed_at timestamp(6),
+    processing_error varchar(1000),
+    processing_status varchar(20) CHECK ((processing_status IN ('PENDING','PROCESSING','COMPLETED','FAILED'))),
+    sha256 varchar(64),
+    signed boolean,
+    subject varchar(255),
+    title varchar(255),
+    uploaded_at timestamp(6) NOT NULL,
+    company_id bigint NOT NULL,
+    uploaded_by bigint NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE email_outbox (
+    id bigint GENERATED BY DEFAULT AS IDENTITY,
+    attempts integer NOT NULL,
+    body TEXT NOT NULL,
+    created_at timestamp(6) NOT NULL,
+    html boolean NOT NULL,
+    last_error varchar(1000),
+    next_attempt_at timestamp(6) NOT NULL,
+    recipient varchar(255) NOT NULL,
+    sent_at timestamp(6),
+    status varchar(20) NOT NULL CHECK ((status IN ('PENDING','SENT','DEAD'))),
+    subject varchar(255) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE memberships (
+    id bigint NOT NULL,
+    join_date timestamp(6) NOT NULL,
+    company_id bigint NOT NULL,
+    role_id bigint NOT NULL,
+    user_id bigint NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE messages (
+    id bigint NOT NULL,
+    content TEXT NOT NULL,
+    created_at timestamp(6) NOT NULL,
+    edited boolean,
+    edited_at timestamp(6),
+    channel_id bigint NOT NULL,
+    sender_id bigint NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE notification_digest_items (
+    id bigint GENERATED BY DEFAULT AS IDENTITY,
+    body TEXT NOT NULL,
+    created_at timestamp(6) NOT NULL,
+    deliver_after timestamp(6) NOT NULL,
+    recipient varchar(255) NOT NULL,
+    subject varchar(255) NOT NULL,
+    summary varchar(1000) NOT NULL,
+    user_id bigint NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE notification_preferences (
+    user_id bigint NOT NULL,
+    digest_mode varchar(20) NOT NULL CHECK ((digest_mode IN ('IMMEDIATE','EVERY_15_MINUTES','HOURLY'))),
+    max_emails_per_hour integer,
+    updated_at timestamp(6) NOT NULL,
+    PRIMARY KEY (user_id)
+);
+
+CREATE TABLE routing_rules (
+    id bigint GENERATED BY DEFAULT AS IDENTITY,
+    description varchar(500),
+    is_override_allowed boolean,
+    routing_type varchar(255) NOT NULL CHECK ((routing_type IN ('ON_APPROVE','ON_REJECT','ON_TIMEOUT'))),
+    step_order integer NOT NULL,
+    target_step integer,
+    template_id bigint NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE tasks (
+    id bigint NOT NULL,
+    action varchar(20),
+    comment varchar(255),
+    completed_at timestamp(6),
+    created_at timestamp(6),
+    required_role_level integer,
+    required_role_name varchar(255) NOT NULL,
+    status varchar(255) CHECK ((status IN ('PENDING','APPROVED','REJECTED','CANCELLED','OVERDUE'))),
+    step_order integer NOT NULL,
+    assigned_by_user_id bigint NOT NULL,
+    completed_by_id bigint,
+    workflow_instance_id bigint NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE users (
+    id bigint NOT NULL,
+    email varchar(255) NOT NULL UNIQUE,
+    email_verification_code varchar(255) UNIQUE,
+    email_verified boolean NOT NULL,
+    first_name varchar(255) NOT NULL,
+    last_name varchar(255) NOT NULL,
+    password varchar(60) NOT NULL,
+    status varchar(255) NOT NULL CHECK ((status IN ('ACTIVE','PENDING','INACTIVE','BLOCKED','DELETED','ARCHIVED'))),
+    user_type varchar(255) NOT NULL CHECK ((user_type IN ('PLATFORM_USER','COMPANY_OWNER','COMPANY_MEMBER'))),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE workflow_audit_logs (
+    id bigint GENERATED BY DEFAULT AS IDENTITY,
+    action_type varchar(255) NOT NULL,
+    created_at timestamp(6) NOT NULL,
+    description varchar(1000),
+    ip_address varchar(50),
+    metadata TEXT,
+    user_id bigint,
+    task_id bigint,
+    workflow_instance_id bigint NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE workflow_events (
+    id bigint GENERATED BY DEFAULT AS IDENTITY,
+    company_id bigint NOT NULL,
+    created_at timestamp(6) NOT NULL,
+    payload TEXT NOT NULL,
+    sequence bigint NOT NULL,
+    type varchar(40) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_workflow_events_company_sequence UNIQUE (company_id, sequence)
+);
+
+CREATE TABLE workflow_instances (
+    id bigint NOT NULL,
+    completed_at timestamp(6),
+    started_at timestamp(6),
+    status varchar(255) CHECK ((status IN ('IN_PROGRESS','COMPLETED','REJECTED','CANCELLED'))),
+    document_id bigint NOT NULL,
+    initiated_user_id bigint NOT NULL,
+    template_id bigint NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE workflow_templates (
+    id bigint NOT NULL,
+    company_id bigint NOT NULL,
+    created_at timestamp(6) NOT NULL,
+    description varchar(255),
+    is_active boolean NOT NULL,
+    name varchar(255) NOT NULL,
+    updated_at timestamp(6),
+    workflow_xml TEXT NOT NULL,
+    created_user_id bigint NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_email_outbox_status_next_attempt ON email_outbox (status, next_attempt_at);
+CREATE INDEX idx_email_outbox_recipient_created ON email_outbox (recipient, created_at);
+CREATE INDEX idx_memberships_company_role ON memberships (company_id, role_id);
+CREATE INDEX idx_messages_channel_created ON messages (channel_id, created_at, id);
+CREATE INDEX idx_notification_digest_items_user ON notification_digest_items (user_id);
+CREATE INDEX idx_notification_digest_items_deliver_after ON notification_digest_items (deliver_after);
+CREATE INDEX idx_template ON routing_rules (template_id);
+CREATE INDEX idx_step_order ON routing_rules (step_order);
+CREATE INDEX idx_workflow_instance ON workflow_audit_logs (workflow_instance_id);
+CREATE INDEX idx_task ON workflow_audit_logs (task_id);
+CREATE INDEX idx_timestamp ON workflow_audit_logs (created_at);
+CREATE INDEX idx_workflow_events_created_at ON workflow_events (created_at);
+
+ALTER TABLE audit_logs
+    ADD CONSTRAINT fk_audit_logs_document FOREIGN KEY (document_id) REFERENCES documents;
+
+ALTER TABLE audit_logs
+    ADD CONSTRAINT fk_audit_logs_performed_by FOREIGN KEY (performed_by_id) REFERENCES users;
+
+ALTER TABLE chat_channels
+    ADD CONSTRAINT fk_chat_channels_company FOREIGN KEY (company_id) REFERENCES companies;
+
+ALTER TABLE company_roles
+    ADD CONSTRAINT fk_company_roles_company FOREIGN KEY (company_id) REFERENCES companies;
+
+ALTER TABLE document_signatures
+    ADD CONSTRAINT fk_document_signatures_document FOREIGN KEY (document_id) REFERENCES documents;
+
+ALTER TABLE document_signatures
+    ADD CONSTRAINT fk_document_signatures_signed_by FOREIGN KEY (signed_by_id) REFERENCES users;
+
+ALTER TABLE document_signatures
+    ADD CONSTRAINT fk_document_signatures_task FOREIGN KEY (task_id) REFERENCES tasks;
+
+ALTER TABLE documents
+    ADD CONSTRAINT fk_documents_company FOREIGN KEY (company_id) REFERENCES companies;
+
+ALTER TABLE documents
+    ADD CONSTRAINT fk_documents_uploaded_by FOREIGN KEY (uploaded_by) REFERENCES users;
+
+ALTER TABLE memberships
+    ADD CONSTRAINT fk_memberships_company FOREIGN KEY (company_id) REFERENCES companies;
+
+ALTER TABLE memberships
+    ADD CONSTRAINT fk_memberships_role FOREIGN KEY (role_id) REFERENCES company_roles;
+
+ALTER TABLE memberships
+    ADD CONSTRAINT fk_memberships_user FOREIGN KEY (user_id) REFERENCES users;
+
+ALTER TABLE messages
+    ADD CONSTRAINT fk_messages_channel FOREIGN KEY (channel_id) REFERENCES chat_channels;
+
+ALTER TABLE messages
+    ADD CONSTRAINT fk_messages_sender FOREIGN KEY (sender_id) REFERENCES users;
+
+ALTER TABLE routing_rules
+    ADD CONSTRAINT fk_routing_rules_template FOREIGN KEY (template_id) REFERENCES workflow_templates;
+
+ALTER TABLE tasks
+    ADD CONSTRAINT fk_tasks_assigned_by_user FOREIGN KEY (assigned_by_user_id) REFERENCES users;
+
+ALTER TABLE tasks
+    ADD CONSTRAINT fk_tasks_completed_by FOREIGN KEY (completed_by_id) REFERENCES users;
+
+ALTER TABLE tasks
+    ADD CONSTRAINT fk_tasks_workflow_instance FOREIGN KEY (workflow_instance_id) REFERENCES workflow_instances;
+
+ALTER TABLE workflow_audit_logs
+    ADD CONSTRAINT fk_workflow_audit_logs_user FOREIGN KEY (user_id) REFERENCES users;
+
+ALTER TABLE workflow_audit_logs
+    ADD CONSTRAINT fk_workflow_audit_logs_task FOREIGN KEY (task_id) REFERENCES tasks;
+
+ALTER TABLE workflow_audit_logs
+    ADD CONSTRAINT fk_workflow_audit_logs_workflow_instance FOREIGN KEY (workflow_instance_id) REFERENCES workflow_instances;
+
+ALTER TABLE workflow_instances
+    ADD CONSTRAINT fk_workflow_instances_document FOREIGN KEY (document_id) REFERENCES documents;
+
+ALTER TABLE workflow_instances
+    ADD CONSTRAINT fk_workflow_instances_initiated_user FOREIGN KEY (initiated_user_id) REFERENCES users;
+
+ALTER TABLE workflow_instances
+    ADD CONSTRAINT fk_workflow_instances_template FOREIGN KEY (template_id) REFERENCES workflow_templates;
+
+ALTER TABLE workflow_templates
+    ADD CONSTRAINT fk_workflow_templates_created_user FOREIGN KEY (created_user_id) REFERENCES users;
@@ -0,0 +1,32 @@
+-- Таблицы, которые раньше создавались сервисами при старте (DocumentSearchService, ChatSearchService,
+-- PgNotifyBrokerBridge). IF NOT EXISTS: на базах после baseline они уже могут быть
+
+CREATE TABLE IF NOT EXISTS document_search_entries (
+    document_id bigint PRIMARY KEY REFERENCES documents(id) ON DELETE CASCADE,
+    company_id bigint NOT NULL,
+    original_filename varchar(255) NOT NULL,
+    uploader_name varchar(255),
+    workflow_status varchar(20),
+    uploaded_at timestamp NOT NULL,
+    indexed_at timestamp NOT NULL,
+    search_vector tsvector NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_document_search_vector ON document_search_entries USING GIN (search_vector);
+CREATE INDEX IF NOT EXISTS idx_document_search_company_uploaded ON document_search_entries (company_id, uploaded_at DESC);
+
+CREATE TABLE IF NOT EXISTS chat_message_search_entries (
+    message_id bigint PRIMARY KEY REFERENCES messages(id) ON DELETE CASCADE,
+    company_id bigint NOT NULL,
+    channel_id bigint NOT NULL,
+    sender_id bigint NOT NULL,
+    search_vector tsvector NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_chat_search_vector ON chat_message_search_entries USING GIN (search_vector);
+CREATE INDEX IF NOT EXISTS idx_chat_search_company_message ON chat_message_search_entries (company_id, message_id DESC);
+CREATE INDEX IF NOT EXISTS idx_chat_search_channel_message ON chat_message_search_entries (channel_id, message_id DESC);
+
+CREATE TABLE IF NOT EXISTS broker_relay_messages (
+    id bigserial PRIMARY KEY,
+    envelope text NOT NULL,
+    created_at timestamp NOT NULL DEFAULT now()
+);
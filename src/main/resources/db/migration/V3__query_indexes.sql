@@ -0,0 +1,47 @@
+-- Индексы под запросы репозиториев. CONCURRENTLY не блокирует запись в больших таблицах;
+-- Flyway выполняет такой скрипт вне транзакции. Частичные индексы - только там,
+-- где условие в запросе литерал, а не параметр
+
+-- Tasks: задачи instance по шагам (findByWorkflowInstance, findByInstanceAndStep, findViewsByInstanceIds)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tasks_instance_step_status
+    ON tasks (workflow_instance_id, step_order, status);
+-- Очередь согласования по роли (findByStatusAndRequiredRoleName)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tasks_status_role
+    ON tasks (status, required_role_name);
+
+-- Workflow instances документа и join documents -> instances для активных workflow компании
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_workflow_instances_document
+    ON workflow_instances (document_id);
+
+-- Audit история instance от новых к старым (findViewsByInstanceId)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_workflow_audit_logs_instance_created
+    ON workflow_audit_logs (workflow_instance_id, created_at DESC);
+
+-- Memberships: проверка членства (findByCompanyIdAndUserId) и компании пользователя при логине
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_memberships_company_user
+    ON memberships (company_id, user_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_memberships_user
+    ON memberships (user_id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_company_roles_company
+    ON company_roles (company_id);
+
+-- Документы компании по дате загрузки и очередь фоновой обработки (findIdsByProcessingStatus)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_documents_company_uploaded
+    ON documents (company_id, uploaded_at DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_documents_processing_status_uploaded
+    ON documents (processing_status, uploaded_at);
+
+-- Подписи, ожидающие применения к PDF: после применения строка выпадает из индекса
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_document_signatures_pending
+    ON document_signatures (id) WHERE applied_at IS NULL AND failure_reason IS NULL;
+
+-- Публичные каналы компании и активные шаблоны (условие в запросах - литерал true)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_channels_company_public
+    ON chat_channels (company_id) WHERE is_public;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_workflow_templates_company_active
+    ON workflow_templates (company_id) WHERE is_active;
+
+-- Claim outbox берет только PENDING: отправленные письма не раздувают индекс очереди
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_email_outbox_pending_next_attempt
+    ON email_outbox (next_attempt_at, id) WHERE status = 'PENDING';
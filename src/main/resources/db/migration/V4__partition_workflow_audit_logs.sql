@@ -0,0 +1,52 @@
+-- workflow_audit_logs -> таблица с помесячными RANGE партициями по created_at.
+-- Первичный ключ обязан включать ключ партиционирования: (id, created_at).
+-- Дальше партиции создает и архивирует AuditPartitionManager; здесь - история и три месяца вперед.
+-- Миграция переписывает таблицу целиком и держит на ней блокировку до конца
+
+ALTER TABLE workflow_audit_logs RENAME TO workflow_audit_logs_legacy;
+
+-- Последовательность identity старой таблицы удалится вместе с ней, поэтому у новой своя
+CREATE SEQUENCE workflow_audit_log_id_seq;
+
+CREATE TABLE workflow_audit_logs (
+    id bigint NOT NULL DEFAULT nextval('workflow_audit_log_id_seq'),
+    action_type varchar(255) NOT NULL,
+    created_at timestamp(6) NOT NULL,
+    description varchar(1000),
+    ip_address varchar(50),
+    metadata TEXT,
+    user_id bigint REFERENCES users,
+    task_id bigint REFERENCES tasks,
+    workflow_instance_id bigint NOT NULL REFERENCES workflow_instances,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE workflow_audit_log_id_seq OWNED BY workflow_audit_logs.id;
+
+DO $$
+DECLARE
+    partition_start date := date_trunc('month', COALESCE((SELECT min(created_at) FROM workflow_audit_logs_legacy), now()))::date;
+    last_start date := (date_trunc('month', now()) + interval '3 months')::date;
+BEGIN
+    WHILE partition_start <= last_start LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF workflow_audit_logs FOR VALUES FROM (%L) TO (%L)',
+                       'workflow_audit_logs_' || to_char(partition_start, 'YYYY_MM'), partition_start,
+                       (partition_start + interval '1 month')::date);
+        partition_start := (partition_start + interval '1 month')::date;
+    END LOOP;
+END $$;
+
+INSERT INTO workflow_audit_logs (id, action_type, created_at, description, ip_address, metadata,
+                                 user_id, task_id, workflow_instance_id)
+SELECT id, action_type, created_at, description, ip_address, metadata, user_id, task_id, workflow_instance_id
+FROM workflow_audit_logs_legacy;
+
+DROP TABLE workflow_audit_logs_legacy;
+
+SELECT setval('workflow_audit_log_id_seq', COALESCE((SELECT max(id) FROM workflow_audit_logs), 0) + 1, false);
+
+-- Индексы родителя создаются на каждой партиции, в том числе будущих
+CREATE INDEX idx_workflow_audit_logs_instance_created ON workflow_audit_logs (workflow_instance_id, created_at DESC);
+CREATE INDEX idx_workflow_audit_logs_task ON workflow_audit_logs (task_id);
+CREATE INDEX idx_workflow_audit_logs_created ON workflow_audit_logs (created_at);
+CREATE INDEX idx_workflow_audit_logs_action_created ON workflow_audit_logs (action_type, created_at DESC);
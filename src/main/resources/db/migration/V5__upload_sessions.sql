@@ -0,0 +1,21 @@
+-- Сессии возобновляемой загрузки переживают рестарт и видны всем узлам.
+-- Чанки отдельной таблицей: узлы отмечают их параллельно без блокировки строки сессии
+
+CREATE TABLE upload_sessions (
+    id varchar(36) PRIMARY KEY,
+    user_id bigint NOT NULL,
+    company_id bigint NOT NULL,
+    original_filename varchar(255) NOT NULL,
+    total_size bigint NOT NULL,
+    chunk_size bigint NOT NULL,
+    status varchar(20) NOT NULL CHECK (status IN ('OPEN', 'COMPLETING')),
+    created_at timestamp(6) NOT NULL,
+    last_activity_at timestamp(6) NOT NULL
+);
+CREATE INDEX idx_upload_sessions_last_activity ON upload_sessions (last_activity_at);
+
+CREATE TABLE upload_session_chunks (
+    session_id varchar(36) NOT NULL REFERENCES upload_sessions(id) ON DELETE CASCADE,
+    chunk_index integer NOT NULL,
+    PRIMARY KEY (session_id, chunk_index)
+);
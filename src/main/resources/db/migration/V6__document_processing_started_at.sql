@@ -0,0 +1,2 @@
+-- Время взятия документа в обработку: по нему находятся документы, оставшиеся в PROCESSING после падения узла
+ALTER TABLE documents ADD COLUMN processing_started_at timestamp(6);
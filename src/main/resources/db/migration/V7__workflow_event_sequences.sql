@@ -0,0 +1,9 @@
+-- Счетчик номеров событий workflow на компанию: номера выдает база, а не память узла,
+-- поэтому несколько узлов не выдают один и тот же номер
+CREATE TABLE workflow_event_sequences (
+    company_id bigint PRIMARY KEY,
+    last_sequence bigint NOT NULL
+);
+
+INSERT INTO workflow_event_sequences (company_id, last_sequence)
+SELECT company_id, max(sequence) FROM workflow_events GROUP BY company_id;
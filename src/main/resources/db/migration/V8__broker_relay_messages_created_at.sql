@@ -0,0 +1,2 @@
+-- Очистка broker_relay_messages по created_at раз в минуту на каждом узле
+CREATE INDEX IF NOT EXISTS idx_broker_relay_messages_created_at ON broker_relay_messages (created_at);
@@ -0,0 +1,12 @@
+-- Присутствие пользователей по узлам: каждый узел пишет своих подключенных пользователей,
+-- снимок компании собирается по всем узлам. Строки упавшего узла устаревают по heartbeat_at
+CREATE TABLE chat_presence (
+    node_id varchar(36) NOT NULL,
+    company_id bigint NOT NULL,
+    user_id bigint NOT NULL,
+    away boolean NOT NULL,
+    heartbeat_at timestamp(6) NOT NULL,
+    PRIMARY KEY (node_id, company_id, user_id)
+);
+CREATE INDEX idx_chat_presence_company ON chat_presence (company_id);
+CREATE INDEX idx_chat_presence_heartbeat ON chat_presence (heartbeat_at);
@@ -3,7 +3,10 @@ package org.aldousdev.dockflowbackend;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {
+        "jpa.query-budget.fail-on-exceed=true",
+        "document.signing.allow-test-key=true"
+})
 class DockFlowBackendApplicationTests {
 
     @Test
@@ -0,0 +1,161 @@
+package org.aldousdev.dockflowbackend.auth.components;
+
+import org.aldousdev.dockflowbackend.auth.entity.Company;
+import org.aldousdev.dockflowbackend.auth.entity.CompanyRoleEntity;
+import org.aldousdev.dockflowbackend.auth.entity.Membership;
+import org.aldousdev.dockflowbackend.auth.repository.MembershipRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CompanyRoleIndexTest {
+    private static final Long COMPANY_ID = 1L;
+    private static final Long OTHER_COMPANY_ID = 2L;
+
+    private final MembershipRepository membershipRepository = mock(MembershipRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private CompanyRoleIndex index;
+    private CompanyRoleIndexInvalidationListener listener;
+
+    @BeforeEach
+    void setUp() {
+        index = new CompanyRoleIndex(membershipRepository, jdbcTemplate, 100, Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(index, "syncInterval", Duration.ofSeconds(5));
+        @SuppressWarnings("unchecked")
+        ObjectProvider<CompanyRoleIndex> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(index);
+        listener = new CompanyRoleIndexInvalidationListener(provider);
+        when(membershipRepository.findRoleMembers(COMPANY_ID)).thenReturn(List.of(
+                member(7L, "Бухгалтер", 30), member(8L, "Директор", 90)));
+        when(membershipRepository.findRoleMembers(OTHER_COMPANY_ID)).thenReturn(List.of(member(9L, "Директор", 90)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void companyIsLoadedOnceAndIndexedByRoleAndLevel() {
+        assertThat(index.usersWithRole(COMPANY_ID, "бухгалтер")).containsExactly(7L);
+        assertThat(index.usersWithLevelAtLeast(COMPANY_ID, 30)).containsExactly(8L, 7L);
+        assertThat(index.approvers(COMPANY_ID, "Юрист", 50)).containsExactly(8L);
+
+        verify(membershipRepository, times(1)).findRoleMembers(COMPANY_ID);
+    }
+
+    @Test
+    void membershipChangeEvictsNowAndAgainAfterCommit() {
+        index.usersWithRole(COMPANY_ID, "Бухгалтер");
+        TransactionSynchronizationManager.initSynchronization();
+
+        listener.evict(Membership.builder().company(Company.builder().id(COMPANY_ID).build()).build());
+        index.usersWithRole(COMPANY_ID, "Бухгалтер");
+
+        verify(membershipRepository, times(2)).findRoleMembers(COMPANY_ID);
+        // Изменение еще не зафиксировано: другим узлам сообщать рано
+        verify(jdbcTemplate, never()).update(anyString(), eq(COMPANY_ID));
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        index.usersWithRole(COMPANY_ID, "Бухгалтер");
+
+        verify(membershipRepository, times(3)).findRoleMembers(COMPANY_ID);
+        verify(jdbcTemplate).update(anyString(), eq(COMPANY_ID));
+    }
+
+    @Test
+    void rolledBackChangeIsNotPublished() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        listener.evict(CompanyRoleEntity.builder().company(Company.builder().id(COMPANY_ID).build()).build());
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+
+        verify(jdbcTemplate, never()).update(anyString(), eq(COMPANY_ID));
+    }
+
+    @Test
+    void changesMadeOnOtherNodesAreEvicted() {
+        index.usersWithRole(COMPANY_ID, "Бухгалтер");
+        index.usersWithRole(OTHER_COMPANY_ID, "Директор");
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any())).thenReturn(List.of(COMPANY_ID));
+
+        index.evictChanged();
+        index.usersWithRole(COMPANY_ID, "Бухгалтер");
+        index.usersWithRole(OTHER_COMPANY_ID, "Директор");
+
+        verify(membershipRepository, times(2)).findRoleMembers(COMPANY_ID);
+        verify(membershipRepository, times(1)).findRoleMembers(OTHER_COMPANY_ID);
+    }
+
+    @Test
+    void systemRoleChangeEvictsEveryCompany() {
+        index.usersWithRole(COMPANY_ID, "Бухгалтер");
+        index.usersWithRole(OTHER_COMPANY_ID, "Директор");
+
+        listener.evict(CompanyRoleEntity.builder().name("Администратор").isSystem(true).build());
+        index.usersWithRole(COMPANY_ID, "Бухгалтер");
+        index.usersWithRole(OTHER_COMPANY_ID, "Директор");
+
+        verify(membershipRepository, times(2)).findRoleMembers(COMPANY_ID);
+        verify(membershipRepository, times(2)).findRoleMembers(OTHER_COMPANY_ID);
+        verify(jdbcTemplate).update(anyString(), eq(CompanyRoleIndex.ALL_COMPANIES));
+    }
+
+    @Test
+    void unavailableDatabaseDoesNotBreakInvalidation() {
+        when(jdbcTemplate.update(anyString(), eq(COMPANY_ID)))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+        assertThatCode(() -> {
+            index.markChanged(COMPANY_ID);
+            index.evictChanged();
+        }).doesNotThrowAnyException();
+    }
+
+    private static MembershipRepository.RoleMemberView member(Long userId, String roleName, Integer roleLevel) {
+        return new MembershipRepository.RoleMemberView() {
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public String getRoleName() {
+                return roleName;
+            }
+
+            @Override
+            public Integer getRoleLevel() {
+                return roleLevel;
+            }
+        };
+    }
+}
@@ -0,0 +1,102 @@
+package org.aldousdev.dockflowbackend.auth.security;
+
+import org.aldousdev.dockflowbackend.auth.enums.UserType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringJUnitWebConfig(ActuatorSecurityConfigTest.TestConfig.class)
+@TestPropertySource(properties = {"actuator.security.username=scraper", "actuator.security.password=s3cret"})
+class ActuatorSecurityConfigTest {
+    @Autowired
+    private WebApplicationContext context;
+
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        mvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+    }
+
+    @Test
+    void healthIsOpen() throws Exception {
+        mvc.perform(get("/actuator/health")).andExpect(status().isOk());
+    }
+
+    @Test
+    void prometheusRequiresActuatorAccount() throws Exception {
+        mvc.perform(get("/actuator/prometheus")).andExpect(status().isUnauthorized());
+        mvc.perform(get("/actuator/prometheus").with(httpBasic("scraper", "wrong")))
+                .andExpect(status().isUnauthorized());
+        mvc.perform(get("/actuator/prometheus").with(httpBasic("scraper", "s3cret")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void companyUsersCannotReadOrResetSqlStatistics() throws Exception {
+        mvc.perform(get("/actuator/hibernate").with(companyOwner()))
+                .andExpect(status().isForbidden());
+        mvc.perform(delete("/actuator/hibernate").with(companyOwner()))
+                .andExpect(status().isForbidden());
+        mvc.perform(get("/actuator/hibernate").header("Authorization", "Bearer tenant-token"))
+                .andExpect(status().isUnauthorized());
+        mvc.perform(delete("/actuator/hibernate").with(httpBasic("scraper", "s3cret")))
+                .andExpect(status().isOk());
+    }
+
+    private static RequestPostProcessor companyOwner() {
+        return user("owner@dockflow.test").authorities(new SimpleGrantedAuthority(UserType.COMPANY_OWNER.name()));
+    }
+
+    @Configuration
+    @EnableWebMvc
+    @EnableWebSecurity
+    @Import(ActuatorSecurityConfig.class)
+    static class TestConfig {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder(4);
+        }
+
+        @Bean
+        ActuatorStub actuatorStub() {
+            return new ActuatorStub();
+        }
+    }
+
+    @RestController
+    static class ActuatorStub {
+        @GetMapping({"/actuator/health", "/actuator/prometheus", "/actuator/hibernate"})
+        String read() {
+            return "ok";
+        }
+
+        @DeleteMapping("/actuator/hibernate")
+        void reset() {
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.aldousdev.dockflowbackend.chat.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MultiValueMap;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Брокер на 10k сессий: поиск подписчиков по destination (хеш-реестр против
+ * DefaultSubscriptionRegistry Spring) и рассылка кадра всем сессиям через ShardedOutboundExecutor.
+ * Каждая сессия подписана на топик своей компании, канал чата и личную очередь.
+ * Запуск: mvn -Pbenchmark clean test-compile exec:exec -Djmh.args=BrokerFanOutBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BrokerFanOutBenchmark {
+    @Param("10000")
+    private int sessions;
+
+    @Param("50")
+    private int companies;
+
+    @Param({"exact", "default"})
+    private String registryType;
+
+    private SubscriptionRegistry registry;
+    private Message<?> companyMessage;
+    private Message<?> channelMessage;
+
+    private ShardedOutboundExecutor executor;
+    private ExecutorSubscribableChannel outboundChannel;
+    private final AtomicReference<CountDownLatch> delivered = new AtomicReference<>();
+    private Message<?>[] sessionFrames;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        registry = registryType.equals("exact") ? new ExactMatchSubscriptionRegistry() : new DefaultSubscriptionRegistry();
+        for (int i = 0; i < sessions; i++) {
+            String sessionId = "session-" + i;
+            registry.registerSubscription(subscribe(sessionId, "0", "/topic/workflow/company/" + (i % companies)));
+            registry.registerSubscription(subscribe(sessionId, "1", "/topic/chat/channel/" + (i % (companies * 10))));
+            registry.registerSubscription(subscribe(sessionId, "2", "/queue/unread-user" + sessionId));
+        }
+        companyMessage = message(SimpMessageType.MESSAGE, null, null, "/topic/workflow/company/7");
+        channelMessage = message(SimpMessageType.MESSAGE, null, null, "/topic/chat/channel/42");
+
+        executor = new ShardedOutboundExecutor(Runtime.getRuntime().availableProcessors(), 1000,
+                SlowConsumerPolicy.DROP, new OutboundSessions());
+        outboundChannel = new ExecutorSubscribableChannel(executor);
+        outboundChannel.subscribe(message -> delivered.get().countDown());
+        sessionFrames = new Message<?>[sessions];
+        for (int i = 0; i < sessions; i++) {
+            sessionFrames[i] = message(SimpMessageType.MESSAGE, "session-" + i, "0", "/topic/workflow/company/0");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public MultiValueMap<String, String> findCompanySubscribers() {
+        return registry.findSubscriptions(companyMessage);
+    }
+
+    @Benchmark
+    public MultiValueMap<String, String> findChannelSubscribers() {
+        return registry.findSubscriptions(channelMessage);
+    }
+
+    /**
+     * Один кадр каждой из сессий через шарды исходящего канала, до последней доставки
+     */
+    @Benchmark
+    public void fanOutToAllSessions() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(sessions);
+        delivered.set(latch);
+        for (Message<?> frame : sessionFrames) {
+            outboundChannel.send(frame);
+        }
+        latch.await();
+    }
+
+    private static Message<?> subscribe(String sessionId, String subscriptionId, String destination) {
+        return message(SimpMessageType.SUBSCRIBE, sessionId, subscriptionId, destination);
+    }
+
+    private static Message<?> message(SimpMessageType type, String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
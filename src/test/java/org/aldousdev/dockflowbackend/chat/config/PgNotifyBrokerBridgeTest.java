@@ -0,0 +1,109 @@
+package org.aldousdev.dockflowbackend.chat.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.MimeTypeUtils;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class PgNotifyBrokerBridgeTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    private final List<Message<?>> localDelivered = new ArrayList<>();
+    private final List<Message<?>> remoteDelivered = new ArrayList<>();
+
+    private PgNotifyBrokerBridge local;
+    private PgNotifyBrokerBridge remote;
+    private BlockingQueue<PgNotifyBrokerBridge.RelayEnvelope> localOutbox;
+
+    @BeforeEach
+    void setUp() {
+        local = bridge(localDelivered);
+        remote = bridge(remoteDelivered);
+        localOutbox = new ArrayBlockingQueue<>(10);
+        ReflectionTestUtils.setField(local, "outbox", localOutbox);
+    }
+
+    @Test
+    void envelopeRoundTripsToAnotherNode() throws Exception {
+        local.preSend(topicMessage("/topic/chat/channel/7", "{\"text\":\"привет\"}", null), null);
+
+        PgNotifyBrokerBridge.RelayEnvelope envelope = localOutbox.poll();
+        assertThat(envelope).isNotNull();
+        remote.deliver(objectMapper.writeValueAsString(envelope));
+
+        assertThat(remoteDelivered).hasSize(1);
+        Message<?> delivered = remoteDelivered.get(0);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(delivered);
+        assertThat(accessor.getMessageType()).isEqualTo(SimpMessageType.MESSAGE);
+        assertThat(accessor.getDestination()).isEqualTo("/topic/chat/channel/7");
+        assertThat(accessor.getContentType()).isEqualTo(MimeTypeUtils.APPLICATION_JSON);
+        assertThat(new String((byte[]) delivered.getPayload(), StandardCharsets.UTF_8))
+                .isEqualTo("{\"text\":\"привет\"}");
+        assertThat(delivered.getHeaders().get(PgNotifyBrokerBridge.ORIGIN_NODE_HEADER)).isEqualTo(envelope.node());
+    }
+
+    @Test
+    void dropsOwnNotifications() throws Exception {
+        local.preSend(topicMessage("/topic/presence/company/1", "[]", null), null);
+
+        local.deliver(objectMapper.writeValueAsString(localOutbox.poll()));
+
+        assertThat(localDelivered).isEmpty();
+    }
+
+    @Test
+    void doesNotRepublishRelayedOrSessionMessages() {
+        Message<byte[]> relayed = topicMessage("/topic/chat/channel/7", "{}", null);
+        Message<byte[]> tagged = MessageBuilder.fromMessage(relayed)
+                .setHeader(PgNotifyBrokerBridge.ORIGIN_NODE_HEADER, "other-node").build();
+
+        local.preSend(tagged, null);
+        local.preSend(topicMessage("/user/queue/errors", "{}", "session-1"), null);
+
+        assertThat(localOutbox).isEmpty();
+    }
+
+    @Test
+    void purgesLargeMessagesOlderThanRetention() {
+        ReflectionTestUtils.setField(local, "largeMessageRetention", Duration.ofMinutes(5));
+
+        local.purgeLargeMessages();
+
+        verify(jdbcTemplate).update(anyString(), eq("300 seconds"));
+    }
+
+    private PgNotifyBrokerBridge bridge(List<Message<?>> delivered) {
+        MessageChannel brokerChannel = (message, timeout) -> delivered.add(message);
+        return new PgNotifyBrokerBridge(mock(DataSource.class), jdbcTemplate, brokerChannel);
+    }
+
+    private static Message<byte[]> topicMessage(String destination, String payload, String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(payload.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+}
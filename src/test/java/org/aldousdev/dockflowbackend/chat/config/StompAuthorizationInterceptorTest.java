@@ -0,0 +1,129 @@
+package org.aldousdev.dockflowbackend.chat.config;
+
+import org.aldousdev.dockflowbackend.auth.entity.CompanyRoleEntity;
+import org.aldousdev.dockflowbackend.auth.repository.CompanyRoleEntityRepository;
+import org.aldousdev.dockflowbackend.chat.service.ChatMetadataCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StompAuthorizationInterceptorTest {
+    private static final Long COMPANY_ID = 1L;
+    private static final Long OTHER_COMPANY_ID = 2L;
+
+    private final ChatMetadataCache metadataCache = mock(ChatMetadataCache.class);
+    private final CompanyRoleEntityRepository roleRepository = mock(CompanyRoleEntityRepository.class);
+    private final StompAuthorizationInterceptor interceptor = new StompAuthorizationInterceptor(metadataCache, roleRepository);
+    private final MessageChannel channel = mock(MessageChannel.class);
+
+    @Test
+    void ownCompanyTopicIsAllowed() {
+        Message<?> message = subscribe("/topic/workflow/company/1", "Бухгалтер", 30);
+
+        assertThat(interceptor.preSend(message, channel)).isSameAs(message);
+    }
+
+    @Test
+    void otherCompanyTopicIsRejected() {
+        assertDenied(subscribe("/topic/workflow/company/2", "Бухгалтер", 30));
+        assertDenied(subscribe("/topic/workflow/company/2/role/Бухгалтер", "Бухгалтер", 30));
+        assertDenied(subscribe("/topic/presence/company/2", "Бухгалтер", 30));
+    }
+
+    @Test
+    void companyTopicPrefixOfAnotherCompanyIsRejected() {
+        // /topic/workflow/company/1 не должен открывать /topic/workflow/company/12
+        assertDenied(subscribe("/topic/workflow/company/12", "Бухгалтер", 30));
+    }
+
+    @Test
+    void channelOfAnotherCompanyIsRejected() {
+        when(metadataCache.channel(7L)).thenReturn(Optional.of(new ChatMetadataCache.ChannelInfo(7L, OTHER_COMPANY_ID, true)));
+        when(metadataCache.channel(8L)).thenReturn(Optional.of(new ChatMetadataCache.ChannelInfo(8L, COMPANY_ID, true)));
+
+        assertDenied(subscribe("/topic/channel/7", "Бухгалтер", 30));
+        assertDenied(subscribe("/topic/channel/7/typing", "Бухгалтер", 30));
+        assertThat(interceptor.preSend(subscribe("/topic/channel/8/typing", "Бухгалтер", 30), channel)).isNotNull();
+    }
+
+    @Test
+    void roleTopicIsAllowedForTheRoleAndHigherLevels() {
+        when(roleRepository.findByCompanyId(COMPANY_ID)).thenReturn(List.of(role("Бухгалтер", 30), role("Директор", 90)));
+
+        assertThat(interceptor.preSend(subscribe("/topic/workflow/company/1/role/бухгалтер", "Бухгалтер", 30), channel))
+                .isNotNull();
+        assertThat(interceptor.preSend(subscribe("/topic/workflow/company/1/role/Бухгалтер", "Директор", 90), channel))
+                .isNotNull();
+        assertDenied(subscribe("/topic/workflow/company/1/role/Директор", "Бухгалтер", 30));
+        assertDenied(subscribe("/topic/workflow/company/1/role/Неизвестная", "Бухгалтер", 30));
+    }
+
+    @Test
+    void sessionWithoutCompanyOnlyGetsUserQueues() {
+        Message<?> queue = message(StompCommand.SUBSCRIBE, "/user/queue/notifications", new HashMap<>());
+
+        assertThat(interceptor.preSend(queue, channel)).isSameAs(queue);
+        assertDenied(message(StompCommand.SUBSCRIBE, "/topic/workflow/company/1", new HashMap<>()));
+    }
+
+    @Test
+    void sendingToBrokerTopicsIsRejected() {
+        assertDenied(message(StompCommand.SEND, "/topic/workflow/company/1", attributes("Директор", 90)));
+        Message<?> send = message(StompCommand.SEND, "/app/chat/send", attributes("Директор", 90));
+        assertThat(interceptor.preSend(send, channel)).isSameAs(send);
+    }
+
+    @Test
+    void unauthenticatedSubscriptionIsRejected() {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination("/topic/workflow/company/1");
+        accessor.setSessionAttributes(attributes("Директор", 90));
+        accessor.setLeaveMutable(true);
+
+        assertDenied(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private void assertDenied(Message<?> message) {
+        assertThatThrownBy(() -> interceptor.preSend(message, channel)).isInstanceOf(AccessDeniedException.class);
+    }
+
+    private static Message<?> subscribe(String destination, String roleName, int roleLevel) {
+        return message(StompCommand.SUBSCRIBE, destination, attributes(roleName, roleLevel));
+    }
+
+    private static Message<?> message(StompCommand command, String destination, Map<String, Object> attributes) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setDestination(destination);
+        accessor.setUser(new UsernamePasswordAuthenticationToken("anna@dockflow.test", null, List.of()));
+        accessor.setSessionAttributes(attributes);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Map<String, Object> attributes(String roleName, int roleLevel) {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(JwtHandshakeInterceptor.COMPANY_ID_ATTR, COMPANY_ID);
+        attributes.put(JwtHandshakeInterceptor.COMPANY_ROLE_ATTR, roleName);
+        attributes.put(JwtHandshakeInterceptor.COMPANY_ROLE_LEVEL_ATTR, roleLevel);
+        return attributes;
+    }
+
+    private static CompanyRoleEntity role(String name, int level) {
+        return CompanyRoleEntity.builder().name(name).level(level).isSystem(false).build();
+    }
+}
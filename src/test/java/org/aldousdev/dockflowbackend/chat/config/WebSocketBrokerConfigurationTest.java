@@ -0,0 +1,76 @@
+package org.aldousdev.dockflowbackend.chat.config;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Поднимает STOMP инфраструктуру целиком: бины брокера внедряются друг в друга по типам
+ */
+@SpringJUnitWebConfig(WebSocketBrokerConfigurationTest.TestConfig.class)
+class WebSocketBrokerConfigurationTest {
+    @Autowired
+    private WebSocketMessageBrokerStats stats;
+
+    @Autowired
+    @Qualifier("clientOutboundChannelExecutor")
+    private TaskExecutor clientOutboundChannelExecutor;
+
+    @Autowired
+    @Qualifier("webSocketBrokerMetrics")
+    private MeterBinder brokerMetrics;
+
+    @Test
+    void brokerStatsGetTheShardedOutboundExecutor() {
+        assertThat(clientOutboundChannelExecutor).isInstanceOf(ShardedOutboundExecutor.class);
+        assertThat(stats.getClientOutboundExecutorStatsInfo()).isNotNull();
+    }
+
+    @Test
+    void brokerMetricsAreBound() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        brokerMetrics.bindTo(registry);
+
+        assertThat(registry.get("websocket.outbound.queue.depth").gauge().value()).isZero();
+        assertThat(registry.get("websocket.sessions").gauge().value()).isZero();
+    }
+
+    @Configuration
+    @Import({WebSocketBrokerConfiguration.class, WebSocketConfig.class})
+    static class TestConfig {
+        // Как в приложении: "10s" и т.п. в @Value Duration
+        @Bean
+        static ConversionService conversionService() {
+            return ApplicationConversionService.getSharedInstance();
+        }
+
+        @Bean
+        JwtHandshakeInterceptor jwtHandshakeInterceptor() {
+            return mock(JwtHandshakeInterceptor.class);
+        }
+
+        @Bean
+        StompAuthorizationInterceptor stompAuthorizationInterceptor() {
+            return mock(StompAuthorizationInterceptor.class);
+        }
+
+        @Bean
+        PresenceActivityInterceptor presenceActivityInterceptor() {
+            return mock(PresenceActivityInterceptor.class);
+        }
+    }
+}
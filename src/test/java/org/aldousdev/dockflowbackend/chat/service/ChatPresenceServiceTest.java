@@ -0,0 +1,208 @@
+package org.aldousdev.dockflowbackend.chat.service;
+
+import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.auth.security.JwtAuthenticationToken;
+import org.aldousdev.dockflowbackend.auth.service.AuthService;
+import org.aldousdev.dockflowbackend.chat.config.JwtHandshakeInterceptor;
+import org.aldousdev.dockflowbackend.chat.dto.PresenceDTO;
+import org.aldousdev.dockflowbackend.chat.dto.TypingDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatPresenceServiceTest {
+    private static final Long COMPANY_ID = 1L;
+    private static final Long CHANNEL_ID = 10L;
+
+    // Общая таблица chat_presence двух узлов
+    private final PresenceTable presenceTable = new PresenceTable();
+    private final AuthService authService = mock(AuthService.class);
+    private final ChatMetadataCache metadataCache = mock(ChatMetadataCache.class);
+
+    @Test
+    void userActiveOnAnyNodeIsOnlineInEveryNodeSnapshot() {
+        ChatPresenceService nodeA = node(mock(SimpMessagingTemplate.class));
+        ChatPresenceService nodeB = node(mock(SimpMessagingTemplate.class));
+
+        nodeA.onConnect(connect("a-1", 7L));
+        nodeA.setAway("a-1", true);
+        nodeB.onConnect(connect("b-1", 7L));
+        nodeB.onConnect(connect("b-2", 8L));
+        nodeB.setAway("b-2", true);
+        nodeA.broadcastSnapshots();
+        nodeB.broadcastSnapshots();
+
+        Map<Long, String> expected = Map.of(7L, "ONLINE", 8L, "AWAY");
+        assertThat(statuses(nodeA.snapshot(COMPANY_ID))).isEqualTo(expected);
+        assertThat(statuses(nodeB.snapshot(COMPANY_ID))).isEqualTo(expected);
+    }
+
+    @Test
+    void userLeavingOneNodeKeepsPresenceOfTheOther() {
+        ChatPresenceService nodeA = node(mock(SimpMessagingTemplate.class));
+        ChatPresenceService nodeB = node(mock(SimpMessagingTemplate.class));
+        nodeA.onConnect(connect("a-1", 7L));
+        nodeA.setAway("a-1", true);
+        nodeB.onConnect(connect("b-1", 7L));
+        nodeA.broadcastSnapshots();
+        nodeB.broadcastSnapshots();
+
+        nodeB.onDisconnect(disconnect("b-1"));
+        nodeB.broadcastSnapshots();
+
+        assertThat(statuses(nodeA.snapshot(COMPANY_ID))).isEqualTo(Map.of(7L, "AWAY"));
+
+        nodeA.onDisconnect(disconnect("a-1"));
+        nodeA.broadcastSnapshots();
+
+        assertThat(nodeB.snapshot(COMPANY_ID)).isEmpty();
+    }
+
+    @Test
+    void typingIsSentAtMostOncePerIntervalPerUserAndChannel() throws Exception {
+        SimpMessagingTemplate messaging = mock(SimpMessagingTemplate.class);
+        ChatPresenceService node = node(messaging);
+        ReflectionTestUtils.setField(node, "typingInterval", Duration.ofMillis(300));
+        when(metadataCache.channel(CHANNEL_ID)).thenReturn(Optional.of(new ChatMetadataCache.ChannelInfo(CHANNEL_ID, COMPANY_ID, true)));
+        when(metadataCache.channel(11L)).thenReturn(Optional.of(new ChatMetadataCache.ChannelInfo(11L, COMPANY_ID, true)));
+        when(authService.getCurrentCompanyId()).thenReturn(COMPANY_ID);
+        when(authService.getCurrentUser()).thenReturn(User.builder().id(7L).build());
+
+        for (int i = 0; i < 5; i++) {
+            node.typing(CHANNEL_ID);
+        }
+        node.typing(11L);
+
+        verify(messaging, times(1)).convertAndSend(eq("/topic/channel/10/typing"), any(TypingDTO.class));
+        verify(messaging, times(1)).convertAndSend(eq("/topic/channel/11/typing"), any(TypingDTO.class));
+
+        Thread.sleep(350);
+        node.typing(CHANNEL_ID);
+
+        verify(messaging, times(2)).convertAndSend(eq("/topic/channel/10/typing"), any(TypingDTO.class));
+    }
+
+    private ChatPresenceService node(SimpMessagingTemplate messaging) {
+        ChatPresenceService service = new ChatPresenceService(presenceTable, mock(PlatformTransactionManager.class),
+                messaging, authService, metadataCache);
+        ReflectionTestUtils.setField(service, "awayAfter", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(service, "typingInterval", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(service, "nodeTimeout", Duration.ofSeconds(30));
+        return service;
+    }
+
+    private static SessionConnectEvent connect(String sessionId, Long userId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+        accessor.setSessionId(sessionId);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(JwtHandshakeInterceptor.COMPANY_ID_ATTR, COMPANY_ID);
+        accessor.setSessionAttributes(attributes);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        return new SessionConnectEvent(new Object(), message,
+                new JwtAuthenticationToken(User.builder().id(userId).build(), "token", List.of()));
+    }
+
+    private static SessionDisconnectEvent disconnect(String sessionId) {
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0],
+                SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT).getMessageHeaders());
+        return new SessionDisconnectEvent(new Object(), message, sessionId, CloseStatus.NORMAL);
+    }
+
+    private static Map<Long, String> statuses(List<PresenceDTO> snapshot) {
+        Map<Long, String> statuses = new TreeMap<>();
+        snapshot.forEach(presence -> statuses.put(presence.getUserId(), presence.getStatus()));
+        return statuses;
+    }
+
+    /**
+     * chat_presence в памяти: только запросы ChatPresenceService, heartbeat узлов не истекает
+     */
+    private static final class PresenceTable extends JdbcTemplate {
+        private final List<Object[]> rows = new CopyOnWriteArrayList<>();
+
+        @Override
+        public int update(String sql, Object... args) {
+            if (sql.startsWith("DELETE FROM chat_presence WHERE node_id = ? AND company_id = ?")) {
+                return remove(row -> row[0].equals(args[0]) && row[1].equals(args[1]));
+            }
+            if (sql.startsWith("DELETE FROM chat_presence WHERE node_id = ?")) {
+                return remove(row -> row[0].equals(args[0]));
+            }
+            if (sql.startsWith("UPDATE chat_presence SET heartbeat_at")) {
+                return 0;
+            }
+            throw new UnsupportedOperationException(sql);
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            rows.addAll(batchArgs);
+            return new int[batchArgs.size()];
+        }
+
+        @Override
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            // Удаление строк пропавших узлов: все узлы теста живы
+            return List.of();
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            // GROUP BY user_id, bool_and(away)
+            Map<Long, Boolean> away = new TreeMap<>();
+            for (Object[] row : rows) {
+                if (row[1].equals(args[0])) {
+                    away.merge((Long) row[2], (Boolean) row[3], Boolean::logicalAnd);
+                }
+            }
+            List<T> result = new ArrayList<>();
+            try {
+                for (Map.Entry<Long, Boolean> entry : away.entrySet()) {
+                    ResultSet rs = mock(ResultSet.class);
+                    when(rs.getLong("user_id")).thenReturn(entry.getKey());
+                    when(rs.getBoolean("away")).thenReturn(entry.getValue());
+                    result.add(rowMapper.mapRow(rs, result.size()));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            return result;
+        }
+
+        private int remove(Predicate<Object[]> filter) {
+            List<Object[]> removed = rows.stream().filter(filter).toList();
+            rows.removeAll(removed);
+            return removed.size();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.aldousdev.dockflowbackend.chat.service;
+
+import org.aldousdev.dockflowbackend.auth.service.AuthService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatSearchServiceTest {
+    private static final int MAX_INDEXED_CHARS = 20000;
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private ChatSearchService searchService;
+
+    @BeforeEach
+    void setUp() {
+        searchService = new ChatSearchService(jdbcTemplate, mock(AuthService.class), mock(ChatMetadataCache.class));
+        ReflectionTestUtils.setField(searchService, "maxIndexedChars", MAX_INDEXED_CHARS);
+    }
+
+    @Test
+    void backfillWalksMessagesInIdWindows() {
+        windowEnds(5000L, 10000L, 12345L);
+
+        searchService.backfill();
+
+        verify(jdbcTemplate).update(anyString(), eq(MAX_INDEXED_CHARS), eq(0L), eq(5000L));
+        verify(jdbcTemplate).update(anyString(), eq(MAX_INDEXED_CHARS), eq(5000L), eq(10000L));
+        verify(jdbcTemplate).update(anyString(), eq(MAX_INDEXED_CHARS), eq(10000L), eq(12345L));
+        verify(jdbcTemplate).queryForObject(anyString(), eq(Long.class), eq(12345L));
+    }
+
+    @Test
+    void failedWindowIsIndexedOneByOneAndTheWalkGoesOn() {
+        windowEnds(3L, 6L);
+        when(jdbcTemplate.update(anyString(), eq(MAX_INDEXED_CHARS), eq(0L), eq(3L)))
+                .thenThrow(new DataIntegrityViolationException("string is too long for tsvector"));
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(0L), eq(3L))).thenReturn(List.of(1L, 2L, 3L));
+        when(jdbcTemplate.update(any(PreparedStatementCreator.class)))
+                .thenReturn(1)
+                .thenThrow(new DataIntegrityViolationException("string is too long for tsvector"))
+                .thenReturn(1);
+
+        searchService.backfill();
+
+        verify(jdbcTemplate, times(3)).update(any(PreparedStatementCreator.class));
+        verify(jdbcTemplate).update(anyString(), eq(MAX_INDEXED_CHARS), eq(3L), eq(6L));
+    }
+
+    @Test
+    void databaseFailureStopsTheBackfillWithoutThrowing() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), eq(0L)))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+        assertThatCode(searchService::backfill).doesNotThrowAnyException();
+        verify(jdbcTemplate, never()).update(anyString(), any(), any(), any());
+    }
+
+    private void windowEnds(Long... ends) {
+        long from = 0;
+        for (Long end : ends) {
+            when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), eq(from))).thenReturn(end);
+            from = end;
+        }
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), eq(from))).thenReturn(null);
+    }
+}
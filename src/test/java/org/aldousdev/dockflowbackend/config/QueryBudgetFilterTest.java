@@ -0,0 +1,74 @@
+package org.aldousdev.dockflowbackend.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class QueryBudgetFilterTest {
+    private static final int BUDGET = 5;
+
+    @Test
+    void requestOverBudgetFailsWhenFailOnExceedIsSet() {
+        MockMvc mvc = mockMvc(true);
+
+        assertThatThrownBy(() -> mvc.perform(get("/documents").param("statements", "6")))
+                .rootCause()
+                .isInstanceOf(QueryBudgetExceededException.class)
+                .hasMessageContaining("GET /documents exceeded query budget of 5 statements")
+                .hasMessageContaining("select d6_0.id from documents d6_0");
+    }
+
+    @Test
+    void requestWithinBudgetPasses() throws Exception {
+        mockMvc(true).perform(get("/documents").param("statements", "5")).andExpect(status().isOk());
+    }
+
+    @Test
+    void requestOverBudgetOnlyLogsByDefault() throws Exception {
+        mockMvc(false).perform(get("/documents").param("statements", "30")).andExpect(status().isOk());
+    }
+
+    @Test
+    void countingStopsWithTheRequest() throws Exception {
+        mockMvc(true).perform(get("/documents").param("statements", "2")).andExpect(status().isOk());
+
+        // Вне запроса бюджета нет: фоновые задачи не считаются
+        QueryCountingInspector inspector = new QueryCountingInspector();
+        for (int i = 0; i < 10; i++) {
+            assertThat(inspector.inspect("select 1")).isEqualTo("select 1");
+        }
+    }
+
+    private static MockMvc mockMvc(boolean failOnExceed) {
+        QueryBudgetFilter filter = new QueryBudgetFilter();
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "maxStatements", BUDGET);
+        ReflectionTestUtils.setField(filter, "failOnExceed", failOnExceed);
+        return MockMvcBuilders.standaloneSetup(new DocumentsStub()).addFilters(filter).build();
+    }
+
+    /**
+     * Endpoint с N+1: каждый SQL проходит через тот же StatementInspector, что настраивает JpaDiagnosticsConfig
+     */
+    @RestController
+    static class DocumentsStub {
+        private final QueryCountingInspector inspector = new QueryCountingInspector();
+
+        @GetMapping("/documents")
+        String documents(@RequestParam int statements) {
+            for (int i = 1; i <= statements; i++) {
+                inspector.inspect("select d" + i + "_0.id from documents d" + i + "_0");
+            }
+            return "ok";
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.aldousdev.dockflowbackend.config;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.junit.jupiter.api.Test;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SecondLevelCacheConfigTest {
+    private final SecondLevelCacheConfig config = new SecondLevelCacheConfig();
+
+    @Test
+    void closingTheHibernateManagerLeavesTheDefaultOneOpen() {
+        CacheManager shared = Caching.getCachingProvider(CaffeineCachingProvider.class.getName()).getCacheManager();
+        CacheManager hibernate = cacheManager();
+
+        assertThat(hibernate).isNotSameAs(shared);
+        hibernate.close();
+
+        assertThat(hibernate.isClosed()).isTrue();
+        assertThat(shared.isClosed()).isFalse();
+    }
+
+    @Test
+    void eachContextGetsItsOwnRegions() {
+        CacheManager first = cacheManager();
+        CacheManager second = cacheManager();
+        try {
+            assertThat(second).isNotSameAs(first);
+            first.getCache(SecondLevelCacheConfig.COMPANY_REGION).put(1L, "first");
+            assertThat(second.getCache(SecondLevelCacheConfig.COMPANY_REGION).get(1L)).isNull();
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    private CacheManager cacheManager() {
+        return config.hibernateCacheManager(100, Duration.ofMinutes(1), 100, Duration.ofMinutes(1));
+    }
+}
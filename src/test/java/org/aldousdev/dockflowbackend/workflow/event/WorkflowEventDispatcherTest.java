@@ -0,0 +1,122 @@
+package org.aldousdev.dockflowbackend.workflow.event;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aldousdev.dockflowbackend.config.AppMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WorkflowEventDispatcherTest {
+    private static final Long COMPANY_ID = 3L;
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 1, 12, 0);
+
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final WorkflowEventLog eventLog = mock(WorkflowEventLog.class);
+    private final AtomicLong sequence = new AtomicLong();
+    private WorkflowEventDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        // Поток отправки не запускается: flushSafely() вызывает тест
+        dispatcher = new WorkflowEventDispatcher(messagingTemplate, eventLog, new AppMetrics(new SimpleMeterRegistry(), 10));
+        ReflectionTestUtils.setField(dispatcher, "flushInterval", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(dispatcher, "maxQueueSize", 100);
+        ReflectionTestUtils.setField(dispatcher, "maxBatchSize", 200);
+        when(eventLog.append(eq(COMPANY_ID), anyList())).thenAnswer(invocation -> sequenced(invocation.getArgument(1)));
+    }
+
+    @Test
+    void processingProgressOfOneDocumentCoalescesToTheLatest() {
+        dispatcher.publish(COMPANY_ID, new WorkflowEvent.DocumentProcessing(1L, "PROCESSING", 10, NOW));
+        dispatcher.publish(COMPANY_ID, new WorkflowEvent.DocumentProcessing(2L, "PROCESSING", 40, NOW));
+        dispatcher.publish(COMPANY_ID, new WorkflowEvent.DocumentProcessing(1L, "PROCESSING", 50, NOW));
+        dispatcher.publish(COMPANY_ID, new WorkflowEvent.DocumentProcessing(1L, "COMPLETED", 100, NOW));
+
+        dispatcher.flushSafely();
+
+        assertThat(sentEvents()).containsExactly(
+                new WorkflowEvent.DocumentProcessing(2L, "PROCESSING", 40, NOW),
+                new WorkflowEvent.DocumentProcessing(1L, "COMPLETED", 100, NOW));
+        assertThat(dispatcher.getQueueSize()).isZero();
+    }
+
+    @Test
+    void lifecycleEventsInOneWindowAreNeverCoalesced() {
+        List<WorkflowEvent> lifecycle = List.of(
+                new WorkflowEvent.WorkflowStarted(9L, 1L, NOW),
+                new WorkflowEvent.TaskCreated(31L, "Бухгалтер", NOW),
+                new WorkflowEvent.TaskApproved(31L, "anna@dockflow.test", NOW),
+                new WorkflowEvent.TaskCreated(32L, "Директор", NOW),
+                new WorkflowEvent.TaskRejected(32L, "ivan@dockflow.test", NOW),
+                new WorkflowEvent.WorkflowRejected(9L, "Нет подписи", NOW),
+                new WorkflowEvent.WorkflowStarted(9L, 1L, NOW),
+                new WorkflowEvent.DocumentSigned(1L, 5L, false, NOW),
+                new WorkflowEvent.DocumentSigned(1L, 5L, true, NOW),
+                new WorkflowEvent.WorkflowCompleted(9L, NOW));
+        lifecycle.forEach(event -> dispatcher.publish(COMPANY_ID, event));
+
+        dispatcher.flushSafely();
+
+        assertThat(sentEvents()).containsExactlyElementsOf(lifecycle);
+    }
+
+    @Test
+    void eventsAreSequencedAndSentToExtraDestinations() {
+        dispatcher.publish(COMPANY_ID, new WorkflowEvent.TaskCreated(31L, "Бухгалтер", NOW), "/topic/workflow/instance/9");
+        dispatcher.publish(COMPANY_ID, new WorkflowEvent.WorkflowCompleted(9L, NOW));
+
+        dispatcher.flushSafely();
+
+        ArgumentCaptor<WorkflowEventBatch> batch = ArgumentCaptor.forClass(WorkflowEventBatch.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/workflow/instance/9"), batch.capture());
+        assertThat(batch.getValue().events()).extracting(SequencedWorkflowEvent::sequence).containsExactly(1L);
+        assertThat(sentBatch().events()).extracting(SequencedWorkflowEvent::sequence).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void eventsThatFailedToSequenceGoFirstInTheNextFlush() {
+        when(eventLog.append(eq(COMPANY_ID), anyList()))
+                .thenThrow(new IllegalStateException("Connection refused"))
+                .thenAnswer(invocation -> sequenced(invocation.getArgument(1)));
+        WorkflowEvent started = new WorkflowEvent.WorkflowStarted(9L, 1L, NOW);
+        WorkflowEvent progress = new WorkflowEvent.DocumentProcessing(1L, "PROCESSING", 10, NOW);
+        WorkflowEvent completed = new WorkflowEvent.WorkflowCompleted(9L, NOW);
+        dispatcher.publish(COMPANY_ID, started);
+        dispatcher.publish(COMPANY_ID, progress);
+        dispatcher.flushSafely();
+        dispatcher.publish(COMPANY_ID, completed);
+
+        dispatcher.flushSafely();
+
+        assertThat(sentEvents()).containsExactly(started, progress, completed);
+        assertThat(sentBatch().events()).extracting(SequencedWorkflowEvent::sequence).containsExactly(1L, 2L, 3L);
+    }
+
+    private List<SequencedWorkflowEvent> sequenced(List<WorkflowEvent> events) {
+        return events.stream().map(event -> new SequencedWorkflowEvent(sequence.incrementAndGet(), event)).toList();
+    }
+
+    private WorkflowEventBatch sentBatch() {
+        ArgumentCaptor<WorkflowEventBatch> batch = ArgumentCaptor.forClass(WorkflowEventBatch.class);
+        verify(messagingTemplate).convertAndSend(eq(WorkflowEventDispatcher.companyTopic(COMPANY_ID)), batch.capture());
+        return batch.getValue();
+    }
+
+    private List<WorkflowEvent> sentEvents() {
+        return sentBatch().events().stream().map(SequencedWorkflowEvent::event).toList();
+    }
+}
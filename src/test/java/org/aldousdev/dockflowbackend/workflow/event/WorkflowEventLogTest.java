@@ -0,0 +1,143 @@
+package org.aldousdev.dockflowbackend.workflow.event;
+
+import org.aldousdev.dockflowbackend.workflow.entity.WorkflowEventEntry;
+import org.aldousdev.dockflowbackend.workflow.repository.WorkflowEventEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WorkflowEventLogTest {
+    private static final Long COMPANY_ID = 3L;
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 1, 12, 0);
+
+    private final WorkflowEventEntryRepository eventRepository = mock(WorkflowEventEntryRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private WorkflowEventLog eventLog;
+
+    @BeforeEach
+    void setUp() {
+        eventLog = new WorkflowEventLog(eventRepository, jdbcTemplate, mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(eventLog, "bufferRetention", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(eventLog, "bufferMaxEvents", 100);
+        ReflectionTestUtils.setField(eventLog, "maxResumeEvents", 50);
+        ReflectionTestUtils.setField(eventLog, "retention", Duration.ofDays(7));
+    }
+
+    @Test
+    void appendNumbersEventsFromTheAllocatedBlock() {
+        // Счетчик компании уже на 9 (события других узлов): блок из трех номеров заканчивается на 12
+        allocate(3, 12L);
+
+        List<SequencedWorkflowEvent> sequenced = eventLog.append(COMPANY_ID, List.of(
+                new WorkflowEvent.WorkflowStarted(9L, 1L, NOW),
+                new WorkflowEvent.TaskCreated(31L, "Бухгалтер", NOW),
+                new WorkflowEvent.WorkflowCompleted(9L, NOW)));
+
+        assertThat(sequenced).extracting(SequencedWorkflowEvent::sequence).containsExactly(10L, 11L, 12L);
+        assertThat(storedRows()).extracting(row -> row[1]).containsExactly(10L, 11L, 12L);
+    }
+
+    @Test
+    void resumeFromAnOffsetIsServedFromTheBuffer() {
+        allocate(3, 3L);
+        eventLog.append(COMPANY_ID, List.of(
+                new WorkflowEvent.WorkflowStarted(9L, 1L, NOW),
+                new WorkflowEvent.TaskCreated(31L, "Бухгалтер", NOW),
+                new WorkflowEvent.WorkflowCompleted(9L, NOW)));
+        latest(3L);
+
+        List<SequencedWorkflowEvent> gap = eventLog.readSince(COMPANY_ID, 1L);
+
+        assertThat(gap).extracting(SequencedWorkflowEvent::sequence).containsExactly(2L, 3L);
+        assertThat(gap.get(1).event()).isEqualTo(new WorkflowEvent.WorkflowCompleted(9L, NOW));
+        verify(eventRepository, never()).findSince(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void gapWithEventsOfAnotherNodeIsReadFromTheDatabase() {
+        allocate(2, 2L);
+        eventLog.append(COMPANY_ID, List.of(
+                new WorkflowEvent.WorkflowStarted(9L, 1L, NOW),
+                new WorkflowEvent.WorkflowCompleted(9L, NOW)));
+        List<Object[]> rows = storedRows();
+        // Номер 3 выдал другой узел: в буфере этого узла его нет
+        latest(3L);
+        when(eventRepository.findOldestSequence(COMPANY_ID)).thenReturn(1L);
+        when(eventRepository.findSince(eq(COMPANY_ID), eq(1L), any())).thenReturn(List.of(
+                entry(rows.get(1)),
+                WorkflowEventEntry.builder().companyId(COMPANY_ID).sequence(3L).type("TASK_CREATED")
+                        .payload("{\"type\":\"TASK_CREATED\",\"taskId\":31,\"roleName\":\"Бухгалтер\","
+                                + "\"timestamp\":\"2026-10-01T12:00:00\"}")
+                        .build()));
+
+        List<SequencedWorkflowEvent> gap = eventLog.readSince(COMPANY_ID, 1L);
+
+        assertThat(gap).containsExactly(
+                new SequencedWorkflowEvent(2L, new WorkflowEvent.WorkflowCompleted(9L, NOW)),
+                new SequencedWorkflowEvent(3L, new WorkflowEvent.TaskCreated(31L, "Бухгалтер", NOW)));
+    }
+
+    @Test
+    void clientThatIsUpToDateGetsNothing() {
+        latest(7L);
+
+        assertThat(eventLog.readSince(COMPANY_ID, 7L)).isEmpty();
+    }
+
+    @Test
+    void gapLargerThanMaxResumeEventsNeedsASnapshot() {
+        latest(100L);
+
+        assertThat(eventLog.readSince(COMPANY_ID, 10L)).isNull();
+    }
+
+    @Test
+    void gapOlderThanStoredEventsNeedsASnapshot() {
+        latest(30L);
+        when(eventRepository.findOldestSequence(COMPANY_ID)).thenReturn(20L);
+
+        assertThat(eventLog.readSince(COMPANY_ID, 10L)).isNull();
+        verify(eventRepository, never()).findSince(anyLong(), anyLong(), any());
+    }
+
+    private void allocate(int count, Long last) {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), eq(COMPANY_ID), eq((long) count))).thenReturn(last);
+    }
+
+    private void latest(Long sequence) {
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(COMPANY_ID))).thenReturn(List.of(sequence));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> storedRows() {
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        return rows.getValue();
+    }
+
+    private static WorkflowEventEntry entry(Object[] row) {
+        return WorkflowEventEntry.builder()
+                .companyId((Long) row[0])
+                .sequence((Long) row[1])
+                .type((String) row[2])
+                .payload((String) row[3])
+                .build();
+    }
+}
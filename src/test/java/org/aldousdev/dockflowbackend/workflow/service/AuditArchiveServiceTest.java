@@ -0,0 +1,141 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import org.aldousdev.dockflowbackend.workflow.repository.WorkflowAuditLogRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AuditArchiveServiceTest {
+    @TempDir
+    Path archiveDir;
+
+    @Test
+    void unescapesCopyTextFormat() {
+        assertThat(AuditArchiveService.unescape("\\N")).isNull();
+        assertThat(AuditArchiveService.unescape("")).isEmpty();
+        assertThat(AuditArchiveService.unescape("plain text")).isEqualTo("plain text");
+        assertThat(AuditArchiveService.unescape("line\\nnext\\ttab\\rret")).isEqualTo("line\nnext\ttab\rret");
+        assertThat(AuditArchiveService.unescape("C:\\\\docs")).isEqualTo("C:\\docs");
+        assertThat(AuditArchiveService.unescape("\\b\\f\\v")).isEqualTo("\b\f\u000B");
+        // Строка из одного NULL-маркера - NULL, тот же текст внутри значения - литерал
+        assertThat(AuditArchiveService.unescape("a\\\\N")).isEqualTo("a\\N");
+        assertThat(AuditArchiveService.unescape("trailing\\")).isEqualTo("trailing\\");
+    }
+
+    @Test
+    void parsesArchiveRow() {
+        AuditArchiveService.ArchivedAuditLog row = AuditArchiveService.parseRow(
+                ("17\t5\t\\N\t3\towner@dockflow.test\tTASK_APPROVED\tApproved:\\n\"ok\"\t"
+                        + "{\"taskId\":9}\t2025-01-15 10:20:30.123456\t10.0.0.1").split("\t", -1));
+
+        assertThat(row.getId()).isEqualTo(17L);
+        assertThat(row.getWorkflowInstanceId()).isEqualTo(5L);
+        assertThat(row.getPerformedByEmail()).isEqualTo("owner@dockflow.test");
+        assertThat(row.getActionType()).isEqualTo("TASK_APPROVED");
+        assertThat(row.getDescription()).isEqualTo("Approved:\n\"ok\"");
+        assertThat(row.getMetadata()).isEqualTo("{\"taskId\":9}");
+        assertThat(row.getCreatedAt()).isEqualTo(LocalDateTime.of(2025, 1, 15, 10, 20, 30, 123_456_000));
+        assertThat(row.getIpAddress()).isEqualTo("10.0.0.1");
+    }
+
+    @Test
+    void parsesRowWithNullsAndWholeSeconds() {
+        AuditArchiveService.ArchivedAuditLog row = AuditArchiveService.parseRow(
+                "18\t5\t\\N\t\\N\t\\N\tWORKFLOW_COMPLETED\t\\N\t\\N\t2025-01-31 23:59:59\t\\N".split("\t", -1));
+
+        assertThat(row.getPerformedByEmail()).isNull();
+        assertThat(row.getDescription()).isNull();
+        assertThat(row.getIpAddress()).isNull();
+        assertThat(row.getCreatedAt()).isEqualTo(LocalDateTime.of(2025, 1, 31, 23, 59, 59));
+    }
+
+    @Test
+    void rejectsRowWithWrongColumnCount() {
+        assertThatThrownBy(() -> AuditArchiveService.parseRow("1\t2\t3".split("\t", -1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void partitionNamesRoundTrip() {
+        YearMonth month = YearMonth.of(2025, 3);
+
+        assertThat(AuditArchiveService.partitionName(month)).isEqualTo("workflow_audit_logs_2025_03");
+        assertThat(AuditArchiveService.partitionMonth("workflow_audit_logs_2025_03")).isEqualTo(month);
+        assertThatThrownBy(() -> AuditArchiveService.partitionMonth("workflow_audit_logs_default"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AuditArchiveService.partitionMonth("workflow_audit_logs_2025_3"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AuditArchiveService.partitionMonth("users_2025_03"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void findsArchivedRowsOfInstanceWithinRangeNewestFirst() throws IOException {
+        writeArchive("workflow_audit_logs_2025_01.tsv.gz",
+                "1\t5\t\\N\t3\ta@dockflow.test\tWORKFLOW_STARTED\tstart\t\\N\t2025-01-10 09:00:00\t\\N",
+                "2\t6\t\\N\t3\ta@dockflow.test\tWORKFLOW_STARTED\tother instance\t\\N\t2025-01-11 09:00:00\t\\N",
+                "3\t5\t\\N\t3\ta@dockflow.test\tTASK_APPROVED\tapproved\t\\N\t2025-01-20 09:00:00\t\\N");
+        writeArchive("workflow_audit_logs_2025_02.tsv.gz",
+                "4\t5\t\\N\t3\ta@dockflow.test\tWORKFLOW_COMPLETED\tdone\t\\N\t2025-02-01 09:00:00\t\\N");
+        AuditArchiveService service = new AuditArchiveService(archiveDir.toString(), 100);
+
+        assertThat(service.archivedMonths()).containsExactly(YearMonth.of(2025, 1), YearMonth.of(2025, 2));
+        List<WorkflowAuditLogRepository.AuditLogView> rows = service.findArchived(5L,
+                LocalDateTime.of(2025, 1, 15, 0, 0), LocalDateTime.of(2025, 3, 1, 0, 0));
+        assertThat(rows).extracting(WorkflowAuditLogRepository.AuditLogView::getId).containsExactly(4L, 3L);
+    }
+
+    @Test
+    void archivedQueryIsCappedAtMaxRows() throws IOException {
+        writeArchive("workflow_audit_logs_2025_01.tsv.gz",
+                "1\t5\t\\N\t\\N\t\\N\tTASK_CREATED\t\\N\t\\N\t2025-01-10 09:00:00\t\\N",
+                "2\t5\t\\N\t\\N\t\\N\tTASK_CREATED\t\\N\t\\N\t2025-01-11 09:00:00\t\\N",
+                "3\t5\t\\N\t\\N\t\\N\tTASK_CREATED\t\\N\t\\N\t2025-01-12 09:00:00\t\\N");
+        AuditArchiveService service = new AuditArchiveService(archiveDir.toString(), 2);
+
+        assertThat(service.findArchived(null, LocalDateTime.of(2025, 1, 1, 0, 0),
+                LocalDateTime.of(2025, 2, 1, 0, 0))).hasSize(2);
+    }
+
+    @Test
+    void cappedQueryKeepsNewestRowsAcrossMonths() throws IOException {
+        writeArchive("workflow_audit_logs_2025_01.tsv.gz",
+                "1\t5\t\\N\t\\N\t\\N\tTASK_CREATED\t\\N\t\\N\t2025-01-10 09:00:00\t\\N",
+                "2\t5\t\\N\t\\N\t\\N\tTASK_CREATED\t\\N\t\\N\t2025-01-11 09:00:00\t\\N");
+        writeArchive("workflow_audit_logs_2025_02.tsv.gz",
+                "3\t5\t\\N\t\\N\t\\N\tTASK_CREATED\t\\N\t\\N\t2025-02-10 09:00:00\t\\N",
+                "4\t5\t\\N\t\\N\t\\N\tTASK_CREATED\t\\N\t\\N\t2025-02-11 09:00:00\t\\N",
+                "5\t5\t\\N\t\\N\t\\N\tTASK_CREATED\t\\N\t\\N\t2025-02-12 09:00:00\t\\N");
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 3, 1, 0, 0);
+
+        assertThat(new AuditArchiveService(archiveDir.toString(), 2).findArchived(5L, from, to))
+                .extracting(WorkflowAuditLogRepository.AuditLogView::getId).containsExactly(5L, 4L);
+        assertThat(new AuditArchiveService(archiveDir.toString(), 4).findArchived(5L, from, to))
+                .extracting(WorkflowAuditLogRepository.AuditLogView::getId).containsExactly(5L, 4L, 3L, 2L);
+    }
+
+    private void writeArchive(String fileName, String... lines) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archiveDir.resolve(fileName)));
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuditPartitionManagerTest {
+    private static final YearMonth CURRENT = YearMonth.of(2025, 11);
+
+    @Test
+    void coverageCountsContiguousMonthsFromCurrent() {
+        assertThat(AuditPartitionManager.coveredThrough(CURRENT, List.of("workflow_audit_logs_2025_10",
+                "workflow_audit_logs_2025_11", "workflow_audit_logs_2025_12", "workflow_audit_logs_2026_01",
+                "workflow_audit_logs_2026_02"))).isEqualTo(YearMonth.of(2026, 2));
+    }
+
+    @Test
+    void coverageStopsAtGap() {
+        assertThat(AuditPartitionManager.coveredThrough(CURRENT, List.of("workflow_audit_logs_2025_11",
+                "workflow_audit_logs_2026_01"))).isEqualTo(CURRENT);
+    }
+
+    @Test
+    void missingCurrentPartitionIsNegativeCoverage() {
+        assertThat(AuditPartitionManager.coveredThrough(CURRENT, List.of("workflow_audit_logs_2025_12")))
+                .isEqualTo(YearMonth.of(2025, 10));
+        assertThat(AuditPartitionManager.coveredThrough(CURRENT, List.of())).isEqualTo(YearMonth.of(2025, 10));
+    }
+
+    @Test
+    void failedMaintenanceIsCountedAndCoverageUnknownUntilFirstRun() throws SQLException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenThrow(new SQLException("Connection refused"));
+        AuditPartitionManager manager = new AuditPartitionManager(dataSource, mock(AuditArchiveService.class), registry);
+        manager.registerMetrics();
+
+        manager.maintain();
+        manager.maintain();
+
+        assertThat(registry.get("audit.partitions.maintenance.failures").counter().count()).isEqualTo(2);
+        assertThat(registry.get("audit.partitions.months.ahead").gauge().value()).isNaN();
+    }
+
+    @Test
+    void nodeWithoutLockReadsCoverageFromCatalog() throws SQLException {
+        YearMonth now = YearMonth.now();
+        Connection connection = mock(Connection.class);
+        PreparedStatement lock = mock(PreparedStatement.class);
+        ResultSet lockResult = mock(ResultSet.class);
+        when(connection.prepareStatement("SELECT pg_try_advisory_lock(?)")).thenReturn(lock);
+        when(lock.executeQuery()).thenReturn(lockResult);
+        when(lockResult.next()).thenReturn(true);
+        when(lockResult.getBoolean(1)).thenReturn(false);
+        Statement statement = mock(Statement.class);
+        ResultSet partitions = mock(ResultSet.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(partitions);
+        when(partitions.next()).thenReturn(true, true, false);
+        when(partitions.getString(1)).thenReturn(AuditArchiveService.partitionName(now),
+                AuditArchiveService.partitionName(now.plusMonths(1)));
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AuditPartitionManager manager = new AuditPartitionManager(dataSource, mock(AuditArchiveService.class), registry);
+        manager.registerMetrics();
+
+        manager.maintain();
+
+        assertThat(registry.get("audit.partitions.months.ahead").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("audit.partitions.maintenance.failures").counter().count()).isZero();
+        // Партиции создает только узел с lock
+        verify(statement, never()).execute(anyString());
+    }
+}
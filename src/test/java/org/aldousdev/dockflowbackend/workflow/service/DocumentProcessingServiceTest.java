@@ -0,0 +1,125 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import org.aldousdev.dockflowbackend.auth.entity.Company;
+import org.aldousdev.dockflowbackend.workflow.entity.Document;
+import org.aldousdev.dockflowbackend.workflow.entity.DocumentText;
+import org.aldousdev.dockflowbackend.workflow.enums.DocumentProcessingStatus;
+import org.aldousdev.dockflowbackend.workflow.event.WorkflowEventBroadcaster;
+import org.aldousdev.dockflowbackend.workflow.repository.DocumentRepository;
+import org.aldousdev.dockflowbackend.workflow.repository.DocumentTextRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentProcessingServiceTest {
+    private static final Long DOCUMENT_ID = 11L;
+
+    @TempDir
+    Path uploadDir;
+
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final DocumentTextRepository documentTextRepository = mock(DocumentTextRepository.class);
+    private final WorkflowEventBroadcaster eventBroadcaster = mock(WorkflowEventBroadcaster.class);
+    private final DocumentSearchService searchService = mock(DocumentSearchService.class);
+    private DocumentProcessingService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DocumentProcessingService(documentRepository, documentTextRepository, eventBroadcaster,
+                mock(PlatformTransactionManager.class), searchService);
+        ReflectionTestUtils.setField(service, "parallelism", 1);
+        ReflectionTestUtils.setField(service, "queueCapacity", 10);
+        ReflectionTestUtils.setField(service, "maxTextChars", 1000);
+        ReflectionTestUtils.setField(service, "staleAfter", Duration.ofMinutes(30));
+        service.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void documentClaimedByAnotherNodeIsSkipped() {
+        when(documentRepository.claimForProcessing(eq(DOCUMENT_ID), any(), any(),
+                eq(DocumentProcessingStatus.PENDING), eq(DocumentProcessingStatus.PROCESSING))).thenReturn(0);
+
+        service.process(DOCUMENT_ID);
+
+        verify(documentRepository, never()).findById(any());
+        verify(eventBroadcaster, never()).broadcastDocumentProcessing(anyLong(), anyLong(), anyString(), anyInt());
+    }
+
+    @Test
+    void claimedDocumentIsProcessedAndCompleted() throws Exception {
+        Document document = claimable();
+        when(documentRepository.renewProcessingClaim(eq(DOCUMENT_ID), any(), any(),
+                eq(DocumentProcessingStatus.PROCESSING))).thenReturn(1);
+
+        service.process(DOCUMENT_ID);
+
+        assertThat(document.getProcessingStatus()).isEqualTo(DocumentProcessingStatus.COMPLETED);
+        assertThat(document.getPageCount()).isEqualTo(2);
+        verify(documentTextRepository).save(any(DocumentText.class));
+        verify(searchService).index(DOCUMENT_ID);
+        verify(eventBroadcaster).broadcastDocumentProcessing(7L, DOCUMENT_ID,
+                DocumentProcessingStatus.COMPLETED.name(), 100);
+    }
+
+    @Test
+    void resultIsDroppedWhenTheLeaseWasTakenOver() throws Exception {
+        Document document = claimable();
+        when(documentRepository.renewProcessingClaim(eq(DOCUMENT_ID), any(), any(),
+                eq(DocumentProcessingStatus.PROCESSING))).thenReturn(0);
+
+        service.process(DOCUMENT_ID);
+
+        assertThat(document.getProcessingStatus()).isEqualTo(DocumentProcessingStatus.PROCESSING);
+        verify(documentTextRepository, never()).save(any());
+        verify(searchService, never()).index(any());
+        verify(eventBroadcaster, never()).broadcastDocumentProcessing(7L, DOCUMENT_ID,
+                DocumentProcessingStatus.COMPLETED.name(), 100);
+        verify(eventBroadcaster, never()).broadcastDocumentProcessing(7L, DOCUMENT_ID,
+                DocumentProcessingStatus.FAILED.name(), 100);
+    }
+
+    private Document claimable() throws Exception {
+        Path pdf = uploadDir.resolve("contract.pdf");
+        try (PdfDocument out = new PdfDocument(new PdfWriter(pdf.toString()))) {
+            out.addNewPage();
+            out.addNewPage();
+        }
+        Document document = Document.builder()
+                .id(DOCUMENT_ID)
+                .company(Company.builder().id(7L).build())
+                .filePath(pdf.toString())
+                .processingStatus(DocumentProcessingStatus.PROCESSING)
+                .processingStartedAt(LocalDateTime.now())
+                .build();
+        when(documentRepository.claimForProcessing(eq(DOCUMENT_ID), any(), any(),
+                eq(DocumentProcessingStatus.PENDING), eq(DocumentProcessingStatus.PROCESSING))).thenReturn(1);
+        when(documentRepository.findById(DOCUMENT_ID)).thenReturn(Optional.of(document));
+        return document;
+    }
+}
@@ -0,0 +1,148 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import org.aldousdev.dockflowbackend.workflow.dto.response.DocumentSearchResponse;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск документов на document.search при миллионе документов в компании (цель - до 50 мс).
+ * Рядом вторая компания того же размера: GIN (company_id, search_vector) не должен читать ее совпадения.
+ * Слова: "договор" - в 30% документов, "поставка" - в 5%, "рекламация" - в 0,01%.
+ * deepPage* - 51-я страница по курсору, должна стоить как первая.
+ * Нужна пустая база Postgres 13+: схема создается миграциями, данные - generate_series (несколько минут,
+ * при повторном запуске переиспользуются).
+ * Запуск: SEARCH_BENCHMARK_JDBC_URL='jdbc:postgresql://localhost:5432/search_bench?user=...&password=...'
+ * mvn -Pbenchmark clean test-compile exec:exec -Djmh.args=DocumentSearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DocumentSearchBenchmark {
+    private static final Long COMPANY_ID = 1L;
+    private static final int COMPANIES = 2;
+    private static final int PAGE_SIZE = 20;
+    private static final int DEEP_PAGE = 50;
+
+    @Param({"1000000"})
+    private int documentsPerCompany;
+
+    @Param({"договор", "поставка", "рекламация"})
+    private String term;
+
+    private DocumentSearchService searchService;
+    private String deepRecentCursor;
+    private String deepRelevanceCursor;
+
+    @Setup
+    public void setUp() {
+        String url = System.getenv("SEARCH_BENCHMARK_JDBC_URL");
+        if (url == null || url.isBlank()) {
+            throw new IllegalStateException("SEARCH_BENCHMARK_JDBC_URL is not set");
+        }
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.postgresql.Driver(), url);
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        seed(jdbcTemplate);
+
+        searchService = new DocumentSearchService(jdbcTemplate, null);
+        ReflectionTestUtils.setField(searchService, "maxIndexedChars", 200_000);
+        ReflectionTestUtils.setField(searchService, "maxPageSize", 100);
+        ReflectionTestUtils.setField(searchService, "countLimit", 10_000);
+        deepRecentCursor = cursorAt(true);
+        deepRelevanceCursor = cursorAt(false);
+    }
+
+    @Benchmark
+    public DocumentSearchResponse firstPageRelevance() {
+        return searchService.search(COMPANY_ID, term, null, false, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public DocumentSearchResponse firstPageRecent() {
+        return searchService.search(COMPANY_ID, term, null, true, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public DocumentSearchResponse deepPageRelevance() {
+        return searchService.search(COMPANY_ID, term, null, false, deepRelevanceCursor, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public DocumentSearchResponse deepPageRecent() {
+        return searchService.search(COMPANY_ID, term, null, true, deepRecentCursor, PAGE_SIZE);
+    }
+
+    private String cursorAt(boolean recent) {
+        String cursor = null;
+        for (int page = 0; page < DEEP_PAGE; page++) {
+            cursor = searchService.search(COMPANY_ID, term, null, recent, cursor, PAGE_SIZE).getNextCursor();
+            if (cursor == null) {
+                // У редкого слова меньше 50 страниц: последняя и есть самая глубокая
+                return null;
+            }
+        }
+        return cursor;
+    }
+
+    private void seed(JdbcTemplate jdbcTemplate) {
+        Long seeded = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM document_search_entries WHERE company_id = ?", Long.class, COMPANY_ID);
+        if (seeded != null && seeded == documentsPerCompany) {
+            return;
+        }
+        long total = (long) documentsPerCompany * COMPANIES;
+        jdbcTemplate.execute("TRUNCATE document_search_entries, document_texts, documents CASCADE");
+        jdbcTemplate.update("INSERT INTO companies (id, name) SELECT c, 'search-benchmark-' || c " +
+                "FROM generate_series(1, ?) c ON CONFLICT DO NOTHING", COMPANIES);
+        jdbcTemplate.update("INSERT INTO users (id, email, email_verified, first_name, last_name, password, status, user_type) " +
+                "VALUES (1, 'search-benchmark@dockflow.test', true, 'Анна', 'Иванова', 'x', 'ACTIVE', 'COMPANY_MEMBER') " +
+                "ON CONFLICT DO NOTHING");
+        jdbcTemplate.update("""
+                INSERT INTO documents (id, file_path, original_filename, uploaded_at, company_id, uploaded_by, processing_status)
+                SELECT g, '/dev/null', 'document-' || g || '.pdf', timestamp '2020-01-01' + g * interval '1 minute',
+                       1 + (g - 1) / ?, 1, 'COMPLETED'
+                FROM generate_series(1, ?) g
+                """, documentsPerCompany, total);
+        // 200 случайных слов из словаря на 50 тысяч плюс слова с заданной частотой
+        jdbcTemplate.update("""
+                INSERT INTO document_texts (document_id, content, extracted_at, truncated)
+                SELECT d.id,
+                       (SELECT string_agg('w' || (random() * 50000)::int, ' ') FROM generate_series(1, 200) w
+                        WHERE d.id > 0)
+                       || CASE WHEN d.id % 10 < 3 THEN ' договор' ELSE '' END
+                       || CASE WHEN d.id % 20 = 0 THEN ' поставка' ELSE '' END
+                       || CASE WHEN d.id % 10000 = 0 THEN ' рекламация' ELSE '' END,
+                       now(), false
+                FROM documents d
+                """);
+        jdbcTemplate.update("""
+                INSERT INTO document_search_entries
+                    (document_id, company_id, original_filename, uploader_name, workflow_status, uploaded_at, indexed_at, search_vector)
+                SELECT d.id, d.company_id, d.original_filename, 'Анна Иванова', 'COMPLETED', d.uploaded_at, now(),
+                       setweight(to_tsvector('simple', d.original_filename), 'A')
+                       || setweight(to_tsvector('simple', 'Анна Иванова'), 'B')
+                       || setweight(to_tsvector('simple', t.content), 'C')
+                FROM documents d JOIN document_texts t ON t.document_id = d.id
+                """);
+        jdbcTemplate.execute("VACUUM ANALYZE document_search_entries");
+        jdbcTemplate.execute("VACUUM ANALYZE document_texts");
+    }
+}
@@ -0,0 +1,97 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import org.aldousdev.dockflowbackend.workflow.dto.response.DocumentSearchHit;
+import org.aldousdev.dockflowbackend.workflow.dto.response.DocumentSearchResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class DocumentSearchServiceTest {
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final DocumentSearchService service = new DocumentSearchService(jdbcTemplate, null);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "maxIndexedChars", 200_000);
+        ReflectionTestUtils.setField(service, "maxPageSize", 100);
+        ReflectionTestUtils.setField(service, "countLimit", 10_000);
+    }
+
+    @Test
+    void cursorRoundTripsBothSortOrders() {
+        LocalDateTime uploadedAt = LocalDateTime.of(2025, 3, 1, 12, 30, 15, 123_456_000);
+        DocumentSearchService.SearchCursor recent = new DocumentSearchService.SearchCursor(true, uploadedAt, 0, 42L);
+        DocumentSearchService.SearchCursor relevance = new DocumentSearchService.SearchCursor(false, null, 0.1f / 3, 42L);
+
+        assertThat(DocumentSearchService.SearchCursor.decode(recent.encode(), true)).isEqualTo(recent);
+        // Ранг real сравнивается в SQL на точное равенство, поэтому он должен вернуться тем же float
+        assertThat(DocumentSearchService.SearchCursor.decode(relevance.encode(), false)).isEqualTo(relevance);
+    }
+
+    @Test
+    void cursorOfAnotherSortOrderIsRejected() {
+        String recent = new DocumentSearchService.SearchCursor(true, LocalDateTime.now(), 0, 1L).encode();
+
+        assertThatThrownBy(() -> DocumentSearchService.SearchCursor.decode(recent, false))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> DocumentSearchService.SearchCursor.decode("not a cursor", true))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void fullPageReturnsCursorOfItsLastHit() {
+        hits(hit(9L, 0.5), hit(8L, 0.25));
+
+        DocumentSearchResponse response = service.search(1L, "договор", null, false, null, 2);
+
+        DocumentSearchService.SearchCursor next = DocumentSearchService.SearchCursor.decode(response.getNextCursor(), false);
+        assertThat(next.documentId()).isEqualTo(8L);
+        assertThat(next.rank()).isEqualTo(0.25f);
+        verify(jdbcTemplate).queryForObject(anyString(), eq(Long.class), any(Object[].class));
+    }
+
+    @Test
+    void nextPageUsesKeysetAndSkipsCount() {
+        hits(hit(7L, 0.1));
+        String cursor = new DocumentSearchService.SearchCursor(true, LocalDateTime.of(2025, 1, 1, 0, 0), 0, 8L).encode();
+
+        DocumentSearchResponse response = service.search(1L, "договор", null, true, cursor, 2);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).query(sql.capture(), any(RowMapper.class), any(Object[].class));
+        assertThat(sql.getValue()).contains("(e.uploaded_at, e.document_id) < (?, ?)").doesNotContain("OFFSET");
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(Long.class), any(Object[].class));
+        assertThat(response.getTotal()).isNull();
+        assertThat(response.getNextCursor()).isNull();
+    }
+
+    private void hits(DocumentSearchHit... hits) {
+        doReturn(List.of(hits)).when(jdbcTemplate).query(anyString(), any(RowMapper.class), any(Object[].class));
+        doReturn((long) hits.length).when(jdbcTemplate)
+                .queryForObject(anyString(), eq(Long.class), any(Object[].class));
+    }
+
+    private static DocumentSearchHit hit(Long documentId, double rank) {
+        return DocumentSearchHit.builder()
+                .documentId(documentId)
+                .uploadedAt(LocalDateTime.of(2025, 1, 1, 0, 0).minusMinutes(documentId))
+                .rank((float) rank)
+                .build();
+    }
+}
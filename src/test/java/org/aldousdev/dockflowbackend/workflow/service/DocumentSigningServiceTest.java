@@ -0,0 +1,228 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import org.aldousdev.dockflowbackend.auth.entity.Company;
+import org.aldousdev.dockflowbackend.auth.service.impls.AuthServiceImpl;
+import org.aldousdev.dockflowbackend.workflow.entity.Document;
+import org.aldousdev.dockflowbackend.workflow.entity.DocumentSignature;
+import org.aldousdev.dockflowbackend.workflow.event.WorkflowEventBroadcaster;
+import org.aldousdev.dockflowbackend.workflow.exceptions.DocumentSigningException;
+import org.aldousdev.dockflowbackend.workflow.repository.DocumentRepository;
+import org.aldousdev.dockflowbackend.workflow.repository.DocumentSignatureRepository;
+import org.aldousdev.dockflowbackend.workflow.signing.PdfSigningEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentSigningServiceTest {
+    private static final Long DOCUMENT_ID = 21L;
+    private static final Long SIGNATURE_ID = 5L;
+    private static final Long COMPANY_ID = 7L;
+
+    @TempDir
+    Path uploadDir;
+
+    private final DocumentSignatureRepository signatureRepository = mock(DocumentSignatureRepository.class);
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final PdfSigningEngine signingEngine = mock(PdfSigningEngine.class);
+    private final WorkflowEventBroadcaster eventBroadcaster = mock(WorkflowEventBroadcaster.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private DocumentSigningService service;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        service = new DocumentSigningService(signatureRepository, documentRepository, signingEngine, eventBroadcaster,
+                transactionManager, mock(AuthServiceImpl.class), jdbcTemplate);
+        ReflectionTestUtils.setField(service, "parallelism", 1);
+        ReflectionTestUtils.setField(service, "queueCapacity", 1);
+        ReflectionTestUtils.setField(service, "claimTimeout", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+        service.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void signatureClaimedByAnotherNodeIsNotSigned() throws Exception {
+        when(signatureRepository.claim(eq(SIGNATURE_ID), any(), any())).thenReturn(0);
+        when(signatureRepository.findById(SIGNATURE_ID)).thenReturn(Optional.of(new DocumentSignature()));
+
+        assertThatThrownBy(() -> service.apply(SIGNATURE_ID))
+                .isInstanceOf(DocumentSigningException.class)
+                .hasMessageContaining("another node");
+
+        verify(signatureRepository, never()).findByIdWithDocument(any());
+        verify(signingEngine, never()).sign(any(), any(), any());
+    }
+
+    @Test
+    void existingSignatureFieldIsNotSignedTwice() throws Exception {
+        DocumentSignature signature = claimable(1);
+        lockDocument(true);
+        when(signingEngine.hasSignature(any(), eq("sig-" + SIGNATURE_ID))).thenReturn(true);
+
+        service.apply(SIGNATURE_ID);
+
+        verify(signingEngine, never()).sign(any(), any(), any());
+        assertThat(signature.getAppliedAt()).isNotNull();
+        assertThat(signature.getClaimedAt()).isNull();
+        assertThat(signature.getDocument().getSigned()).isTrue();
+        verify(eventBroadcaster).broadcastDocumentSigned(COMPANY_ID, DOCUMENT_ID, SIGNATURE_ID, true);
+    }
+
+    @Test
+    void transientFailureReleasesTheClaim() throws Exception {
+        DocumentSignature signature = claimable(1);
+        lockDocument(true);
+        doThrow(new IOException("Stale file handle")).when(signingEngine).sign(any(), any(), any());
+
+        assertThatThrownBy(() -> service.apply(SIGNATURE_ID))
+                .isInstanceOf(DocumentSigningException.class)
+                .hasMessageContaining("stays pending");
+
+        assertThat(signature.getClaimedAt()).isNull();
+        assertThat(signature.getFailureReason()).isNull();
+        verify(eventBroadcaster, never()).broadcastDocumentSigned(anyLong(), anyLong(), anyLong(), anyBoolean());
+
+        // Временный файл уникален для попытки и удален после ошибки
+        ArgumentCaptor<Path> temp = ArgumentCaptor.forClass(Path.class);
+        verify(signingEngine).sign(any(), temp.capture(), any());
+        assertThat(temp.getValue().getFileName().toString()).startsWith("contract.pdf.signing-");
+        assertThat(temp.getValue()).doesNotExist();
+    }
+
+    @Test
+    void transientFailureOnTheLastAttemptFailsTheSignature() throws Exception {
+        DocumentSignature signature = claimable(3);
+        lockDocument(true);
+        doThrow(new IOException("Stale file handle")).when(signingEngine).sign(any(), any(), any());
+
+        assertThatThrownBy(() -> service.apply(SIGNATURE_ID)).isInstanceOf(DocumentSigningException.class);
+
+        assertThat(signature.getFailureReason()).isEqualTo("Stale file handle");
+        verify(eventBroadcaster).broadcastDocumentSigned(COMPANY_ID, DOCUMENT_ID, SIGNATURE_ID, false);
+    }
+
+    @Test
+    void permanentFailureFailsTheSignatureAtOnce() throws Exception {
+        DocumentSignature signature = claimable(1);
+        lockDocument(true);
+        doThrow(new GeneralSecurityException("Key is not valid")).when(signingEngine).sign(any(), any(), any());
+
+        assertThatThrownBy(() -> service.apply(SIGNATURE_ID)).isInstanceOf(DocumentSigningException.class);
+
+        assertThat(signature.getFailureReason()).isEqualTo("Key is not valid");
+        verify(eventBroadcaster).broadcastDocumentSigned(COMPANY_ID, DOCUMENT_ID, SIGNATURE_ID, false);
+    }
+
+    @Test
+    void documentLockedByAnotherNodeLeavesTheSignaturePending() throws Exception {
+        DocumentSignature signature = claimable(1);
+        lockDocument(false);
+
+        assertThatThrownBy(() -> service.apply(SIGNATURE_ID))
+                .isInstanceOf(DocumentSigningException.class)
+                .hasMessageContaining("stays pending");
+
+        verify(signingEngine, never()).sign(any(), any(), any());
+        assertThat(signature.getClaimedAt()).isNull();
+        assertThat(signature.getFailureReason()).isNull();
+    }
+
+    @Test
+    void fullQueueRejectsInsteadOfSigningInTheCallerThread() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(signatureRepository.claim(any(), any(), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 0;
+        });
+
+        CompletableFuture<Void> running = service.submit(1L);
+        // Дождаться, пока первая подпись займет единственный поток
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(service, "executor");
+        for (int i = 0; i < 100 && executor.getActiveCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        CompletableFuture<Void> queued = service.submit(2L);
+        CompletableFuture<Void> rejected = service.submit(3L);
+
+        assertThat(rejected).isCompletedExceptionally();
+        assertThatThrownBy(rejected::get)
+                .isInstanceOf(ExecutionException.class)
+                .cause()
+                .isInstanceOf(DocumentSigningException.class)
+                .hasMessageContaining("queue is full");
+        release.countDown();
+        running.handle((result, e) -> null).get(5, TimeUnit.SECONDS);
+        queued.handle((result, e) -> null).get(5, TimeUnit.SECONDS);
+        verify(signatureRepository, never()).claim(eq(3L), any(), any());
+    }
+
+    private DocumentSignature claimable(int attempts) throws Exception {
+        Path pdf = uploadDir.resolve("contract.pdf");
+        try (PdfDocument out = new PdfDocument(new PdfWriter(pdf.toString()))) {
+            out.addNewPage();
+        }
+        Document document = Document.builder()
+                .id(DOCUMENT_ID)
+                .company(Company.builder().id(COMPANY_ID).build())
+                .filePath(pdf.toString())
+                .pageCount(1)
+                .build();
+        DocumentSignature signature = DocumentSignature.builder()
+                .id(SIGNATURE_ID)
+                .document(document)
+                .pageNumber(1)
+                .signatureText("Анна Иванова")
+                .signedAt(LocalDateTime.now())
+                .claimedAt(LocalDateTime.now())
+                .attempts(attempts)
+                .build();
+        when(signatureRepository.claim(eq(SIGNATURE_ID), any(), any())).thenReturn(1);
+        when(signatureRepository.findByIdWithDocument(SIGNATURE_ID)).thenReturn(Optional.of(signature));
+        when(signatureRepository.findById(SIGNATURE_ID)).thenReturn(Optional.of(signature));
+        when(documentRepository.findById(DOCUMENT_ID)).thenReturn(Optional.of(document));
+        return signature;
+    }
+
+    private void lockDocument(boolean acquired) {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), any(), any())).thenReturn(acquired);
+    }
+}
@@ -0,0 +1,177 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.aldousdev.dockflowbackend.workflow.repository.EmailOutboxRepository;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class EmailDeliveryWorkerTest {
+    private static final String MARK_SENT = "UPDATE email_outbox SET status = 'SENT'";
+    private static final String MARK_FAILED = "UPDATE email_outbox SET status = ?";
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private EmailDeliveryWorker worker;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (worker != null) {
+            worker.stop();
+        }
+    }
+
+    @Test
+    void deliversClaimedBatchAndMarksItSent() throws Exception {
+        claim(row(1L, "first@dockflow.test", "Первое"),
+                row(2L, "second@dockflow.test", "Второе"),
+                row(3L, "third@dockflow.test", "Третье"));
+        worker = startWorker(ServerSetupTest.SMTP.getPort());
+
+        assertThat(greenMail.waitForIncomingEmail(5000, 3)).isTrue();
+        List<String> subjects = new ArrayList<>();
+        for (MimeMessage message : greenMail.getReceivedMessages()) {
+            subjects.add(message.getSubject());
+        }
+        assertThat(subjects).containsExactly("Первое", "Второе", "Третье");
+
+        List<Object[]> sent = captureBatch(MARK_SENT);
+        assertThat(sent).extracting(args -> args[1]).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void malformedAddressGoesToDeadWithoutStoppingTheBatch() throws Exception {
+        claim(row(1L, "not an address", "Битый адрес"), row(2L, "ok@dockflow.test", "Нормальное"));
+        worker = startWorker(ServerSetupTest.SMTP.getPort());
+
+        assertThat(greenMail.waitForIncomingEmail(5000, 1)).isTrue();
+        List<Object[]> failed = captureBatch(MARK_FAILED);
+        assertThat(failed).hasSize(1);
+        assertThat(failed.get(0)[0]).isEqualTo("DEAD");
+        assertThat(failed.get(0)[4]).isEqualTo(1L);
+        assertThat(captureBatch(MARK_SENT)).extracting(args -> args[1]).containsExactly(2L);
+    }
+
+    @Test
+    void unreachableServerIsRetried() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        claim(row(1L, "user@dockflow.test", "Повтор"));
+        worker = startWorker(closedPort);
+
+        List<Object[]> failed = captureBatch(MARK_FAILED);
+        assertThat(failed.get(0)[0]).isEqualTo("PENDING");
+        assertThat(failed.get(0)[1]).isEqualTo(1);
+    }
+
+    @Test
+    void addressFailuresArePermanentOnlyFor5xx() throws Exception {
+        InternetAddress address = new InternetAddress("user@dockflow.test");
+
+        assertThat(EmailDeliveryWorker.isPermanent(
+                new SMTPAddressFailedException(address, "RCPT TO", 550, "550 5.1.1 User unknown"))).isTrue();
+        assertThat(EmailDeliveryWorker.isPermanent(
+                new SMTPAddressFailedException(address, "RCPT TO", 452, "452 4.2.2 Mailbox full"))).isFalse();
+        assertThat(EmailDeliveryWorker.isPermanent(
+                new SMTPAddressFailedException(address, "RCPT TO", 450, "450 4.2.1 Try again later"))).isFalse();
+
+        // Так Transport.sendMessage сообщает об отказе всех адресов
+        SendFailedException invalid = new SendFailedException("Invalid Addresses",
+                new SMTPAddressFailedException(address, "RCPT TO", 451, "451 4.3.0 Temporary failure"));
+        assertThat(EmailDeliveryWorker.isPermanent(invalid)).isFalse();
+
+        assertThat(EmailDeliveryWorker.isPermanent(new SMTPSendFailedException("DATA", 554,
+                "554 5.7.1 Rejected", null, null, null, null))).isTrue();
+        assertThat(EmailDeliveryWorker.isPermanent(new SMTPSendFailedException("DATA", 421,
+                "421 4.3.2 Service shutting down", null, null, null, null))).isFalse();
+
+        assertThat(EmailDeliveryWorker.isPermanent(new AddressException("Illegal address", "not an address"))).isTrue();
+        assertThat(EmailDeliveryWorker.isPermanent(new MessagingException("Connection reset"))).isFalse();
+    }
+
+    @Test
+    void deadGaugeAndDeadCounterHaveDistinctPrometheusNames() {
+        claim();
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        worker = startWorker(ServerSetupTest.SMTP.getPort(), registry);
+
+        String scrape = registry.scrape();
+        assertThat(scrape).contains("email_outbox_dead_total 0.0", "email_outbox_dead_pending 0.0");
+        assertThat(registry.find("email.outbox.dead.pending").gauge()).isNotNull();
+    }
+
+    private void claim(EmailDeliveryWorker.OutboxRow... rows) {
+        doReturn(List.of(rows), List.of()).when(jdbcTemplate)
+                .query(anyString(), any(RowMapper.class), any(), any(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> captureBatch(String sqlPrefix) {
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, timeout(5000)).batchUpdate(startsWith(sqlPrefix), rows.capture());
+        return rows.getValue();
+    }
+
+    private EmailDeliveryWorker startWorker(int port) {
+        return startWorker(port, new SimpleMeterRegistry());
+    }
+
+    private EmailDeliveryWorker startWorker(int port, MeterRegistry meterRegistry) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(port);
+        EmailDeliveryWorker worker = new EmailDeliveryWorker(mailSender, jdbcTemplate,
+                mock(EmailOutboxRepository.class), meterRegistry);
+        ReflectionTestUtils.setField(worker, "fromEmail", "noreply@dockflow.test");
+        ReflectionTestUtils.setField(worker, "connections", 1);
+        ReflectionTestUtils.setField(worker, "batchSize", 50);
+        ReflectionTestUtils.setField(worker, "pollInterval", Duration.ofMillis(50));
+        ReflectionTestUtils.setField(worker, "lease", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(worker, "maxAttempts", 8);
+        ReflectionTestUtils.setField(worker, "initialBackoff", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(worker, "maxBackoff", Duration.ofHours(1));
+        ReflectionTestUtils.setField(worker, "connectionIdleTimeout", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(worker, "maxMessagesPerConnection", 500);
+        worker.start();
+        return worker;
+    }
+
+    private static EmailDeliveryWorker.OutboxRow row(Long id, String recipient, String subject) {
+        return new EmailDeliveryWorker.OutboxRow(id, recipient, subject, "<p>" + subject + "</p>", true, 0);
+    }
+}
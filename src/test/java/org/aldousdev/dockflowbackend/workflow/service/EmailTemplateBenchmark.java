@@ -0,0 +1,108 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рендер письма task-created: скомпилированный шаблон EmailTemplateRegistry против прежнего
+ * String.format по text block (formatUnescaped - как было, formatEscaped - то же с HtmlUtils,
+ * то есть с тем же результатом, что у шаблона).
+ * Запуск: mvn -Pbenchmark clean test-compile exec:exec -Djmh.args=EmailTemplateBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailTemplateBenchmark {
+    private static final String TASK_CREATED_FORMAT = """
+            <!DOCTYPE html>
+            <html>
+            <head>
+                <meta charset="UTF-8">
+                <style>
+                    body { font-family: Arial, sans-serif; }
+                    .container { max-width: 600px; margin: 0 auto; padding: 20px; }
+                    .header { background-color: #2196F3; color: white; padding: 20px; border-radius: 5px; }
+                    .content { padding: 20px; background-color: #f5f5f5; }
+                    .button { background-color: #2196F3; color: white; padding: 10px 20px; text-decoration: none; border-radius: 5px; display: inline-block; margin-top: 10px; }
+                    .footer { padding: 10px; text-align: center; color: #666; }
+                </style>
+            </head>
+            <body>
+                <div class="container">
+                    <div class="header">
+                        <h1>Новая задача на одобрение</h1>
+                    </div>
+                    <div class="content">
+                        <p>Привет, %s!</p>
+                        <p>У вас есть новая задача на одобрение документа:</p>
+                        <h2>%s</h2>
+                        <p><strong>Роль:</strong> %s</p>
+                        <p><strong>Тип действия:</strong> Требуется ваше одобрение</p>
+                        <a href="%s/workflow/%d/task/%d" class="button">Перейти к задаче</a>
+                    </div>
+                    <div class="footer">
+                        <p>© 2024 DocFlow. Все права защищены.</p>
+                    </div>
+                </div>
+            </body>
+            </html>
+            """;
+
+    @Param({"Договор поставки №42.pdf", "Договор <ООО \"Ромашка\"> & партнеры.pdf"})
+    private String documentName;
+
+    private final String userName = "Анна";
+    private final String roleName = "Главный бухгалтер";
+    private final String appUrl = "https://dockflow.example.com";
+    private final Long workflowId = 123456L;
+    private final Long taskId = 7890123L;
+
+    private EmailTemplateRegistry registry;
+
+    @Setup
+    public void setUp() {
+        registry = new EmailTemplateRegistry();
+        registry.load();
+    }
+
+    @Benchmark
+    public String formatUnescaped() {
+        return String.format(TASK_CREATED_FORMAT, userName, documentName, roleName, appUrl, workflowId, taskId);
+    }
+
+    @Benchmark
+    public String formatEscaped() {
+        return String.format(TASK_CREATED_FORMAT, HtmlUtils.htmlEscape(userName), HtmlUtils.htmlEscape(documentName),
+                HtmlUtils.htmlEscape(roleName), HtmlUtils.htmlEscape(appUrl), workflowId, taskId);
+    }
+
+    @Benchmark
+    public String compiledTemplate() {
+        // Модель собирается на каждый вызов, как в EmailService
+        Map<String, Object> model = new HashMap<>(12);
+        model.put("userName", userName);
+        model.put("documentName", documentName);
+        model.put("roleName", roleName);
+        model.put("appUrl", appUrl);
+        model.put("workflowId", workflowId);
+        model.put("taskId", taskId);
+        return registry.render("task-created", model);
+    }
+}
@@ -0,0 +1,68 @@
+package org.aldousdev.dockflowbackend.workflow.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aldousdev.dockflowbackend.auth.entity.User;
+import org.aldousdev.dockflowbackend.config.AppMetrics;
+import org.aldousdev.dockflowbackend.workflow.entity.Document;
+import org.aldousdev.dockflowbackend.workflow.entity.WorkflowAuditLog;
+import org.aldousdev.dockflowbackend.workflow.entity.WorkflowInstance;
+import org.aldousdev.dockflowbackend.workflow.entity.WorkflowTemplate;
+import org.aldousdev.dockflowbackend.workflow.repository.WorkflowAuditLogRepository;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WorkflowAuditServiceTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final WorkflowAuditLogRepository repository = mock(WorkflowAuditLogRepository.class);
+    private final WorkflowAuditService service = new WorkflowAuditService(repository, new ObjectMapper(),
+            new AppMetrics(registry, 1), mock(AuditArchiveService.class));
+
+    @Test
+    void auditWriteIsTaggedWithTemplateCompany() {
+        service.logWorkflowStarted(instance(42L), user());
+
+        Timer timer = registry.find(WorkflowAuditService.AUDIT_WRITE_TIMER)
+                .tags(AppMetrics.COMPANY_TAG, "42", "action", "WORKFLOW_STARTED", AppMetrics.OUTCOME_TAG, "success")
+                .timer();
+        assertThat(timer).isNotNull();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    void companiesOverTheCapShareOneSeries() {
+        service.logWorkflowStarted(instance(1L), user());
+        service.logWorkflowStarted(instance(2L), user());
+
+        assertThat(registry.find(WorkflowAuditService.AUDIT_WRITE_TIMER)
+                .tag(AppMetrics.COMPANY_TAG, AppMetrics.OTHER_COMPANY).timer()).isNotNull();
+    }
+
+    @Test
+    void failedWriteIsRecordedAsError() {
+        when(repository.save(any(WorkflowAuditLog.class))).thenThrow(new IllegalStateException("db down"));
+
+        assertThatThrownBy(() -> service.logWorkflowStarted(instance(42L), user()))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(registry.find(WorkflowAuditService.AUDIT_WRITE_TIMER)
+                .tags(AppMetrics.COMPANY_TAG, "42", AppMetrics.OUTCOME_TAG, "error").timer()).isNotNull();
+    }
+
+    private static WorkflowInstance instance(Long companyId) {
+        return WorkflowInstance.builder()
+                .id(7L)
+                .document(Document.builder().id(3L).build())
+                .template(WorkflowTemplate.builder().id(5L).companyId(companyId).build())
+                .build();
+    }
+
+    private static User user() {
+        return User.builder().id(1L).email("owner@dockflow.test").build();
+    }
+}